@@ -0,0 +1,174 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.ajax;
+
+import org.airsonic.player.domain.PlayQueue.RepeatStatus;
+import org.airsonic.player.domain.PlayQueue.Status;
+
+import java.util.List;
+
+/**
+ * A change of the play queue of a player, sent instead of the whole {@link PlayQueueInfo}. The
+ * operations turn the queue at {@code baseVersion} into the queue at {@code version}; a client
+ * holding another version must ask for the whole queue again.
+ */
+public class PlayQueueDelta {
+    private final long baseVersion;
+    private final long version;
+    private final List<Operation> operations;
+    private final Status playStatus;
+    private final RepeatStatus repeatStatus;
+    private final boolean shuffleRadioEnabled;
+    private final boolean internetRadioEnabled;
+    private final String remoteStreamUrl;
+    private final String remoteCoverArtUrl;
+
+    public PlayQueueDelta(long baseVersion, long version, List<Operation> operations, Status playStatus,
+            RepeatStatus repeatStatus, boolean shuffleRadioEnabled, boolean internetRadioEnabled,
+            String remoteStreamUrl, String remoteCoverArtUrl) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.operations = operations;
+        this.playStatus = playStatus;
+        this.repeatStatus = repeatStatus;
+        this.shuffleRadioEnabled = shuffleRadioEnabled;
+        this.internetRadioEnabled = internetRadioEnabled;
+        this.remoteStreamUrl = remoteStreamUrl;
+        this.remoteCoverArtUrl = remoteCoverArtUrl;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    public Status getPlayStatus() {
+        return playStatus;
+    }
+
+    public RepeatStatus getRepeatStatus() {
+        return repeatStatus;
+    }
+
+    public boolean isShuffleRadioEnabled() {
+        return shuffleRadioEnabled;
+    }
+
+    public boolean isInternetRadioEnabled() {
+        return internetRadioEnabled;
+    }
+
+    /**
+     * The remote stream URL of the inserted entries, without the id parameter, or null if nothing is inserted.
+     */
+    public String getRemoteStreamUrl() {
+        return remoteStreamUrl;
+    }
+
+    /**
+     * The remote cover art URL of the inserted entries, without the id parameter, or null if nothing is inserted.
+     */
+    public String getRemoteCoverArtUrl() {
+        return remoteCoverArtUrl;
+    }
+
+    /**
+     * One step of a delta, applied in order.
+     */
+    public static class Operation {
+        private final Type type;
+        private final int index;
+        private final int count;
+        private final int to;
+        private final List<MediaFileEntry> entries;
+        private final List<Integer> order;
+
+        private Operation(Type type, int index, int count, int to, List<MediaFileEntry> entries, List<Integer> order) {
+            this.type = type;
+            this.index = index;
+            this.count = count;
+            this.to = to;
+            this.entries = entries;
+            this.order = order;
+        }
+
+        /**
+         * Inserts the entries before the given index.
+         */
+        public static Operation insert(int index, List<MediaFileEntry> entries) {
+            return new Operation(Type.INSERT, index, entries.size(), 0, entries, null);
+        }
+
+        /**
+         * Removes count entries starting at the given index.
+         */
+        public static Operation remove(int index, int count) {
+            return new Operation(Type.REMOVE, index, count, 0, null, null);
+        }
+
+        /**
+         * Removes the entry at the given index and inserts it again at index {@code to}.
+         */
+        public static Operation move(int index, int to) {
+            return new Operation(Type.MOVE, index, 1, to, null, null);
+        }
+
+        /**
+         * Reorders the whole queue: the entry at position i is the one previously at {@code order.get(i)}.
+         */
+        public static Operation reorder(List<Integer> order) {
+            return new Operation(Type.REORDER, 0, order.size(), 0, null, order);
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        public List<MediaFileEntry> getEntries() {
+            return entries;
+        }
+
+        public List<Integer> getOrder() {
+            return order;
+        }
+
+        public enum Type {
+            INSERT, REMOVE, MOVE, REORDER
+        }
+    }
+}
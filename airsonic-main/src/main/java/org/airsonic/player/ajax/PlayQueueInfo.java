@@ -36,17 +36,24 @@ public class PlayQueueInfo {
     private final boolean shuffleRadioEnabled;
     private final boolean internetRadioEnabled;
     private final float gain;
+    private final long version;
+    private final String remoteStreamUrl;
+    private final String remoteCoverArtUrl;
     private int startPlayerAt = -1;
     private long startPlayerAtPosition; // millis
 
     public PlayQueueInfo(List<MediaFileEntry> entries, Status playStatus, RepeatStatus repeatStatus,
-            boolean shuffleRadioEnabled, boolean internetRadioEnabled, float gain) {
+            boolean shuffleRadioEnabled, boolean internetRadioEnabled, float gain, long version,
+            String remoteStreamUrl, String remoteCoverArtUrl) {
         this.entries = entries;
         this.playStatus = playStatus;
         this.repeatStatus = repeatStatus;
         this.shuffleRadioEnabled = shuffleRadioEnabled;
         this.internetRadioEnabled = internetRadioEnabled;
         this.gain = gain;
+        this.version = version;
+        this.remoteStreamUrl = remoteStreamUrl;
+        this.remoteCoverArtUrl = remoteCoverArtUrl;
     }
 
     public List<MediaFileEntry> getEntries() {
@@ -73,6 +80,27 @@ public class PlayQueueInfo {
         return gain;
     }
 
+    /**
+     * The version of the queue, which the next {@link PlayQueueDelta} is based on.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The remote stream URL of the entries, without the id parameter. It carries one token for the whole queue.
+     */
+    public String getRemoteStreamUrl() {
+        return remoteStreamUrl;
+    }
+
+    /**
+     * The remote cover art URL of the entries, without the id parameter.
+     */
+    public String getRemoteCoverArtUrl() {
+        return remoteCoverArtUrl;
+    }
+
     public int getStartPlayerAt() {
         return startPlayerAt;
     }
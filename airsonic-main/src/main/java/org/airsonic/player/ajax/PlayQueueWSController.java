@@ -36,6 +36,12 @@ public class PlayQueueWSController {
         return playQueueService.getPlayQueueInfo(player, baseUrl);
     }
 
+    @MessageMapping("/resync")
+    public void resync(@DestinationVariable("playerId") Integer playerId, SimpMessageHeaderAccessor headers) throws Exception {
+        Player player = getPlayer(playerId, headers);
+        playQueueService.resync(player);
+    }
+
     @MessageMapping("/start")
     public void start(@DestinationVariable("playerId") Integer playerId, SimpMessageHeaderAccessor headers) throws Exception {
         Player player = getPlayer(playerId, headers);
@@ -28,7 +28,6 @@ import java.util.Locale;
 import java.util.Objects;
 import java.util.ResourceBundle;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Controller
 @MessageMapping("/playlists")
@@ -138,12 +137,10 @@ public class PlaylistWSController {
     @SendToUser(broadcast = false)
     public int appendToPlaylist(PlaylistFilesModificationRequest req) {
         // in this context, modifierIds are mediafile ids
-        List<MediaFile> files = Stream
-                .concat(playlistService.getFilesInPlaylist(req.getId(), true).stream(),
-                        req.getModifierIds().stream().map(mediaFileService::getMediaFile).filter(Objects::nonNull))
+        List<MediaFile> files = req.getModifierIds().stream().map(mediaFileService::getMediaFile).filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
-        playlistService.setFilesInPlaylist(req.getId(), files);
+        playlistService.appendFilesToPlaylist(req.getId(), files);
         playlistService.broadcastFileChange(req.getId(), false, true);
 
         return req.getId();
@@ -164,11 +161,11 @@ public class PlaylistWSController {
     @SendToUser(broadcast = false)
     public int up(PlaylistFilesModificationRequest req) {
         // in this context, modifierIds has one element that is the index of the file
-        List<MediaFile> files = playlistService.getFilesInPlaylist(req.getId(), true);
-        if (req.getModifierIds().size() == 1 && req.getModifierIds().get(0) > 0) {
-            Collections.swap(files, req.getModifierIds().get(0), req.getModifierIds().get(0) - 1);
-            playlistService.setFilesInPlaylist(req.getId(), files);
-            playlistService.broadcastFileChange(req.getId(), false, true);
+        if (req.getModifierIds().size() == 1) {
+            int index = req.getModifierIds().get(0);
+            if (playlistService.moveFilesInPlaylist(req.getId(), index, 1, index - 1)) {
+                playlistService.broadcastFileChange(req.getId(), false, true);
+            }
         }
 
         return req.getId();
@@ -178,11 +175,11 @@ public class PlaylistWSController {
     @SendToUser(broadcast = false)
     public int down(PlaylistFilesModificationRequest req) {
         // in this context, modifierIds has one element that is the index of the file
-        List<MediaFile> files = playlistService.getFilesInPlaylist(req.getId(), true);
-        if (req.getModifierIds().size() == 1 && req.getModifierIds().get(0) < files.size() - 1) {
-            Collections.swap(files, req.getModifierIds().get(0), req.getModifierIds().get(0) + 1);
-            playlistService.setFilesInPlaylist(req.getId(), files);
-            playlistService.broadcastFileChange(req.getId(), false, true);
+        if (req.getModifierIds().size() == 1) {
+            int index = req.getModifierIds().get(0);
+            if (playlistService.moveFilesInPlaylist(req.getId(), index, 1, index + 1)) {
+                playlistService.broadcastFileChange(req.getId(), false, true);
+            }
         }
 
         return req.getId();
@@ -30,6 +30,7 @@ public class AdvancedSettingsCommand {
 
     private String downloadLimit;
     private String uploadLimit;
+    private String streamPriority;
     private boolean ldapEnabled;
     private String ldapUrl;
     private String ldapSearchFilter;
@@ -65,6 +66,14 @@ public class AdvancedSettingsCommand {
         this.uploadLimit = uploadLimit;
     }
 
+    public String getStreamPriority() {
+        return streamPriority;
+    }
+
+    public void setStreamPriority(String streamPriority) {
+        this.streamPriority = streamPriority;
+    }
+
     public boolean isLdapEnabled() {
         return ldapEnabled;
     }
@@ -0,0 +1,46 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+
+package org.airsonic.player.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Positive;
+
+@Component
+@ConfigurationProperties(prefix = "airsonic.broadcast")
+@Validated
+public class AirsonicBroadcastConfig {
+
+    private static final int DEFAULT_MAX_RATE = 4;
+
+    // maximum number of times per second status messages are flushed to the clients
+    @Positive
+    private Integer maxRate = DEFAULT_MAX_RATE;
+
+    public Integer getMaxRate() {
+        return maxRate;
+    }
+
+    public void setMaxRate(Integer maxRate) {
+        this.maxRate = maxRate;
+    }
+}
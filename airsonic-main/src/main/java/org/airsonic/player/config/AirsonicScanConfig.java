@@ -26,6 +26,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 
 import java.util.Objects;
 
@@ -39,6 +40,14 @@ public class AirsonicScanConfig {
 
     private static final int DEFAULT_SCAN = 60 * 60;
     private static final int DEFAULT_FULLSCAN = 4 * 60 * 60;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_METADATA_CACHE_SIZE = 64;
+    private static final int DEFAULT_WATCH_DEBOUNCE = 2;
+    private static final int DEFAULT_WATCH_POLL_INTERVAL = 5 * 60;
+    private static final int DEFAULT_INDEX_REFRESH_INTERVAL = 2;
+    private static final int DEFAULT_INDEX_COMMIT_INTERVAL = 60;
+    private static final int DEFAULT_INDEX_COMMIT_THRESHOLD = 1000;
 
     @Positive
     private Integer fullTimeout = DEFAULT_FULLSCAN;
@@ -49,6 +58,44 @@ public class AirsonicScanConfig {
     @Positive
     private Integer parallelism;
 
+    @Positive
+    private Integer persistParallelism;
+
+    @Positive
+    private Integer indexParallelism;
+
+    @Positive
+    private Integer queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    private boolean virtualThreads = false;
+
+    @Positive
+    private Integer batchSize = DEFAULT_BATCH_SIZE;
+
+    @PositiveOrZero
+    private Integer metadataCacheSize = DEFAULT_METADATA_CACHE_SIZE;
+
+    private boolean incremental = false;
+
+    private boolean watch = false;
+
+    @Positive
+    private Integer watchDebounce = DEFAULT_WATCH_DEBOUNCE;
+
+    @Positive
+    private Integer watchPollInterval = DEFAULT_WATCH_POLL_INTERVAL;
+
+    private boolean thumbnails = true;
+
+    @Positive
+    private Integer indexRefreshInterval = DEFAULT_INDEX_REFRESH_INTERVAL;
+
+    @Positive
+    private Integer indexCommitInterval = DEFAULT_INDEX_COMMIT_INTERVAL;
+
+    @Positive
+    private Integer indexCommitThreshold = DEFAULT_INDEX_COMMIT_THRESHOLD;
+
     public Integer getFullTimeout() {
         return fullTimeout;
     }
@@ -74,6 +121,132 @@ public class AirsonicScanConfig {
         return Runtime.getRuntime().availableProcessors() + 1;
     }
 
+    /**
+     * Get the number of threads updating the database during a scan. If not set, same as parallelism
+     *
+     * @return persist parallelism
+     */
+    public Integer getPersistParallelism() {
+        return Objects.nonNull(persistParallelism) ? persistParallelism : getParallelism();
+    }
+
+    /**
+     * Get the number of threads updating the search index during a scan. If not set, half of parallelism
+     *
+     * @return index parallelism
+     */
+    public Integer getIndexParallelism() {
+        return Objects.nonNull(indexParallelism) ? indexParallelism : Math.max(1, getParallelism() / 2);
+    }
+
+    /**
+     * Maximum number of items waiting for the persist and the index stage of a scan.
+     *
+     * @return queue capacity
+     */
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Whether the read and persist stages of a scan use virtual threads. Requires Java 21.
+     *
+     * @return true if virtual threads are used
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Maximum number of media files, albums or artists written in one transaction during a scan.
+     *
+     * @return batch size
+     */
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Size in MB of the persistent cache of parsed media file tags. 0 disables the cache.
+     *
+     * @return metadata cache size in MB
+     */
+    public Integer getMetadataCacheSize() {
+        return metadataCacheSize;
+    }
+
+    /**
+     * Whether unchanged directory subtrees are skipped when scanning without FullScan.
+     *
+     * @return true if incremental scanning is enabled
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Whether music folders are watched for changes between scans.
+     *
+     * @return true if live updates are enabled
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Seconds without further events before a changed directory is refreshed.
+     *
+     * @return debounce delay in seconds
+     */
+    public Integer getWatchDebounce() {
+        return watchDebounce;
+    }
+
+    /**
+     * Seconds between two polls of music folders which cannot be watched, e.g. network mounts.
+     *
+     * @return poll interval in seconds
+     */
+    public Integer getWatchPollInterval() {
+        return watchPollInterval;
+    }
+
+    /**
+     * Whether the thumbnails of scanned albums and artists are created in the background after a scan.
+     *
+     * @return true if thumbnails are pre-generated
+     */
+    public boolean isThumbnails() {
+        return thumbnails;
+    }
+
+    /**
+     * Seconds between two updates of the search index with the changes made outside of a scan.
+     *
+     * @return refresh interval in seconds
+     */
+    public Integer getIndexRefreshInterval() {
+        return indexRefreshInterval;
+    }
+
+    /**
+     * Maximum seconds before the changes made outside of a scan are committed to the search index on disk.
+     *
+     * @return commit interval in seconds
+     */
+    public Integer getIndexCommitInterval() {
+        return indexCommitInterval;
+    }
+
+    /**
+     * Number of uncommitted changes made outside of a scan after which the search index is committed.
+     *
+     * @return commit threshold
+     */
+    public Integer getIndexCommitThreshold() {
+        return indexCommitThreshold;
+    }
+
     public void setFullTimeout(Integer fullTimeout) {
         this.fullTimeout = fullTimeout;
     }
@@ -85,4 +258,60 @@ public class AirsonicScanConfig {
     public void setParallelism(Integer parallelism) {
         this.parallelism = parallelism;
     }
+
+    public void setPersistParallelism(Integer persistParallelism) {
+        this.persistParallelism = persistParallelism;
+    }
+
+    public void setIndexParallelism(Integer indexParallelism) {
+        this.indexParallelism = indexParallelism;
+    }
+
+    public void setQueueCapacity(Integer queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setMetadataCacheSize(Integer metadataCacheSize) {
+        this.metadataCacheSize = metadataCacheSize;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public void setWatchDebounce(Integer watchDebounce) {
+        this.watchDebounce = watchDebounce;
+    }
+
+    public void setWatchPollInterval(Integer watchPollInterval) {
+        this.watchPollInterval = watchPollInterval;
+    }
+
+    public void setThumbnails(boolean thumbnails) {
+        this.thumbnails = thumbnails;
+    }
+
+    public void setIndexRefreshInterval(Integer indexRefreshInterval) {
+        this.indexRefreshInterval = indexRefreshInterval;
+    }
+
+    public void setIndexCommitInterval(Integer indexCommitInterval) {
+        this.indexCommitInterval = indexCommitInterval;
+    }
+
+    public void setIndexCommitThreshold(Integer indexCommitThreshold) {
+        this.indexCommitThreshold = indexCommitThreshold;
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Airsonic.
+ *
+ * Airsonic is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Airsonic is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.util.Objects;
+
+@Component
+@ConfigurationProperties(prefix = "airsonic.transcode")
+@Validated
+public class AirsonicTranscodeConfig {
+
+    private static final int DEFAULT_PROBE_TIMEOUT = 30;
+    private static final int DEFAULT_SHARE_BUFFER_SIZE = 1024;
+    private static final int DEFAULT_PREFETCH_SECONDS = 10;
+    private static final int DEFAULT_PREFETCH_BUFFER_SIZE = 1024;
+
+    @Positive
+    private Integer probeParallelism;
+
+    @Positive
+    private Integer probeTimeout = DEFAULT_PROBE_TIMEOUT;
+
+    @PositiveOrZero
+    private Integer cacheSize = 0;
+
+    @PositiveOrZero
+    private Integer shareBufferSize = DEFAULT_SHARE_BUFFER_SIZE;
+
+    @PositiveOrZero
+    private Integer prefetchSeconds = DEFAULT_PREFETCH_SECONDS;
+
+    @Positive
+    private Integer prefetchBufferSize = DEFAULT_PREFETCH_BUFFER_SIZE;
+
+    /**
+     * Maximum number of ffprobe processes running at the same time. If not set, the number of processors.
+     *
+     * @return probe parallelism
+     */
+    public Integer getProbeParallelism() {
+        return Objects.nonNull(probeParallelism) ? probeParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Seconds after which a running ffprobe process is killed.
+     *
+     * @return probe timeout in seconds
+     */
+    public Integer getProbeTimeout() {
+        return probeTimeout;
+    }
+
+    /**
+     * Size in MB of the on-disk cache of transcoded audio. 0 disables the cache.
+     *
+     * @return transcode cache size in MB
+     */
+    public Integer getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Size in KB of the in-memory buffer of a transcoded stream shared by concurrent identical requests.
+     * 0 disables sharing.
+     *
+     * @return share buffer size in KB
+     */
+    public Integer getShareBufferSize() {
+        return shareBufferSize;
+    }
+
+    /**
+     * Seconds before the end of a track at which the stream of the next track of the play queue is started.
+     * 0 disables prefetching.
+     *
+     * @return prefetch seconds
+     */
+    public Integer getPrefetchSeconds() {
+        return prefetchSeconds;
+    }
+
+    /**
+     * Size in KB of the buffer the next track of the play queue is read ahead into.
+     *
+     * @return prefetch buffer size in KB
+     */
+    public Integer getPrefetchBufferSize() {
+        return prefetchBufferSize;
+    }
+
+    public void setProbeParallelism(Integer probeParallelism) {
+        this.probeParallelism = probeParallelism;
+    }
+
+    public void setProbeTimeout(Integer probeTimeout) {
+        this.probeTimeout = probeTimeout;
+    }
+
+    public void setCacheSize(Integer cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public void setShareBufferSize(Integer shareBufferSize) {
+        this.shareBufferSize = shareBufferSize;
+    }
+
+    public void setPrefetchSeconds(Integer prefetchSeconds) {
+        this.prefetchSeconds = prefetchSeconds;
+    }
+
+    public void setPrefetchBufferSize(Integer prefetchBufferSize) {
+        this.prefetchBufferSize = prefetchBufferSize;
+    }
+}
@@ -44,4 +44,17 @@ public class ThreadPoolConfig {
         threadPool.initialize();
         return threadPool;
     }
+
+    @Bean(name = "ZipDownloadThreadPool")
+    public Executor zipDownloadThreadPool() {
+        // one thread per running zip download, no queue: a queued feeder would leave its client waiting
+        var threadPool = new ThreadPoolTaskExecutor();
+        threadPool.setCorePoolSize(1);
+        threadPool.setMaxPoolSize(20);
+        threadPool.setQueueCapacity(0);
+        threadPool.setDaemon(true);
+        threadPool.setThreadNamePrefix("zip-download");
+        threadPool.initialize();
+        return threadPool;
+    }
 }
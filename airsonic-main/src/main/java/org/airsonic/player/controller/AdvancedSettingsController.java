@@ -20,6 +20,7 @@
 package org.airsonic.player.controller;
 
 import org.airsonic.player.command.AdvancedSettingsCommand;
+import org.airsonic.player.service.BandwidthScheduler;
 import org.airsonic.player.service.SettingsService;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,12 +43,15 @@ public class AdvancedSettingsController {
 
     @Autowired
     private SettingsService settingsService;
+    @Autowired
+    private BandwidthScheduler bandwidthScheduler;
 
     @GetMapping
     protected String formBackingObject(Model model) {
         AdvancedSettingsCommand command = new AdvancedSettingsCommand();
         command.setDownloadLimit(String.valueOf(settingsService.getDownloadBitrateLimit()));
         command.setUploadLimit(String.valueOf(settingsService.getUploadBitrateLimit()));
+        command.setStreamPriority(String.valueOf(settingsService.getStreamBandwidthPriority()));
         command.setLdapEnabled(settingsService.isLdapEnabled());
         command.setLdapUrl(settingsService.getLdapUrl());
         command.setLdapSearchFilter(settingsService.getLdapSearchFilter());
@@ -79,6 +83,10 @@ public class AdvancedSettingsController {
         try {
             settingsService.setUploadBitrateLimit(Long.parseLong(command.getUploadLimit()));
         } catch (NumberFormatException x) { /* Intentionally ignored. */ }
+        try {
+            settingsService.setStreamBandwidthPriority(Math.max(1, Integer.parseInt(command.getStreamPriority())));
+        } catch (NumberFormatException x) { /* Intentionally ignored. */ }
+        bandwidthScheduler.rebalance();
 
         settingsService.setLdapEnabled(command.isLdapEnabled());
         settingsService.setLdapUrl(command.getLdapUrl());
@@ -20,41 +20,36 @@
  */
 package org.airsonic.player.controller;
 
-import org.airsonic.player.config.AirsonicHomeConfig;
 import org.airsonic.player.domain.*;
 import org.airsonic.player.domain.dto.CoverArtRequest;
-import org.airsonic.player.domain.dto.PlaylistCoverArtRequest;
-import org.airsonic.player.domain.dto.VideoCoverArtRequest;
 import org.airsonic.player.service.*;
-import org.airsonic.player.util.FileUtil;
+import org.airsonic.player.service.cache.CoverArtValidatorCache;
 import org.airsonic.player.util.ImageUtil;
 import org.airsonic.player.util.StringUtil;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
 
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.concurrent.Semaphore;
+import java.time.Duration;
 
 /**
  * Controller which produces cover art images.
@@ -70,68 +65,66 @@ public class CoverArtController {
     public static final String PLAYLIST_COVERART_PREFIX = "pl-";
     public static final String PODCAST_COVERART_PREFIX = "pod-";
 
-    // Version of the cover art generation algorithm.
-    // Increment this if the algorithm changes.
-    private static final int COVERART_VERSION = 1;
-
     static final Logger LOG = LoggerFactory.getLogger(CoverArtController.class);
 
+    private static final Duration IMMUTABLE_MAX_AGE = Duration.ofDays(365);
+
     @Autowired
     MediaFileService mediaFileService;
     @Autowired
     CoverArtService coverArtService;
     @Autowired
-    private SettingsService settingsService;
-    @Autowired
     PlaylistService playlistService;
     @Autowired
     private CoverArtCreateService coverArtCreateService;
     @Autowired
-    private AirsonicHomeConfig homeConfig;
-
-    private Semaphore semaphore;
-
-    @PostConstruct
-    public void init() {
-        semaphore = new Semaphore(settingsService.getCoverArtConcurrency());
-    }
-
-    /**
-     * get last modified time epoch millisecond
-     *
-     * @param coverArtRequest target coverArtRequest
-     * @return last modified time in epoch milliseconds. if coverArtRequest id null,
-     *         then return -1L
-     */
-    /*
-    private long getLastModifiedMiili(CoverArtRequest coverArtRequest) {
-        if (coverArtRequest == null) {
-            return -1L;
-        }
-        return coverArtRequest.lastModified().toEpochMilli();
-    }
-    */
+    private ThumbnailService thumbnailService;
+    @Autowired
+    private CoverArtValidatorCache coverArtValidatorCache;
+    @Autowired
+    private PlayerService playerService;
 
     @GetMapping
     public void get(
             @RequestParam(name = "id", required = false) String id,
             @RequestParam(name = "size", required = false) Integer size,
             @RequestParam(name = "offset", defaultValue = "60") int offset,
+            Authentication authentication,
             HttpServletRequest request,
             HttpServletResponse response) throws Exception {
 
+        Integer playQueuePlayerId = JWTSecurityService.getPlayQueuePlayerId(authentication);
+        if (playQueuePlayerId != null && !isInPlayQueue(playQueuePlayerId, id)) {
+            throw new AccessDeniedException("Cover art " + id + " is not in the play queue of player " + playQueuePlayerId);
+        }
+
+        // Answer conditional requests from the validators sent last time, without reading the database or the image.
+        String validatorKey = id == null ? null : id + "|" + offset + "|" + size;
+        if (validatorKey != null) {
+            CoverArtValidatorCache.Validator validator = coverArtValidatorCache.get(validatorKey);
+            if (validator != null && new ServletWebRequest(request, response).checkNotModified(validator.eTag(), validator.lastModified())) {
+                setCacheControl(request, validator, response);
+                return;
+            }
+        }
+
         CoverArtRequest coverArtRequest = createCoverArtRequest(id, offset);
         LOG.trace("handleRequest - {}", coverArtRequest);
 
-        // check modified by last modified
-        // if((new ServletWebRequest(request, response)).checkNotModified(getLastModifiedMiili(coverArtRequest))) return;
-
         // Send fallback image if no ID is given. (No need to cache it, since it will be cached in browser.)
         if (coverArtRequest == null) {
             sendFallback(size, response);
             return;
         }
 
+        CoverArtValidatorCache.Validator validator = new CoverArtValidatorCache.Validator(getETag(coverArtRequest, size),
+                coverArtRequest.lastModified().toEpochMilli());
+        coverArtValidatorCache.put(validatorKey, validator);
+        setCacheControl(request, validator, response);
+        if (new ServletWebRequest(request, response).checkNotModified(validator.eTag(), validator.lastModified())) {
+            return;
+        }
+
         try {
             // Optimize if no scaling is required.
             if (size == null && coverArtRequest.getCoverArt() != null) {
@@ -144,15 +137,52 @@ public class CoverArtController {
             if (size == null) {
                 size = CoverArtScheme.LARGE.getSize() * 2;
             }
-            Path cachedImage = getCachedImage(coverArtRequest, size);
-            sendImage(cachedImage, response);
+            Pair<byte[], String> thumbnail = thumbnailService.getThumbnail(coverArtRequest, size);
+            sendImage(thumbnail, response);
         } catch (Exception e) {
             LOG.debug("Sending fallback as an exception was encountered during normal cover art processing", e);
+            // The fallback must not be cached as the cover art.
+            coverArtValidatorCache.remove(validatorKey);
+            response.setHeader(HttpHeaders.ETAG, null);
+            response.setHeader(HttpHeaders.LAST_MODIFIED, null);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, null);
             sendFallback(size, response);
         }
 
     }
 
+    /**
+     * Whether the given cover art id is the id of a file in the play queue of the given player.
+     */
+    private boolean isInPlayQueue(int playerId, String id) {
+        Player player = playerService.getPlayerById(playerId);
+        return player != null && StringUtils.isNumeric(id)
+                && player.getPlayQueue().getFiles().stream().anyMatch(file -> id.equals(String.valueOf(file.getId())));
+    }
+
+    /**
+     * Returns a strong ETag of the image of the given size, which changes with the source and the generation algorithm.
+     * The key of a cover art file is its path.
+     */
+    private static String getETag(CoverArtRequest coverArtRequest, Integer size) {
+        String key = coverArtRequest.getCoverArt() != null ? coverArtRequest.getCoverArt().getFullPath().toString()
+                : coverArtRequest.getKey();
+        return "\"" + DigestUtils.md5Hex(key + "-" + ThumbnailService.COVERART_VERSION + "-"
+                + coverArtRequest.lastModified().toEpochMilli() + "-" + (size == null ? "original" : size)) + "\"";
+    }
+
+    /**
+     * URLs with a version parameter equal to the ETag address a fixed image, which can be cached for a long time.
+     * Other URLs keep the default caching.
+     */
+    private static void setCacheControl(HttpServletRequest request, CoverArtValidatorCache.Validator validator,
+            HttpServletResponse response) {
+        String version = request.getParameter("v");
+        if (version != null && validator.eTag().equals("\"" + version + "\"")) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(IMMUTABLE_MAX_AGE).cachePrivate().immutable().getHeaderValue());
+        }
+    }
+
     private CoverArtRequest createCoverArtRequest(String id, int offset) {
         if (id == null) {
             return null;
@@ -174,9 +204,10 @@ public class CoverArtController {
     }
 
 
-    private void sendImage(Path file, HttpServletResponse response) throws IOException {
-        response.setContentType(StringUtil.getMimeType(FilenameUtils.getExtension(file.toString())));
-        Files.copy(file, response.getOutputStream());
+    private void sendImage(Pair<byte[], String> thumbnail, HttpServletResponse response) throws IOException {
+        response.setContentType(thumbnail.getRight());
+        response.setContentLength(thumbnail.getLeft().length);
+        response.getOutputStream().write(thumbnail.getLeft());
     }
 
     private void sendFallback(Integer size, HttpServletResponse response) throws IOException {
@@ -204,75 +235,4 @@ public class CoverArtController {
             IOUtils.copy(in, response.getOutputStream());
         }
     }
-
-    private Path getCachedImage(CoverArtRequest request, int size) throws IOException {
-        String hash = DigestUtils.md5Hex(request.getKey() + "-" + COVERART_VERSION);
-        String encoding = request.getCoverArt() != null ? "jpeg" : "png";
-        Path cachedImage = getImageCacheDirectory(size).resolve(hash + "." + encoding);
-
-        // Synchronize to avoid concurrent writing to the same file.
-        synchronized (hash.intern()) {
-
-            // Is cache missing or obsolete?
-            if (!Files.exists(cachedImage) || request.lastModified().isAfter(FileUtil.lastModified(cachedImage))) {
-//                LOG.info("Cache MISS - " + request + " (" + size + ")");
-                ImageWriter writer = null;
-
-                try (OutputStream os = Files.newOutputStream(cachedImage);
-                        BufferedOutputStream bos = new BufferedOutputStream(os);
-                        ImageOutputStream out = ImageIO.createImageOutputStream(bos)) {
-                    semaphore.acquire();
-                    BufferedImage image = null;
-                    if (request instanceof PlaylistCoverArtRequest pr) {
-                        image = coverArtCreateService.createPlaylistImage(pr, size);
-                    } else if (request instanceof VideoCoverArtRequest vr) {
-                        image = coverArtCreateService.createVideoImage(vr, size);
-                    } else {
-                        image = coverArtCreateService.createImage(request, size);
-                    }
-                    if (image == null) {
-                        throw new Exception("Unable to decode image.");
-                    }
-                    writer = ImageIO.getImageWritersByFormatName(encoding).next();
-
-                    float quality = (float) (settingsService.getCoverArtQuality() / 100.0);
-                    ImageWriteParam params = writer.getDefaultWriteParam();
-                    params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                    params.setCompressionQuality(quality); // default is 0.75
-
-                    writer.setOutput(out);
-                    writer.write(null, new IIOImage(image, null, null), params);
-
-                } catch (Throwable x) {
-                    // Delete corrupt (probably empty) thumbnail cache.
-                    LOG.warn("Failed to create thumbnail for {}", request, x);
-                    FileUtil.delete(cachedImage);
-                    throw new IOException("Failed to create thumbnail for " + request + ". " + x.getMessage());
-                } finally {
-                    if (writer != null) {
-                        writer.dispose();
-                        writer = null;
-                    }
-                    semaphore.release();
-                }
-            } else {
-//                LOG.info("Cache HIT - " + request + " (" + size + ")");
-            }
-            return cachedImage;
-        }
-    }
-
-    private synchronized Path getImageCacheDirectory(int size) {
-        Path dir = homeConfig.getAirsonicHome().resolve("thumbs").resolve(String.valueOf(size));
-        if (!Files.exists(dir)) {
-            try {
-                dir = Files.createDirectories(dir);
-                LOG.info("Created thumbnail cache {}", dir);
-            } catch (Exception e) {
-                LOG.error("Failed to create thumbnail cache {}", dir, e);
-            }
-        }
-
-        return dir;
-    }
 }
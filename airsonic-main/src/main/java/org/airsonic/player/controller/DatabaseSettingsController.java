@@ -26,6 +26,8 @@ import org.airsonic.player.domain.Player;
 import org.airsonic.player.domain.TransferStatus;
 import org.airsonic.player.domain.User;
 import org.airsonic.player.io.PipeStreams;
+import org.airsonic.player.service.BandwidthScheduler;
+import org.airsonic.player.service.BandwidthScheduler.TransferClass;
 import org.airsonic.player.service.DatabaseService;
 import org.airsonic.player.service.PlayerService;
 import org.airsonic.player.service.SecurityService;
@@ -83,6 +85,8 @@ public class DatabaseSettingsController {
     private SecurityService securityService;
     @Autowired
     private AirsonicHomeConfig homeConfig;
+    @Autowired
+    private BandwidthScheduler bandwidthScheduler;
 
     private static final UUID DB_CONTROLLER_IMPORT_CALLBACK_ID = UUID.randomUUID();
 
@@ -121,7 +125,7 @@ public class DatabaseSettingsController {
         Resource res = new FileSystemResource(exportFile);
         Resource monitoredRes = new PipeStreams.MonitoredResource(
                 res,
-                settingsService.getDownloadBitrateLimiter(),
+                bandwidthScheduler.throttles(TransferClass.DOWNLOAD),
                 statusSupplier,
                 statusCloser,
             (input, status) -> {
@@ -21,10 +21,13 @@
 package org.airsonic.player.controller;
 
 import org.airsonic.player.domain.*;
+import org.airsonic.player.io.FileTransfer;
 import org.airsonic.player.io.PipeStreams.MonitoredResource;
 import org.airsonic.player.io.PipeStreams.PipedInputStream;
 import org.airsonic.player.io.PipeStreams.PipedOutputStream;
+import org.airsonic.player.io.ZipStreamWriter;
 import org.airsonic.player.service.*;
+import org.airsonic.player.service.BandwidthScheduler.TransferClass;
 import org.airsonic.player.spring.KnownLengthInputStreamResource;
 import org.airsonic.player.util.FileUtil;
 import org.airsonic.player.util.LambdaUtils;
@@ -34,6 +37,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ContentDisposition;
@@ -47,7 +51,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.context.request.ServletWebRequest;
 
-import java.io.BufferedInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -58,19 +63,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import java.util.zip.CRC32;
-import java.util.zip.CheckedInputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * A controller used for downloading files to a remote client. If the requested
@@ -102,6 +104,11 @@ public class DownloadController {
     private MediaFileService mediaFileService;
     @Autowired
     private CoverArtService coverArtService;
+    @Autowired
+    private BandwidthScheduler bandwidthScheduler;
+    @Autowired
+    @Qualifier("ZipDownloadThreadPool")
+    private Executor zipExecutor;
 
     @GetMapping
     public ResponseEntity<Resource> handleRequest(Principal p,
@@ -160,31 +167,26 @@ public class DownloadController {
         headers.setContentDisposition(ContentDisposition.builder("attachment").filename(filename, StandardCharsets.UTF_8).build());
         headers.setContentType(MediaType.parseMediaType(StringUtil.getMimeType(FilenameUtils.getExtension(filename))));
         LOG.info("Downloading '{}' to {}", filename, player);
-        return ResponseEntity.ok().headers(headers).body(response.getResource());
-    }
 
-    /**
-     * Computes the CRC checksum for the given file.
-     *
-     * @param file The file to compute checksum for.
-     * @return A CRC32 checksum.
-     * @throws IOException If an I/O error occurs.
-     */
-    private static long computeCrc(Path file) throws IOException {
-        try (InputStream is = Files.newInputStream(file);
-                BufferedInputStream bis = new BufferedInputStream(is);
-                CheckedInputStream cis = new CheckedInputStream(bis, new CRC32())) {
-            byte[] buf = new byte[8192];
-            while ((cis.read(buf)) != -1) {
-                continue;
+        // A single file without bit rate limit is sent from the file channel.
+        if (response.getFile() != null && settingsService.getDownloadBitrateLimit() == 0
+                && FileTransfer.isSupported(swr.getRequest())) {
+            HttpServletResponse servletResponse = swr.getResponse();
+            headers.forEach((name, values) -> values.forEach(value -> servletResponse.addHeader(name, value)));
+            TransferStatus status = statusSupplier.get();
+            try {
+                FileTransfer.send(response.getFile(), swr.getRequest(), servletResponse, status);
+            } catch (IOException e) {
+                if (!servletResponse.isCommitted()) {
+                    throw e;
+                }
+                LOG.info("Client Aborted");
+            } finally {
+                statusCloser.accept(status);
             }
-
-            return cis.getChecksum().getValue();
+            return null;
         }
-    }
-
-    private static long zipSize(Stream<Entry<String, Long>> paths) {
-        return paths.mapToLong(e -> 30 + 46 + (2L * e.getKey().length()) + e.getValue()).sum() + 22;
+        return ResponseEntity.ok().headers(headers).body(response.getResource());
     }
 
     private ResponseDTO prepareResponse(List<MediaFile> files, List<Integer> indices,
@@ -209,10 +211,11 @@ public class DownloadController {
             return new ResponseDTO(
                     new MonitoredResource(
                             new FileSystemResource(path),
-                            settingsService.getDownloadBitrateLimiter(),
+                            bandwidthScheduler.throttles(TransferClass.DOWNLOAD),
                             statusSupplier,
                             statusCloser,
                         (input, status) -> {}),
+                    path,
                     path.getFileName().toString(),
                     file.getFileSize(),
                     changed);
@@ -253,51 +256,46 @@ public class DownloadController {
                     .collect(Collectors.toCollection(LinkedHashSet::new));
 
             // zip to out
-            BiConsumer<InputStream, TransferStatus> poutInit = (input, status) -> {
-                PipedInputStream pin = (PipedInputStream) input;
-
-                // start a new thread to feed data in
-                new Thread(() -> {
-                    try (PipedOutputStream pout = new PipedOutputStream(pin);
-                            ZipOutputStream zout = new ZipOutputStream(pout)) {
-                        zout.setMethod(ZipOutputStream.STORED); // No compression.
-                        pathsToZip.stream().forEach(LambdaUtils.uncheckConsumer(f -> {
+            List<Pair<String, Long>> zipEntries = pathsToZip.stream().map(e -> e.getRight()).toList();
+            boolean zip64 = ZipStreamWriter.isZip64(zipEntries);
+            BiConsumer<InputStream, TransferStatus> poutInit = LambdaUtils.uncheckBiConsumer((input, status) -> {
+                // connect before feeding, the reader blocks until data is written
+                PipedOutputStream pout = new PipedOutputStream((PipedInputStream) input);
+
+                // the pipe buffer blocks the feeder until the client has read the data
+                Runnable feeder = () -> {
+                    try (ZipStreamWriter zout = new ZipStreamWriter(pout, zip64)) {
+                        for (Pair<Path, Pair<String, Long>> f : pathsToZip) {
                             status.setExternalFile(f.getLeft());
-                            ZipEntry zipEntry = new ZipEntry(f.getRight().getKey());
-                            zipEntry.setSize(f.getRight().getValue());
-                            zipEntry.setCompressedSize(f.getRight().getValue());
-
-                            if (f.getRight().getKey().endsWith("/") && f.getRight().getValue() == 0L) {
-                                // directory
-                                zipEntry.setCrc(0);
-                                zout.putNextEntry(zipEntry);
+                            String name = f.getRight().getKey();
+                            long lastModified = Files.getLastModifiedTime(f.getLeft()).toMillis();
+                            if (name.endsWith("/") && f.getRight().getValue() == 0L) {
+                                zout.putDirectory(name, lastModified);
                             } else {
-                                zipEntry.setCrc(computeCrc(f.getLeft()));
-                                zout.putNextEntry(zipEntry);
-                                Files.copy(f.getLeft(), zout);
+                                zout.putFile(name, f.getLeft(), f.getRight().getValue(), lastModified);
                             }
-
-                            zout.closeEntry();
-                        }));
+                        }
+                        zout.finish();
                     } catch (Exception e1) {
                         LOG.debug("Error with output to zip", e1);
                     }
-                }, "DownloadControllerDatafeed").start();
-
-                // wait for src data thread to connect
-                while (pin.source == null) {
-                    // sit and wait and ponder life
+                };
+                try {
+                    zipExecutor.execute(feeder);
+                } catch (RejectedExecutionException e) {
+                    pout.close();
+                    throw new IOException("Too many concurrent zip downloads", e);
                 }
-            };
+            });
 
-            long size = zipSize(pathsToZip.stream().map(e -> e.getRight()));
+            long size = ZipStreamWriter.length(zipEntries);
 
             PipedInputStream pin = new PipedInputStream(null, 16 * 1024); // 16 Kb buffer
 
             return new ResponseDTO(
                     new MonitoredResource(
                             new KnownLengthInputStreamResource(pin, size),
-                            settingsService.getDownloadBitrateLimiter(),
+                            bandwidthScheduler.throttles(TransferClass.DOWNLOAD),
                             statusSupplier,
                             statusCloser,
                             poutInit),
@@ -307,6 +305,8 @@ public class DownloadController {
 
     public static class ResponseDTO {
         private final Resource resource;
+        // set if the resource is a single file
+        private final Path file;
         private final String proposedName;
         // used as an ETag to see if a resource has changed
         private final long size;
@@ -314,7 +314,12 @@ public class DownloadController {
         private final long changed;
 
         public ResponseDTO(Resource resource, String proposedName, long size, long changed) {
+            this(resource, null, proposedName, size, changed);
+        }
+
+        public ResponseDTO(Resource resource, Path file, String proposedName, long size, long changed) {
             this.resource = resource;
+            this.file = file;
             this.proposedName = proposedName;
             this.size = size;
             this.changed = changed;
@@ -324,6 +329,10 @@ public class DownloadController {
             return resource;
         }
 
+        public Path getFile() {
+            return file;
+        }
+
         public String getProposedName() {
             return proposedName;
         }
@@ -28,8 +28,11 @@ import org.airsonic.player.domain.TransferStatus;
 import org.airsonic.player.domain.User;
 import org.airsonic.player.io.PipeStreams.MonitoredResource;
 import org.airsonic.player.security.JWTAuthenticationToken;
+import org.airsonic.player.service.BandwidthScheduler;
+import org.airsonic.player.service.BandwidthScheduler.TransferClass;
 import org.airsonic.player.service.JWTSecurityService;
 import org.airsonic.player.service.MediaFileService;
+import org.airsonic.player.service.PathWatcherService;
 import org.airsonic.player.service.PlayerService;
 import org.airsonic.player.service.SecurityService;
 import org.airsonic.player.service.SettingsService;
@@ -60,6 +63,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -96,6 +100,7 @@ public class HLSController {
     private static final Logger LOG = LoggerFactory.getLogger(HLSController.class);
 
     private static final int SEGMENT_DURATION = 10;
+    private static final long SEGMENT_TIMEOUT_MILLIS = 30000L;
     private static final Pattern BITRATE_PATTERN = Pattern.compile("(\\d+)(@(\\d+)x(\\d+))?");
 
     private final PlayerService playerService;
@@ -106,8 +111,10 @@ public class HLSController {
     private final SettingsService settingsService;
     private final TranscodingService transcodingService;
     private final AirsonicHomeConfig homeConfig;
+    private final PathWatcherService pathWatcherService;
+    private final BandwidthScheduler bandwidthScheduler;
 
-    public HLSController(PlayerService playerService, MediaFileService mediaFileService, SecurityService securityService, JWTSecurityService jwtSecurityService, StatusService statusService, SettingsService settingsService, TranscodingService transcodingService, AirsonicHomeConfig homeConfig) {
+    public HLSController(PlayerService playerService, MediaFileService mediaFileService, SecurityService securityService, JWTSecurityService jwtSecurityService, StatusService statusService, SettingsService settingsService, TranscodingService transcodingService, AirsonicHomeConfig homeConfig, PathWatcherService pathWatcherService, BandwidthScheduler bandwidthScheduler) {
         this.playerService = playerService;
         this.mediaFileService = mediaFileService;
         this.securityService = securityService;
@@ -116,6 +123,8 @@ public class HLSController {
         this.settingsService = settingsService;
         this.transcodingService = transcodingService;
         this.homeConfig = homeConfig;
+        this.pathWatcherService = pathWatcherService;
+        this.bandwidthScheduler = bandwidthScheduler;
         init();
     }
 
@@ -291,7 +300,7 @@ public class HLSController {
     }
 
     @GetMapping("/segment/**")
-    public ResponseEntity<Resource> handleSegmentRequest(Authentication auth,
+    public DeferredResult<ResponseEntity<Resource>> handleSegmentRequest(Authentication auth,
             @RequestParam(name = "id") int id,
             @RequestParam(name = "segmentIndex") int segmentIndex,
             @RequestParam(name = "player") String playerId,
@@ -314,11 +323,26 @@ public class HLSController {
         status.setMediaFile(mediaFile);
         HlsSession.Key sessionKey = new HlsSession.Key(id, playerId, maxBitRate, size, duration, audioTrack);
         HlsSession session = getOrCreateSession(sessionKey, mediaFile);
-        Path segmentFile = session.waitForSegment(segmentIndex, 30000L);
-        if (segmentFile == null) {
-            throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE,
-                    "Timed out producing segment " + segmentIndex + " for media file " + id);
-        }
+
+        // Wait for the segment without holding a request thread
+        DeferredResult<ResponseEntity<Resource>> result = new DeferredResult<>(SEGMENT_TIMEOUT_MILLIS + 5000L);
+        session.getSegment(segmentIndex, SEGMENT_TIMEOUT_MILLIS).whenComplete((segmentFile, e) -> {
+            if (e != null) {
+                statusService.removeStreamStatus(status);
+                result.setErrorResult(e);
+            } else if (segmentFile == null) {
+                statusService.removeStreamStatus(status);
+                result.setErrorResult(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Timed out producing segment " + segmentIndex + " for media file " + id));
+            } else {
+                result.setResult(createSegmentResponse(segmentFile, segmentIndex, mediaFile, user, player, status));
+            }
+        });
+        return result;
+    }
+
+    private ResponseEntity<Resource> createSegmentResponse(Path segmentFile, int segmentIndex, MediaFile mediaFile,
+            User user, Player player, TransferStatus status) {
         HttpHeaders headers = new HttpHeaders();
         headers.setAccessControlAllowOrigin("*");
         headers.setContentType(MediaType.parseMediaType("video/MP2T"));
@@ -336,7 +360,7 @@ public class HLSController {
         };
 
         Resource resource = new MonitoredResource(new PathResource(segmentFile),
-                settingsService.getDownloadBitrateLimiter(), statusSupplier, statusCloser, inputStreamInit);
+                bandwidthScheduler.throttles(TransferClass.STREAM), statusSupplier, statusCloser, inputStreamInit);
 
         return ResponseEntity.ok().headers(headers).body(resource);
     }
@@ -350,7 +374,7 @@ public class HLSController {
                 }
             }
 
-            return new HlsSession(k, mediaFile, transcodingService, homeConfig.getAirsonicHome().resolve("hls"));
+            return new HlsSession(k, mediaFile, transcodingService, pathWatcherService, homeConfig.getAirsonicHome().resolve("hls"));
         });
     }
 
@@ -20,16 +20,21 @@
  */
 package org.airsonic.player.controller;
 
+import com.codahale.metrics.Timer;
 import com.google.re2j.Matcher;
 import com.google.re2j.Pattern;
+import org.airsonic.player.config.AirsonicTranscodeConfig;
 import org.airsonic.player.domain.*;
+import org.airsonic.player.io.FileTransfer;
 import org.airsonic.player.io.PipeStreams.MonitoredInputStream;
 import org.airsonic.player.io.PipeStreams.PipedInputStream;
 import org.airsonic.player.io.PipeStreams.PipedOutputStream;
 import org.airsonic.player.io.PlayQueueInputStream;
 import org.airsonic.player.io.ShoutCastOutputStream;
+import org.airsonic.player.monitor.MetricsManager;
 import org.airsonic.player.security.JWTAuthenticationToken;
 import org.airsonic.player.service.*;
+import org.airsonic.player.service.BandwidthScheduler.TransferClass;
 import org.airsonic.player.service.sonos.SonosHelper;
 import org.airsonic.player.spring.KnownLengthInputStreamResource;
 import org.airsonic.player.util.FileUtil;
@@ -56,7 +61,9 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.async.AsyncRequestNotUsableException;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import java.awt.*;
 import java.io.FilterInputStream;
@@ -102,6 +109,19 @@ public class StreamController {
     private MediaFileService mediaFileService;
     @Autowired
     private SearchService searchService;
+    @Autowired
+    private AirsonicTranscodeConfig transcodeConfig;
+    @Autowired
+    private MetricsManager metricsManager;
+    @Autowired
+    private BandwidthScheduler bandwidthScheduler;
+
+    private Timer trackChangeTimer;
+
+    @PostConstruct
+    public void init() {
+        trackChangeTimer = metricsManager.register(StreamController.class, "trackChange.timeToFirstByte", new Timer());
+    }
 
     @GetMapping
     public ResponseEntity<Resource> handleRequest(Authentication authentication,
@@ -151,6 +171,7 @@ public class StreamController {
         boolean isSingleFile = Objects.nonNull(file);
 
         Long byteOffset = null;
+        boolean isRawFile = false;
 
         if (isSingleFile) {
 
@@ -158,6 +179,10 @@ public class StreamController {
                     && !securityService.isFolderAccessAllowed(file, username)) {
                 throw new AccessDeniedException("Access to file " + file.getId() + " is forbidden for user " + username);
             }
+            if (JWTSecurityService.getPlayQueuePlayerId(authentication) != null
+                    && !player.getPlayQueue().getFiles().contains(file)) {
+                throw new AccessDeniedException("File " + file.getId() + " is not in the play queue of player " + player.getId());
+            }
 
             // Update the index of the currently playing media file. At
             // this point we haven't yet modified the play queue to support
@@ -196,6 +221,7 @@ public class StreamController {
 
             // Set content type of response
             suffix = transcodingService.getSuffix(player, file, targetFormat);
+            isRawFile = parameters.getTranscoding() == null && videoTranscodingSettings == null && byteOffset == null;
         }
 
         // Terminate any other streams to this player.
@@ -233,13 +259,42 @@ public class StreamController {
             mediaFile -> transcodingService.getTranscodedInputStream(
                     transcodingService.getParameters(mediaFile, player, bitRate, targetFormat, videoTranscodingSettingsF)));
 
+        Consumer<TransferStatus> statusCloser = s -> {
+            securityService.incrementBytesStreamed(user.getUsername(), s.getBytesTransferred());
+            statusService.removeStreamStatus(s);
+        };
+
+        String clientId = Optional.ofNullable(swr.getParameter("c")).orElse("");
+        boolean shoutcast = !ICY_IGNORED_CLIENT.contains(clientId) && "1".equals(swr.getHeader("icy-metadata"));
+        boolean sonos = SonosHelper.AIRSONIC_CLIENT_ID.equals(player.getClientId());
+
+        // A single untranscoded file without bit rate limit is sent from the file channel.
+        if (isRawFile && !shoutcast && settingsService.getDownloadBitrateLimit() == 0
+                && FileTransfer.isSupported(swr.getRequest())) {
+            HttpServletResponse response = swr.getResponse();
+            response.setContentType(StringUtil.getMimeType(suffix, sonos));
+            fileStartListener.accept(file);
+            try {
+                FileTransfer.send(file.getFullPath(), swr.getRequest(), response, status);
+            } catch (IOException e) {
+                if (!response.isCommitted()) {
+                    throw e;
+                }
+                LOG.info("Client Aborted");
+            } finally {
+                fileEndListener.accept(status.getBytesTransferred() > 0 ? 1 : 0, file);
+                statusCloser.accept(status);
+            }
+            return null;
+        }
+
         HttpHeaders headers = new HttpHeaders();
-        InputStream playStream = new PlayQueueInputStream(player.getPlayQueue(), fileStartListener, fileEndListener, streamGenerator);
+        InputStream playStream = new PlayQueueInputStream(player.getPlayQueue(), fileStartListener, fileEndListener, streamGenerator,
+                transcodeConfig.getPrefetchSeconds(), transcodeConfig.getPrefetchBufferSize() * 1024, trackChangeTimer);
         BiConsumer<InputStream, TransferStatus> streamInit = (i, s) -> {};
 
         // Enabled SHOUTcast, if requested.
-        String clientId = Optional.ofNullable(swr.getParameter("c")).orElse("");
-        if (!ICY_IGNORED_CLIENT.contains(clientId) && "1".equals(swr.getHeader("icy-metadata"))) {
+        if (shoutcast) {
             expectedSize = null;
             ShoutcastDetails shoutcastDetails = getShoutcastDetails(playStream);
             playStream = shoutcastDetails.getStream();
@@ -265,14 +320,10 @@ public class StreamController {
         }
 
         Supplier<TransferStatus> statusSupplier = () -> status;
-        Consumer<TransferStatus> statusCloser = s -> {
-            securityService.incrementBytesStreamed(user.getUsername(), s.getBytesTransferred());
-            statusService.removeStreamStatus(s);
-        };
 
         InputStream monitoredStream = new MonitoredInputStream(
                 playStream,
-                settingsService.getDownloadBitrateLimiter(),
+                bandwidthScheduler.throttles(TransferClass.STREAM),
                 statusSupplier, statusCloser,
                 streamInit);
 
@@ -280,7 +331,6 @@ public class StreamController {
                 new InputStreamResource(monitoredStream) :
                 new KnownLengthInputStreamResource(monitoredStream, expectedSize);
 
-        boolean sonos = SonosHelper.AIRSONIC_CLIENT_ID.equals(player.getClientId());
         headers.setContentType(MediaType.parseMediaType(StringUtil.getMimeType(suffix, sonos)));
 
         return ResponseEntity.ok().headers(headers).body(resource);
@@ -319,9 +319,7 @@ public class SubsonicRESTController {
         Integer musicFolderId = getIntParameter(request, "musicFolderId");
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username, musicFolderId);
 
-        for (MediaFile mediaFile : mediaFileService.getSongsByGenre(offset, count, genre, musicFolders)) {
-            songs.getSong().add(createJaxbChild(player, mediaFile, username));
-        }
+        songs.getSong().addAll(createJaxbChildren(player, mediaFileService.getSongsByGenre(offset, count, genre, musicFolders), username));
         Response res = createResponse();
         res.setSongsByGenre(songs);
         jaxbWriter.writeResponse(request, response, res);
@@ -539,9 +537,7 @@ public class SubsonicRESTController {
 
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username);
         ArtistWithAlbumsID3 result = createJaxbArtist(new ArtistWithAlbumsID3(), artist, username);
-        for (Album album : albumService.getAlbumsByArtist(artist.getName(), musicFolders)) {
-            result.getAlbum().add(createJaxbAlbum(new AlbumID3(), album, username));
-        }
+        result.getAlbum().addAll(createJaxbAlbums(albumService.getAlbumsByArtist(artist.getName(), musicFolders), username));
 
         Response res = createResponse();
         res.setArtist(result);
@@ -549,6 +545,10 @@ public class SubsonicRESTController {
     }
 
     private <T extends AlbumID3> T createJaxbAlbum(T jaxbAlbum, Album album, String username) {
+        return createJaxbAlbum(jaxbAlbum, album, albumService.getAlbumStarredDate(album.getId(), username));
+    }
+
+    private <T extends AlbumID3> T createJaxbAlbum(T jaxbAlbum, Album album, Instant starredDate) {
         jaxbAlbum.setId(String.valueOf(album.getId()));
         jaxbAlbum.setName(album.getName());
         if (album.getArtist() != null) {
@@ -564,12 +564,19 @@ public class SubsonicRESTController {
         jaxbAlbum.setSongCount(album.getSongCount());
         jaxbAlbum.setDuration((int) Math.round(album.getDuration()));
         jaxbAlbum.setCreated(jaxbWriter.convertDate(album.getCreated()));
-        jaxbAlbum.setStarred(jaxbWriter.convertDate(albumService.getAlbumStarredDate(album.getId(), username)));
+        jaxbAlbum.setStarred(jaxbWriter.convertDate(starredDate));
         jaxbAlbum.setYear(album.getYear());
         jaxbAlbum.setGenre(album.getGenre());
         return jaxbAlbum;
     }
 
+    private List<AlbumID3> createJaxbAlbums(List<Album> albums, String username) {
+        Map<Integer, Instant> starredDates = albumService.getAlbumStarredDates(albums, username);
+        return albums.stream()
+                .map(album -> createJaxbAlbum(new AlbumID3(), album, starredDates.get(album.getId())))
+                .collect(Collectors.toList());
+    }
+
     private <T extends org.subsonic.restapi.Playlist> T createJaxbPlaylist(T jaxbPlaylist, org.airsonic.player.domain.Playlist playlist) {
         jaxbPlaylist.setId(String.valueOf(playlist.getId()));
         jaxbPlaylist.setName(playlist.getName());
@@ -602,9 +609,7 @@ public class SubsonicRESTController {
         }
 
         AlbumWithSongsID3 result = createJaxbAlbum(new AlbumWithSongsID3(), album, username);
-        for (MediaFile mediaFile : mediaFileService.getSongsForAlbum(album.getArtist(), album.getName())) {
-            result.getSong().add(createJaxbChild(player, mediaFile, username));
-        }
+        result.getSong().addAll(createJaxbChildren(player, mediaFileService.getSongsForAlbum(album.getArtist(), album.getName()), username));
 
         Response res = createResponse();
         res.setAlbum(result);
@@ -669,9 +674,7 @@ public class SubsonicRESTController {
             directory.setUserRating(ratingService.getRatingForUser(username, dir));
         }
 
-        for (MediaFile child : mediaFileService.getVisibleChildrenOf(dir, true, true)) {
-            directory.getChild().add(createJaxbChild(player, child, username));
-        }
+        directory.getChild().addAll(createJaxbChildren(player, mediaFileService.getVisibleChildrenOf(dir, true, true), username));
 
         Response res = createResponse();
         res.setDirectory(directory);
@@ -714,9 +717,7 @@ public class SubsonicRESTController {
         searchResult.setOffset(result.getOffset());
         searchResult.setTotalHits(result.getTotalHits());
 
-        for (MediaFile mediaFile : result.getMediaFiles()) {
-            searchResult.getMatch().add(createJaxbChild(player, mediaFile, username));
-        }
+        searchResult.getMatch().addAll(createJaxbChildren(player, result.getMediaFiles(), username));
         Response res = createResponse();
         res.setSearchResult(searchResult);
         jaxbWriter.writeResponse(request, response, res);
@@ -745,16 +746,12 @@ public class SubsonicRESTController {
         criteria.setCount(getIntParameter(request, "albumCount", 20));
         criteria.setOffset(getIntParameter(request, "albumOffset", 0));
         org.airsonic.player.domain.SearchResult albums = searchService.search(criteria, musicFolders, IndexType.ALBUM);
-        for (MediaFile mediaFile : albums.getMediaFiles()) {
-            searchResult.getAlbum().add(createJaxbChild(player, mediaFile, username));
-        }
+        searchResult.getAlbum().addAll(createJaxbChildren(player, albums.getMediaFiles(), username));
 
         criteria.setCount(getIntParameter(request, "songCount", 20));
         criteria.setOffset(getIntParameter(request, "songOffset", 0));
         org.airsonic.player.domain.SearchResult songs = searchService.search(criteria, musicFolders, IndexType.SONG);
-        for (MediaFile mediaFile : songs.getMediaFiles()) {
-            searchResult.getSong().add(createJaxbChild(player, mediaFile, username));
-        }
+        searchResult.getSong().addAll(createJaxbChildren(player, songs.getMediaFiles(), username));
 
         Response res = createResponse();
         res.setSearchResult2(searchResult);
@@ -785,10 +782,10 @@ public class SubsonicRESTController {
                 artistService.getArtists(musicFolders, artistCount, artistOffset).forEach(artist -> searchResult.getArtist().add(createJaxbArtist(new ArtistID3(), artist, username)));
             }
             if (albumCount > 0) {
-                albumService.getAlbums(musicFolders, albumCount, albumOffset).forEach(album -> searchResult.getAlbum().add(createJaxbAlbum(new AlbumID3(), album, username)));
+                searchResult.getAlbum().addAll(createJaxbAlbums(albumService.getAlbums(musicFolders, albumCount, albumOffset), username));
             }
             if (songCount > 0) {
-                mediaFileService.getSongs(musicFolders, songCount, songOffset).forEach(song -> searchResult.getSong().add(createJaxbChild(player, song, username)));
+                searchResult.getSong().addAll(createJaxbChildren(player, mediaFileService.getSongs(musicFolders, songCount, songOffset), username));
             }
         } else {
             SearchCriteria criteria = new SearchCriteria();
@@ -803,16 +800,12 @@ public class SubsonicRESTController {
             criteria.setCount(albumCount);
             criteria.setOffset(albumOffset);
             result = searchService.search(criteria, musicFolders, IndexType.ALBUM_ID3);
-            for (Album album : result.getAlbums()) {
-                searchResult.getAlbum().add(createJaxbAlbum(new AlbumID3(), album, username));
-            }
+            searchResult.getAlbum().addAll(createJaxbAlbums(result.getAlbums(), username));
 
             criteria.setCount(songCount);
             criteria.setOffset(songOffset);
             result = searchService.search(criteria, musicFolders, IndexType.SONG);
-            for (MediaFile song : result.getMediaFiles()) {
-                searchResult.getSong().add(createJaxbChild(player, song, username));
-            }
+            searchResult.getSong().addAll(createJaxbChildren(player, result.getMediaFiles(), username));
         }
 
         Response res = createResponse();
@@ -864,11 +857,8 @@ public class SubsonicRESTController {
             return;
         }
         PlaylistWithSongs result = createJaxbPlaylist(new PlaylistWithSongs(), playlist);
-        for (MediaFile mediaFile : playlistService.getFilesInPlaylist(id)) {
-            if (securityService.isFolderAccessAllowed(mediaFile, username)) {
-                result.getEntry().add(createJaxbChild(player, mediaFile, username));
-            }
-        }
+        List<MediaFile> files = securityService.filterAccessible(playlistService.getFilesInPlaylist(id), username);
+        result.getEntry().addAll(createJaxbChildren(player, files, username));
 
         Response res = createResponse();
         res.setPlaylist(result);
@@ -1044,28 +1034,27 @@ public class SubsonicRESTController {
 //                    playlistService.deletePlaylistUser(id, usernameToRemove);
 //                }
 //            }
-        List<MediaFile> songs = playlistService.getFilesInPlaylist(id);
         boolean songsChanged = false;
 
         SortedSet<Integer> tmp = new TreeSet<Integer>();
         for (int songIndexToRemove : getIntParameters(request, "songIndexToRemove")) {
             tmp.add(songIndexToRemove);
         }
-        List<Integer> songIndexesToRemove = new ArrayList<Integer>(tmp);
-        Collections.reverse(songIndexesToRemove);
-        for (Integer songIndexToRemove : songIndexesToRemove) {
-            songs.remove(songIndexToRemove.intValue());
+        if (!tmp.isEmpty()) {
+            // the indices are those of getPlaylist, which only lists present files
+            playlistService.removeFilesInPlaylistByIndices(id, new ArrayList<Integer>(tmp), false);
             songsChanged = true;
         }
+        List<MediaFile> songsToAdd = new ArrayList<MediaFile>();
         for (int songToAdd : getIntParameters(request, "songIdToAdd")) {
             MediaFile song = mediaFileService.getMediaFile(songToAdd);
             if (song != null) {
-                songs.add(song);
-                songsChanged = true;
+                songsToAdd.add(song);
             }
         }
-        if (songsChanged) {
-            playlistService.setFilesInPlaylist(id, songs);
+        if (!songsToAdd.isEmpty()) {
+            playlistService.appendFilesToPlaylist(id, songsToAdd);
+            songsChanged = true;
         }
         playlistService.broadcastFileChange(id, playlist.getShared(), songsChanged);
 
@@ -1134,9 +1123,7 @@ public class SubsonicRESTController {
         }
 
         AlbumList result = new AlbumList();
-        for (MediaFile album : albums) {
-            result.getAlbum().add(createJaxbChild(player, album, username));
-        }
+        result.getAlbum().addAll(createJaxbChildren(player, albums, username));
 
         Response res = createResponse();
         res.setAlbumList(result);
@@ -1179,9 +1166,7 @@ public class SubsonicRESTController {
             throw new Exception("Invalid list type: " + type);
         }
         AlbumList2 result = new AlbumList2();
-        for (Album album : albums) {
-            result.getAlbum().add(createJaxbAlbum(new AlbumID3(), album, username));
-        }
+        result.getAlbum().addAll(createJaxbAlbums(albums, username));
         Response res = createResponse();
         res.setAlbumList2(result);
         jaxbWriter.writeResponse(request, response, res);
@@ -1203,9 +1188,7 @@ public class SubsonicRESTController {
         RandomSearchCriteria criteria = new RandomSearchCriteria(size, genre, fromYear, toYear, musicFolders);
 
         Songs result = new Songs();
-        for (MediaFile mediaFile : searchService.getRandomSongs(criteria)) {
-            result.getSong().add(createJaxbChild(player, mediaFile, username));
-        }
+        result.getSong().addAll(createJaxbChildren(player, searchService.getRandomSongs(criteria), username));
         Response res = createResponse();
         res.setRandomSongs(result);
         jaxbWriter.writeResponse(request, response, res);
@@ -1222,9 +1205,7 @@ public class SubsonicRESTController {
         List<org.airsonic.player.domain.MusicFolder> musicFolders = mediaFolderService.getMusicFoldersForUser(username);
 
         Videos result = new Videos();
-        for (MediaFile mediaFile : mediaFileService.getVideos(musicFolders, size, offset)) {
-            result.getVideo().add(createJaxbChild(player, mediaFile, username));
-        }
+        result.getVideo().addAll(createJaxbChildren(player, mediaFileService.getVideos(musicFolders, size, offset), username));
         Response res = createResponse();
         res.setVideos(result);
         jaxbWriter.writeResponse(request, response, res);
@@ -1257,7 +1238,14 @@ public class SubsonicRESTController {
     }
 
     private <T extends Child> T createJaxbChild(T child, Player player, MediaFile mediaFile, String username) {
-        MediaFile parent = mediaFileService.getParentOf(mediaFile);
+        return createJaxbChild(child, player, mediaFile, mediaFileService.getParentOf(mediaFile),
+                mediaFileService.getMediaFileStarredDate(mediaFile, username),
+                ratingService.getRatingForUser(username, mediaFile),
+                ratingService.getAverageRating(mediaFile));
+    }
+
+    private <T extends Child> T createJaxbChild(T child, Player player, MediaFile mediaFile, MediaFile parent,
+            Instant starredDate, Integer userRating, Double averageRating) {
         child.setId(String.valueOf(mediaFile.getId()));
         try {
             if (Objects.nonNull(parent) && !mediaFileService.isRoot(parent)) {
@@ -1274,9 +1262,9 @@ public class SubsonicRESTController {
         child.setYear(mediaFile.getYear());
         child.setGenre(mediaFile.getGenre());
         child.setCreated(jaxbWriter.convertDate(mediaFile.getCreated()));
-        child.setStarred(jaxbWriter.convertDate(mediaFileService.getMediaFileStarredDate(mediaFile, username)));
-        child.setUserRating(ratingService.getRatingForUser(username, mediaFile));
-        child.setAverageRating(ratingService.getAverageRating(mediaFile));
+        child.setStarred(jaxbWriter.convertDate(starredDate));
+        child.setUserRating(userRating);
+        child.setAverageRating(averageRating);
         child.setPlayCount((long) mediaFile.getPlayCount());
 
         if (mediaFile.isFile()) {
@@ -1329,6 +1317,22 @@ public class SubsonicRESTController {
         return child;
     }
 
+    /**
+     * Creates the children of a response. Parents, starred dates and ratings of all files
+     * are read up front with one query each, instead of a few queries per file.
+     */
+    private List<Child> createJaxbChildren(Player player, List<MediaFile> mediaFiles, String username) {
+        Map<Integer, MediaFile> parents = mediaFileService.getParentsOf(mediaFiles);
+        Map<Integer, Instant> starredDates = mediaFileService.getMediaFileStarredDates(mediaFiles, username);
+        Map<Integer, Integer> userRatings = ratingService.getRatingsForUser(username, mediaFiles);
+        Map<Integer, Double> averageRatings = ratingService.getAverageRatings(mediaFiles);
+        return mediaFiles.stream()
+                .map(mediaFile -> createJaxbChild(new Child(), player, mediaFile, parents.get(mediaFile.getId()),
+                        starredDates.get(mediaFile.getId()), userRatings.get(mediaFile.getId()),
+                        averageRatings.get(mediaFile.getId())))
+                .collect(Collectors.toList());
+    }
+
     private String findCoverArt(MediaFile mediaFile, MediaFile parent) {
         MediaFile dir = mediaFile.isDirectory() ? mediaFile : parent;
         if (dir != null && !CoverArt.NULL_ART.equals(coverArtService.getMediaFileArt(dir.getId()))) {
@@ -1505,12 +1509,8 @@ public class SubsonicRESTController {
         for (MediaFile artist : mediaFileService.getStarredArtists(0, Integer.MAX_VALUE, username, musicFolders)) {
             result.getArtist().add(createJaxbArtist(artist, username));
         }
-        for (MediaFile album : mediaFileService.getStarredAlbums(0, Integer.MAX_VALUE, username, musicFolders)) {
-            result.getAlbum().add(createJaxbChild(player, album, username));
-        }
-        for (MediaFile song : mediaFileService.getStarredSongs(0, Integer.MAX_VALUE, username, musicFolders)) {
-            result.getSong().add(createJaxbChild(player, song, username));
-        }
+        result.getAlbum().addAll(createJaxbChildren(player, mediaFileService.getStarredAlbums(0, Integer.MAX_VALUE, username, musicFolders), username));
+        result.getSong().addAll(createJaxbChildren(player, mediaFileService.getStarredSongs(0, Integer.MAX_VALUE, username, musicFolders), username));
         Response res = createResponse();
         res.setStarred(result);
         jaxbWriter.writeResponse(request, response, res);
@@ -1528,12 +1528,8 @@ public class SubsonicRESTController {
         for (org.airsonic.player.domain.Artist artist : artistService.getStarredArtists(username, musicFolders)) {
             result.getArtist().add(createJaxbArtist(new ArtistID3(), artist, username));
         }
-        for (Album album : albumService.getStarredAlbums(username, musicFolders)) {
-            result.getAlbum().add(createJaxbAlbum(new AlbumID3(), album, username));
-        }
-        for (MediaFile song : mediaFileService.getStarredSongs(0, Integer.MAX_VALUE, username, musicFolders)) {
-            result.getSong().add(createJaxbChild(player, song, username));
-        }
+        result.getAlbum().addAll(createJaxbAlbums(albumService.getStarredAlbums(username, musicFolders), username));
+        result.getSong().addAll(createJaxbChildren(player, mediaFileService.getStarredSongs(0, Integer.MAX_VALUE, username, musicFolders), username));
         Response res = createResponse();
         res.setStarred2(result);
         jaxbWriter.writeResponse(request, response, res);
@@ -1949,7 +1945,7 @@ public class SubsonicRESTController {
                 ServletRequestUtils.getStringParameter(request, "id"),
                 ServletRequestUtils.getIntParameter(request, "size"),
                 ServletRequestUtils.getIntParameter(request, "offset", 60),
-                request, response);
+                null, request, response);
     }
 
     @RequestMapping({"/getAvatar", "/getAvatar.view"})
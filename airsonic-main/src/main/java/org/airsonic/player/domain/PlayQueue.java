@@ -55,6 +55,11 @@ public class PlayQueue {
     private List<MediaFile> filesBackup = new ArrayList<>();
     private int indexBackup = 0;
 
+    /**
+     * Incremented on every change of the files, so that clients can tell whether they are up to date.
+     */
+    private volatile long version;
+
     /**
      * Returns the user-defined name of the playlist.
      *
@@ -132,6 +137,28 @@ public class PlayQueue {
         }
     }
 
+    /**
+     * Returns the song {@link #next()} would skip to, without skipping.
+     *
+     * @return The next song in the playlist, or <code>null</code> if the end would be reached.
+     */
+    public synchronized MediaFile getNextFile() {
+        if (index == -1) {
+            return null;
+        }
+        if (getRepeatStatus() == RepeatStatus.TRACK) {
+            return index < size() ? files.get(index) : null;
+        }
+        int next = index + 1;
+        if (next >= size()) {
+            if (getRepeatStatus() != RepeatStatus.QUEUE || size() == 0) {
+                return null;
+            }
+            next = 0;
+        }
+        return files.get(next);
+    }
+
     /**
      * Returns the number of songs in the playlists.
      *
@@ -165,7 +192,9 @@ public class PlayQueue {
      * @param index The index of the current song.
      */
     public synchronized void setIndex(int index) {
+        long currentVersion = version;
         makeBackup();
+        version = currentVersion;
         this.index = Math.max(0, Math.min(index, size() - 1));
         setStatus(Status.PLAYING);
     }
@@ -368,6 +397,7 @@ public class PlayQueue {
      * Revert the last operation.
      */
     public synchronized void undo() {
+        version++;
         List<MediaFile> filesTmp = new ArrayList<>(files);
         int indexTmp = index;
 
@@ -448,9 +478,18 @@ public class PlayQueue {
         return files.parallelStream().filter(m -> m.getDuration() != null).mapToDouble(MediaFile::getDuration).sum();
     }
 
+    /**
+     * Returns the version of the list of files, which changes whenever the files do.
+     */
+    public long getVersion() {
+        return version;
+    }
+
     private void makeBackup() {
         filesBackup = new ArrayList<>(files);
         indexBackup = index;
+        // every change of the files starts with a backup; only skipping to another song does not change them
+        version++;
     }
 
     /**
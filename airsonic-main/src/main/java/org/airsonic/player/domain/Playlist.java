@@ -27,6 +27,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * @author Sindre Mehus
@@ -63,11 +64,9 @@ public class Playlist {
             inverseJoinColumns = @JoinColumn(name = "username"))
     private List<User> sharedUsers;
 
-    @ManyToMany
-    @JoinTable(name = "playlist_file",
-            joinColumns = @JoinColumn(name = "playlist_id", referencedColumnName = "id"),
-            inverseJoinColumns = @JoinColumn(name = "media_file_id", referencedColumnName = "id"))
-    private List<MediaFile> mediaFiles;
+    @OneToMany(mappedBy = "playlist", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("sortKey")
+    private List<PlaylistFile> files = new ArrayList<>();
 
     public Playlist() {
     }
@@ -196,19 +195,40 @@ public class Playlist {
         this.sharedUsers.removeIf(su -> su.getUsername().equals(username));
     }
 
+    @JsonIgnore
+    public List<PlaylistFile> getFiles() {
+        return files;
+    }
+
     @JsonIgnore
     public List<MediaFile> getMediaFiles() {
-        return mediaFiles;
+        return files.stream().map(PlaylistFile::getMediaFile).collect(Collectors.toList());
     }
 
+    /**
+     * Replaces the files of the playlist. The existing rows are reused in order and keep their sort
+     * key while it is still ascending, so only the rows that actually changed are written.
+     */
     public void setMediaFiles(List<MediaFile> mediaFiles) {
-        if (this.mediaFiles == null) {
-            this.mediaFiles = new ArrayList<>();
-        } else {
-            this.mediaFiles.clear();
+        List<MediaFile> newFiles = mediaFiles == null ? List.of() : mediaFiles;
+        int oldSize = files.size();
+        Long previousKey = null;
+        for (int i = 0; i < newFiles.size(); i++) {
+            PlaylistFile file;
+            if (i < oldSize) {
+                file = files.get(i);
+                file.setMediaFile(newFiles.get(i));
+            } else {
+                file = new PlaylistFile(this, newFiles.get(i), 0);
+                files.add(file);
+            }
+            if (i >= oldSize || (previousKey != null && file.getSortKey() <= previousKey)) {
+                file.setSortKey(previousKey == null ? PlaylistFile.SORT_KEY_GAP : previousKey + PlaylistFile.SORT_KEY_GAP);
+            }
+            previousKey = file.getSortKey();
         }
-        if (mediaFiles != null) {
-            this.mediaFiles.addAll(mediaFiles);
+        while (files.size() > newFiles.size()) {
+            files.remove(files.size() - 1);
         }
     }
 
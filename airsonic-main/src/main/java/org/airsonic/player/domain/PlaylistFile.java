@@ -0,0 +1,96 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+
+/**
+ * A file in a playlist. Files are ordered by their sort key, which are spaced by {@link #SORT_KEY_GAP}
+ * so that files can be inserted or moved by writing only their own rows.
+ */
+@Entity
+@Table(name = "playlist_file")
+public class PlaylistFile {
+
+    public static final long SORT_KEY_GAP = 1024;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "playlist_id", nullable = false)
+    private Playlist playlist;
+
+    @ManyToOne
+    @JoinColumn(name = "media_file_id", nullable = false)
+    private MediaFile mediaFile;
+
+    @Column(name = "sort_key", nullable = false)
+    private long sortKey;
+
+    public PlaylistFile() {
+    }
+
+    public PlaylistFile(Playlist playlist, MediaFile mediaFile, long sortKey) {
+        this.playlist = playlist;
+        this.mediaFile = mediaFile;
+        this.sortKey = sortKey;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Playlist getPlaylist() {
+        return playlist;
+    }
+
+    public void setPlaylist(Playlist playlist) {
+        this.playlist = playlist;
+    }
+
+    public MediaFile getMediaFile() {
+        return mediaFile;
+    }
+
+    public void setMediaFile(MediaFile mediaFile) {
+        this.mediaFile = mediaFile;
+    }
+
+    public long getSortKey() {
+        return sortKey;
+    }
+
+    public void setSortKey(long sortKey) {
+        this.sortKey = sortKey;
+    }
+}
@@ -1,7 +1,10 @@
 package org.airsonic.player.filter;
 
 import org.airsonic.player.monitor.MetricsManager;
+import org.airsonic.player.monitor.QueryCounter;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.HandlerMapping;
 
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
@@ -25,10 +28,18 @@ public class MetricsFilter implements Filter {
         HttpServletRequest httpServletRequest = (HttpServletRequest)request;
 
         String timerName = httpServletRequest.getRequestURI();
+        QueryCounter.reset();
         // Add a metric that measures the time spent for each http request for the /main.view url.
         try (MetricsManager.Timer t = metricsManager.condition(timerName.contains("main.view")).timer(this,timerName)) {
             chain.doFilter(request, response);
         }
+        // Add a metric of the number of queries issued for each REST endpoint. Only the mapped patterns are used,
+        // so that unknown paths do not create new metrics.
+        Object pattern = httpServletRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern instanceof String path && path.startsWith("/rest/") && !path.contains("*") && !path.contains("{")) {
+            String endpoint = StringUtils.removeEnd(path.substring("/rest/".length()), ".view");
+            metricsManager.update(getClass(), "queries." + endpoint, QueryCounter.get());
+        }
     }
 
     @Override
@@ -0,0 +1,182 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs short-lived external tools (e.g. ffprobe) with a bounded number of concurrent processes.
+ *
+ * Callers wait for a free slot instead of forking an unbounded number of processes, and a process
+ * still running after the timeout is killed. The time spent waiting for a slot and the time spent
+ * running the process are recorded.
+ */
+public class ExternalProcessPool implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExternalProcessPool.class);
+
+    private final String name;
+    private final int parallelism;
+    private final long timeoutMillis;
+    private final Semaphore slots;
+    private final ScheduledExecutorService killer;
+    private final Timer queueWait = new Timer();
+    private final Timer latency = new Timer();
+    private final Meter timeouts = new Meter();
+
+    /**
+     * Reads the standard output of a process.
+     *
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    public interface OutputReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    /**
+     * @param name        name of the tool, used in logs and thread names
+     * @param parallelism maximum number of processes running at the same time
+     * @param timeout     time after which a process is killed
+     * @param unit        unit of the timeout
+     */
+    public ExternalProcessPool(String name, int parallelism, long timeout, TimeUnit unit) {
+        this.name = name;
+        this.parallelism = Math.max(parallelism, 1);
+        this.timeoutMillis = unit.toMillis(timeout);
+        this.slots = new Semaphore(this.parallelism, true);
+        this.killer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-process-killer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Run the given command once a slot is free and read its standard output. Standard error is discarded.
+     *
+     * @param command command and arguments
+     * @param reader  reads the standard output of the process
+     * @param <T>     result type
+     * @return the result of the reader
+     * @throws IOException if the process could not be started, was killed because of the timeout,
+     *                     or if the reader failed
+     */
+    public <T> T execute(List<String> command, OutputReader<T> reader) throws IOException {
+        Timer.Context waitContext = queueWait.time();
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a " + name + " slot");
+        } finally {
+            waitContext.stop();
+        }
+        try (Timer.Context runContext = latency.time()) {
+            return run(command, reader);
+        } finally {
+            slots.release();
+        }
+    }
+
+    private <T> T run(List<String> command, OutputReader<T> reader) throws IOException {
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> kill = killer.schedule(() -> {
+            timedOut.set(true);
+            process.destroyForcibly();
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            T result;
+            try (InputStream in = process.getInputStream()) {
+                result = reader.read(in);
+            }
+            process.waitFor();
+            if (timedOut.get()) {
+                throw new IOException(name + " killed after " + timeoutMillis + " ms: " + command);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + name);
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                timeouts.mark();
+                LOG.warn("{} did not complete within {} ms and was killed: {}", name, timeoutMillis, command);
+            }
+            throw e;
+        } finally {
+            kill.cancel(false);
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return number of callers waiting for a slot
+     */
+    public int getQueueLength() {
+        return slots.getQueueLength();
+    }
+
+    /**
+     * @return number of processes currently running
+     */
+    public int getActiveCount() {
+        return parallelism - slots.availablePermits();
+    }
+
+    public Timer getQueueWait() {
+        return queueWait;
+    }
+
+    public Timer getLatency() {
+        return latency;
+    }
+
+    public Meter getTimeouts() {
+        return timeouts;
+    }
+
+    @Override
+    public void close() {
+        killer.shutdownNow();
+    }
+}
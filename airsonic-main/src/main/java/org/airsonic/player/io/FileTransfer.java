@@ -0,0 +1,157 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import org.airsonic.player.domain.TransferStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Sends a file to the client with {@link FileChannel#transferTo}, instead of copying it through a chain of
+ * input streams. A single byte range is answered with 206, unless an If-Range header does not match, and the bytes
+ * sent are added to the transfer status.
+ */
+public final class FileTransfer {
+
+    // bytes per transferTo call, so that the status is updated while sending
+    private static final long CHUNK_SIZE = 1024L * 1024L;
+
+    private FileTransfer() {
+    }
+
+    /**
+     * Returns whether the request can be answered by {@link #send}: it has no Range header, or a single range.
+     * Multiple ranges are left to the regular resource handling.
+     *
+     * @param request the request
+     * @return true if the request can be sent with transferTo
+     */
+    public static boolean isSupported(HttpServletRequest request) {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range == null) {
+            return true;
+        }
+        try {
+            return HttpRange.parseRanges(range).size() == 1;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Sends the file, or the requested range of it. The content type and caching headers must be set before.
+     *
+     * @param file     the file to send
+     * @param request  the request, possibly with a Range header
+     * @param response the response
+     * @param status   the status to add the transferred bytes to
+     * @return number of bytes sent
+     * @throws IOException if the file can not be read, or the client disconnected
+     */
+    public static long send(Path file, HttpServletRequest request, HttpServletResponse response, TransferStatus status)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            long start = 0;
+            long end = length - 1;
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+            String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+            if (rangeHeader != null && isIfRangeMatching(request, response)) {
+                try {
+                    List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                    if (ranges.size() == 1) {
+                        start = ranges.get(0).getRangeStart(length);
+                        end = ranges.get(0).getRangeEnd(length);
+                    }
+                } catch (IllegalArgumentException e) {
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return 0;
+                }
+                if (start >= length) {
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return 0;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+            long count = end - start + 1;
+            response.setContentLengthLong(count);
+            status.addBytesSkipped(start);
+
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, Math.min(remaining, CHUNK_SIZE), target);
+                if (sent <= 0) {
+                    // the file was truncated while sending
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+                status.addBytesTransferred(sent);
+            }
+            response.flushBuffer();
+            return count - remaining;
+        }
+    }
+
+    /**
+     * Evaluates the If-Range header against the ETag and Last-Modified headers already set on the response. The range
+     * is only sent if the file is unchanged, otherwise the whole file is.
+     */
+    private static boolean isIfRangeMatching(HttpServletRequest request, HttpServletResponse response) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // a weak entity tag never matches
+            return ifRange.startsWith("\"") && ifRange.equals(response.getHeader(HttpHeaders.ETAG));
+        }
+        String lastModified = response.getHeader(HttpHeaders.LAST_MODIFIED);
+        if (lastModified == null) {
+            return false;
+        }
+        try {
+            return ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+                    .equals(ZonedDateTime.parse(lastModified, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.airsonic.player.io;
 
-import com.google.common.util.concurrent.RateLimiter;
 import org.airsonic.player.domain.TransferStatus;
 import org.springframework.core.io.Resource;
 
@@ -13,6 +12,7 @@ import java.net.URI;
 import java.net.URL;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -412,24 +412,35 @@ public class PipeStreams {
         }
     }
 
+    /**
+     * Paces the bytes read from a {@link MonitoredInputStream}. It is released when the stream is closed.
+     */
+    @FunctionalInterface
+    public interface Throttle {
+        void acquire(int bytes);
+
+        default void release() {
+        }
+    }
+
     public static class MonitoredInputStream extends FilterInputStream {
-        private final RateLimiter rateLimiter;
+        private final Throttle throttle;
         private final TransferStatus status;
         private final Consumer<TransferStatus> statusCloser;
 
-        public MonitoredInputStream(InputStream delegate, RateLimiter rateLimiter,
+        public MonitoredInputStream(InputStream delegate, Function<TransferStatus, Throttle> throttleFactory,
                 Supplier<TransferStatus> statusSupplier, Consumer<TransferStatus> statusCloser,
                 BiConsumer<InputStream, TransferStatus> initAction) {
             super(delegate);
-            this.rateLimiter = rateLimiter;
             this.status = statusSupplier.get();
+            this.throttle = throttleFactory == null ? null : throttleFactory.apply(status);
             this.statusCloser = statusCloser;
             initAction.accept(delegate, status);
         }
 
         private void acquire(int len) {
-            if (rateLimiter != null) {
-                rateLimiter.acquire(len);
+            if (throttle != null) {
+                throttle.acquire(len);
             }
         }
 
@@ -465,21 +476,24 @@ public class PipeStreams {
         @Override
         public void close() throws IOException {
             super.close();
+            if (throttle != null) {
+                throttle.release();
+            }
             statusCloser.accept(status);
         }
     }
 
     public static class MonitoredResource implements Resource {
         private final Resource delegate;
-        private final RateLimiter rateLimiter;
+        private final Function<TransferStatus, Throttle> throttleFactory;
         private final Supplier<TransferStatus> statusSupplier;
         private final Consumer<TransferStatus> statusCloser;
         private final BiConsumer<InputStream, TransferStatus> inputStreamInit;
 
-        public MonitoredResource(Resource delegate, RateLimiter rateLimiter, Supplier<TransferStatus> statusSupplier,
+        public MonitoredResource(Resource delegate, Function<TransferStatus, Throttle> throttleFactory, Supplier<TransferStatus> statusSupplier,
                 Consumer<TransferStatus> statusCloser, BiConsumer<InputStream, TransferStatus> inputStreamInit) {
             this.delegate = delegate;
-            this.rateLimiter = rateLimiter;
+            this.throttleFactory = throttleFactory;
             this.statusSupplier = statusSupplier;
             this.statusCloser = statusCloser;
             this.inputStreamInit = inputStreamInit;
@@ -487,7 +501,7 @@ public class PipeStreams {
 
         @Override
         public InputStream getInputStream() throws IOException {
-            return new MonitoredInputStream(delegate.getInputStream(), rateLimiter, statusSupplier, statusCloser, inputStreamInit);
+            return new MonitoredInputStream(delegate.getInputStream(), throttleFactory, statusSupplier, statusCloser, inputStreamInit);
         }
 
         @Override
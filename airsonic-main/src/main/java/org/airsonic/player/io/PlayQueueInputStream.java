@@ -1,29 +1,61 @@
 package org.airsonic.player.io;
 
+import com.codahale.metrics.Timer;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.PlayQueue;
+import org.airsonic.player.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class PlayQueueInputStream extends InputStream {
+    private static final Logger LOG = LoggerFactory.getLogger(PlayQueueInputStream.class);
+
     private final PlayQueue queue;
     private final Consumer<MediaFile> fileStartListener;
     private final BiConsumer<Integer, MediaFile> fileEndListener;
     private final Function<MediaFile, InputStream> streamGenerator;
+    private final int prefetchSeconds;
+    private final int prefetchBufferSize;
+    private final Timer trackChangeTimer;
     private InputStream currentStream;
     private MediaFile currentFile;
     private Integer readCount = 0;
+    private long currentStartMillis;
+    private InputStream nextStream;
+    private MediaFile nextFile;
+    // the next file whose stream failed to start, not prefetched again
+    private MediaFile failedFile;
+    private long trackChangeNanos = -1;
 
     public PlayQueueInputStream(PlayQueue queue, Consumer<MediaFile> fileStartListener,
             BiConsumer<Integer, MediaFile> fileEndListener, Function<MediaFile, InputStream> streamGenerator) {
+        this(queue, fileStartListener, fileEndListener, streamGenerator, 0, 0, null);
+    }
+
+    /**
+     * @param prefetchSeconds    the stream of the next file is started when the current file is within this
+     *                           many seconds of its end. 0 disables prefetching
+     * @param prefetchBufferSize maximum number of bytes of the next file read ahead
+     * @param trackChangeTimer   records the time from the end of a file to the first byte of the next one. May be {@code null}.
+     */
+    public PlayQueueInputStream(PlayQueue queue, Consumer<MediaFile> fileStartListener,
+            BiConsumer<Integer, MediaFile> fileEndListener, Function<MediaFile, InputStream> streamGenerator,
+            int prefetchSeconds, int prefetchBufferSize, Timer trackChangeTimer) {
         this.queue = queue;
         this.fileStartListener = fileStartListener;
         this.fileEndListener = fileEndListener;
         this.streamGenerator = streamGenerator;
+        this.prefetchSeconds = prefetchSeconds;
+        this.prefetchBufferSize = prefetchBufferSize;
+        this.trackChangeTimer = trackChangeTimer;
     }
 
     @Override
@@ -51,12 +83,64 @@ public class PlayQueueInputStream extends InputStream {
         if (n == -1) {
             queue.next();
             closeStream();
+            trackChangeNanos = System.nanoTime();
             return read(b, off, len);
         }
 
+        if (trackChangeNanos != -1) {
+            if (trackChangeTimer != null) {
+                trackChangeTimer.update(System.nanoTime() - trackChangeNanos, TimeUnit.NANOSECONDS);
+            }
+            trackChangeNanos = -1;
+        }
+        prefetch();
+
         return n;
     }
 
+    /**
+     * Starts the stream of the next file once the current file is close to its end, and cancels it
+     * if the next file changed in the meantime.
+     */
+    private void prefetch() {
+        if (prefetchSeconds <= 0) {
+            return;
+        }
+        MediaFile next = queue.getNextFile();
+        if (nextStream != null) {
+            if (!Objects.equals(next, nextFile)) {
+                LOG.debug("Play queue changed, cancelling prefetch of {}", nextFile);
+                cancelPrefetch();
+            }
+            return;
+        }
+        Double duration = currentFile.getDuration();
+        if (next == null || duration == null || next.equals(failedFile)
+                || System.currentTimeMillis() - currentStartMillis < (duration - prefetchSeconds) * 1000) {
+            return;
+        }
+        LOG.debug("Prefetching {}", next);
+        InputStream stream;
+        try {
+            stream = streamGenerator.apply(next);
+        } catch (RuntimeException e) {
+            // must not interrupt the current file, the next one is started again when it is reached
+            LOG.warn("Could not prefetch {}", next, e);
+            failedFile = next;
+            return;
+        }
+        nextFile = next;
+        nextStream = new PrefetchInputStream(String.valueOf(next.getId()), stream, prefetchBufferSize);
+    }
+
+    private void cancelPrefetch() {
+        if (nextStream != null) {
+            FileUtil.closeQuietly(nextStream);
+            nextStream = null;
+            nextFile = null;
+        }
+    }
+
     private void prepare() throws IOException {
 //        PlayQueue playQueue = player.getPlayQueue();
 //
@@ -67,12 +151,22 @@ public class PlayQueueInputStream extends InputStream {
 
         MediaFile file = queue.getCurrentFile();
         if (file == null) {
+            cancelPrefetch();
             closeStream();
         } else if (!file.equals(currentFile)) {
             closeStream();
             currentFile = file;
+            failedFile = null;
+            currentStartMillis = System.currentTimeMillis();
             fileStartListener.accept(currentFile);
-            currentStream = streamGenerator.apply(currentFile);
+            if (nextStream != null && file.equals(nextFile)) {
+                currentStream = nextStream;
+                nextStream = null;
+                nextFile = null;
+            } else {
+                cancelPrefetch();
+                currentStream = streamGenerator.apply(currentFile);
+            }
         } else {
             readCount++;
         }
@@ -92,6 +186,7 @@ public class PlayQueueInputStream extends InputStream {
 
     @Override
     public void close() throws IOException {
+        cancelPrefetch();
         closeStream();
         super.close();
     }
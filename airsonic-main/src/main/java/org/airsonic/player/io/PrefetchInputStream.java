@@ -0,0 +1,159 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import org.airsonic.player.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Reads a source stream ahead in a background thread into a bounded buffer, e.g. to start a transcoder
+ * before its output is needed. The background thread pauses while the buffer is full.
+ */
+public class PrefetchInputStream extends InputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PrefetchInputStream.class);
+
+    private final InputStream source;
+    private final byte[] buffer;
+
+    // guarded by this
+    private int head;
+    private int count;
+    private boolean eof;
+    private IOException error;
+    private boolean closed;
+
+    /**
+     * Creates the stream and starts reading the source.
+     *
+     * @param name       name used for the thread
+     * @param source     stream to read ahead
+     * @param bufferSize maximum number of bytes read ahead
+     */
+    public PrefetchInputStream(String name, InputStream source, int bufferSize) {
+        this.source = source;
+        this.buffer = new byte[Math.max(bufferSize, 1)];
+        Thread thread = new Thread(this::fill, name + " PrefetchInputStream thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void fill() {
+        byte[] chunk = new byte[Math.min(8192, buffer.length)];
+        try {
+            while (true) {
+                int free;
+                synchronized (this) {
+                    while (count == buffer.length && !closed) {
+                        wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    free = buffer.length - count;
+                }
+                int n = source.read(chunk, 0, Math.min(chunk.length, free));
+                synchronized (this) {
+                    if (n == -1) {
+                        eof = true;
+                        notifyAll();
+                        return;
+                    }
+                    int tail = (head + count) % buffer.length;
+                    int first = Math.min(n, buffer.length - tail);
+                    System.arraycopy(chunk, 0, buffer, tail, first);
+                    System.arraycopy(chunk, first, buffer, 0, n - first);
+                    count += n;
+                    notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                if (!closed) {
+                    LOG.debug("Failed to read ahead", e);
+                }
+                error = e;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (count == 0 && !eof && error == null && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (count == 0) {
+            if (error != null) {
+                throw error;
+            }
+            return -1;
+        }
+        int n = Math.min(len, count);
+        int first = Math.min(n, buffer.length - head);
+        System.arraycopy(buffer, head, b, off, first);
+        System.arraycopy(buffer, 0, b, off + first, n - first);
+        head = (head + n) % buffer.length;
+        count -= n;
+        notifyAll();
+        return n;
+    }
+
+    @Override
+    public synchronized int available() {
+        return count;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        FileUtil.closeQuietly(source);
+    }
+}
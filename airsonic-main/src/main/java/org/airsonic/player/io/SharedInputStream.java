@@ -0,0 +1,285 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import org.airsonic.player.util.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads a source stream once in a background thread and hands its content to any number of readers.
+ *
+ * The most recent bytes are kept in a bounded ring buffer, from which readers keeping up with the source are
+ * served. Everything is also written to a spill file, so that slow readers, and readers joining after the
+ * start, read from the file instead of holding back the source. The source is closed as soon as the last
+ * reader is closed.
+ */
+public class SharedInputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedInputStream.class);
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final String name;
+    private final InputStream source;
+    private final byte[] ring;
+    private final FileChannel spill;
+    private final Consumer<SharedInputStream> onFinished;
+
+    // guarded by this
+    private long written;
+    private boolean eof;
+    private IOException error;
+    private boolean spillFailed;
+    private int readers;
+    private boolean released;
+    private boolean producing = true;
+    private boolean finished;
+
+    /**
+     * @param name       name used in logs and for the thread
+     * @param source     stream to share
+     * @param bufferSize size in bytes of the in-memory ring buffer
+     * @param onFinished called once, without holding any lock, when no reader can join anymore,
+     *                   i.e. the source is exhausted or all readers are closed
+     * @throws IOException if the spill file could not be created
+     */
+    public SharedInputStream(String name, InputStream source, int bufferSize, Consumer<SharedInputStream> onFinished)
+            throws IOException {
+        this.name = name;
+        this.source = source;
+        this.ring = new byte[Math.max(bufferSize, CHUNK_SIZE)];
+        this.onFinished = onFinished;
+        Path spillFile = Files.createTempFile("airsonic-shared", ".spill");
+        this.spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Start reading the source.
+     */
+    public void start() {
+        Thread producer = new Thread(this::produce, name + " SharedInputStream thread");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * Returns a new reader starting at the beginning of the source, or null if the shared stream is already released.
+     *
+     * @return a new reader, or null
+     */
+    public synchronized InputStream newReader() {
+        if (released) {
+            return null;
+        }
+        readers++;
+        return new Reader();
+    }
+
+    public synchronized int getReaderCount() {
+        return readers;
+    }
+
+    private void produce() {
+        byte[] buf = new byte[CHUNK_SIZE];
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (released) {
+                        break;
+                    }
+                }
+                int n = source.read(buf);
+                if (n == -1) {
+                    synchronized (this) {
+                        eof = true;
+                        notifyAll();
+                    }
+                    break;
+                }
+                append(buf, n);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                if (!released) {
+                    LOG.debug("Failed to read shared stream {}", name, e);
+                }
+                error = e;
+                notifyAll();
+            }
+        } finally {
+            FileUtil.closeQuietly(source);
+            synchronized (this) {
+                producing = false;
+                closeSpillIfUnused();
+            }
+            finish();
+        }
+    }
+
+    private void finish() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+        }
+        onFinished.accept(this);
+    }
+
+    private void append(byte[] buf, int n) {
+        long position;
+        boolean writeSpill;
+        synchronized (this) {
+            position = written;
+            writeSpill = !spillFailed;
+        }
+        if (writeSpill) {
+            try {
+                ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                long pos = position;
+                while (bb.hasRemaining()) {
+                    pos += spill.write(bb, pos);
+                }
+            } catch (IOException e) {
+                LOG.debug("Failed to write spill file of {}", name, e);
+                writeSpill = false;
+            }
+        }
+        synchronized (this) {
+            spillFailed = !writeSpill;
+            int offset = (int) (position % ring.length);
+            int first = Math.min(n, ring.length - offset);
+            System.arraycopy(buf, 0, ring, offset, first);
+            System.arraycopy(buf, first, ring, 0, n - first);
+            written += n;
+            notifyAll();
+        }
+    }
+
+    private void release() {
+        boolean last;
+        synchronized (this) {
+            readers--;
+            last = readers == 0 && !released;
+            if (last) {
+                released = true;
+            }
+            closeSpillIfUnused();
+        }
+        if (last) {
+            // Wakes up the producer if it is blocked reading the source, e.g. a transcoder
+            FileUtil.closeQuietly(source);
+            finish();
+        }
+    }
+
+    private void closeSpillIfUnused() {
+        if (readers == 0 && !producing) {
+            FileUtil.closeQuietly(spill);
+        }
+    }
+
+    private class Reader extends InputStream {
+
+        private long position;
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n;
+            synchronized (SharedInputStream.this) {
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                while (position == written && !eof && error == null) {
+                    try {
+                        SharedInputStream.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (position == written) {
+                    if (error != null) {
+                        throw error;
+                    }
+                    return -1;
+                }
+                n = (int) Math.min(len, written - position);
+                if (position >= written - ring.length) {
+                    int offset = (int) (position % ring.length);
+                    int first = Math.min(n, ring.length - offset);
+                    System.arraycopy(ring, offset, b, off, first);
+                    System.arraycopy(ring, 0, b, off + first, n - first);
+                    position += n;
+                    return n;
+                }
+                if (spillFailed) {
+                    throw new IOException("Reader of " + name + " fell behind and the spill file is not available");
+                }
+            }
+            // Fell behind the ring buffer, read from the spill file without holding back the producer
+            int read = spill.read(ByteBuffer.wrap(b, off, n), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() {
+            synchronized (SharedInputStream.this) {
+                return (int) Math.min(Integer.MAX_VALUE, written - position);
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (SharedInputStream.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes an uncompressed zip file in a single pass over the files.
+ *
+ * The CRC of each file is computed while it is copied, and written after the data in a data descriptor, so a file
+ * is read only once. As nothing is compressed, the length of the zip file is known before it is written
+ * (see {@link #length}). Zip64 records are used for archives over 4 GB or with more than 65534 entries.
+ *
+ * Readers have to use the central directory at the end: stored entries with a data descriptor can not be
+ * extracted by reading the local headers only (e.g. by {@link java.util.zip.ZipInputStream}).
+ */
+public class ZipStreamWriter implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ZipStreamWriter.class);
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_LENGTH = 22;
+    private static final int ZIP64_END_LENGTH = 56;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+
+    // data descriptor, names in UTF-8
+    private static final int FLAGS = 1 << 3 | 1 << 11;
+    private static final int MAX_ENTRIES = 0xffff;
+    private static final long MAX_LENGTH = 0xffffffffL;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final boolean zip64;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private long position;
+    private boolean finished;
+
+    private record CentralEntry(byte[] name, long offset, long size, long crc, int dosTime, boolean directory) {
+    }
+
+    /**
+     * @param out   the stream to write the zip file to
+     * @param zip64 whether Zip64 records are used, see {@link #isZip64}
+     */
+    public ZipStreamWriter(OutputStream out, boolean zip64) {
+        this.out = out;
+        this.zip64 = zip64;
+    }
+
+    /**
+     * Returns whether Zip64 records are needed for a zip file of the given entries.
+     *
+     * @param entries names and sizes of the entries. The names of directories end with a slash.
+     * @return true if offsets, sizes or the number of entries do not fit into the standard records
+     */
+    public static boolean isZip64(Collection<? extends Map.Entry<String, Long>> entries) {
+        return entries.size() >= MAX_ENTRIES || length(entries, false) > MAX_LENGTH;
+    }
+
+    /**
+     * Returns the exact length of the zip file of the given entries.
+     *
+     * @param entries names and sizes of the entries, in the order they are written
+     * @return length of the zip file in bytes
+     */
+    public static long length(Collection<? extends Map.Entry<String, Long>> entries) {
+        return length(entries, isZip64(entries));
+    }
+
+    private static long length(Collection<? extends Map.Entry<String, Long>> entries, boolean zip64) {
+        long length = zip64 ? ZIP64_END_LENGTH + ZIP64_LOCATOR_LENGTH + END_LENGTH : END_LENGTH;
+        for (Map.Entry<String, Long> entry : entries) {
+            int name = entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+            length += localHeaderLength(name, zip64) + entry.getValue() + descriptorLength(zip64)
+                    + centralHeaderLength(name, zip64);
+        }
+        return length;
+    }
+
+    private static int localHeaderLength(int name, boolean zip64) {
+        return LOCAL_HEADER_LENGTH + name + (zip64 ? 20 : 0);
+    }
+
+    private static int descriptorLength(boolean zip64) {
+        return zip64 ? 24 : 16;
+    }
+
+    private static int centralHeaderLength(int name, boolean zip64) {
+        return CENTRAL_HEADER_LENGTH + name + (zip64 ? 28 : 0);
+    }
+
+    /**
+     * Adds a directory entry.
+     *
+     * @param name         name of the directory, ending with a slash
+     * @param lastModified modification time in milliseconds
+     * @throws IOException if the entry can not be written
+     */
+    public void putDirectory(String name, long lastModified) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long offset = position;
+        int dosTime = toDosTime(lastModified);
+        writeLocalHeader(nameBytes, dosTime);
+        writeDescriptor(0, 0);
+        entries.add(new CentralEntry(nameBytes, offset, 0, 0, dosTime, true));
+    }
+
+    /**
+     * Adds a file entry, and copies the file while computing its CRC.
+     *
+     * Exactly <code>size</code> bytes are written, so that the length of the zip file stays as computed before.
+     * If the file changed in the meantime, it is cut or padded with zeros.
+     *
+     * @param name         name of the entry
+     * @param file         the file to copy
+     * @param size         size of the file, as used to compute the length of the zip file
+     * @param lastModified modification time in milliseconds
+     * @throws IOException if the file can not be read, or the entry can not be written
+     */
+    public void putFile(String name, Path file, long size, long lastModified) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long offset = position;
+        int dosTime = toDosTime(lastModified);
+        writeLocalHeader(nameBytes, dosTime);
+
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = size;
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while (remaining > 0 && (n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                crc.update(buffer, 0, n);
+                write(buffer, n);
+                remaining -= n;
+            }
+        }
+        if (remaining > 0) {
+            LOG.warn("{} is shorter than {} bytes, padding zip entry {}", file, size, name);
+            Arrays.fill(buffer, (byte) 0);
+            while (remaining > 0) {
+                int n = (int) Math.min(buffer.length, remaining);
+                crc.update(buffer, 0, n);
+                write(buffer, n);
+                remaining -= n;
+            }
+        }
+        writeDescriptor(crc.getValue(), size);
+        entries.add(new CentralEntry(nameBytes, offset, size, crc.getValue(), dosTime, false));
+    }
+
+    /**
+     * Writes the central directory. No entries can be added afterwards.
+     *
+     * @throws IOException if the central directory can not be written
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        long start = position;
+        for (CentralEntry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long length = position - start;
+        if (zip64) {
+            long end64 = position;
+            ByteBuffer record = buffer(ZIP64_END_LENGTH + ZIP64_LOCATOR_LENGTH);
+            record.putInt(ZIP64_END_SIGNATURE);
+            record.putLong(ZIP64_END_LENGTH - 12);
+            record.putShort((short) 45);
+            record.putShort((short) 45);
+            record.putInt(0);
+            record.putInt(0);
+            record.putLong(entries.size());
+            record.putLong(entries.size());
+            record.putLong(length);
+            record.putLong(start);
+            record.putInt(ZIP64_LOCATOR_SIGNATURE);
+            record.putInt(0);
+            record.putLong(end64);
+            record.putInt(1);
+            write(record);
+        }
+        ByteBuffer record = buffer(END_LENGTH);
+        record.putInt(END_SIGNATURE);
+        record.putShort((short) 0);
+        record.putShort((short) 0);
+        record.putShort((short) (zip64 ? MAX_ENTRIES : entries.size()));
+        record.putShort((short) (zip64 ? MAX_ENTRIES : entries.size()));
+        record.putInt((int) (zip64 ? MAX_LENGTH : length));
+        record.putInt((int) (zip64 ? MAX_LENGTH : start));
+        record.putShort((short) 0);
+        write(record);
+        out.flush();
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Closes the stream. The central directory is not written, unless {@link #finish} was called before.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeLocalHeader(byte[] name, int dosTime) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Zip file already finished");
+        }
+        ByteBuffer header = buffer(localHeaderLength(name.length, zip64));
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) (zip64 ? 45 : 20));
+        header.putShort((short) FLAGS);
+        header.putShort((short) 0); // stored
+        header.putInt(dosTime);
+        // crc and sizes follow in the data descriptor
+        header.putInt(0);
+        header.putInt(zip64 ? (int) MAX_LENGTH : 0);
+        header.putInt(zip64 ? (int) MAX_LENGTH : 0);
+        header.putShort((short) name.length);
+        header.putShort((short) (zip64 ? 20 : 0));
+        header.put(name);
+        if (zip64) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) 16);
+            header.putLong(0);
+            header.putLong(0);
+        }
+        write(header);
+    }
+
+    private void writeDescriptor(long crc, long size) throws IOException {
+        ByteBuffer descriptor = buffer(descriptorLength(zip64));
+        descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE);
+        descriptor.putInt((int) crc);
+        if (zip64) {
+            descriptor.putLong(size);
+            descriptor.putLong(size);
+        } else {
+            descriptor.putInt((int) size);
+            descriptor.putInt((int) size);
+        }
+        write(descriptor);
+    }
+
+    private void writeCentralHeader(CentralEntry entry) throws IOException {
+        ByteBuffer header = buffer(centralHeaderLength(entry.name().length, zip64));
+        header.putInt(CENTRAL_HEADER_SIGNATURE);
+        header.putShort((short) (zip64 ? 45 : 20));
+        header.putShort((short) (zip64 ? 45 : 20));
+        header.putShort((short) FLAGS);
+        header.putShort((short) 0);
+        header.putInt(entry.dosTime());
+        header.putInt((int) entry.crc());
+        header.putInt((int) (zip64 ? MAX_LENGTH : entry.size()));
+        header.putInt((int) (zip64 ? MAX_LENGTH : entry.size()));
+        header.putShort((short) entry.name().length);
+        header.putShort((short) (zip64 ? 28 : 0));
+        header.putShort((short) 0); // comment
+        header.putShort((short) 0); // disk
+        header.putShort((short) 0); // internal attributes
+        header.putInt(entry.directory() ? 0x10 : 0); // MS-DOS directory attribute
+        header.putInt((int) (zip64 ? MAX_LENGTH : entry.offset()));
+        header.put(entry.name());
+        if (zip64) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) 24);
+            header.putLong(entry.size());
+            header.putLong(entry.size());
+            header.putLong(entry.offset());
+        }
+        write(header);
+    }
+
+    private static ByteBuffer buffer(int length) {
+        return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        write(buffer.array(), buffer.position());
+    }
+
+    private void write(byte[] b, int length) throws IOException {
+        out.write(b, 0, length);
+        position += length;
+    }
+
+    private static int toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(Math.max(millis, 0)), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        if (time.getYear() > 2107) {
+            time = LocalDateTime.of(2107, 12, 31, 23, 59, 58);
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+}
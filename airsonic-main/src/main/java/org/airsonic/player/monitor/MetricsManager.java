@@ -1,5 +1,6 @@
 package org.airsonic.player.monitor;
 
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.jmx.JmxReporter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -72,6 +73,30 @@ public class MetricsManager {
         return timer(ref.getClass(),name);
     }
 
+    /**
+     * Registers a metric (gauge, meter, histogram...) whose name is based on a class name and a
+     * qualified name. The metric is only reported if metrics are activated by configuration,
+     * but it is returned in any case so that the caller can keep using it.
+     */
+    public <T extends Metric> T register(Class<?> clazz, String name, T metric) {
+        if (metricsActivatedByConfiguration()) {
+            String metricName = MetricRegistry.name(clazz, name);
+            metrics.remove(metricName);
+            metrics.register(metricName, metric);
+        }
+        return metric;
+    }
+
+    /**
+     * Records a value in a histogram whose name is based on a class name and a
+     * qualified name. Does nothing if metrics are not activated by configuration.
+     */
+    public void update(Class<?> clazz, String name, long value) {
+        if (metricsActivatedByConfiguration()) {
+            metrics.histogram(MetricRegistry.name(clazz, name)).update(value);
+        }
+    }
+
     /**
      * Initiate a {@link TimerBuilder} using a condition.
      * If the condition is false, a void {@link Timer} will finally be built thus
@@ -90,6 +90,8 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Integer> {
 
     public Optional<MediaFile> findByPathAndFolderAndStartPosition(String path, MusicFolder folder, Double startPosition);
 
+    public List<MediaFile> findByFolderAndPathInAndStartPosition(MusicFolder folder, Iterable<String> paths, Double startPosition);
+
     public int countByFolder(MusicFolder folder);
 
     public int countByFolderInAndMediaTypeAndPresentTrue(List<MusicFolder> folders, MediaType mediaType);
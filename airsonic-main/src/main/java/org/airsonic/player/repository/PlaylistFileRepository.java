@@ -0,0 +1,47 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.repository;
+
+import org.airsonic.player.domain.PlaylistFile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PlaylistFileRepository extends JpaRepository<PlaylistFile, Integer> {
+
+    public List<PlaylistFile> findByPlaylistIdOrderBySortKey(Integer playlistId);
+
+    public List<PlaylistFile> findByPlaylistIdOrderBySortKey(Integer playlistId, Pageable pageable);
+
+    @Query("SELECT f.id FROM PlaylistFile f WHERE f.playlist.id = :playlistId ORDER BY f.sortKey")
+    public List<Integer> findIdsByPlaylistId(@Param("playlistId") Integer playlistId);
+
+    @Query("SELECT f.id FROM PlaylistFile f WHERE f.playlist.id = :playlistId AND f.mediaFile.present = true ORDER BY f.sortKey")
+    public List<Integer> findPresentIdsByPlaylistId(@Param("playlistId") Integer playlistId);
+
+    @Query("SELECT MAX(f.sortKey) FROM PlaylistFile f WHERE f.playlist.id = :playlistId")
+    public Optional<Long> findMaxSortKeyByPlaylistId(@Param("playlistId") Integer playlistId);
+
+}
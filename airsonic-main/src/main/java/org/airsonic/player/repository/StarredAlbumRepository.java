@@ -21,6 +21,8 @@ public interface StarredAlbumRepository extends JpaRepository<StarredAlbum, Inte
 
     public Optional<StarredAlbum> findByAlbumAndUsername(Album album, String username);
 
+    public List<StarredAlbum> findByUsernameAndAlbumIdIn(String username, Iterable<Integer> albumIds);
+
     @Transactional
     public void deleteByAlbumAndUsername(Album album, String username);
 
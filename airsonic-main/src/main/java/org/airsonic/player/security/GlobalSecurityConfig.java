@@ -1,5 +1,6 @@
 package org.airsonic.player.security;
 
+import org.airsonic.player.monitor.MetricsManager;
 import org.airsonic.player.service.JWTSecurityService;
 import org.airsonic.player.service.SecurityService;
 import org.airsonic.player.service.SettingsService;
@@ -55,6 +56,9 @@ public class GlobalSecurityConfig {
     @Autowired
     private SonosJWTVerification sonosJwtVerification;
 
+    @Autowired
+    private MetricsManager metricsManager;
+
     @EventListener
     public void loginFailureListener(AbstractAuthenticationFailureEvent event) {
         if (event.getSource() instanceof AbstractAuthenticationToken) {
@@ -135,6 +139,7 @@ public class GlobalSecurityConfig {
 
         RESTRequestParameterProcessingFilter restAuthenticationFilter = new RESTRequestParameterProcessingFilter();
         restAuthenticationFilter.setAuthenticationManager(authenticationManager);
+        restAuthenticationFilter.setMetricsManager(metricsManager);
 
         // Try to load the 'remember me' key.
         //
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 public class JWTAuthenticationProvider implements AuthenticationProvider {
 
@@ -57,8 +58,15 @@ public class JWTAuthenticationProvider implements AuthenticationProvider {
         }
 
         Claim path = token.getClaim(JWTSecurityService.CLAIM_PATH);
+        Claim playQueue = token.getClaim(JWTSecurityService.CLAIM_PLAY_QUEUE);
 
-        if (!roughlyEqual(path.asString(), authentication.getRequestedPath())) {
+        if (playQueue.asString() != null) {
+            // the controllers check that the requested file is in the play queue of that player
+            if (!isPlayQueuePath(playQueue.asString(), authentication.getRequestedPath())) {
+                throw new InsufficientAuthenticationException("Credentials not valid for path " + authentication
+                        .getRequestedPath() + ". They are valid for the play queue of player " + playQueue.asString());
+            }
+        } else if (!roughlyEqual(path.asString(), authentication.getRequestedPath())) {
             throw new InsufficientAuthenticationException("Credentials not valid for path " + authentication
                     .getRequestedPath() + ". They are valid for " + path.asString());
         }
@@ -73,6 +81,11 @@ public class JWTAuthenticationProvider implements AuthenticationProvider {
         return new JWTAuthenticationToken(token.getSubject(), rawToken, authentication.getRequestedPath(), JWT_AUTHORITIES, token);
     }
 
+    /**
+     * The paths a play queue token is valid for.
+     */
+    private static final Set<String> PLAY_QUEUE_PATHS = Set.of("ext/stream", "ext/coverArt.view");
+
     public static List<GrantedAuthority> JWT_AUTHORITIES = List.of(
             new SimpleGrantedAuthority("IS_AUTHENTICATED_FULLY"),
             new SimpleGrantedAuthority("ROLE_TEMP"));
@@ -121,6 +134,17 @@ public class JWTAuthenticationProvider implements AuthenticationProvider {
         }
     }
 
+    private static boolean isPlayQueuePath(String playerId, String requestedPathRaw) {
+        try {
+            UriComponents requested = UriComponentsBuilder.fromUriString(requestedPathRaw).build();
+            return PLAY_QUEUE_PATHS.contains(requested.getPath())
+                    && List.of(playerId).equals(requested.getQueryParams().get("player"));
+        } catch (Exception e) {
+            LOG.warn("Exception encountered while comparing paths", e);
+            return false;
+        }
+    }
+
     public void addAdditionalCheck(String path, VerificationCheck check) {
         additionalChecks.computeIfAbsent(path, k -> new ArrayList<>()).add(check);
     }
@@ -5,6 +5,8 @@ import org.airsonic.player.controller.SubsonicRESTController.ErrorCode;
 import org.airsonic.player.domain.UserCredential;
 import org.airsonic.player.repository.UserCredentialRepository;
 import org.airsonic.player.service.SecurityService.UserDetail;
+import org.airsonic.player.service.cache.AuthenticationCache;
+import org.airsonic.player.service.cache.AuthenticationCache.MatchedCredential;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.CredentialsExpiredException;
@@ -26,6 +28,8 @@ public class MultipleCredsMatchingAuthenticationProvider extends DaoAuthenticati
 
     private UserCredentialRepository userCredentialRepository;
 
+    private AuthenticationCache authenticationCache;
+
     @Override
     protected void additionalAuthenticationChecks(UserDetails userDetails,
             UsernamePasswordAuthenticationToken authentication) throws AuthenticationException {
@@ -47,9 +51,18 @@ public class MultipleCredsMatchingAuthenticationProvider extends DaoAuthenticati
 
         UserDetail userDetail = (UserDetail) userDetails;
 
-        Optional<UserCredential> matchedCred = userDetail.getCredentials().parallelStream()
-                .filter(c -> getPasswordEncoder().matches(presentedPassword, "{" + c.getEncoder() + encoderSpecialization + "}" + c.getCredential()))
-                .findAny();
+        // a cached match is only used while the credential is still stored unchanged
+        Optional<UserCredential> matchedCred = Optional
+                .ofNullable(authenticationCache.get(userDetail.getUsername(), encoderSpecialization, presentedPassword))
+                .flatMap(m -> userDetail.getCredentials().stream().filter(m::matches).findAny());
+
+        if (!matchedCred.isPresent()) {
+            matchedCred = userDetail.getCredentials().parallelStream()
+                    .filter(c -> getPasswordEncoder().matches(presentedPassword, "{" + c.getEncoder() + encoderSpecialization + "}" + c.getCredential()))
+                    .findAny();
+            matchedCred.ifPresent(c -> authenticationCache.put(userDetail.getUsername(), encoderSpecialization,
+                    presentedPassword, MatchedCredential.of(c)));
+        }
 
         if (!matchedCred.isPresent()) {
             logger.debug("Authentication failed: password does not match any stored values");
@@ -89,6 +102,11 @@ public class MultipleCredsMatchingAuthenticationProvider extends DaoAuthenticati
         this.userCredentialRepository = userCredentialRepository;
     }
 
+    @Autowired
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
     @Override
     @Autowired
     public void setUserDetailsService(UserDetailsService userDetailsService) {
@@ -24,6 +24,7 @@ import org.airsonic.player.controller.SubsonicRESTController;
 import org.airsonic.player.controller.SubsonicRESTController.APIException;
 import org.airsonic.player.controller.SubsonicRESTController.ErrorCode;
 import org.airsonic.player.domain.Version;
+import org.airsonic.player.monitor.MetricsManager;
 import org.airsonic.player.util.StringUtil;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -62,6 +63,8 @@ public class RESTRequestParameterProcessingFilter extends AbstractAuthentication
     private static final RequestMatcher requiresAuthenticationRequestMatcher = new RegexRequestMatcher("/rest/.+", null);
     private static final Version serverVersion = new Version(JAXBWriter.getRestProtocolVersion());
 
+    private MetricsManager metricsManager;
+
     protected RESTRequestParameterProcessingFilter(RequestMatcher requiresAuthenticationRequestMatcher) {
         super(requiresAuthenticationRequestMatcher);
         setAuthenticationFailureHandler(new RESTAuthenticationFailureHandler());
@@ -109,7 +112,18 @@ public class RESTRequestParameterProcessingFilter extends AbstractAuthentication
 
         authRequest.setDetails(authenticationDetailsSource.buildDetails(request));
 
-        return this.getAuthenticationManager().authenticate(authRequest);
+        // time spent on authentication, reported apart from the time of the handler
+        try (MetricsManager.Timer t = timer("authentication")) {
+            return this.getAuthenticationManager().authenticate(authRequest);
+        }
+    }
+
+    private MetricsManager.Timer timer(String name) {
+        return metricsManager.timer(RESTRequestParameterProcessingFilter.class, name);
+    }
+
+    public void setMetricsManager(MetricsManager metricsManager) {
+        this.metricsManager = metricsManager;
     }
 
     private void checkAPIVersion(String version) {
@@ -133,7 +147,9 @@ public class RESTRequestParameterProcessingFilter extends AbstractAuthentication
             Authentication authResult) throws IOException, ServletException {
         super.successfulAuthentication(request, response, chain, authResult);
         // carry on with the request
-        chain.doFilter(request, response);
+        try (MetricsManager.Timer t = timer("handler")) {
+            chain.doFilter(request, response);
+        }
     }
 
     public static String decrypt(String s) {
@@ -7,6 +7,7 @@ import org.airsonic.player.domain.entity.StarredAlbum;
 import org.airsonic.player.repository.AlbumRepository;
 import org.airsonic.player.repository.OffsetBasedPageRequest;
 import org.airsonic.player.repository.StarredAlbumRepository;
+import org.airsonic.player.util.Util;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Order;
 import org.springframework.stereotype.Service;
@@ -17,8 +18,11 @@ import org.springframework.util.StringUtils;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Service
 public class AlbumService {
@@ -286,6 +290,23 @@ public class AlbumService {
                 .orElse(null);
     }
 
+    /**
+     * Get dates of album stars with one query per batch of albums
+     *
+     * @param albums   albums to get star dates for
+     * @param username username to get star dates for
+     * @return dates of album stars by album id. Albums that are not starred are not contained.
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, Instant> getAlbumStarredDates(List<Album> albums, String username) {
+        if (albums.isEmpty() || !StringUtils.hasLength(username)) {
+            return Collections.emptyMap();
+        }
+        List<Integer> ids = albums.stream().map(Album::getId).distinct().collect(Collectors.toList());
+        return Util.queryInBatches(ids, batch -> starredAlbumRepository.findByUsernameAndAlbumIdIn(username, batch)).stream()
+                .collect(Collectors.toMap(starred -> starred.getAlbum().getId(), StarredAlbum::getCreated, (a, b) -> a));
+    }
+
     /**
      * Get starred albums for user
      *
@@ -379,4 +400,18 @@ public class AlbumService {
         return album;
     }
 
+    /**
+     * Save albums to database in one transaction. Stored albums are loaded with a single query,
+     * so the updates are sent as JDBC batches.
+     *
+     * @param albums albums to save
+     * @return saved albums
+     */
+    @Transactional
+    public List<Album> saveAll(List<Album> albums) {
+        albumRepository.findAllById(albums.stream().map(Album::getId).filter(Objects::nonNull).collect(Collectors.toList()));
+        albumRepository.saveAll(albums);
+        return albums;
+    }
+
 }
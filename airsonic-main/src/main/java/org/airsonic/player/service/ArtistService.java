@@ -40,7 +40,9 @@ import jakarta.annotation.Nullable;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class ArtistService {
@@ -221,6 +223,20 @@ public class ArtistService {
         return artist;
     }
 
+    /**
+     * Save artists to database in one transaction. Stored artists are loaded with a single query,
+     * so the updates are sent as JDBC batches.
+     *
+     * @param artists artists to save
+     * @return saved artists
+     */
+    @Transactional
+    public List<Artist> saveAll(List<Artist> artists) {
+        artistRepository.findAllById(artists.stream().map(Artist::getId).filter(Objects::nonNull).collect(Collectors.toList()));
+        artistRepository.saveAll(artists);
+        return artists;
+    }
+
     /**
      * Get artist image URL
      *
@@ -0,0 +1,150 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service;
+
+import com.codahale.metrics.Meter;
+import com.google.common.util.concurrent.RateLimiter;
+import org.airsonic.player.domain.Player;
+import org.airsonic.player.domain.TransferStatus;
+import org.airsonic.player.io.PipeStreams.Throttle;
+import org.airsonic.player.monitor.MetricsManager;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Shares the download bandwidth limit between the transfers that are running. The limit is split
+ * evenly between the users with an active transfer, and each user's part is split between their
+ * transfers by weight, live streams weighing {@link SettingsService#getStreamBandwidthPriority()}
+ * times as much as downloads. The shares are recomputed whenever a transfer starts or ends, so a
+ * bulk download of one user never slows down the streams of another.
+ */
+@Service
+public class BandwidthScheduler {
+
+    public enum TransferClass {
+        STREAM, DOWNLOAD
+    }
+
+    private final SettingsService settingsService;
+    private final Map<TransferClass, Meter> throughput = new EnumMap<>(TransferClass.class);
+
+    // Active transfers, grouped by user name
+    private final Map<String, List<Share>> sharesPerUser = new LinkedHashMap<>();
+
+    public BandwidthScheduler(SettingsService settingsService, MetricsManager metricsManager) {
+        this.settingsService = settingsService;
+        for (TransferClass transferClass : TransferClass.values()) {
+            throughput.put(transferClass, metricsManager.register(BandwidthScheduler.class,
+                    "throughput." + transferClass.name().toLowerCase(), new Meter()));
+        }
+    }
+
+    /**
+     * Returns a factory for the throttles of the given transfer class, to be handed to
+     * {@link org.airsonic.player.io.PipeStreams.MonitoredInputStream}.
+     */
+    public Function<TransferStatus, Throttle> throttles(TransferClass transferClass) {
+        return status -> open(status, transferClass);
+    }
+
+    /**
+     * Registers a transfer and returns the throttle that paces it. The throttle must be released
+     * when the transfer ends.
+     */
+    public Throttle open(TransferStatus status, TransferClass transferClass) {
+        Player player = status == null ? null : status.getPlayer();
+        String username = player == null || player.getUsername() == null ? "" : player.getUsername();
+        Share share = new Share(username, transferClass);
+        synchronized (sharesPerUser) {
+            sharesPerUser.computeIfAbsent(username, k -> new ArrayList<>()).add(share);
+            rebalance();
+        }
+        return share;
+    }
+
+    /**
+     * Recomputes the rate of every active transfer. Must be called when the download limit or the
+     * stream priority is changed.
+     */
+    public void rebalance() {
+        double limit = SettingsService.adjustBitrateLimit(settingsService.getDownloadBitrateLimit());
+        int streamWeight = Math.max(1, settingsService.getStreamBandwidthPriority());
+        synchronized (sharesPerUser) {
+            if (sharesPerUser.isEmpty()) {
+                return;
+            }
+            double userRate = limit / sharesPerUser.size();
+            for (List<Share> shares : sharesPerUser.values()) {
+                int totalWeight = shares.stream().mapToInt(s -> s.weight(streamWeight)).sum();
+                for (Share share : shares) {
+                    share.limiter.setRate(userRate * share.weight(streamWeight) / totalWeight);
+                }
+            }
+        }
+    }
+
+    private void release(Share share) {
+        synchronized (sharesPerUser) {
+            List<Share> shares = sharesPerUser.get(share.username);
+            if (shares == null || !shares.remove(share)) {
+                return;
+            }
+            if (shares.isEmpty()) {
+                sharesPerUser.remove(share.username);
+            }
+            rebalance();
+        }
+    }
+
+    class Share implements Throttle {
+        private final String username;
+        private final TransferClass transferClass;
+        private final RateLimiter limiter = RateLimiter.create(Double.POSITIVE_INFINITY);
+
+        private Share(String username, TransferClass transferClass) {
+            this.username = username;
+            this.transferClass = transferClass;
+        }
+
+        double getRate() {
+            return limiter.getRate();
+        }
+
+        private int weight(int streamWeight) {
+            return transferClass == TransferClass.STREAM ? streamWeight : 1;
+        }
+
+        @Override
+        public void acquire(int bytes) {
+            limiter.acquire(bytes);
+            throughput.get(transferClass).mark(bytes);
+        }
+
+        @Override
+        public void release() {
+            BandwidthScheduler.this.release(this);
+        }
+    }
+}
@@ -61,7 +61,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -218,6 +220,18 @@ public class CoverArtCreateService {
 
 
     public BufferedImage createImage(CoverArtRequest coverArtRequest, int size) {
+        return createImages(coverArtRequest, List.of(size)).get(size);
+    }
+
+    /**
+     * Create images of several sizes, decoding the cover art only once.
+     *
+     * @param coverArtRequest the request for the cover art
+     * @param sizes the sizes of the images
+     * @return the images by size
+     */
+    @Nonnull
+    public Map<Integer, BufferedImage> createImages(CoverArtRequest coverArtRequest, Collection<Integer> sizes) {
         CoverArt coverArt = coverArtRequest.getCoverArt();
         if (coverArt != null) {
             try (InputStream in = this.getImageInputStream(coverArt)) {
@@ -229,7 +243,7 @@ public class CoverArtCreateService {
                     if (bimg == null) {
                         reason = "ImageIO.read";
                     } else {
-                        return ImageUtil.scaleToSquare(bimg, size);
+                        return ImageUtil.scaleToSquares(bimg, sizes);
                     }
                 }
                 LOG.warn("Failed to process cover art {}: {} failed", coverArt.getFullPath(), reason);
@@ -241,7 +255,8 @@ public class CoverArtCreateService {
                 LOG.debug(x.getMessage(), x);
             }
         }
-        return createAutoCover(coverArtRequest, size, size);
+        return sizes.stream().distinct()
+                .collect(Collectors.toMap(size -> size, size -> createAutoCover(coverArtRequest, size, size)));
     }
 
     /**
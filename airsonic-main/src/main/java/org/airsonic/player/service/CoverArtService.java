@@ -9,6 +9,8 @@ import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.repository.CoverArtRepository;
 import org.airsonic.player.repository.MediaFileRepository;
 import org.airsonic.player.service.cache.CoverArtCache;
+import org.airsonic.player.service.cache.CoverArtValidatorCache;
+import org.airsonic.player.util.Util;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -29,7 +31,11 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -44,12 +50,15 @@ public class CoverArtService {
     private SecurityService securityService;
     @Autowired
     private CoverArtCache coverArtCache;
+    @Autowired
+    private CoverArtValidatorCache coverArtValidatorCache;
 
     private static final Logger LOG = LoggerFactory.getLogger(CoverArtService.class);
 
     @Transactional
     public void upsert(CoverArt art) {
         coverArtCache.removeCoverArt(art);
+        coverArtValidatorCache.clear();
         coverArtRepository.save(art);
     }
 
@@ -110,6 +119,51 @@ public class CoverArtService {
         }
     }
 
+    /**
+     * Persists the cover art of the media files like {@link #persistIfNeeded(MediaFile)}, but reads the stored cover
+     * art with one query per batch and saves only the new or changed cover art, together.
+     *
+     * @param mediaFiles the media files
+     */
+    @Transactional
+    public void persistAllIfNeeded(List<MediaFile> mediaFiles) {
+        List<MediaFile> withArt = mediaFiles.stream()
+                .filter(mediaFile -> mediaFile.getArt() != null && !CoverArt.NULL_ART.equals(mediaFile.getArt()))
+                .collect(Collectors.toList());
+        if (withArt.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = withArt.stream().map(MediaFile::getId).collect(Collectors.toList());
+        Map<Integer, CoverArt> stored = Util.queryInBatches(ids,
+                batch -> coverArtRepository.findByEntityTypeAndEntityIdIn(EntityType.MEDIA_FILE, batch)).stream()
+                .collect(Collectors.toMap(CoverArt::getEntityId, Function.identity()));
+        List<CoverArt> changed = new ArrayList<>();
+        for (MediaFile mediaFile : withArt) {
+            CoverArt mediaFileArt = mediaFile.getArt();
+            CoverArt art = stored.get(mediaFile.getId());
+            if (art == null || !art.getOverridden() && !isSameImage(art, mediaFileArt)) {
+                mediaFileArt.setEntityId(mediaFile.getId());
+                mediaFileArt.setEntityType(EntityType.MEDIA_FILE);
+                coverArtCache.removeCoverArt(mediaFileArt);
+                changed.add(mediaFileArt);
+            }
+            mediaFile.setArt(null);
+        }
+        if (!changed.isEmpty()) {
+            coverArtValidatorCache.clear();
+            coverArtRepository.saveAll(changed);
+        }
+    }
+
+    private static boolean isSameImage(CoverArt stored, CoverArt art) {
+        return Objects.equals(stored.getPath(), art.getPath())
+                && Objects.equals(getFolderId(stored), getFolderId(art));
+    }
+
+    private static Integer getFolderId(CoverArt art) {
+        return art.getFolder() == null ? null : art.getFolder().getId();
+    }
+
     public CoverArt getAlbumArt(Integer id) {
         CoverArt art = coverArtCache.getCoverArt(EntityType.ALBUM, id);
         if (art != null) {
@@ -157,12 +211,14 @@ public class CoverArtService {
     @Transactional
     public void delete(EntityType type, Integer id) {
         coverArtCache.removeCoverArt(type, id);
+        coverArtValidatorCache.clear();
         coverArtRepository.deleteByEntityTypeAndEntityId(type, id);
     }
 
     @Transactional
     public void expunge() {
         coverArtCache.clear();
+        coverArtValidatorCache.clear();
         List<CoverArt> expungeCoverArts = coverArtRepository.findAll().stream()
             .filter(art -> {
                 switch (art.getEntityType()) {
@@ -27,6 +27,7 @@ import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import org.airsonic.player.security.JWTAuthenticationToken;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -46,6 +47,7 @@ public class JWTSecurityService {
 
     public static final String JWT_PARAM_NAME = "jwt";
     public static final String CLAIM_PATH = "path";
+    public static final String CLAIM_PLAY_QUEUE = "playQueue";
 
     // TODO make this configurable
     public static final int DEFAULT_DAYS_VALID_FOR = 7;
@@ -113,6 +115,23 @@ public class JWTSecurityService {
         return builder.queryParam(JWTSecurityService.JWT_PARAM_NAME, token);
     }
 
+    /**
+     * Creates a token for the remote stream and cover art URLs of the files in the play queue of the given player.
+     * It is valid for any file while the file is in that queue, so a single token serves the whole queue.
+     *
+     * @param user     the owner of the player
+     * @param playerId the player whose play queue the token is valid for
+     * @return the token, to be passed as {@link #JWT_PARAM_NAME} parameter
+     */
+    public String createPlayQueueToken(String user, int playerId) {
+        return createToken(
+                settingsService.getJWTKey(),
+                user,
+                "ext/playQueue?player=" + playerId,
+                Instant.now().plus(DEFAULT_DAYS_VALID_FOR, ChronoUnit.DAYS),
+                Collections.singletonMap(CLAIM_PLAY_QUEUE, String.valueOf(playerId)));
+    }
+
     public static DecodedJWT verify(String jwtKey, String token) {
         Algorithm algorithm = JWTSecurityService.getAlgorithm(jwtKey);
         JWTVerifier verifier = JWT.require(algorithm).build();
@@ -134,4 +153,18 @@ public class JWTSecurityService {
                 .map(x -> x.toInstant())
                 .orElse(null);
     }
+
+    /**
+     * Returns the id of the player whose play queue the token of the given authentication is restricted to, or
+     * null if the authentication does not come from a play queue token.
+     */
+    public static Integer getPlayQueuePlayerId(Authentication auth) {
+        return Optional.ofNullable(auth)
+                .filter(JWTAuthenticationToken.class::isInstance)
+                .map(x -> x.getDetails())
+                .filter(DecodedJWT.class::isInstance)
+                .map(x -> ((DecodedJWT) x).getClaim(CLAIM_PLAY_QUEUE).asString())
+                .map(Integer::valueOf)
+                .orElse(null);
+    }
 }
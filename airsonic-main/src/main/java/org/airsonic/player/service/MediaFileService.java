@@ -38,14 +38,18 @@ import org.airsonic.player.repository.MediaFileSpecifications;
 import org.airsonic.player.repository.MusicFileInfoRepository;
 import org.airsonic.player.repository.OffsetBasedPageRequest;
 import org.airsonic.player.repository.StarredMediaFileRepository;
+import org.airsonic.player.service.MediaFolderService.MusicFolderAccess;
 import org.airsonic.player.service.cache.MediaFileCache;
+import org.airsonic.player.service.cache.MetaDataCache;
 import org.airsonic.player.service.metadata.Chapter;
 import org.airsonic.player.service.metadata.FFmpegParser;
 import org.airsonic.player.service.metadata.JaudiotaggerParser;
 import org.airsonic.player.service.metadata.MetaData;
 import org.airsonic.player.service.metadata.MetaDataParser;
 import org.airsonic.player.service.metadata.MetaDataParserFactory;
+import org.airsonic.player.service.search.IndexManager;
 import org.airsonic.player.util.FileUtil;
+import org.airsonic.player.util.Util;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -127,6 +131,10 @@ public class MediaFileService {
     private MediaFileCache mediaFileCache;
     @Autowired
     private FFmpegParser ffmpegParser;
+    @Autowired
+    private MetaDataCache metaDataCache;
+    @Autowired
+    private IndexManager indexManager;
 
     private final double DURATION_EPSILON = 1e-2;
 
@@ -139,7 +147,7 @@ public class MediaFileService {
     }
 
     public MediaFile getMediaFile(Path fullPath) {
-        return getMediaFile(fullPath, settingsService.isFastCacheEnabled());
+        return getMediaFile(fullPath, settingsService.getSnapshot().fastCacheEnabled());
     }
 
     // This may be an expensive op
@@ -165,7 +173,7 @@ public class MediaFileService {
     }
 
     public MediaFile getMediaFile(Path relativePath, MusicFolder folder) {
-        return getMediaFile(relativePath, folder, settingsService.isFastCacheEnabled());
+        return getMediaFile(relativePath, folder, settingsService.getSnapshot().fastCacheEnabled());
     }
 
     public MediaFile getMediaFile(Path relativePath, MusicFolder folder, boolean minimizeDiskAccess) {
@@ -227,7 +235,7 @@ public class MediaFileService {
         if (Objects.isNull(id)) return null;
         MediaFile result = ignoreCache ? null : mediaFileCache.getMediaFileById(id);
         if (result == null) {
-            result = mediaFileRepository.findById(id).map(mediaFile -> checkLastModified(mediaFile, settingsService.isFastCacheEnabled())).orElse(null);
+            result = mediaFileRepository.findById(id).map(mediaFile -> checkLastModified(mediaFile, settingsService.getSnapshot().fastCacheEnabled())).orElse(null);
             mediaFileCache.putMediaFileById(id, result);
         }
         return result;
@@ -238,7 +246,7 @@ public class MediaFileService {
     }
 
     public MediaFile getParentOf(MediaFile mediaFile) {
-        return getParentOf(mediaFile, settingsService.isFastCacheEnabled());
+        return getParentOf(mediaFile, settingsService.getSnapshot().fastCacheEnabled());
     }
 
     /**
@@ -256,11 +264,89 @@ public class MediaFileService {
         return getMediaFile(Paths.get(mediaFile.getParentPath()), mediaFile.getFolder(), minimizeDiskAccess);
     }
 
+    /**
+     * Returns the media files with the given ids, in the order of the ids.
+     * Files that are not cached are read with one query per batch.
+     *
+     * @param ids The media file ids.
+     * @return media files for the given ids. Unknown ids are skipped.
+     */
+    public List<MediaFile> getMediaFiles(List<Integer> ids) {
+        Map<Integer, MediaFile> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            MediaFile cached = mediaFileCache.getMediaFileById(id);
+            if (cached == null) {
+                missing.add(id);
+            } else {
+                found.put(id, cached);
+            }
+        }
+        if (!missing.isEmpty()) {
+            boolean minimizeDiskAccess = settingsService.getSnapshot().fastCacheEnabled();
+            Util.queryInBatches(missing, mediaFileRepository::findAllById).forEach(mediaFile -> {
+                MediaFile checked = checkLastModified(mediaFile, minimizeDiskAccess);
+                mediaFileCache.putMediaFileById(checked.getId(), checked);
+                found.put(checked.getId(), checked);
+            });
+        }
+        return ids.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the parents of the given media files. Parents that are not cached are read
+     * with one query per music folder.
+     *
+     * @param mediaFiles The media files.
+     * @return parents by media file id. Files without a parent are not contained.
+     */
+    public Map<Integer, MediaFile> getParentsOf(List<MediaFile> mediaFiles) {
+        Map<Integer, MediaFile> result = new HashMap<>();
+        Map<MusicFolder, Set<String>> missing = new HashMap<>();
+        for (MediaFile mediaFile : mediaFiles) {
+            if (mediaFile.getParentPath() == null || mediaFile.getFolder() == null) {
+                continue;
+            }
+            MediaFile parent = mediaFileCache.getMediaFileByPath(Paths.get(mediaFile.getParentPath()), mediaFile.getFolder(), MediaFile.NOT_INDEXED);
+            if (parent == null) {
+                missing.computeIfAbsent(mediaFile.getFolder(), k -> new HashSet<>()).add(mediaFile.getParentPath());
+            } else {
+                result.put(mediaFile.getId(), parent);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        boolean minimizeDiskAccess = settingsService.getSnapshot().fastCacheEnabled();
+        Map<Pair<Integer, String>, MediaFile> parents = new HashMap<>();
+        missing.forEach((folder, paths) -> {
+            Util.queryInBatches(paths, batch -> mediaFileRepository.findByFolderAndPathInAndStartPosition(folder, batch, MediaFile.NOT_INDEXED)).forEach(parent -> {
+                MediaFile checked = checkLastModified(parent, minimizeDiskAccess);
+                mediaFileCache.putMediaFileByPath(Paths.get(checked.getPath()), folder, MediaFile.NOT_INDEXED, checked);
+                parents.put(Pair.of(folder.getId(), checked.getPath()), checked);
+            });
+        });
+        for (MediaFile mediaFile : mediaFiles) {
+            if (mediaFile.getParentPath() == null || mediaFile.getFolder() == null || result.containsKey(mediaFile.getId())) {
+                continue;
+            }
+            MediaFile parent = parents.get(Pair.of(mediaFile.getFolder().getId(), mediaFile.getParentPath()));
+            if (parent == null) {
+                // not in database yet, may have to be read from disk
+                parent = getParentOf(mediaFile, minimizeDiskAccess);
+            }
+            if (parent != null) {
+                result.put(mediaFile.getId(), parent);
+            }
+        }
+        return result;
+    }
+
     private boolean needsUpdate(MediaFile mediaFile, boolean minimizeDiskAccess) {
         return !minimizeDiskAccess
                 && !mediaFile.isIndexedTrack() // ignore virtual track
                 && (mediaFile.getVersion() < MediaFile.VERSION
-                    || settingsService.getFullScan()
+                    || settingsService.getSnapshot().fullScan()
                     || mediaFile.isChanged()
                     || (mediaFile.hasIndex() && mediaFile.getChanged().truncatedTo(ChronoUnit.MICROS).compareTo(FileUtil.lastModified(mediaFile.getFullIndexPath()).truncatedTo(ChronoUnit.MICROS)) < 0)
                 );
@@ -273,7 +359,7 @@ public class MediaFileService {
      * @return updated media file.
      */
     public MediaFile checkLastModified(MediaFile mediaFile) {
-        return checkLastModified(mediaFile, settingsService.isFastCacheEnabled());
+        return checkLastModified(mediaFile, settingsService.getSnapshot().fastCacheEnabled());
     }
 
     private MediaFile checkLastModified(MediaFile mediaFile, boolean minimizeDiskAccess) {
@@ -340,7 +426,7 @@ public class MediaFileService {
      * @return All children media files.
      */
     public List<MediaFile> getChildrenOf(MediaFile parent, boolean includeFiles, boolean includeDirectories, boolean sort) {
-        return getChildrenOf(parent, includeFiles, includeDirectories, sort, settingsService.isFastCacheEnabled());
+        return getChildrenOf(parent, includeFiles, includeDirectories, sort, settingsService.getSnapshot().fastCacheEnabled());
     }
 
     /**
@@ -742,6 +828,22 @@ public class MediaFileService {
         return starredMediaFileRepository.findByUsernameAndMediaFile(username, mediaFile).map(StarredMediaFile::getCreated).orElse(null);
     }
 
+    /**
+     * Returns the dates on which the given user starred the given media files, with one query per batch of files.
+     *
+     * @param mediaFiles The media files.
+     * @param username The user name.
+     * @return starred dates by media file id. Files that are not starred are not contained.
+     */
+    public Map<Integer, Instant> getMediaFileStarredDates(List<MediaFile> mediaFiles, String username) {
+        if (mediaFiles.isEmpty() || username == null) {
+            return Collections.emptyMap();
+        }
+        List<Integer> ids = mediaFiles.stream().map(MediaFile::getId).distinct().collect(Collectors.toList());
+        return Util.queryInBatches(ids, batch -> starredMediaFileRepository.findByUsernameAndMediaFileIdIn(username, batch)).stream()
+            .collect(Collectors.toMap(s -> s.getMediaFile().getId(), StarredMediaFile::getCreated, (a, b) -> a));
+    }
+
     public void populateStarredDate(List<MediaFile> mediaFiles, String username) {
         for (MediaFile mediaFile : mediaFiles) {
             populateStarredDate(mediaFile, username);
@@ -905,11 +1007,11 @@ public class MediaFileService {
     }
 
     private boolean isAudioFile(String suffix) {
-        return settingsService.getMusicFileTypesSet().contains(suffix.toLowerCase());
+        return settingsService.getSnapshot().musicFileTypes().contains(suffix.toLowerCase());
     }
 
     private boolean isVideoFile(String suffix) {
-        return settingsService.getVideoFileTypesSet().contains(suffix.toLowerCase());
+        return settingsService.getSnapshot().videoFileTypes().contains(suffix.toLowerCase());
     }
 
     /**
@@ -919,13 +1021,14 @@ public class MediaFileService {
      * @return Whether the child file is excluded.
      */
     private boolean isExcluded(Path file) {
-        if (settingsService.getIgnoreSymLinks() && Files.isSymbolicLink(file)) {
+        SettingsSnapshot settings = settingsService.getSnapshot();
+        if (settings.ignoreSymLinks() && Files.isSymbolicLink(file)) {
             LOG.info("excluding symbolic link {}", file);
             return true;
         }
         String name = file.getFileName().toString();
-        if (settingsService.getExcludePattern() != null && settingsService.getExcludePattern().matcher(name).find()) {
-            LOG.info("excluding file which matches exclude pattern {}: {}", settingsService.getExcludePatternString(), file.toString());
+        if (settings.isExcluded(name)) {
+            LOG.info("excluding file which matches exclude pattern {}: {}", settings.excludePatternString(), file.toString());
             return true;
         }
 
@@ -1005,7 +1108,7 @@ public class MediaFileService {
 
             MetaDataParser parser = metaDataParserFactory.getParser(file);
             if (parser != null) {
-                MetaData metaData = parser.getMetaData(file);
+                MetaData metaData = metaDataCache.getMetaData(parser, file);
                 mediaFile.setArtist(metaData.getArtist());
                 mediaFile.setAlbumArtist(metaData.getAlbumArtist());
                 mediaFile.setAlbumName(metaData.getAlbumName());
@@ -1045,7 +1148,7 @@ public class MediaFileService {
                         // Guess artist/album name, year and genre.
                         MetaDataParser parser = metaDataParserFactory.getParser(firstChild);
                         if (parser != null) {
-                            MetaData metaData = parser.getMetaData(firstChild);
+                            MetaData metaData = metaDataCache.getMetaData(parser, firstChild);
                             mediaFile.setArtist(metaData.getAlbumArtist());
                             mediaFile.setAlbumName(metaData.getAlbumName());
                             mediaFile.setYear(metaData.getYear());
@@ -1089,7 +1192,7 @@ public class MediaFileService {
         Map<Long, MediaFile> storedChildrenMap = new ConcurrentHashMap<>();
 
         try {
-            List<Chapter> chapters = ffmpegParser.getMetaData(audioFile).getChapters();
+            List<Chapter> chapters = metaDataCache.getMetaData(ffmpegParser, audioFile).getChapters();
             if (CollectionUtils.isEmpty(chapters)) {
                 return children;
             }
@@ -1100,7 +1203,7 @@ public class MediaFileService {
                     .filter(MediaFile::isIndexedTrack)
                     .collect(Collectors.toConcurrentMap(i -> Math.round(i.getStartPosition() * 10), i -> i));
 
-            boolean update = needsUpdate(base, settingsService.isFastCacheEnabled());
+            boolean update = needsUpdate(base, settingsService.getSnapshot().fastCacheEnabled());
 
             // get base properties
             Instant lastModified = FileUtil.lastModified(audioFile);
@@ -1198,7 +1301,7 @@ public class MediaFileService {
             Instant childrenLastUpdated = Instant.now().plusSeconds(100 * 365 * 24 * 60 * 60); // now + 100 years, tracks do not have children
             MusicFolder baseFolder = base.getFolder();
 
-            boolean update = needsUpdate(base, settingsService.isFastCacheEnabled());
+            boolean update = needsUpdate(base, settingsService.getSnapshot().fastCacheEnabled());
             int trackSize = cueSheet.getAllTrackData().size();
 
             if (trackSize > 0) {
@@ -1321,6 +1424,64 @@ public class MediaFileService {
         updateMediaFile(mediaFile);
     }
 
+    /**
+     * Re-read a directory and its direct children from disk, bypassing the memory cache.
+     * Used to apply changes detected outside of a scan.
+     *
+     * @param relativePath relative path of the directory
+     * @param folder       music folder
+     * @return the directory and its children, including the ones which are no longer present. Empty if the directory is unknown.
+     */
+    public List<MediaFile> refreshDirectory(@Nonnull Path relativePath, @Nonnull MusicFolder folder) {
+        MediaFile directory = mediaFileRepository.findByPathAndFolderAndStartPosition(relativePath.toString(), folder, MediaFile.NOT_INDEXED).orElse(null);
+        if (directory == null) {
+            // new directory, create it and its children
+            directory = getMediaFile(relativePath, folder, false);
+            if (directory == null) {
+                return Collections.emptyList();
+            }
+        }
+        mediaFileCache.removeMediaFile(directory);
+        Map<Integer, MediaFile> removed = mediaFileRepository.findByFolderAndParentPathAndPresentTrue(folder, directory.getPath()).stream()
+                .collect(Collectors.toMap(MediaFile::getId, Function.identity()));
+
+        List<MediaFile> result = new ArrayList<>();
+        directory = checkLastModified(directory, false);
+        result.add(directory);
+        if (!directory.isPresent()) {
+            delete(directory);
+        } else if (directory.isDirectory()) {
+            List<MediaFile> children = getChildrenOf(directory, true, true, false, false);
+            children.forEach(child -> {
+                removed.remove(child.getId());
+                mediaFileCache.removeMediaFile(child);
+            });
+            result.addAll(children);
+        }
+        removed.values().forEach(m -> {
+            m.setPresent(false);
+            mediaFileCache.removeMediaFile(m);
+            result.add(m);
+            if (m.isDirectory()) {
+                result.addAll(getRemovedDescendantsOf(m));
+            }
+        });
+        return result;
+    }
+
+    private List<MediaFile> getRemovedDescendantsOf(MediaFile directory) {
+        List<MediaFile> result = new ArrayList<>();
+        for (MediaFile child : mediaFileRepository.findByFolderAndParentPath(directory.getFolder(), directory.getPath(), Sort.by("startPosition"))) {
+            if (!child.isPresent()) {
+                result.add(child);
+                if (child.isDirectory()) {
+                    result.addAll(getRemovedDescendantsOf(child));
+                }
+            }
+        }
+        return result;
+    }
+
     public void setMemoryCacheEnabled(boolean memoryCacheEnabled) {
         mediaFileCache.clear();
         mediaFileCache.setEnabled(memoryCacheEnabled);
@@ -1416,7 +1577,7 @@ public class MediaFileService {
     }
 
     private Path findFileCover(Collection<Path> candidates) {
-        for (String mask : settingsService.getCoverArtFileTypesSet()) {
+        for (String mask : settingsService.getSnapshot().coverArtFileTypes()) {
             Path cand = candidates.parallelStream().filter(c -> {
                 String candidate = c.getFileName().toString().toLowerCase();
                 return candidate.endsWith(mask) && !candidate.startsWith(".") && Files.isRegularFile(c);
@@ -1491,6 +1652,31 @@ public class MediaFileService {
 
         // persist cover art if not overridden
         coverArtService.persistIfNeeded(mediaFile);
+        indexManager.indexLater(mediaFile);
+    }
+
+    /**
+     * Updates the given media files in one transaction. The stored rows are loaded with a single query,
+     * so the updates are sent as JDBC batches. Files which are not stored yet are saved one by one.
+     *
+     * @param mediaFiles media files to update
+     */
+    @Transactional
+    public void updateMediaFiles(@Nonnull List<MediaFile> mediaFiles) {
+        List<Integer> ids = mediaFiles.stream().map(MediaFile::getId).filter(Objects::nonNull).collect(Collectors.toList());
+        Set<Integer> stored = mediaFileRepository.findAllById(ids).stream().map(MediaFile::getId).collect(Collectors.toSet());
+        List<MediaFile> updates = new ArrayList<>();
+        mediaFiles.forEach(mediaFile -> {
+            if (stored.contains(mediaFile.getId())) {
+                mediaFileCache.removeMediaFile(mediaFile);
+                updates.add(mediaFile);
+            } else {
+                updateMediaFile(mediaFile);
+            }
+        });
+        mediaFileRepository.saveAll(updates);
+        coverArtService.persistAllIfNeeded(updates);
+        updates.forEach(indexManager::indexLater);
     }
 
     /**
@@ -1534,13 +1720,14 @@ public class MediaFileService {
             Function<MediaFile, String> remoteCoverArtUrlGenerator) {
         Locale locale = Optional.ofNullable(username).map(localeResolver::resolveLocale).orElse(null);
         List<MediaFileEntry> entries = new ArrayList<>(files.size());
+        MusicFolderAccess access = calculateFolderAccess && username != null ? mediaFolderService.getMusicFolderAccess(username) : null;
         for (MediaFile file : files) {
             String streamUrl = Optional.ofNullable(streamUrlGenerator).map(g -> g.apply(file)).orElse(null);
             String remoteStreamUrl = Optional.ofNullable(remoteStreamUrlGenerator).map(g -> g.apply(file)).orElse(null);
             String remoteCoverArtUrl = Optional.ofNullable(remoteCoverArtUrlGenerator).map(g -> g.apply(file)).orElse(null);
 
             boolean starred = calculateStarred && username != null && getMediaFileStarredDate(file, username) != null;
-            boolean folderAccess = !calculateFolderAccess || username == null || securityService.isFolderAccessAllowed(file, username);
+            boolean folderAccess = access == null || access.isAllowed(file);
             entries.add(MediaFileEntry.fromMediaFile(file, locale, starred, folderAccess, streamUrl, remoteStreamUrl, remoteCoverArtUrl));
         }
 
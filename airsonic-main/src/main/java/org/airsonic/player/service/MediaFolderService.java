@@ -2,6 +2,7 @@ package org.airsonic.player.service;
 
 import com.google.common.collect.Streams;
 import org.airsonic.player.command.MusicFolderSettingsCommand.MusicFolderInfo;
+import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.MediaFile.MediaType;
 import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.domain.MusicFolder.Type;
@@ -24,6 +25,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
@@ -51,6 +53,27 @@ public class MediaFolderService {
 
     private List<MusicFolder> cachedMusicFolders;
     private final ConcurrentMap<String, List<MusicFolder>> cachedMusicFoldersPerUser = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, MusicFolderAccess> cachedMusicFolderAccessPerUser = new ConcurrentHashMap<>();
+
+    /**
+     * Immutable set of the ids of the music folders a user has access to.
+     */
+    public static final class MusicFolderAccess {
+
+        private final BitSet folderIds = new BitSet();
+
+        MusicFolderAccess(List<MusicFolder> musicFolders) {
+            musicFolders.forEach(folder -> folderIds.set(folder.getId()));
+        }
+
+        public boolean isAllowed(MusicFolder folder) {
+            return folder != null && folder.getId() != null && folder.getId() >= 0 && folderIds.get(folder.getId());
+        }
+
+        public boolean isAllowed(MediaFile file) {
+            return file != null && isAllowed(file.getFolder());
+        }
+    }
 
     /**
      * Returns all music folders. Non-existing and disabled folders are not included.
@@ -115,6 +138,18 @@ public class MediaFolderService {
                 .collect(toList());
     }
 
+    /**
+     * Returns the music folders a user has access to, for checking many files at once.
+     * The result is kept until folder assignments or folder state change.
+     *
+     * @param username Username to get the access for.
+     * @return access of the user.
+     */
+    @Transactional
+    public MusicFolderAccess getMusicFolderAccess(String username) {
+        return cachedMusicFolderAccessPerUser.computeIfAbsent(username, u -> new MusicFolderAccess(getMusicFoldersForUser(u)));
+    }
+
     @Transactional
     public void setMusicFoldersForUser(String username, Collection<Integer> musicFolderIds) {
         List<MusicFolder> folders = musicFolderRepository.findAllById(musicFolderIds);
@@ -123,6 +158,7 @@ public class MediaFolderService {
             userRepository.save(u);
         });
         cachedMusicFoldersPerUser.remove(username);
+        cachedMusicFolderAccessPerUser.remove(username);
     }
 
     public MusicFolder getMusicFolderById(Integer id) {
@@ -400,6 +436,7 @@ public class MediaFolderService {
     public void clearMusicFolderCache() {
         cachedMusicFolders = null;
         cachedMusicFoldersPerUser.clear();
+        cachedMusicFolderAccessPerUser.clear();
     }
 
     @CacheEvict(cacheNames = { "mediaFilePathCache", "mediaFileIdCache" }, allEntries = true)
@@ -0,0 +1,400 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import org.airsonic.player.config.AirsonicScanConfig;
+import org.airsonic.player.domain.Album;
+import org.airsonic.player.domain.Artist;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.monitor.MetricsManager;
+import org.airsonic.player.service.scanner.DirectoryFingerprint;
+import org.airsonic.player.service.scanner.DirectoryFingerprintJournal;
+import org.airsonic.player.service.search.IndexManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchEvent.Kind;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the library up to date between scans by watching the music folders.
+ *
+ * Changes are collected per directory and, once no further event was received for the debounce delay,
+ * only the changed directories are refreshed. Albums, artists and the search index are updated for the
+ * affected entries only. Music folders on file systems which do not deliver watch events (network mounts)
+ * are polled instead, using the same directory fingerprints as the incremental scan.
+ */
+@Service
+public class MediaFolderWatcherService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MediaFolderWatcherService.class);
+
+    private static final String FLUSH_TASK_NAME = "media-folder-watcher-flush";
+    private static final String POLL_TASK_NAME = "media-folder-watcher-poll";
+    private static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * File system types on which inotify and friends do not see changes made by other hosts.
+     */
+    private static final Set<String> REMOTE_FILE_STORE_TYPES = Set.of("nfs", "nfs4", "cifs", "smb", "smbfs", "smb2",
+            "9p", "afs", "fuse.sshfs", "fuse.rclone", "fuse.s3fs", "davfs", "webdav");
+
+    public enum Mode { WATCH, POLL }
+
+    private final PathWatcherService pathWatcherService;
+    private final MediaFolderService mediaFolderService;
+    private final MediaFileService mediaFileService;
+    private final AlbumService albumService;
+    private final ArtistService artistService;
+    private final IndexManager indexManager;
+    private final MediaScannerService mediaScannerService;
+    private final TaskSchedulingService taskService;
+    private final SettingsService settingsService;
+    private final AirsonicScanConfig scanConfig;
+    private final DirectoryFingerprintJournal fingerprintJournal;
+
+    private final Map<Integer, Mode> folderModes = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<String, DirectoryFingerprint>> polledFingerprints = new ConcurrentHashMap<>();
+    private final Map<Path, PendingDirectory> pending = new ConcurrentHashMap<>();
+    private final AtomicLong eventCount = new AtomicLong();
+    private final Meter eventRate;
+
+    public MediaFolderWatcherService(PathWatcherService pathWatcherService,
+                                     MediaFolderService mediaFolderService,
+                                     MediaFileService mediaFileService,
+                                     AlbumService albumService,
+                                     ArtistService artistService,
+                                     IndexManager indexManager,
+                                     MediaScannerService mediaScannerService,
+                                     TaskSchedulingService taskService,
+                                     SettingsService settingsService,
+                                     AirsonicScanConfig scanConfig,
+                                     DirectoryFingerprintJournal fingerprintJournal,
+                                     MetricsManager metricsManager) {
+        this.pathWatcherService = pathWatcherService;
+        this.mediaFolderService = mediaFolderService;
+        this.mediaFileService = mediaFileService;
+        this.albumService = albumService;
+        this.artistService = artistService;
+        this.indexManager = indexManager;
+        this.mediaScannerService = mediaScannerService;
+        this.taskService = taskService;
+        this.settingsService = settingsService;
+        this.scanConfig = scanConfig;
+        this.fingerprintJournal = fingerprintJournal;
+        this.eventRate = metricsManager.register(MediaFolderWatcherService.class, "events", new Meter());
+        metricsManager.register(MediaFolderWatcherService.class, "queueDepth", (Gauge<Integer>) pending::size);
+    }
+
+    @EventListener
+    public void init(ApplicationStartedEvent event) {
+        if (!scanConfig.isWatch()) {
+            return;
+        }
+        LOG.info("Watching music folders for changes.");
+        taskService.scheduleFixedDelayTask(FLUSH_TASK_NAME, this::flush, Instant.now().plus(FLUSH_INTERVAL), FLUSH_INTERVAL, true);
+        Duration pollInterval = Duration.ofSeconds(scanConfig.getWatchPollInterval());
+        taskService.scheduleFixedDelayTask(POLL_TASK_NAME, this::poll, Instant.now().plus(pollInterval), pollInterval, true);
+        // registering a large library may take a while
+        taskService.scheduleOnce(FLUSH_TASK_NAME + "-init", this::syncFolders, Instant.now(), true);
+    }
+
+    /**
+     * Start watching music folders which have been added and stop watching removed ones.
+     */
+    public synchronized void syncFolders() {
+        List<MusicFolder> folders = mediaFolderService.getAllMusicFolders();
+        Set<Integer> ids = folders.stream().map(MusicFolder::getId).collect(Collectors.toSet());
+        new ArrayList<>(folderModes.keySet()).stream().filter(id -> !ids.contains(id)).forEach(id -> {
+            pathWatcherService.invalidateWatcher(getWatcherId(id));
+            folderModes.remove(id);
+            polledFingerprints.remove(id);
+        });
+        folders.stream().filter(folder -> !folderModes.containsKey(folder.getId())).forEach(this::startWatching);
+    }
+
+    private void startWatching(MusicFolder folder) {
+        if (!Files.isDirectory(folder.getPath())) {
+            return;
+        }
+        if (isRemote(folder.getPath())) {
+            startPolling(folder);
+            return;
+        }
+        Map<Kind<? extends Object>, BiConsumer<Path, WatchEvent<Path>>> fnMap = new HashMap<>();
+        BiConsumer<Path, WatchEvent<Path>> onChange = (dir, event) -> enqueue(folder, dir);
+        fnMap.put(StandardWatchEventKinds.ENTRY_CREATE, onChange);
+        fnMap.put(StandardWatchEventKinds.ENTRY_DELETE, onChange);
+        fnMap.put(StandardWatchEventKinds.ENTRY_MODIFY, onChange);
+        fnMap.put(StandardWatchEventKinds.OVERFLOW, (dir, event) -> onOverflow(folder));
+        try {
+            pathWatcherService.setRecursiveWatcher(getWatcherId(folder.getId()), folder.getPath(), fnMap);
+            folderModes.put(folder.getId(), Mode.WATCH);
+            LOG.info("Watching {} directories of music folder {}", pathWatcherService.getWatchedDirectoryCount(getWatcherId(folder.getId())), folder.getName());
+        } catch (IOException e) {
+            LOG.warn("Could not watch music folder {}. Falling back to polling.", folder.getName(), e);
+            startPolling(folder);
+        }
+    }
+
+    private void startPolling(MusicFolder folder) {
+        polledFingerprints.put(folder.getId(), fingerprintJournal.compute(folder, !settingsService.getIgnoreSymLinks()));
+        folderModes.put(folder.getId(), Mode.POLL);
+        LOG.info("Polling music folder {} every {} seconds", folder.getName(), scanConfig.getWatchPollInterval());
+    }
+
+    private boolean isRemote(Path path) {
+        try {
+            return REMOTE_FILE_STORE_TYPES.contains(Files.getFileStore(path).type().toLowerCase(Locale.ROOT));
+        } catch (IOException e) {
+            LOG.debug("Could not get file store of {}", path, e);
+            return false;
+        }
+    }
+
+    private static String getWatcherId(Integer folderId) {
+        return "Music folder watcher " + folderId;
+    }
+
+    private void enqueue(MusicFolder folder, Path directory) {
+        eventCount.incrementAndGet();
+        eventRate.mark();
+        pending.compute(directory, (k, v) -> new PendingDirectory(folder, Instant.now()));
+    }
+
+    private void onOverflow(MusicFolder folder) {
+        LOG.warn("Too many changes in music folder {} to keep track of. Starting a library scan.", folder.getName());
+        pending.clear();
+        mediaScannerService.scanLibrary();
+    }
+
+    /**
+     * Compare the fingerprints of polled music folders and enqueue every changed directory.
+     */
+    void poll() {
+        if (mediaScannerService.isScanning()) {
+            return;
+        }
+        boolean followLinks = !settingsService.getIgnoreSymLinks();
+        mediaFolderService.getAllMusicFolders().stream()
+                .filter(folder -> folderModes.get(folder.getId()) == Mode.POLL)
+                .forEach(folder -> {
+                    Map<String, DirectoryFingerprint> current = fingerprintJournal.compute(folder, followLinks);
+                    Map<String, DirectoryFingerprint> previous = polledFingerprints.getOrDefault(folder.getId(), Collections.emptyMap());
+                    current.forEach((path, fingerprint) -> {
+                        if (!Objects.equals(previous.get(path), fingerprint)) {
+                            enqueue(folder, folder.getPath().resolve(path));
+                        }
+                    });
+                    previous.keySet().stream().filter(path -> !current.containsKey(path))
+                            .map(path -> Paths.get(path).getParent())
+                            .filter(Objects::nonNull)
+                            .forEach(parent -> enqueue(folder, folder.getPath().resolve(parent)));
+                    polledFingerprints.put(folder.getId(), current);
+                });
+    }
+
+    /**
+     * Refresh the directories which did not change for the debounce delay.
+     * Nothing is done while a scan is running, the scan picks up the changes itself.
+     */
+    void flush() {
+        syncFolders();
+        if (pending.isEmpty() || mediaScannerService.isScanning()) {
+            return;
+        }
+        Instant threshold = Instant.now().minusSeconds(scanConfig.getWatchDebounce());
+        Map<Path, MusicFolder> ready = new LinkedHashMap<>();
+        pending.forEach((dir, p) -> {
+            if (p.lastEvent.isBefore(threshold) && pending.remove(dir, p)) {
+                ready.put(dir, p.folder);
+            }
+        });
+        if (ready.isEmpty()) {
+            return;
+        }
+        Map<Integer, MediaFile> changed = new LinkedHashMap<>();
+        ready.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> refresh(e.getKey(), e.getValue(), changed));
+        updateAlbumsAndArtists(changed.values());
+        LOG.info("Updated {} media files in {} changed directories", changed.size(), ready.size());
+    }
+
+    private void refresh(Path directory, MusicFolder folder, Map<Integer, MediaFile> changed) {
+        if (!directory.startsWith(folder.getPath())) {
+            return;
+        }
+        try {
+            for (MediaFile file : mediaFileService.refreshDirectory(folder.getPath().relativize(directory), folder)) {
+                changed.put(file.getId(), file);
+                // children of a new directory have never been read
+                if (file.isDirectory() && file.isPresent() && !file.getFullPath().equals(directory)
+                        && !file.getChildrenLastUpdated().isAfter(Instant.ofEpochMilli(1))) {
+                    refresh(file.getFullPath(), folder, changed);
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to refresh {}", directory, e);
+        }
+    }
+
+    /**
+     * Recompute the albums and artists of the given media files, and update the search index.
+     */
+    private void updateAlbumsAndArtists(Collection<MediaFile> files) {
+        Instant now = Instant.now();
+        Set<List<String>> albumKeys = new LinkedHashSet<>();
+        files.stream().filter(MediaFile::isAudio).filter(file -> file.getAlbumName() != null).forEach(file -> {
+            String artist = file.getAlbumArtist() != null ? file.getAlbumArtist() : file.getArtist();
+            if (artist == null) {
+                return;
+            }
+            if (file.isPresent() && file.getAlbumArtist() == null) {
+                file.setAlbumArtist(artist);
+                mediaFileService.updateMediaFile(file);
+            }
+            albumKeys.add(List.of(artist, file.getAlbumName()));
+        });
+
+        List<Album> albums = new ArrayList<>();
+        Set<String> artistNames = new LinkedHashSet<>();
+        for (List<String> key : albumKeys) {
+            String artist = key.get(0);
+            String name = key.get(1);
+            List<MediaFile> songs = mediaFileService.getSongsForAlbum(artist, name);
+            Album album = albumService.getAlbumByArtistAndName(artist, name).orElse(null);
+            if (album == null) {
+                if (songs.isEmpty()) {
+                    continue;
+                }
+                album = new Album(songs.get(0).getParentPath(), name, artist, now, now, true, songs.get(0).getFolder());
+            }
+            album.setSongCount(songs.size());
+            album.setDuration(songs.stream().map(MediaFile::getDuration).filter(Objects::nonNull).mapToDouble(Double::doubleValue).sum());
+            album.setPresent(!songs.isEmpty());
+            album.setLastScanned(now);
+            for (MediaFile song : songs) {
+                album.setPath(song.getParentPath());
+                album.setFolder(song.getFolder());
+                if (song.getYear() != null) {
+                    album.setYear(song.getYear());
+                }
+                if (song.getGenre() != null) {
+                    album.setGenre(song.getGenre());
+                }
+                if (song.getMusicBrainzReleaseId() != null) {
+                    album.setMusicBrainzReleaseId(song.getMusicBrainzReleaseId());
+                }
+            }
+            albums.add(albumService.save(album));
+            artistNames.add(artist);
+        }
+
+        List<Artist> artists = new ArrayList<>();
+        List<MusicFolder> allFolders = mediaFolderService.getAllMusicFolders();
+        for (String name : artistNames) {
+            List<Album> artistAlbums = albumService.getAlbumsByArtist(name, allFolders);
+            Artist artist = artistService.getArtist(name);
+            if (artist == null) {
+                if (artistAlbums.isEmpty()) {
+                    continue;
+                }
+                artist = new Artist(name);
+            }
+            artist.setAlbumCount(artistAlbums.size());
+            artist.setPresent(!artistAlbums.isEmpty());
+            artist.setLastScanned(now);
+            if (!artistAlbums.isEmpty()) {
+                artist.setFolder(artistAlbums.get(0).getFolder());
+            }
+            artists.add(artistService.save(artist));
+        }
+
+        indexManager.indexChanges(files, albums, artists);
+    }
+
+    public Map<Integer, Mode> getFolderModes() {
+        return Collections.unmodifiableMap(folderModes);
+    }
+
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    private static class PendingDirectory {
+        private final MusicFolder folder;
+        private final Instant lastEvent;
+
+        private PendingDirectory(MusicFolder folder, Instant lastEvent) {
+            this.folder = folder;
+            this.lastEvent = lastEvent;
+        }
+    }
+
+    @Component
+    @Endpoint(id = "mediafolderwatcher")
+    public static class MediaFolderWatcherEndpoint {
+        @Autowired
+        private MediaFolderWatcherService watcherService;
+
+        @ReadOperation
+        public WebEndpointResponse<Map<String, Object>> info() {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("folders", watcherService.getFolderModes());
+            info.put("queueDepth", watcherService.getQueueDepth());
+            info.put("events", watcherService.eventCount.get());
+            info.put("eventRate", watcherService.eventRate.getOneMinuteRate());
+            return new WebEndpointResponse<>(info);
+        }
+    }
+}
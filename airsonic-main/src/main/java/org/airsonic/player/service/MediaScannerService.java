@@ -23,10 +23,14 @@ package org.airsonic.player.service;
 import org.airsonic.player.config.AirsonicScanConfig;
 import org.airsonic.player.domain.*;
 import org.airsonic.player.domain.CoverArt.EntityType;
+import org.airsonic.player.service.scanner.DirectoryFingerprintJournal;
+import org.airsonic.player.service.scanner.IncrementalScan;
+import org.airsonic.player.service.scanner.ScanPipeline;
+import org.airsonic.player.service.scanner.ScanWriteBuffer;
 import org.airsonic.player.service.search.IndexManager;
+import org.airsonic.player.service.websocket.ConflatingWebSocketBroadcaster;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.subsonic.restapi.ScanStatus;
 
@@ -46,7 +50,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
 
 /**
  * Provides services for scanning the music library.
@@ -71,8 +74,10 @@ public class MediaScannerService {
         ArtistService artistService,
         AlbumService albumService,
         TaskSchedulingService taskService,
-        SimpMessagingTemplate messagingTemplate,
-        AirsonicScanConfig scanConfig
+        ConflatingWebSocketBroadcaster broadcaster,
+        AirsonicScanConfig scanConfig,
+        DirectoryFingerprintJournal fingerprintJournal,
+        ThumbnailService thumbnailService
     ) {
         this.settingsService = settingsService;
         this.indexManager = indexManager;
@@ -83,8 +88,10 @@ public class MediaScannerService {
         this.artistService = artistService;
         this.albumService = albumService;
         this.taskService = taskService;
-        this.messagingTemplate = messagingTemplate;
+        this.broadcaster = broadcaster;
         this.scanConfig = scanConfig;
+        this.fingerprintJournal = fingerprintJournal;
+        this.thumbnailService = thumbnailService;
         init();
     }
 
@@ -97,8 +104,10 @@ public class MediaScannerService {
     private final ArtistService artistService;
     private final AlbumService albumService;
     private final TaskSchedulingService taskService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ConflatingWebSocketBroadcaster broadcaster;
     private final AirsonicScanConfig scanConfig;
+    private final DirectoryFingerprintJournal fingerprintJournal;
+    private final ThumbnailService thumbnailService;
 
     private int scannerParallelism;
     private AtomicInteger scanCount = new AtomicInteger(0);
@@ -173,12 +182,10 @@ public class MediaScannerService {
     }
 
     private void broadcastScanStatus() {
-        CompletableFuture.runAsync(() -> {
-            ScanStatus status = new ScanStatus();
-            status.setCount(scanCount.longValue());
-            status.setScanning(scanning.get());
-            messagingTemplate.convertAndSend("/topic/scanStatus", status);
-        });
+        ScanStatus status = new ScanStatus();
+        status.setCount(scanCount.longValue());
+        status.setScanning(scanning.get());
+        broadcaster.publish("/topic/scanStatus", "scanStatus", status);
     }
 
     /**
@@ -255,16 +262,35 @@ public class MediaScannerService {
             indexManager.startIndexing();
             mediaFileService.setMemoryCacheEnabled(false);
 
-            // Recurse through all files on disk.
-            pool.submit(() -> {
-                mediaFolderService.getAllMusicFolders()
-                        .parallelStream()
-                        .forEach(musicFolder -> scanFile(pool, null, null, mediaFileService.getMediaFile(Paths.get(""), musicFolder, false),
-                                musicFolder, statistics, albumCount, artists, albums, albumsInDb, genres));
-                // Update statistics
-                statistics.incrementArtists(albumCount.size());
-                statistics.incrementAlbums(albumCount.values().parallelStream().mapToInt(x -> x.get()).sum());
-            }).join();
+            List<MusicFolder> musicFolders = mediaFolderService.getAllMusicFolders();
+            IncrementalScan incrementalScan = prepareIncrementalScan(pool, musicFolders);
+
+            // Walk through all files on disk.
+            ScanContext context = new ScanContext(statistics, incrementalScan, albumCount, artists, albums, albumsInDb, genres,
+                    new ScanWriteBuffer<>("media files", scanConfig.getBatchSize(), mediaFileService::updateMediaFiles));
+            try (ScanPipeline pipeline = new ScanPipeline("Media scan")) {
+                int capacity = scanConfig.getQueueCapacity();
+                boolean virtualThreads = scanConfig.isVirtualThreads();
+                // directories feed themselves, so that stage must not be bounded
+                context.directoryStage = pipeline.addStage("read", scanConfig.getParallelism(), 0, virtualThreads,
+                        (ScanItem item) -> scanDirectory(context, item));
+                context.persistStage = pipeline.addStage("persist", scanConfig.getPersistParallelism(), capacity, virtualThreads,
+                        (ScanItem item) -> persistFile(context, item));
+                context.indexStage = pipeline.addStage("index", scanConfig.getIndexParallelism(), capacity, false,
+                        Runnable::run);
+                context.pipeline = pipeline;
+
+                musicFolders.forEach(musicFolder -> Optional.ofNullable(mediaFileService.getMediaFile(Paths.get(""), musicFolder, false))
+                        .ifPresent(root -> context.directoryStage.submit(new ScanItem(null, null, root, musicFolder, false))));
+                pipeline.await();
+                pipeline.report().forEach(LOG::info);
+            }
+            // pending updates must be written before non-present files are detected
+            context.mediaFileWrites.flush();
+
+            // Update statistics
+            statistics.incrementArtists(albumCount.size());
+            statistics.incrementAlbums(albumCount.values().parallelStream().mapToInt(x -> x.get()).sum());
 
             LOG.info("Scanned media library with {} entries.", scanCount.get());
 
@@ -274,13 +300,17 @@ public class MediaScannerService {
             }
 
             LOG.info("Persisting albums");
+            Set<Integer> albumIds = ConcurrentHashMap.newKeySet();
             CompletableFuture<Void> albumPersistence = CompletableFuture
-                    .allOf(albums.values().stream()
-                            .distinct()
-                            .map(a -> CompletableFuture.supplyAsync(() -> {
-                                return albumService.save(a);
-                            }, pool).thenAcceptAsync(coverArtService::persistIfNeeded))
-                            .toArray(CompletableFuture[]::new))
+                    .runAsync(() -> {
+                        ScanWriteBuffer<Album> albumWrites = new ScanWriteBuffer<>("albums", scanConfig.getBatchSize(),
+                            chunk -> albumService.saveAll(chunk).forEach(album -> {
+                                coverArtService.persistIfNeeded(album);
+                                albumIds.add(album.getId());
+                            }));
+                        albums.values().stream().distinct().forEach(albumWrites::add);
+                        albumWrites.flush();
+                    }, pool)
                     .thenRunAsync(() -> {
                         LOG.info("Marking non-present albums.");
                         albumService.markNonPresent(statistics.getScanDate());
@@ -288,13 +318,17 @@ public class MediaScannerService {
                     .thenRunAsync(() -> LOG.info("Album persistence complete"), pool);
 
             LOG.info("Persisting artists");
+            Set<Integer> artistIds = ConcurrentHashMap.newKeySet();
             CompletableFuture<Void> artistPersistence = CompletableFuture
-                    .allOf(artists.values().stream()
-                            .distinct()
-                            .map(a -> CompletableFuture.supplyAsync(() -> {
-                                return artistService.save(a);
-                            }, pool).thenAcceptAsync(coverArtService::persistIfNeeded))
-                            .toArray(CompletableFuture[]::new))
+                    .runAsync(() -> {
+                        ScanWriteBuffer<Artist> artistWrites = new ScanWriteBuffer<>("artists", scanConfig.getBatchSize(),
+                            chunk -> artistService.saveAll(chunk).forEach(artist -> {
+                                coverArtService.persistIfNeeded(artist);
+                                artistIds.add(artist.getId());
+                            }));
+                        artists.values().stream().distinct().forEach(artistWrites::add);
+                        artistWrites.flush();
+                    }, pool)
                     .thenRunAsync(() -> {
                         LOG.info("Marking non-present artists.");
                         artistService.markNonPresent(statistics.getScanDate());
@@ -304,6 +338,10 @@ public class MediaScannerService {
             LOG.info("Persisting media files");
             CompletableFuture<Void> mediaFilePersistence = CompletableFuture
                     .runAsync(() -> {
+                        LOG.info("Marking {} media files in unchanged directories present.", incrementalScan.getUnchangedCount());
+                        mediaFileService.markPresent(incrementalScan.getUnchangedPaths(), statistics.getScanDate());
+                    }, pool)
+                    .thenRunAsync(() -> {
                         LOG.info("Marking non-present media files.");
                         mediaFileService.markNonPresent(statistics.getScanDate());
                     }, pool)
@@ -319,6 +357,16 @@ public class MediaScannerService {
                     }, pool);
 
             CompletableFuture.allOf(albumPersistence, artistPersistence, mediaFilePersistence, genrePersistence).join();
+
+            if (scanConfig.isThumbnails()) {
+                thumbnailService.pregenerate(albumIds, artistIds);
+            }
+
+            // Only a completed scan may update the journal
+            if (scanConfig.isIncremental()) {
+                musicFolders.forEach(musicFolder -> fingerprintJournal.save(musicFolder, incrementalScan.getSalt(),
+                        incrementalScan.getFingerprints(musicFolder)));
+            }
             LOG.info("Completed media library scan.");
 
         } catch (Throwable x) {
@@ -339,10 +387,70 @@ public class MediaScannerService {
         }
     }
 
-    private void scanFile(ForkJoinPool pool, MediaFile grandParent, MediaFile parent, MediaFile file, MusicFolder musicFolder, MediaLibraryStatistics statistics,
-            Map<String, AtomicInteger> albumCount, Map<String, Artist> artists, Map<String, Album> albums,
-            Set<Integer> albumsInDb, Genres genres) {
+    /**
+     * Compute the directory fingerprints of all music folders and load the ones of the last completed scan.
+     * Unchanged subtrees are only skipped if FullScan is disabled, but a full scan still records fingerprints.
+     */
+    private IncrementalScan prepareIncrementalScan(ForkJoinPool pool, List<MusicFolder> musicFolders) {
+        if (!scanConfig.isIncremental()) {
+            return new IncrementalScan(false, 0L);
+        }
+        boolean enabled = !settingsService.getFullScan();
+        IncrementalScan incrementalScan = new IncrementalScan(enabled, fingerprintSalt());
+        boolean followLinks = !settingsService.getIgnoreSymLinks();
+        pool.submit(() -> musicFolders.parallelStream().forEach(musicFolder -> incrementalScan.addFolder(musicFolder,
+                fingerprintJournal.load(musicFolder, incrementalScan.getSalt()),
+                fingerprintJournal.compute(musicFolder, followLinks)))).join();
+        LOG.info("Computed directory fingerprints. Incremental scan {}.", enabled ? "enabled" : "disabled");
+        return incrementalScan;
+    }
+
+    /**
+     * Returns a hash of the settings which decide how a directory is read, so that changing them invalidates the journal.
+     */
+    private long fingerprintSalt() {
+        return Objects.hash(MediaFile.VERSION, settingsService.getMusicFileTypes(), settingsService.getVideoFileTypes(),
+                settingsService.getCoverArtFileTypes(), settingsService.getExcludePatternString(),
+                settingsService.getIgnoreSymLinks(), settingsService.getEnableCueIndexing());
+    }
+
+    /**
+     * Read stage: read the children of a directory from disk and hand them to the next stages.
+     * New and changed files are parsed while their directory is read.
+     */
+    private void scanDirectory(ScanContext context, ScanItem item) {
+        if (!isMediaScanning()) {
+            LOG.debug("Scan cancelled.");
+            return;
+        }
+        MediaFile directory = item.file;
+        MusicFolder musicFolder = item.musicFolder;
+
+        // Files in unchanged subtrees are read from the database only and are neither re-indexed nor updated one by one
+        boolean unchanged = item.unchanged || context.incrementalScan.isUnchanged(musicFolder, directory);
+        try {
+            if (!unchanged) {
+                context.indexStage.submit(() -> indexManager.index(directory, musicFolder));
+            }
+            for (MediaFile child : mediaFileService.getChildrenOf(directory, true, true, false, unchanged)) {
+                ScanItem childItem = new ScanItem(item.parent, directory, child, musicFolder, unchanged);
+                if (child.isDirectory()) {
+                    context.directoryStage.submit(childItem);
+                } else {
+                    context.persistStage.submit(childItem);
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("scan directory failed : {} in {}", directory.getPath(), musicFolder.getPath(), e);
+            context.incrementalScan.invalidate(musicFolder, directory.getPath());
+        }
+        context.persistStage.submit(new ScanItem(item.grandParent, item.parent, directory, musicFolder, unchanged));
+    }
 
+    /**
+     * Persist stage: update albums, artists, genres and statistics, and mark the file as scanned.
+     */
+    private void persistFile(ScanContext context, ScanItem item) {
         if (!isMediaScanning()) {
             LOG.debug("Scan cancelled.");
             return;
@@ -351,49 +459,59 @@ public class MediaScannerService {
         if (scanCount.incrementAndGet() % 250 == 0) {
             broadcastScanStatus();
             LOG.info("Scanned media library with {} entries.", scanCount.get());
+            if (LOG.isDebugEnabled()) {
+                context.pipeline.report().forEach(LOG::debug);
+            }
         }
 
-        // Update the root folder if it has changed
-        if (!musicFolder.getId().equals(file.getFolder().getId())) {
-            file.setFolder(musicFolder);
-            mediaFileService.updateMediaFile(file);
-        }
+        MediaFile file = item.file;
+        MusicFolder musicFolder = item.musicFolder;
+        MediaLibraryStatistics statistics = context.statistics;
+        try {
+            // Update the root folder if it has changed
+            if (!musicFolder.getId().equals(file.getFolder().getId())) {
+                file.setFolder(musicFolder);
+                context.mediaFileWrites.add(file);
+            }
 
-        indexManager.index(file, musicFolder);
+            boolean unchanged = item.unchanged || context.incrementalScan.isUnchanged(musicFolder, file);
 
-        try {
-            pool.submit(() -> {
-                if (file.isDirectory()) {
-                    try (Stream<MediaFile> children = mediaFileService.getChildrenOf(file, true, true, false, false)
-                            .parallelStream()) {
-                        children.forEach(child -> scanFile(pool, parent, file, child, musicFolder, statistics, albumCount,
-                                artists, albums, albumsInDb, genres));
-                    }
-                } else {
-                    if (musicFolder.getType() == MusicFolder.Type.MEDIA) {
-                        updateAlbum(parent, file, musicFolder, statistics.getScanDate(), albumCount, albums, albumsInDb);
-                        updateArtist(grandParent, file, musicFolder, statistics.getScanDate(), albumCount, artists);
-                    }
-                    statistics.incrementSongs(1);
+            if (!file.isDirectory()) {
+                if (musicFolder.getType() == MusicFolder.Type.MEDIA) {
+                    updateAlbum(item.parent, file, musicFolder, statistics.getScanDate(), context.albumCount, context.albums,
+                            context.albumsInDb, context.indexStage, context.mediaFileWrites);
+                    updateArtist(item.grandParent, file, musicFolder, statistics.getScanDate(), context.albumCount,
+                            context.artists, context.indexStage);
                 }
+                statistics.incrementSongs(1);
+            }
 
-                if (file.isPresent() && (file.getLastScanned() == null || file.getLastScanned().isBefore(statistics.getScanDate()))) {
+            if (file.isPresent() && (file.getLastScanned() == null || file.getLastScanned().isBefore(statistics.getScanDate()))) {
+                if (unchanged) {
+                    context.incrementalScan.markPresent(musicFolder, file);
+                } else {
                     file.setLastScanned(statistics.getScanDate());
-                    mediaFileService.updateMediaFile(file);
+                    context.mediaFileWrites.add(file);
                 }
-                updateGenres(file, genres);
+            }
+            updateGenres(file, context.genres);
 
-                // don't add indexed tracks to the total duration to avoid double-counting
-                if ((file.getDuration() != null) && (!file.isIndexedTrack())) {
-                    statistics.incrementTotalDurationInSeconds(file.getDuration());
-                }
-                // don't add indexed tracks to the total size to avoid double-counting
-                if ((file.getFileSize() != null) && (!file.isIndexedTrack())) {
-                    statistics.incrementTotalLengthInBytes(file.getFileSize());
-                }
-            }).join();
+            // don't add indexed tracks to the total duration to avoid double-counting
+            if ((file.getDuration() != null) && (!file.isIndexedTrack())) {
+                statistics.incrementTotalDurationInSeconds(file.getDuration());
+            }
+            // don't add indexed tracks to the total size to avoid double-counting
+            if ((file.getFileSize() != null) && (!file.isIndexedTrack())) {
+                statistics.incrementTotalLengthInBytes(file.getFileSize());
+            }
+
+            // directories are indexed by the read stage
+            if (!unchanged && !file.isDirectory()) {
+                context.indexStage.submit(() -> indexManager.index(file, musicFolder));
+            }
         } catch (Exception e) {
             LOG.warn("scan file failed : {} in {}", file.getPath(), musicFolder.getPath(), e);
+            context.incrementalScan.invalidate(musicFolder, file.isDirectory() ? file.getPath() : file.getParentPath());
         }
     }
 
@@ -403,9 +521,9 @@ public class MediaScannerService {
             return;
         }
         if (file.isAlbum()) {
-            genres.incrementAlbumCount(genre, settingsService.getGenreSeparators());
+            genres.incrementAlbumCount(genre, settingsService.getSnapshot().genreSeparators());
         } else if (file.isAudio()) {
-            genres.incrementSongCount(genre, settingsService.getGenreSeparators());
+            genres.incrementSongCount(genre, settingsService.getSnapshot().genreSeparators());
         }
     }
 
@@ -418,10 +536,12 @@ public class MediaScannerService {
      * @param albumCount album count
      * @param albums albums
      * @param albumsInDb albums in db
+     * @param indexStage index stage of the scan
+     * @param mediaFileWrites write buffer of media files
      */
     private void updateAlbum(MediaFile parent, MediaFile file, MusicFolder musicFolder,
             Instant lastScanned, Map<String, AtomicInteger> albumCount, Map<String, Album> albums,
-            Set<Integer> albumsInDb) {
+            Set<Integer> albumsInDb, ScanPipeline.Stage<Runnable> indexStage, ScanWriteBuffer<MediaFile> mediaFileWrites) {
 
         String artist = file.getAlbumArtist() != null ? file.getAlbumArtist() : file.getArtist();
         if (file.getAlbumName() == null || artist == null || file.getParentPath() == null || !file.isAudio()) {
@@ -490,13 +610,13 @@ public class MediaScannerService {
             album.setFolder(musicFolder);
             albumService.save(album);
             albumCount.computeIfAbsent(artist, k -> new AtomicInteger(0)).incrementAndGet();
-            indexManager.index(album);
+            indexStage.submit(() -> indexManager.index(album));
         }
 
         // Update the file's album artist, if necessary.
         if (!Objects.equals(album.getArtist(), file.getAlbumArtist())) {
             file.setAlbumArtist(album.getArtist());
-            mediaFileService.updateMediaFile(file);
+            mediaFileWrites.add(file);
         }
     }
 
@@ -509,9 +629,10 @@ public class MediaScannerService {
      * @param lastScanned last scanned time
      * @param albumCount  album count
      * @param artists     artists
+     * @param indexStage  index stage of the scan
      */
     private void updateArtist(MediaFile grandParent, MediaFile file, MusicFolder musicFolder, Instant lastScanned,
-            Map<String, AtomicInteger> albumCount, Map<String, Artist> artists) {
+            Map<String, AtomicInteger> albumCount, Map<String, Artist> artists, ScanPipeline.Stage<Runnable> indexStage) {
         if (file.getAlbumArtist() == null || !file.isAudio()) {
             return;
         }
@@ -543,7 +664,7 @@ public class MediaScannerService {
         if (firstEncounter.get()) {
             artist.setFolder(musicFolder);
             artistService.save(artist);
-            indexManager.index(artist, musicFolder);
+            indexStage.submit(() -> indexManager.index(artist, musicFolder));
         }
 
         // directory structure is /artist/album/track
@@ -556,4 +677,60 @@ public class MediaScannerService {
             }
         }
     }
+
+    /**
+     * A media file on its way through the scan pipeline.
+     */
+    private static class ScanItem {
+        private final MediaFile grandParent;
+        private final MediaFile parent;
+        private final MediaFile file;
+        private final MusicFolder musicFolder;
+        // whether an ancestor is known to be unchanged
+        private final boolean unchanged;
+
+        private ScanItem(MediaFile grandParent, MediaFile parent, MediaFile file, MusicFolder musicFolder, boolean unchanged) {
+            this.grandParent = grandParent;
+            this.parent = parent;
+            this.file = file;
+            this.musicFolder = musicFolder;
+            this.unchanged = unchanged;
+        }
+
+        @Override
+        public String toString() {
+            return file.getPath() + " in " + musicFolder.getPath();
+        }
+    }
+
+    /**
+     * State shared by the stages of a single scan.
+     */
+    private static class ScanContext {
+        private final MediaLibraryStatistics statistics;
+        private final IncrementalScan incrementalScan;
+        private final Map<String, AtomicInteger> albumCount;
+        private final Map<String, Artist> artists;
+        private final Map<String, Album> albums;
+        private final Set<Integer> albumsInDb;
+        private final Genres genres;
+        private final ScanWriteBuffer<MediaFile> mediaFileWrites;
+        private ScanPipeline pipeline;
+        private ScanPipeline.Stage<ScanItem> directoryStage;
+        private ScanPipeline.Stage<ScanItem> persistStage;
+        private ScanPipeline.Stage<Runnable> indexStage;
+
+        private ScanContext(MediaLibraryStatistics statistics, IncrementalScan incrementalScan, Map<String, AtomicInteger> albumCount,
+                Map<String, Artist> artists, Map<String, Album> albums, Set<Integer> albumsInDb, Genres genres,
+                ScanWriteBuffer<MediaFile> mediaFileWrites) {
+            this.statistics = statistics;
+            this.incrementalScan = incrementalScan;
+            this.albumCount = albumCount;
+            this.artists = artists;
+            this.albums = albums;
+            this.albumsInDb = albumsInDb;
+            this.genres = genres;
+            this.mediaFileWrites = mediaFileWrites;
+        }
+    }
 }
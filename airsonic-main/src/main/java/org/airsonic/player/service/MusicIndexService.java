@@ -30,7 +30,6 @@ import java.nio.file.Paths;
 import java.text.Collator;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 
@@ -76,7 +75,7 @@ public class MusicIndexService {
     }
 
     public List<MediaFile> getShortcuts(List<MusicFolder> musicFoldersToUse) {
-        return Stream.of(settingsService.getShortcutsAsArray())
+        return settingsService.getSnapshot().shortcuts().stream()
                 .flatMap(shortcut -> musicFoldersToUse.parallelStream()
                         .map(musicFolder -> Pair.of(Paths.get(shortcut), musicFolder)))
                 .map(pair -> mediaFileService.getMediaFile(pair.getLeft(), pair.getRight(), true))
@@ -152,10 +151,10 @@ public class MusicIndexService {
     }
 
     private List<MusicIndex.SortableArtistWithMediaFiles> createSortableArtists(List<MusicFolder> folders, boolean refresh) {
-        String[] ignoredArticles = settingsService.getIgnoredArticlesAsArray();
-        String[] shortcuts = settingsService.getShortcutsAsArray();
+        SettingsSnapshot settings = settingsService.getSnapshot();
+        List<String> ignoredArticles = settings.ignoredArticles();
         SortedMap<String, MusicIndex.SortableArtistWithMediaFiles> artistMap = new TreeMap<String, MusicIndex.SortableArtistWithMediaFiles>();
-        Set<String> shortcutSet = new HashSet<String>(Arrays.asList(shortcuts));
+        Set<String> shortcutSet = new HashSet<String>(settings.shortcuts());
         Collator collator = createCollator();
 
         for (MusicFolder folder : folders) {
@@ -181,7 +180,7 @@ public class MusicIndexService {
 
     private List<MusicIndex.SortableArtistWithArtist> createSortableArtists(List<Artist> artists) {
         List<MusicIndex.SortableArtistWithArtist> result = new ArrayList<MusicIndex.SortableArtistWithArtist>();
-        String[] ignoredArticles = settingsService.getIgnoredArticlesAsArray();
+        List<String> ignoredArticles = settingsService.getSnapshot().ignoredArticles();
         Collator collator = createCollator();
         for (Artist artist : artists) {
             String sortableName = createSortableName(artist.getName(), ignoredArticles);
@@ -198,7 +197,7 @@ public class MusicIndexService {
         return Collator.getInstance(settingsService.getLocale());
     }
 
-    private String createSortableName(String name, String[] ignoredArticles) {
+    private String createSortableName(String name, List<String> ignoredArticles) {
         String uppercaseName = name.toUpperCase();
         for (String article : ignoredArticles) {
             if (uppercaseName.startsWith(article.toUpperCase() + " ")) {
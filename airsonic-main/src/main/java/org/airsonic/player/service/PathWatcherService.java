@@ -12,15 +12,21 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
@@ -38,6 +44,7 @@ public class PathWatcherService {
 
     private final Map<WatchKey, Map<Kind<? extends Object>, BiConsumer<Path, WatchEvent<Path>>>> watchFunctions = new ConcurrentHashMap<>();
     private final Map<String, WatchKey> watchNames = new ConcurrentHashMap<>();
+    private final Map<String, Set<WatchKey>> recursiveWatchNames = new ConcurrentHashMap<>();
     private WatchService watchService;
     private final Runnable watcherTask = () -> {
         for (;;) {
@@ -56,7 +63,11 @@ public class PathWatcherService {
                 Optional.ofNullable(fs.get(event.kind())).ifPresent(f -> watcherFunctionThreadPool.submit(() -> f.accept((Path) key.watchable(), (WatchEvent<Path>) event)));
             }
             // To keep receiving events
-            key.reset();
+            if (!key.reset()) {
+                // directory is no longer accessible
+                watchFunctions.remove(key);
+                recursiveWatchNames.values().forEach(keys -> keys.remove(key));
+            }
         }
     };
 
@@ -95,9 +106,74 @@ public class PathWatcherService {
         });
     }
 
+    /**
+     * Watch the given directory and all of its subdirectories. Directories created later are watched as well.
+     *
+     * @param id        watcher id
+     * @param watchable root directory
+     * @param fnMap     functions by event kind. They are called with the directory in which the event occurred.
+     * @throws IOException if a directory could not be registered, e.g. when the watch limit of the OS is reached
+     */
+    public void setRecursiveWatcher(String id, Path watchable, Map<Kind<? extends Object>, BiConsumer<Path, WatchEvent<Path>>> fnMap) throws IOException {
+        invalidateWatcher(id);
+        Set<WatchKey> keys = ConcurrentHashMap.newKeySet();
+        recursiveWatchNames.put(id, keys);
+
+        Map<Kind<? extends Object>, BiConsumer<Path, WatchEvent<Path>>> recursiveFnMap = new HashMap<>(fnMap);
+        BiConsumer<Path, WatchEvent<Path>> createConsumer = fnMap.get(StandardWatchEventKinds.ENTRY_CREATE);
+        recursiveFnMap.put(StandardWatchEventKinds.ENTRY_CREATE, (dir, event) -> {
+            Path created = dir.resolve(event.context());
+            if (Files.isDirectory(created) && recursiveWatchNames.get(id) == keys) {
+                try {
+                    registerRecursively(created, recursiveFnMap, keys);
+                } catch (IOException e) {
+                    LOG.warn("Could not watch new directory {}", created, e);
+                }
+            }
+            if (createConsumer != null) {
+                createConsumer.accept(dir, event);
+            }
+        });
+        try {
+            registerRecursively(watchable, recursiveFnMap, keys);
+        } catch (IOException e) {
+            invalidateWatcher(id);
+            throw e;
+        }
+    }
+
+    private void registerRecursively(Path root, Map<Kind<? extends Object>, BiConsumer<Path, WatchEvent<Path>>> fnMap, Set<WatchKey> keys) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.OVERFLOW);
+                watchFunctions.put(key, fnMap);
+                keys.add(key);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                LOG.debug("Could not watch {}", file, exc);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Returns the number of directories watched by the given recursive watcher.
+     */
+    public int getWatchedDirectoryCount(String id) {
+        return recursiveWatchNames.getOrDefault(id, Collections.emptySet()).size();
+    }
+
     public void invalidateWatcher(String id) {
         WatchKey key = watchNames.remove(id);
         invalidateWatcher(key);
+        Set<WatchKey> keys = recursiveWatchNames.remove(id);
+        if (keys != null) {
+            keys.forEach(this::invalidateWatcher);
+        }
     }
 
     public void invalidateWatcher(Path watchable) {
@@ -122,8 +198,10 @@ public class PathWatcherService {
 
         @ReadOperation
         public WebEndpointResponse<Map<String, String>> info() {
-            return new WebEndpointResponse<>(pathWatcherService.watchNames.entrySet().stream()
+            Map<String, String> info = new HashMap<>(pathWatcherService.watchNames.entrySet().stream()
                     .collect(toMap(e -> e.getKey(), e -> e.getValue().watchable().toString())));
+            pathWatcherService.recursiveWatchNames.forEach((id, keys) -> info.put(id, keys.size() + " directories"));
+            return new WebEndpointResponse<>(info);
         }
     }
 
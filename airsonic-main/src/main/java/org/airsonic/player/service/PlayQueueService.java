@@ -2,6 +2,8 @@ package org.airsonic.player.service;
 
 import com.google.common.collect.ImmutableMap;
 import org.airsonic.player.ajax.MediaFileEntry;
+import org.airsonic.player.ajax.PlayQueueDelta;
+import org.airsonic.player.ajax.PlayQueueDelta.Operation;
 import org.airsonic.player.ajax.PlayQueueInfo;
 import org.airsonic.player.domain.InternetRadio;
 import org.airsonic.player.domain.InternetRadioSource;
@@ -28,13 +30,18 @@ import org.springframework.transaction.annotation.Transactional;
 import jakarta.annotation.Nonnull;
 
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -388,6 +395,9 @@ public class PlayQueueService {
 
     public void add(Player player, List<Integer> ids, Integer index, boolean removeVideoFiles, boolean broadcast) {
         PlayQueue playQueue = player.getPlayQueue();
+        long baseVersion = playQueue.getVersion();
+        boolean wasInternetRadio = playQueue.isInternetRadioEnabled();
+        int insertAt = index != null ? index : playQueue.size();
         List<MediaFile> files = new ArrayList<>();
         for (int id : ids) {
             MediaFile ancestor = mediaFileService.getMediaFile(id);
@@ -404,19 +414,31 @@ public class PlayQueueService {
         playQueue.setRandomSearchCriteria(null);
         playQueue.setInternetRadio(null);
         if (broadcast) {
-            broadcastPlayQueue(player);
+            broadcastInsert(player, baseVersion, wasInternetRadio, insertAt, files);
         }
     }
 
     public void addRandomCriteria(Player player, boolean append, RandomSearchCriteria criteria, boolean autoRandom) {
-        player.getPlayQueue().addFiles(append, mediaFileService.getRandomSongs(criteria, player.getUsername()));
-        player.getPlayQueue().setRandomSearchCriteria(autoRandom ? criteria : null);
-        player.getPlayQueue().setInternetRadio(null);
-        broadcastPlayQueue(player);
+        PlayQueue playQueue = player.getPlayQueue();
+        long baseVersion = playQueue.getVersion();
+        boolean wasInternetRadio = playQueue.isInternetRadioEnabled();
+        int insertAt = playQueue.size();
+        List<MediaFile> files = mediaFileService.getRandomSongs(criteria, player.getUsername());
+        playQueue.addFiles(append, files);
+        playQueue.setRandomSearchCriteria(autoRandom ? criteria : null);
+        playQueue.setInternetRadio(null);
+        if (append) {
+            broadcastInsert(player, baseVersion, wasInternetRadio, insertAt, files);
+        } else {
+            broadcastPlayQueue(player);
+        }
     }
 
     public void addPlaylist(Player player, int id, boolean removeVideoFiles) {
         PlayQueue playQueue = player.getPlayQueue();
+        long baseVersion = playQueue.getVersion();
+        boolean wasInternetRadio = playQueue.isInternetRadioEnabled();
+        int insertAt = playQueue.size();
 
         List<MediaFile> files = playlistService.getFilesInPlaylist(id);
         if (removeVideoFiles) {
@@ -427,7 +449,7 @@ public class PlayQueueService {
 
         playQueue.setRandomSearchCriteria(null);
         playQueue.setInternetRadio(null);
-        broadcastPlayQueue(player);
+        broadcastInsert(player, baseVersion, wasInternetRadio, insertAt, files);
     }
 
     public void reset(Player player, List<Integer> ids, boolean removeVideoFiles) {
@@ -445,37 +467,92 @@ public class PlayQueueService {
     }
 
     public void clear(Player player) {
-        player.getPlayQueue().clear();
-        broadcastPlayQueue(player);
+        PlayQueue playQueue = player.getPlayQueue();
+        long baseVersion = playQueue.getVersion();
+        boolean wasInternetRadio = playQueue.isInternetRadioEnabled();
+        int size = playQueue.size();
+        playQueue.clear();
+        if (wasInternetRadio) {
+            broadcastPlayQueue(player);
+        } else {
+            broadcastDelta(player, baseVersion, List.of(Operation.remove(0, size)));
+        }
     }
 
     public void shuffle(Player player) {
-        player.getPlayQueue().shuffle();
-        broadcastPlayQueue(player);
+        reorder(player, PlayQueue::shuffle);
     }
 
     public void remove(Player player, List<Integer> indexes) {
         Collections.sort(indexes);
 
-        for (int i = indexes.size() - 1; i >= 0; i--) {
-            player.getPlayQueue().removeFileAt(indexes.get(i));
+        PlayQueue playQueue = player.getPlayQueue();
+        long baseVersion = playQueue.getVersion();
+        List<Operation> operations = new ArrayList<>(indexes.size());
+        for (int i = indexes.size() - 1; i >= 0 && !playQueue.isEmpty(); i--) {
+            // same bounds as PlayQueue.removeFileAt
+            int index = Math.max(0, Math.min(indexes.get(i), playQueue.size() - 1));
+            playQueue.removeFileAt(index);
+            operations.add(Operation.remove(index, 1));
         }
-        broadcastPlayQueue(player);
+        broadcastDelta(player, baseVersion, operations);
     }
 
     public void rearrange(Player player, List<Integer> indexes) {
-        player.getPlayQueue().rearrange(indexes);
-        broadcastPlayQueue(player);
+        reorder(player, pq -> pq.rearrange(indexes));
     }
 
     public void up(Player player, int index) {
-        player.getPlayQueue().moveUp(index);
-        broadcastPlayQueue(player);
+        move(player, index, index - 1, pq -> pq.moveUp(index));
     }
 
     public void down(Player player, int index) {
-        player.getPlayQueue().moveDown(index);
-        broadcastPlayQueue(player);
+        move(player, index, index + 1, pq -> pq.moveDown(index));
+    }
+
+    private void move(Player player, int index, int to, Consumer<PlayQueue> mover) {
+        PlayQueue playQueue = player.getPlayQueue();
+        long baseVersion = playQueue.getVersion();
+        mover.accept(playQueue);
+        if (playQueue.getVersion() != baseVersion) {
+            broadcastDelta(player, baseVersion, List.of(Operation.move(index, to)));
+        }
+    }
+
+    /**
+     * Applies a change which only reorders the files, and sends the new order instead of the files.
+     */
+    private void reorder(Player player, Consumer<PlayQueue> reorderer) {
+        PlayQueue playQueue = player.getPlayQueue();
+        if (playQueue.isInternetRadioEnabled()) {
+            reorderer.accept(playQueue);
+            broadcastPlayQueue(player);
+            return;
+        }
+        long baseVersion = playQueue.getVersion();
+        // getFiles() is the live list, reordered in place
+        List<MediaFile> before = new ArrayList<>(playQueue.getFiles());
+        reorderer.accept(playQueue);
+        List<MediaFile> after = playQueue.getFiles();
+        if (playQueue.getVersion() != baseVersion) {
+            broadcastDelta(player, baseVersion, List.of(Operation.reorder(previousPositions(before, after))));
+        }
+    }
+
+    /**
+     * Returns, for each file of the reordered list, its position in the original list. A file that is
+     * queued several times is matched in order of appearance, as its entries are interchangeable.
+     */
+    static List<Integer> previousPositions(List<MediaFile> before, List<MediaFile> after) {
+        Map<Integer, Deque<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < before.size(); i++) {
+            positions.computeIfAbsent(before.get(i).getId(), k -> new ArrayDeque<>()).add(i);
+        }
+        List<Integer> order = new ArrayList<>(after.size());
+        for (MediaFile file : after) {
+            order.add(positions.get(file.getId()).poll());
+        }
+        return order;
     }
 
     public void toggleRepeat(Player player) {
@@ -490,14 +567,20 @@ public class PlayQueueService {
                 playQueue.getRepeatStatus());
     }
 
+    /**
+     * Sends the whole play queue again, for a client which missed a delta.
+     */
+    public void resync(Player player) {
+        broadcastPlayQueue(player);
+    }
+
     public void undo(Player player) {
         player.getPlayQueue().undo();
         broadcastPlayQueue(player);
     }
 
     public void sort(Player player, PlayQueue.SortOrder order) {
-        player.getPlayQueue().sort(order);
-        broadcastPlayQueue(player);
+        reorder(player, pq -> pq.sort(order));
     }
 
     private static final Function<PlayQueueInfo, PlayQueueInfo> identity = pq -> pq;
@@ -530,6 +613,29 @@ public class PlayQueueService {
         postBroadcast(info, player, triggeringSessionId);
     }
 
+    /**
+     * Sends the files added at the given index, or the whole queue if it was an internet radio before.
+     */
+    private void broadcastInsert(Player player, long baseVersion, boolean wasInternetRadio, int index, List<MediaFile> files) {
+        if (wasInternetRadio) {
+            broadcastPlayQueue(player);
+        } else {
+            broadcastDelta(player, baseVersion, List.of(Operation.insert(index, convertMediaFileList(player, "", files))));
+        }
+    }
+
+    private void broadcastDelta(Player player, long baseVersion, List<Operation> operations) {
+        PlayQueue playQueue = player.getPlayQueue();
+        // only inserted entries need the remote URLs
+        String token = operations.stream().anyMatch(op -> op.getType() == Operation.Type.INSERT)
+                ? jwtSecurityService.createPlayQueueToken(player.getUsername(), player.getId())
+                : null;
+        PlayQueueDelta delta = new PlayQueueDelta(baseVersion, playQueue.getVersion(), operations, playQueue.getStatus(),
+                playQueue.getRepeatStatus(), playQueue.isShuffleRadioEnabled(), playQueue.isInternetRadioEnabled(),
+                remoteStreamUrl(player, "", token), remoteCoverArtUrl(player, "", token));
+        webSocketClient.sendToUser(player.getUsername(), "/queue/playqueues/" + player.getId() + "/delta", delta).join();
+    }
+
     private void postBroadcast(PlayQueueInfo info, Player player, String sessionId) {
         if (info.getStartPlayerAt() != -1) {
             if (player.isWeb() && sessionId != null) {
@@ -547,27 +653,42 @@ public class PlayQueueService {
 
     public PlayQueueInfo getPlayQueueInfo(Player player, String basePath) {
         PlayQueue playQueue = player.getPlayQueue();
+        // read before the files, so that a change made meanwhile is sent again as a delta
+        long version = playQueue.getVersion();
 
         List<MediaFileEntry> entries;
+        String token = null;
         if (playQueue.isInternetRadioEnabled()) {
             entries = convertInternetRadio(player);
         } else {
-            entries = convertMediaFileList(player, basePath);
+            entries = convertMediaFileList(player, basePath, playQueue.getFiles());
+            token = jwtSecurityService.createPlayQueueToken(player.getUsername(), player.getId());
         }
 
         float gain = jukeboxService.getGain(player);
 
-        return new PlayQueueInfo(entries, playQueue.getStatus(), playQueue.getRepeatStatus(), playQueue.isShuffleRadioEnabled(), playQueue.isInternetRadioEnabled(), gain);
+        return new PlayQueueInfo(entries, playQueue.getStatus(), playQueue.getRepeatStatus(), playQueue.isShuffleRadioEnabled(), playQueue.isInternetRadioEnabled(), gain, version,
+                remoteStreamUrl(player, basePath, token), remoteCoverArtUrl(player, basePath, token));
     }
 
-    private List<MediaFileEntry> convertMediaFileList(Player player, String basePath) {
+    /**
+     * The entries leave the remote URLs to the client, which appends the file id to the URLs sent with the queue.
+     * They share one token valid for the files in the play queue, rather than one signature per file.
+     */
+    private List<MediaFileEntry> convertMediaFileList(Player player, String basePath, List<MediaFile> files) {
         Function<MediaFile, String> streamUrlGenerator = file -> basePath + "stream?player=" + player.getId() + "&id=" + file.getId();
-        Function<MediaFile, String> remoteStreamUrlGenerator = file -> basePath + jwtSecurityService
-                .addJWTToken(player.getUsername(), "ext/stream?player=" + player.getId() + "&id=" + file.getId());
-        Function<MediaFile, String> remoteCoverArtUrlGenerator = file -> basePath
-                + jwtSecurityService.addJWTToken(player.getUsername(), "ext/coverArt.view?id=" + file.getId());
-        return mediaFileService.toMediaFileEntryList(player.getPlayQueue().getFiles(), player.getUsername(), true, true,
-                streamUrlGenerator, remoteStreamUrlGenerator, remoteCoverArtUrlGenerator);
+        return mediaFileService.toMediaFileEntryList(files, player.getUsername(), true, true,
+                streamUrlGenerator, null, null);
+    }
+
+    private static String remoteStreamUrl(Player player, String basePath, String token) {
+        return token == null ? null
+                : basePath + "ext/stream?player=" + player.getId() + "&" + JWTSecurityService.JWT_PARAM_NAME + "=" + token;
+    }
+
+    private static String remoteCoverArtUrl(Player player, String basePath, String token) {
+        return token == null ? null
+                : basePath + "ext/coverArt.view?player=" + player.getId() + "&" + JWTSecurityService.JWT_PARAM_NAME + "=" + token;
     }
 
     private List<MediaFileEntry> convertInternetRadio(Player player) {
@@ -22,7 +22,10 @@ package org.airsonic.player.service;
 import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.PlayQueue;
 import org.airsonic.player.domain.Playlist;
+import org.airsonic.player.domain.PlaylistFile;
 import org.airsonic.player.domain.User;
+import org.airsonic.player.repository.OffsetBasedPageRequest;
+import org.airsonic.player.repository.PlaylistFileRepository;
 import org.airsonic.player.repository.PlaylistRepository;
 import org.airsonic.player.repository.UserRepository;
 import org.airsonic.player.service.cache.PlaylistCache;
@@ -59,6 +62,8 @@ public class PlaylistService {
     @Autowired
     private PlaylistRepository playlistRepository;
     @Autowired
+    private PlaylistFileRepository playlistFileRepository;
+    @Autowired
     private AsyncWebSocketClient asyncWebSocketClient;
     @Autowired
     private PlaylistCache playlistCache;
@@ -170,32 +175,218 @@ public class PlaylistService {
     }
 
     private Playlist setFilesInPlaylist(Playlist playlist, List<MediaFile> files) {
+        playlistCache.removePlaylistById(playlist.getId());
         playlist.setMediaFiles(files);
         playlist.setFileCount(files.size());
-        playlist.setDuration(files.stream().mapToDouble(MediaFile::getDuration).sum());
+        playlist.setDuration(getDuration(files));
         playlist.setChanged(Instant.now());
         return playlist;
     }
 
+    /**
+     * Appends files to the end of a playlist, writing only the new rows.
+     *
+     * @param id    the playlist id
+     * @param files the files to append
+     */
     @Transactional
-    public void removeFilesInPlaylistByIndices(Integer id, List<Integer> indices) {
-        playlistCache.removePlaylistById(id);
+    public void appendFilesToPlaylist(int id, List<MediaFile> files) {
+        playlistRepository.findById(id).ifPresentOrElse(p -> {
+            if (files.isEmpty()) {
+                return;
+            }
+            long sortKey = playlistFileRepository.findMaxSortKeyByPlaylistId(id).orElse(0L);
+            List<PlaylistFile> rows = new ArrayList<>(files.size());
+            for (MediaFile file : files) {
+                sortKey += PlaylistFile.SORT_KEY_GAP;
+                rows.add(new PlaylistFile(p, file, sortKey));
+            }
+            playlistFileRepository.saveAll(rows);
+            updateStats(p, files.size(), getDuration(files));
+        }, () -> {
+                LOG.warn("Playlist {} not found", id);
+            }
+        );
+    }
+
+    /**
+     * Inserts files in a playlist at the given position, writing only the new rows unless the
+     * sort keys around the position are exhausted.
+     *
+     * @param id       the playlist id
+     * @param position the index of the first inserted file, appending if beyond the end of the playlist
+     * @param files    the files to insert
+     */
+    @Transactional
+    public void insertFilesInPlaylist(int id, int position, List<MediaFile> files) {
+        int index = Math.max(0, position);
         playlistRepository.findById(id).ifPresentOrElse(p -> {
-            List<MediaFile> files = p.getMediaFiles();
-            List<MediaFile> newFiles = new ArrayList<>();
-            for (int i = 0; i < files.size(); i++) {
-                if (!indices.contains(i)) {
-                    newFiles.add(files.get(i));
+            if (files.isEmpty()) {
+                return;
+            }
+            List<PlaylistFile> neighbours = getNeighbours(id, index - 1);
+            if (index > 0 && neighbours.isEmpty()) {
+                appendFilesToPlaylist(id, files);
+                return;
+            }
+            Long before = index > 0 ? neighbours.get(0).getSortKey() : null;
+            Long after = neighbours.size() > (index > 0 ? 1 : 0) ? neighbours.get(neighbours.size() - 1).getSortKey() : null;
+            long[] sortKeys = getSortKeysBetween(before, after, files.size());
+            List<PlaylistFile> rows = new ArrayList<>(files.size());
+            if (sortKeys == null) {
+                List<PlaylistFile> all = new ArrayList<>(playlistFileRepository.findByPlaylistIdOrderBySortKey(id));
+                for (MediaFile file : files) {
+                    rows.add(new PlaylistFile(p, file, 0));
+                }
+                all.addAll(Math.min(index, all.size()), rows);
+                renumber(all);
+            } else {
+                for (int i = 0; i < files.size(); i++) {
+                    rows.add(new PlaylistFile(p, files.get(i), sortKeys[i]));
                 }
             }
-            Playlist playlist = setFilesInPlaylist(p, newFiles);
-            playlistRepository.save(playlist);
+            playlistFileRepository.saveAll(rows);
+            updateStats(p, files.size(), getDuration(files));
+        }, () -> {
+                LOG.warn("Playlist {} not found", id);
+            }
+        );
+    }
+
+    /**
+     * Moves consecutive files of a playlist, writing only the moved rows unless the sort keys at the
+     * destination are exhausted.
+     *
+     * @param id    the playlist id
+     * @param from  the index of the first file to move
+     * @param count the number of files to move
+     * @param to    the index of the first moved file once moved
+     * @return whether the files were moved, false if the indices are out of bounds
+     */
+    @Transactional
+    public boolean moveFilesInPlaylist(int id, int from, int count, int to) {
+        if (from < 0 || count < 1 || to < 0 || from == to) {
+            return false;
+        }
+        Playlist playlist = playlistRepository.findById(id).orElse(null);
+        if (playlist == null) {
+            LOG.warn("Playlist {} not found", id);
+            return false;
+        }
+        List<PlaylistFile> moved = playlistFileRepository.findByPlaylistIdOrderBySortKey(id, new OffsetBasedPageRequest(from, count));
+        // index, in the playlist before the move, of the file which will precede the moved ones
+        int previous = to < from ? to - 1 : to + count - 1;
+        List<PlaylistFile> neighbours = getNeighbours(id, previous);
+        if (moved.size() < count || (previous >= 0 && neighbours.isEmpty())) {
+            return false;
+        }
+        Long before = previous >= 0 ? neighbours.get(0).getSortKey() : null;
+        Long after = neighbours.size() > (previous >= 0 ? 1 : 0) ? neighbours.get(neighbours.size() - 1).getSortKey() : null;
+        long[] sortKeys = getSortKeysBetween(before, after, count);
+        if (sortKeys == null) {
+            List<PlaylistFile> all = new ArrayList<>(playlistFileRepository.findByPlaylistIdOrderBySortKey(id));
+            List<PlaylistFile> block = new ArrayList<>(all.subList(from, from + count));
+            all.subList(from, from + count).clear();
+            all.addAll(to, block);
+            renumber(all);
+        } else {
+            for (int i = 0; i < count; i++) {
+                moved.get(i).setSortKey(sortKeys[i]);
+            }
+        }
+        playlistCache.removePlaylistById(id);
+        playlist.setChanged(Instant.now());
+        return true;
+    }
+
+    /**
+     * Removes files from a playlist, deleting only their rows.
+     *
+     * @param id      the playlist id
+     * @param indices the indices of the files to remove, ignored if out of bounds
+     */
+    public void removeFilesInPlaylistByIndices(Integer id, List<Integer> indices) {
+        removeFilesInPlaylistByIndices(id, indices, true);
+    }
+
+    /**
+     * Removes files from a playlist, deleting only their rows.
+     *
+     * @param id                the playlist id
+     * @param indices           the indices of the files to remove, ignored if out of bounds
+     * @param includeNotPresent whether the indices count the files which are not present, as in
+     *                          {@link #getFilesInPlaylist(int, boolean)}
+     */
+    @Transactional
+    public void removeFilesInPlaylistByIndices(Integer id, List<Integer> indices, boolean includeNotPresent) {
+        playlistRepository.findById(id).ifPresentOrElse(p -> {
+            List<Integer> ids = includeNotPresent
+                    ? playlistFileRepository.findIdsByPlaylistId(id)
+                    : playlistFileRepository.findPresentIdsByPlaylistId(id);
+            List<Integer> removedIds = indices.stream().distinct().filter(i -> i >= 0 && i < ids.size())
+                    .map(ids::get).collect(Collectors.toList());
+            if (removedIds.isEmpty()) {
+                return;
+            }
+            List<PlaylistFile> removed = playlistFileRepository.findAllById(removedIds);
+            double duration = getDuration(removed.stream().map(PlaylistFile::getMediaFile).collect(Collectors.toList()));
+            playlistFileRepository.deleteAllByIdInBatch(removedIds);
+            updateStats(p, -removedIds.size(), -duration);
         }, () -> {
                 LOG.warn("Playlist {} not found", id);
             }
         );
     }
 
+    /**
+     * Returns the file at the given index and the one after it, or only the first file of the
+     * playlist if the index is negative.
+     */
+    private List<PlaylistFile> getNeighbours(int id, int index) {
+        return index < 0
+                ? playlistFileRepository.findByPlaylistIdOrderBySortKey(id, new OffsetBasedPageRequest(0, 1))
+                : playlistFileRepository.findByPlaylistIdOrderBySortKey(id, new OffsetBasedPageRequest(index, 2));
+    }
+
+    /**
+     * Returns count ascending sort keys strictly between the given ones, evenly spread, or null if
+     * there is no room left. A null bound stands for the start or the end of the playlist.
+     */
+    static long[] getSortKeysBetween(Long before, Long after, int count) {
+        long span = (count + 1) * PlaylistFile.SORT_KEY_GAP;
+        long low = before != null ? before : (after != null ? after - span : 0);
+        long high = after != null ? after : low + span;
+        long step = (high - low) / (count + 1);
+        if (step < 1) {
+            return null;
+        }
+        long[] sortKeys = new long[count];
+        for (int i = 0; i < count; i++) {
+            sortKeys[i] = low + step * (i + 1);
+        }
+        return sortKeys;
+    }
+
+    private static void renumber(List<PlaylistFile> files) {
+        for (int i = 0; i < files.size(); i++) {
+            long sortKey = (i + 1) * PlaylistFile.SORT_KEY_GAP;
+            if (files.get(i).getSortKey() != sortKey) {
+                files.get(i).setSortKey(sortKey);
+            }
+        }
+    }
+
+    private void updateStats(Playlist playlist, int fileCountDelta, double durationDelta) {
+        playlistCache.removePlaylistById(playlist.getId());
+        playlist.setFileCount(Math.max(0, playlist.getFileCount() + fileCountDelta));
+        playlist.setDuration(Math.max(0, playlist.getDuration() + durationDelta));
+        playlist.setChanged(Instant.now());
+    }
+
+    private static double getDuration(List<MediaFile> files) {
+        return files.stream().map(MediaFile::getDuration).filter(Objects::nonNull).mapToDouble(Double::doubleValue).sum();
+    }
+
     /**
      * Refreshes the file count and duration of all playlists.
      */
@@ -203,7 +394,7 @@ public class PlaylistService {
     public List<Playlist> refreshPlaylistsStats() {
         return playlistRepository.findAll().stream().map(p -> {
             p.setFileCount(p.getMediaFiles().size());
-            p.setDuration(p.getMediaFiles().stream().mapToDouble(MediaFile::getDuration).sum());
+            p.setDuration(getDuration(p.getMediaFiles()));
             p.setChanged(Instant.now());
             playlistRepository.save(p);
             return p;
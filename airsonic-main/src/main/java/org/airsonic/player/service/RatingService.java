@@ -25,6 +25,7 @@ import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.domain.entity.UserRating;
 import org.airsonic.player.repository.MediaFileRepository;
 import org.airsonic.player.repository.UserRatingRepository;
+import org.airsonic.player.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -142,6 +143,40 @@ public class RatingService {
         return userRatingRepository.findOptByUsernameAndMediaFileId(username, mediaFile.getId()).map(UserRating::getRating).orElse(null);
     }
 
+    /**
+     * Returns the average ratings for the given music files, with one query per batch of files.
+     *
+     * @param mediaFiles The music files.
+     * @return The average ratings by media file id. Files without ratings are not contained.
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, Double> getAverageRatings(List<MediaFile> mediaFiles) {
+        if (mediaFiles.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Integer> ids = mediaFiles.stream().map(MediaFile::getId).distinct().collect(Collectors.toList());
+        return Util.queryInBatches(ids, userRatingRepository::getAverageRatingsByMediaFileIdIn).stream()
+            .filter(row -> row[1] != null)
+            .collect(Collectors.toMap(row -> (Integer) row[0], row -> ((Number) row[1]).doubleValue()));
+    }
+
+    /**
+     * Returns the ratings of the given user for the given music files, with one query per batch of files.
+     *
+     * @param username   The user name.
+     * @param mediaFiles The music files.
+     * @return The ratings by media file id. Files without rating are not contained.
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, Integer> getRatingsForUser(String username, List<MediaFile> mediaFiles) {
+        if (username == null || mediaFiles.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Integer> ids = mediaFiles.stream().map(MediaFile::getId).distinct().collect(Collectors.toList());
+        return Util.queryInBatches(ids, batch -> userRatingRepository.findByUsernameAndMediaFileIdIn(username, batch)).stream()
+            .collect(Collectors.toMap(UserRating::getMediaFileId, UserRating::getRating, (a, b) -> a));
+    }
+
     /**
      * Returns the number of albums rated by the given user.
      *
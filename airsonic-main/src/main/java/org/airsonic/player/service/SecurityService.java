@@ -34,6 +34,8 @@ import org.airsonic.player.repository.UserCredentialRepository;
 import org.airsonic.player.repository.UserRepository;
 import org.airsonic.player.security.PasswordDecoder;
 import org.airsonic.player.security.PasswordEncoderConfig;
+import org.airsonic.player.service.MediaFolderService.MusicFolderAccess;
+import org.airsonic.player.service.cache.AuthenticationCache;
 import org.airsonic.player.service.cache.UserCache;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -94,6 +96,8 @@ public class SecurityService implements UserDetailsService {
     private UserCredentialRepository userCredentialRepository;
     @Autowired
     private UserCache userCache;
+    @Autowired
+    private AuthenticationCache authenticationCache;
 
     /**
      * Locates the user based on the username.
@@ -152,6 +156,7 @@ public class SecurityService implements UserDetailsService {
                         comment,
                         command.getExpirationInstant());
                 userCredentialRepository.save(userCredential);
+                authenticationCache.clear();
                 return true;
             } catch (Exception e) {
                 LOG.warn("Can't create a credential user {}", username, e);
@@ -204,6 +209,7 @@ public class SecurityService implements UserDetailsService {
                                     dbCreds.setUpdated(Instant.now());
                                     dbCreds.setExpiration(c.getExpirationInstant());
                                     userCredentialRepository.save(dbCreds);
+                                    authenticationCache.clear();
                                 } else {
                                     LOG.warn("Can't update credential for user {}", username);
                                     failures.add(true);
@@ -271,6 +277,7 @@ public class SecurityService implements UserDetailsService {
             UserCredential userCredential = new UserCredential(user, user.getUsername(),
                     PasswordEncoderConfig.ENCODERS.get(encoder).encode(password), encoder, App.AIRSONIC, comment);
             userCredentialRepository.save(userCredential);
+            authenticationCache.clear();
         } catch (Exception e) {
             LOG.warn("Can't create a credential user {}", user.getUsername(), e);
             return false;
@@ -297,6 +304,7 @@ public class SecurityService implements UserDetailsService {
         }
         try {
             userCredentialRepository.delete(creds);
+            authenticationCache.clear();
         } catch (Exception e) {
             LOG.info("Can't delete a credential", e);
             return false;
@@ -350,6 +358,7 @@ public class SecurityService implements UserDetailsService {
 
         List<UserCredential> failures = new ArrayList<>();
 
+        authenticationCache.clear();
         userCredentialRepository.findByEncoderStartsWith("legacy").forEach(c -> {
             c.setComment(c.getComment() + " | Migrated to nonlegacy by admin");
             String encoder = App.AIRSONIC == c.getApp() ? nonDecodableEncoder : decodableEncoder;
@@ -516,6 +525,7 @@ public class SecurityService implements UserDetailsService {
             throw new SelfDeletionException();
         }
         userCache.removeUser(username);
+        authenticationCache.clear();
         userRepository.deleteById(username);
         LOG.info("User {} deleted by {}", username, currentUsername);
     }
@@ -662,8 +672,19 @@ public class SecurityService implements UserDetailsService {
     }
 
     public boolean isFolderAccessAllowed(MediaFile file, String username) {
-        return mediaFolderService.getMusicFoldersForUser(username).parallelStream()
-                .anyMatch(musicFolder -> musicFolder.getId().equals(file.getFolder().getId()));
+        return mediaFolderService.getMusicFolderAccess(username).isAllowed(file);
+    }
+
+    /**
+     * Returns the files in music folders the given user has access to.
+     *
+     * @param files    The files to check.
+     * @param username The user name.
+     * @return The accessible files, in the given order.
+     */
+    public List<MediaFile> filterAccessible(List<MediaFile> files, String username) {
+        MusicFolderAccess access = mediaFolderService.getMusicFolderAccess(username);
+        return files.stream().filter(access::isAllowed).collect(Collectors.toList());
     }
 
     public static class UserDetail extends org.springframework.security.core.userdetails.User {
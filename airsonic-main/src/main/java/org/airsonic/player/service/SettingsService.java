@@ -49,6 +49,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -97,6 +98,7 @@ public class SettingsService {
     private static final String KEY_PODCAST_EPISODE_DOWNLOAD_COUNT = "PodcastEpisodeDownloadCount";
     private static final String KEY_DOWNLOAD_BITRATE_LIMIT = "DownloadBitrateLimit";
     private static final String KEY_UPLOAD_BITRATE_LIMIT = "UploadBitrateLimit";
+    private static final String KEY_STREAM_BANDWIDTH_PRIORITY = "StreamBandwidthPriority";
     private static final String KEY_SPLIT_OPTIONS = "SplitOptions";
     private static final String KEY_SPLIT_COMMAND = "SplitCommand";
     private static final String KEY_DOWNSAMPLING_COMMAND = "DownsamplingCommand4";
@@ -203,6 +205,7 @@ public class SettingsService {
     private static final int DEFAULT_PODCAST_EPISODE_DOWNLOAD_COUNT = 1;
     private static final long DEFAULT_DOWNLOAD_BITRATE_LIMIT = 0;
     private static final long DEFAULT_UPLOAD_BITRATE_LIMIT = 0;
+    private static final int DEFAULT_STREAM_BANDWIDTH_PRIORITY = 4;
     private static final String DEFAULT_SPLIT_OPTIONS = "-ss %o -t %d";
     private static final String DEFAULT_SPLIT_COMMAND = "ffmpeg %S -i %s -vcodec copy -acodec copy -f %f -";
     private static final String DEFAULT_DOWNSAMPLING_COMMAND = "ffmpeg %S -i %s -map 0:0 -b:a %bk -v 0 -f mp3 -";
@@ -275,10 +278,6 @@ public class SettingsService {
     @Autowired
     private AirsonicCueConfig cueConfig;
 
-    private Set<String> cachedMusicFileTypes;
-    private Set<String> cachedVideoFileTypes;
-    private Set<String> cachedPlayableFileTypes;
-
     // Array of obsolete properties. Used to clean property file.
     private static final List<String> OBSOLETE_KEYS = Arrays.asList("PortForwardingPublicPort", "PortForwardingLocalPort",
             "DownsamplingCommand", "DownsamplingCommand2", "DownsamplingCommand3", "AutoCoverBatch", "MusicMask",
@@ -485,6 +484,60 @@ public class SettingsService {
     public void save() {
         this.setLong(KEY_SETTINGS_CHANGED, System.currentTimeMillis());
         ConfigurationPropertiesService.getInstance().save();
+        synchronized (snapshotLock) {
+            snapshot = createSnapshot();
+        }
+    }
+
+    /**
+     * Returns the parsed settings that are read on hot paths. Reading it takes no lock; the snapshot
+     * is discarded when a setting changes and rebuilt on the next read or on {@link #save()}.
+     */
+    public SettingsSnapshot getSnapshot() {
+        SettingsSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (snapshotLock) {
+                current = snapshot;
+                if (current == null) {
+                    current = createSnapshot();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private SettingsSnapshot createSnapshot() {
+        String musicFileTypes = getMusicFileTypes();
+        String videoFileTypes = getVideoFileTypes();
+        String excludePatternString = getExcludePatternString();
+        return new SettingsSnapshot(
+                getFullScan(),
+                isFastCacheEnabled(),
+                getIgnoreSymLinks(),
+                getGenreSeparators(),
+                Arrays.asList(getIgnoredArticles().split("\\s+")),
+                Arrays.asList(StringUtil.split(getShortcuts())),
+                splitLowerString(musicFileTypes, " "),
+                splitLowerString(videoFileTypes, " "),
+                splitLowerString(String.join(" ", musicFileTypes, videoFileTypes), " "),
+                splitLowerString(getCoverArtFileTypes(), " "),
+                excludePatternString,
+                compileExcludePattern(excludePatternString));
+    }
+
+    private static Pattern compileExcludePattern(String excludePatternString) {
+        String regex = StringUtils.trimToNull(excludePatternString);
+        if (regex == null) {
+            return null;
+        }
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            // an invalid pattern must not break reading the other settings, nothing is excluded then
+            LOG.warn("Invalid exclude pattern {}, ignoring it: {}", regex, e.getMessage());
+            return null;
+        }
     }
 
     private Map<String, Object> settingsCache = new ConcurrentHashMap<>();
@@ -494,6 +547,9 @@ public class SettingsService {
     // Then store KEY first, then KEY_DERIVATIVE. So one lookup ends up modifying another part of ConcurrentHashMap which is illegal by contract.
     private Map<String, Object> derivativeSettingsCache = new ConcurrentHashMap<>();
 
+    private volatile SettingsSnapshot snapshot;
+    private final Object snapshotLock = new Object();
+
     private void setProperty(String key, Object value) {
         if (value == null) {
             ConfigurationPropertiesService.getInstance().clearProperty(key);
@@ -501,6 +557,10 @@ public class SettingsService {
             ConfigurationPropertiesService.getInstance().setProperty(key, value);
         }
         settingsCache.remove(key);
+        // taking the lock makes sure that a snapshot being built from the old value is dropped too
+        synchronized (snapshotLock) {
+            snapshot = null;
+        }
     }
 
     private int getInt(String key, int defaultValue) {
@@ -552,12 +612,11 @@ public class SettingsService {
     }
 
     String[] getIgnoredArticlesAsArray() {
-        return (String[]) derivativeSettingsCache.computeIfAbsent(KEY_IGNORED_ARTICLES, k -> getIgnoredArticles().split("\\s+"));
+        return getSnapshot().ignoredArticles().toArray(new String[0]);
     }
 
     public void setIgnoredArticles(String ignoredArticles) {
         setProperty(KEY_IGNORED_ARTICLES, ignoredArticles);
-        derivativeSettingsCache.remove(KEY_IGNORED_ARTICLES);
     }
 
     public String getUploadsFolder() {
@@ -606,7 +665,7 @@ public class SettingsService {
     }
 
     String[] getShortcutsAsArray() {
-        return StringUtil.split(getShortcuts());
+        return getSnapshot().shortcuts().toArray(new String[0]);
     }
 
     public void setShortcuts(String shortcuts) {
@@ -627,13 +686,10 @@ public class SettingsService {
 
     public void setMusicFileTypes(String fileTypes) {
         setProperty(KEY_MUSIC_FILE_TYPES, fileTypes);
-        derivativeSettingsCache.remove(KEY_MUSIC_FILE_TYPES);
     }
 
-    @SuppressWarnings("unchecked")
     public Set<String> getMusicFileTypesSet() {
-        return (Set<String>) derivativeSettingsCache.computeIfAbsent(KEY_MUSIC_FILE_TYPES,
-            k -> splitLowerString(getMusicFileTypes(), " "));
+        return getSnapshot().musicFileTypes();
     }
 
     public String getVideoFileTypes() {
@@ -642,24 +698,14 @@ public class SettingsService {
 
     public void setVideoFileTypes(String fileTypes) {
         setProperty(KEY_VIDEO_FILE_TYPES, fileTypes);
-        derivativeSettingsCache.remove(KEY_VIDEO_FILE_TYPES);
     }
 
-    @SuppressWarnings("unchecked")
     public Set<String> getVideoFileTypesSet() {
-        return (Set<String>) derivativeSettingsCache.computeIfAbsent(KEY_VIDEO_FILE_TYPES,
-            k -> splitLowerString(getVideoFileTypes(), " "));
+        return getSnapshot().videoFileTypes();
     }
 
     public Set<String> getPlayableFileTypesSet() {
-        // make sure to regenerate cached result if either KEY_VIDEO_FILE_TYPES or KEY_MUSIC_FILE_TYPES
-        // has been changed
-        if (cachedPlayableFileTypes == null
-            || cachedMusicFileTypes == null
-            || cachedVideoFileTypes == null) {
-            cachedPlayableFileTypes = splitLowerString(String.join(" ", getMusicFileTypes(), getVideoFileTypes()), " ");
-        }
-        return cachedPlayableFileTypes;
+        return getSnapshot().playableFileTypes();
     }
 
     public String getCoverArtFileTypes() {
@@ -668,13 +714,10 @@ public class SettingsService {
 
     public void setCoverArtFileTypes(String fileTypes) {
         setProperty(KEY_COVER_ART_FILE_TYPES, fileTypes);
-        derivativeSettingsCache.remove(KEY_COVER_ART_FILE_TYPES);
     }
 
-    @SuppressWarnings("unchecked")
     Set<String> getCoverArtFileTypesSet() {
-        return (Set<String>) derivativeSettingsCache.computeIfAbsent(KEY_COVER_ART_FILE_TYPES,
-            k -> splitLowerString(getCoverArtFileTypes(), " "));
+        return getSnapshot().coverArtFileTypes();
     }
 
     public CoverArtSource getCoverArtSource() {
@@ -882,15 +925,10 @@ public class SettingsService {
         return getLong(KEY_DOWNLOAD_BITRATE_LIMIT, DEFAULT_DOWNLOAD_BITRATE_LIMIT);
     }
 
-    public RateLimiter getDownloadBitrateLimiter() {
-        return (RateLimiter) derivativeSettingsCache.computeIfAbsent(KEY_DOWNLOAD_BITRATE_LIMIT,
-            k -> RateLimiter.create(adjustBitrateLimit(getDownloadBitrateLimit())));
-    }
-
     /**
      * Convert rate given in KB to bytes and accounts for 0 (meaning no bitrate)
      */
-    private static Double adjustBitrateLimit(double rate) {
+    public static Double adjustBitrateLimit(double rate) {
         double rateLimitInBytes = rate * 1024.0;
         if (rate == 0) {
             rateLimitInBytes = Double.POSITIVE_INFINITY;
@@ -904,7 +942,17 @@ public class SettingsService {
      */
     public void setDownloadBitrateLimit(long limit) {
         setLong(KEY_DOWNLOAD_BITRATE_LIMIT, limit);
-        getDownloadBitrateLimiter().setRate(adjustBitrateLimit(limit));
+    }
+
+    /**
+     * @return How many times more of a user's download bandwidth a live stream gets than a download.
+     */
+    public int getStreamBandwidthPriority() {
+        return getInt(KEY_STREAM_BANDWIDTH_PRIORITY, DEFAULT_STREAM_BANDWIDTH_PRIORITY);
+    }
+
+    public void setStreamBandwidthPriority(int priority) {
+        setInt(KEY_STREAM_BANDWIDTH_PRIORITY, priority);
     }
 
     /**
@@ -1100,13 +1148,10 @@ public class SettingsService {
 
     public void setExcludePatternString(String s) {
         setString(KEY_EXCLUDE_PATTERN_STRING, s);
-        derivativeSettingsCache.remove(KEY_EXCLUDE_PATTERN_STRING);
     }
 
-    @SuppressWarnings("unchecked")
     public Pattern getExcludePattern() {
-        return ((Optional<Pattern>) derivativeSettingsCache.computeIfAbsent(KEY_EXCLUDE_PATTERN_STRING,
-            k -> Optional.ofNullable(getExcludePatternString()).map(StringUtils::trimToNull).map(Pattern::compile))).orElse(null);
+        return getSnapshot().excludePattern();
     }
 
     /**
@@ -0,0 +1,61 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable copy of the settings read for every file or request, already parsed. It is obtained
+ * through {@link SettingsService#getSnapshot()} and replaced as a whole when a setting changes, so
+ * a caller keeping a reference sees consistent values for the duration of an operation.
+ *
+ * @param excludePattern compiled exclude pattern, or null if none is configured
+ */
+public record SettingsSnapshot(
+        boolean fullScan,
+        boolean fastCacheEnabled,
+        boolean ignoreSymLinks,
+        String genreSeparators,
+        List<String> ignoredArticles,
+        List<String> shortcuts,
+        Set<String> musicFileTypes,
+        Set<String> videoFileTypes,
+        Set<String> playableFileTypes,
+        Set<String> coverArtFileTypes,
+        String excludePatternString,
+        Pattern excludePattern) {
+
+    public SettingsSnapshot {
+        ignoredArticles = List.copyOf(ignoredArticles);
+        shortcuts = List.copyOf(shortcuts);
+        // the order of the file types matters, e.g. for choosing a cover art file
+        musicFileTypes = Collections.unmodifiableSet(new LinkedHashSet<>(musicFileTypes));
+        videoFileTypes = Collections.unmodifiableSet(new LinkedHashSet<>(videoFileTypes));
+        playableFileTypes = Collections.unmodifiableSet(new LinkedHashSet<>(playableFileTypes));
+        coverArtFileTypes = Collections.unmodifiableSet(new LinkedHashSet<>(coverArtFileTypes));
+    }
+
+    public boolean isExcluded(String fileName) {
+        return excludePattern != null && excludePattern.matcher(fileName).find();
+    }
+}
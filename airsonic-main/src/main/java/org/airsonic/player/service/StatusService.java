@@ -27,7 +27,7 @@ import org.airsonic.player.domain.PlayStatus;
 import org.airsonic.player.domain.Player;
 import org.airsonic.player.domain.TransferStatus;
 import org.airsonic.player.domain.UserSettings;
-import org.airsonic.player.service.websocket.AsyncWebSocketClient;
+import org.airsonic.player.service.websocket.ConflatingWebSocketBroadcaster;
 import org.airsonic.player.util.StringUtil;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
@@ -61,18 +61,18 @@ public class StatusService {
 
     private final MediaFileService mediaFileService;
     private final PersonalSettingsService personalSettingsService;
-    private final AsyncWebSocketClient asyncWebSocketClient;
+    private final ConflatingWebSocketBroadcaster broadcaster;
     private final TaskSchedulingService taskService;
 
     public StatusService(
         MediaFileService mediaFileService,
-        AsyncWebSocketClient asyncWebSocketClient,
+        ConflatingWebSocketBroadcaster broadcaster,
         TaskSchedulingService taskService,
         PersonalSettingsService personalSettingsService
     ) {
         this.mediaFileService = mediaFileService;
         this.taskService = taskService;
-        this.asyncWebSocketClient = asyncWebSocketClient;
+        this.broadcaster = broadcaster;
         this.personalSettingsService = personalSettingsService;
     }
 
@@ -212,7 +212,9 @@ public class StatusService {
     private void broadcast(PlayStatus status, String location) {
         NowPlayingInfo info = createForBroadcast(status);
         if (info != null) {
-            asyncWebSocketClient.send("/topic/nowPlaying/" + location, info);
+            // a later message with the same key has the same effect on the clients, so the earlier one can be dropped
+            String key = location + "/" + info.getTransferId() + "/" + info.getMediaFileId();
+            broadcaster.publish("/topic/nowPlaying/" + location, key, info);
         }
     }
 
@@ -0,0 +1,296 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.domain.CoverArtScheme;
+import org.airsonic.player.domain.dto.CoverArtRequest;
+import org.airsonic.player.domain.dto.PlaylistCoverArtRequest;
+import org.airsonic.player.domain.dto.VideoCoverArtRequest;
+import org.airsonic.player.service.cache.ThumbnailStore;
+import org.airsonic.player.util.FileUtil;
+import org.airsonic.player.util.StringUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Creates the scaled cover art images, and keeps them in a {@link ThumbnailStore}.
+ *
+ * A cover art is decoded once for the requested size and all standard sizes which are missing, and the
+ * thumbnails of scanned albums and artists can be created in the background before they are requested.
+ */
+@Service
+public class ThumbnailService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ThumbnailService.class);
+
+    // Version of the cover art generation algorithm.
+    // Increment this if the algorithm changes.
+    public static final int COVERART_VERSION = 1;
+
+    private static final String STORE_FILE_NAME = "thumbnails.dat";
+
+    /**
+     * Sizes created for every cover art: the sizes of the cover art schemes, and the size used if none is requested.
+     */
+    public static final List<Integer> STANDARD_SIZES = List.of(CoverArtScheme.SMALL.getSize(),
+            CoverArtScheme.MEDIUM.getSize(), CoverArtScheme.LARGE.getSize(), CoverArtScheme.LARGE.getSize() * 2);
+
+    @Autowired
+    private CoverArtCreateService coverArtCreateService;
+    @Autowired
+    private SettingsService settingsService;
+    @Autowired
+    private AirsonicHomeConfig homeConfig;
+
+    private Semaphore semaphore;
+    private ThumbnailStore store;
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        semaphore = new Semaphore(settingsService.getCoverArtConcurrency());
+        Path file = homeConfig.getAirsonicHome().resolve("thumbs").resolve(STORE_FILE_NAME);
+        try {
+            Files.createDirectories(file.getParent());
+            store = new ThumbnailStore(file);
+        } catch (IOException e) {
+            LOG.warn("Could not open the thumbnail store {}. Thumbnails will not be cached.", file, e);
+        }
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ThumbnailGenerator");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+        FileUtil.closeQuietly(store);
+    }
+
+    /**
+     * Returns the thumbnail of the given size, creating it if it is missing or older than the cover art.
+     *
+     * @param request the request for the cover art
+     * @param size    the size of the thumbnail
+     * @return the image and its content type
+     * @throws IOException if the thumbnail can not be created
+     */
+    public Pair<byte[], String> getThumbnail(CoverArtRequest request, int size) throws IOException {
+        String key = getKey(request);
+        Instant lastModified = request.lastModified();
+        Pair<byte[], String> thumbnail = read(key, size, lastModified);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+
+        // Synchronize to avoid creating the same thumbnails concurrently.
+        synchronized (key.intern()) {
+            thumbnail = read(key, size, lastModified);
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+            List<Integer> sizes = new ArrayList<>(List.of(size));
+            if (isMultiSize(request)) {
+                getMissingSizes(key, lastModified).stream().filter(s -> s != size).forEach(sizes::add);
+            }
+            Map<Integer, byte[]> images = create(request, sizes);
+            String contentType = getContentType(request);
+            if (store != null) {
+                for (Map.Entry<Integer, byte[]> image : images.entrySet()) {
+                    store.put(key, image.getKey(), lastModified, contentType, image.getValue());
+                }
+            }
+            return Pair.of(images.get(size), contentType);
+        }
+    }
+
+    /**
+     * Creates the missing standard thumbnails of the given albums and artists in the background.
+     *
+     * @param albumIds  ids of the albums
+     * @param artistIds ids of the artists
+     */
+    public void pregenerate(Collection<Integer> albumIds, Collection<Integer> artistIds) {
+        pregenerate("albums", albumIds, coverArtCreateService::createAlbumCoverArtRequest);
+        pregenerate("artists", artistIds, coverArtCreateService::createArtistCoverArtRequest);
+    }
+
+    private void pregenerate(String name, Collection<Integer> ids, Function<Integer, CoverArtRequest> requests) {
+        if (store == null || ids.isEmpty()) {
+            return;
+        }
+        List<Integer> copy = List.copyOf(ids);
+        executor.execute(() -> {
+            LOG.info("Creating thumbnails of {} {}", copy.size(), name);
+            int created = 0;
+            for (Integer id : copy) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                try {
+                    CoverArtRequest request = requests.apply(id);
+                    if (request != null && pregenerate(request)) {
+                        created++;
+                    }
+                } catch (Exception e) {
+                    LOG.debug("Failed to create thumbnails of {} {}", name, id, e);
+                }
+            }
+            LOG.info("Created thumbnails of {} {}", created, name);
+        });
+    }
+
+    private boolean pregenerate(CoverArtRequest request) throws IOException {
+        String key = getKey(request);
+        Instant lastModified = request.lastModified();
+        if (getMissingSizes(key, lastModified).isEmpty()) {
+            return false;
+        }
+        synchronized (key.intern()) {
+            List<Integer> sizes = getMissingSizes(key, lastModified);
+            if (sizes.isEmpty()) {
+                return false;
+            }
+            String contentType = getContentType(request);
+            for (Map.Entry<Integer, byte[]> image : create(request, sizes).entrySet()) {
+                store.put(key, image.getKey(), lastModified, contentType, image.getValue());
+            }
+            return true;
+        }
+    }
+
+    private static String getKey(CoverArtRequest request) {
+        return DigestUtils.md5Hex(request.getKey() + "-" + COVERART_VERSION);
+    }
+
+    private static String getEncoding(CoverArtRequest request) {
+        return request.getCoverArt() != null ? "jpeg" : "png";
+    }
+
+    private static String getContentType(CoverArtRequest request) {
+        return StringUtil.getMimeType(getEncoding(request));
+    }
+
+    /**
+     * Playlist and video images are composed for a single size.
+     */
+    private static boolean isMultiSize(CoverArtRequest request) {
+        return !(request instanceof PlaylistCoverArtRequest) && !(request instanceof VideoCoverArtRequest);
+    }
+
+    private ThumbnailStore.Entry getValid(String key, int size, Instant lastModified) {
+        ThumbnailStore.Entry entry = store == null ? null : store.get(key, size);
+        // the store keeps milliseconds only
+        if (entry == null || lastModified.toEpochMilli() > entry.lastModified().toEpochMilli()) {
+            return null;
+        }
+        return entry;
+    }
+
+    private Pair<byte[], String> read(String key, int size, Instant lastModified) throws IOException {
+        ThumbnailStore.Entry entry = getValid(key, size, lastModified);
+        return entry == null ? null : Pair.of(store.read(entry), entry.contentType());
+    }
+
+    private List<Integer> getMissingSizes(String key, Instant lastModified) {
+        return STANDARD_SIZES.stream().filter(size -> getValid(key, size, lastModified) == null).toList();
+    }
+
+    private Map<Integer, byte[]> create(CoverArtRequest request, List<Integer> sizes) throws IOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to create thumbnail for " + request);
+        }
+        try {
+            Map<Integer, BufferedImage> images;
+            if (request instanceof PlaylistCoverArtRequest pr) {
+                images = Map.of(sizes.get(0), coverArtCreateService.createPlaylistImage(pr, sizes.get(0)));
+            } else if (request instanceof VideoCoverArtRequest vr) {
+                images = Map.of(sizes.get(0), coverArtCreateService.createVideoImage(vr, sizes.get(0)));
+            } else {
+                images = coverArtCreateService.createImages(request, sizes);
+            }
+            Map<Integer, byte[]> result = new LinkedHashMap<>();
+            for (Map.Entry<Integer, BufferedImage> image : images.entrySet()) {
+                if (image.getValue() == null) {
+                    throw new IOException("Unable to decode image.");
+                }
+                result.put(image.getKey(), encode(image.getValue(), getEncoding(request)));
+            }
+            return result;
+        } catch (Throwable x) {
+            LOG.warn("Failed to create thumbnail for {}", request, x);
+            throw new IOException("Failed to create thumbnail for " + request + ". " + x.getMessage());
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private byte[] encode(BufferedImage image, String encoding) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(encoding).next();
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ImageOutputStream out = ImageIO.createImageOutputStream(bos)) {
+            float quality = (float) (settingsService.getCoverArtQuality() / 100.0);
+            ImageWriteParam params = writer.getDefaultWriteParam();
+            params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            params.setCompressionQuality(quality); // default is 0.75
+
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), params);
+            out.flush();
+            return bos.toByteArray();
+        } finally {
+            writer.dispose();
+        }
+    }
+}
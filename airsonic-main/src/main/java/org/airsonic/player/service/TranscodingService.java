@@ -21,11 +21,14 @@
 package org.airsonic.player.service;
 
 import com.google.common.io.MoreFiles;
+import org.airsonic.player.config.AirsonicTranscodeConfig;
 import org.airsonic.player.controller.VideoPlayerController;
 import org.airsonic.player.domain.*;
+import org.airsonic.player.io.SharedInputStream;
 import org.airsonic.player.io.TranscodeInputStream;
 import org.airsonic.player.repository.PlayerRepository;
 import org.airsonic.player.repository.TranscodingRepository;
+import org.airsonic.player.service.cache.TranscodeCache;
 import org.airsonic.player.util.StringUtil;
 import org.airsonic.player.util.Util;
 import org.apache.commons.lang3.StringUtils;
@@ -74,6 +77,13 @@ public class TranscodingService {
     private TranscodingRepository transcodingRepository;
     @Autowired
     private PersonalSettingsService personalSettingsService;
+    @Autowired
+    private TranscodeCache transcodeCache;
+    @Autowired
+    private AirsonicTranscodeConfig transcodeConfig;
+
+    // transcoded streams currently produced, by share key. guarded by itself
+    private final Map<String, SharedInputStream> sharedTranscodes = new HashMap<>();
 
     /**
      * Returns all transcodings.
@@ -258,6 +268,14 @@ public class TranscodingService {
         }
 
         parameters.setMaxBitRate(maxBitRate);
+
+        // A completed cache entry has an exact length, and is served like a plain file
+        Long cachedLength = transcodeCache.getLength(transcodeCache.getKey(parameters));
+        if (cachedLength != null) {
+            parameters.setExpectedLength(cachedLength);
+            parameters.setRangeAllowed(true);
+            return parameters;
+        }
         parameters.setExpectedLength(getExpectedLength(parameters));
         parameters.setRangeAllowed(isRangeAllowed(parameters));
         return parameters;
@@ -314,6 +332,7 @@ public class TranscodingService {
 
     /**
      * Returns an input stream by applying the given transcoding to the given music file.
+     * The transcoded stream is read from the transcode cache if possible, and written to it otherwise.
      *
      * @param parameters Transcoding parameters.
      * @return The transcoded input stream.
@@ -322,6 +341,69 @@ public class TranscodingService {
     private InputStream createTranscodedInputStream(Parameters parameters)
             throws IOException {
 
+        String cacheKey = transcodeCache.getKey(parameters);
+        InputStream cached = transcodeCache.open(cacheKey);
+        if (cached != null) {
+            return new BufferedInputStream(cached);
+        }
+        String shareKey = getShareKey(parameters);
+        if (shareKey == null) {
+            return transcodeCache.write(cacheKey, startTranscoders(parameters));
+        }
+
+        // Identical concurrent requests read the output of a single transcoder
+        synchronized (sharedTranscodes) {
+            SharedInputStream shared = sharedTranscodes.get(shareKey);
+            InputStream reader = shared == null ? null : shared.newReader();
+            if (reader != null) {
+                LOG.debug("Sharing transcoder of {} with {} other readers", parameters.getMediaFile().getPath(), shared.getReaderCount() - 1);
+                return reader;
+            }
+            InputStream source = transcodeCache.write(cacheKey, startTranscoders(parameters));
+            try {
+                shared = new SharedInputStream("Transcoder " + parameters.getMediaFile().getId(), source,
+                        transcodeConfig.getShareBufferSize() * 1024,
+                        s -> {
+                            synchronized (sharedTranscodes) {
+                                sharedTranscodes.remove(shareKey, s);
+                            }
+                        });
+            } catch (IOException e) {
+                LOG.warn("Could not share transcoder of {}", parameters.getMediaFile().getPath(), e);
+                return source;
+            }
+            sharedTranscodes.put(shareKey, shared);
+            reader = shared.newReader();
+            shared.start();
+            return reader;
+        }
+    }
+
+    /**
+     * Returns the key identifying identical transcoded streams, or null if the transcoder can not be shared.
+     * HLS transcoders write their segments to files, and are never shared.
+     */
+    private String getShareKey(Parameters parameters) {
+        VideoTranscodingSettings video = parameters.getVideoTranscodingSettings();
+        MediaFile mediaFile = parameters.getMediaFile();
+        Transcoding transcoding = parameters.getTranscoding();
+        if (transcodeConfig.getShareBufferSize() == 0 || mediaFile.getId() == null
+                || (video != null && (video.getHlsSegmentFilename() != null || video.getOutputFilename() != null))) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder()
+                .append(mediaFile.getId()).append('|').append(mediaFile.getChanged()).append('|')
+                .append(transcoding.getStep1()).append('|').append(transcoding.getStep2()).append('|')
+                .append(transcoding.getStep3()).append('|').append(parameters.getMaxBitRate());
+        if (video != null) {
+            key.append('|').append(video.getWidth()).append('x').append(video.getHeight())
+                    .append('|').append(video.getTimeOffset()).append('|').append(video.getDuration())
+                    .append('|').append(video.getAudioTrackIndex());
+        }
+        return key.toString();
+    }
+
+    private TranscodeInputStream startTranscoders(Parameters parameters) throws IOException {
         Transcoding transcoding = parameters.getTranscoding();
         Integer maxBitRate = parameters.getMaxBitRate();
         VideoTranscodingSettings videoTranscodingSettings = parameters.getVideoTranscodingSettings();
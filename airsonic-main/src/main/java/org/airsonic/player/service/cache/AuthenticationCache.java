@@ -0,0 +1,79 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.domain.UserCredential;
+import org.airsonic.player.spring.CacheConfiguration;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+
+/**
+ * Remembers which stored credential matched a presented password or salted token, so that
+ * the password encoders do not run again for every REST request of a client. Only a digest of the
+ * presented secret is kept. All entries are dropped when credentials change.
+ */
+@Component
+public class AuthenticationCache {
+
+    private final CacheManager cacheManager;
+
+    /**
+     * Stored credential that matched.
+     *
+     * @param encoder    encoder of the credential
+     * @param credential encoded credential
+     */
+    public record MatchedCredential(String encoder, String credential) {
+
+        public static MatchedCredential of(UserCredential userCredential) {
+            return new MatchedCredential(userCredential.getEncoder(), userCredential.getCredential());
+        }
+
+        public boolean matches(UserCredential userCredential) {
+            return encoder.equals(userCredential.getEncoder()) && credential.equals(userCredential.getCredential());
+        }
+    }
+
+    public AuthenticationCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+        this.cacheManager.enableStatistics(CacheConfiguration.AUTHENTICATION_CACHE, true);
+    }
+
+    private javax.cache.Cache<String, MatchedCredential> getCache() {
+        return cacheManager.getCache(CacheConfiguration.AUTHENTICATION_CACHE, String.class, MatchedCredential.class);
+    }
+
+    private static String createKey(String username, String mechanism, String presentedSecret) {
+        return DigestUtils.sha256Hex(username + "\u0000" + mechanism + "\u0000" + presentedSecret);
+    }
+
+    public MatchedCredential get(String username, String mechanism, String presentedSecret) {
+        return getCache().get(createKey(username, mechanism, presentedSecret));
+    }
+
+    public void put(String username, String mechanism, String presentedSecret, MatchedCredential matched) {
+        getCache().put(createKey(username, mechanism, presentedSecret), matched);
+    }
+
+    public void clear() {
+        getCache().clear();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.spring.CacheConfiguration;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+
+/**
+ * Remembers the ETag and modification time last sent for a cover art URL, so that conditional requests
+ * are answered without reading the database or the image. Entries expire after a few minutes, and all
+ * entries are dropped when a cover art is changed.
+ */
+@Component
+public class CoverArtValidatorCache {
+
+    private final CacheManager cacheManager;
+
+    /**
+     * Validators of a cover art response.
+     *
+     * @param eTag         the strong ETag
+     * @param lastModified the modification time in epoch milliseconds
+     */
+    public record Validator(String eTag, long lastModified) {
+    }
+
+    public CoverArtValidatorCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+        this.cacheManager.enableStatistics(CacheConfiguration.COVER_ART_VALIDATOR_CACHE, true);
+    }
+
+    private javax.cache.Cache<String, Validator> getCache() {
+        return cacheManager.getCache(CacheConfiguration.COVER_ART_VALIDATOR_CACHE, String.class, Validator.class);
+    }
+
+    public Validator get(String key) {
+        return getCache().get(key);
+    }
+
+    public void put(String key, Validator validator) {
+        getCache().put(key, validator);
+    }
+
+    public void remove(String key) {
+        getCache().remove(key);
+    }
+
+    public void clear() {
+        getCache().clear();
+    }
+}
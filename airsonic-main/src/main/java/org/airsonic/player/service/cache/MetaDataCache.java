@@ -0,0 +1,154 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicScanConfig;
+import org.airsonic.player.service.metadata.MetaData;
+import org.airsonic.player.service.metadata.MetaDataParser;
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent cache of parsed {@link MetaData}, so that files whose content did not change are not parsed again,
+ * e.g. by a full scan. Entries are keyed by path, size and modification time of the file, and by the parser.
+ *
+ * The cache is stored under the Airsonic home directory and survives restarts.
+ */
+@Component
+public class MetaDataCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetaDataCache.class);
+
+    private static final String CACHE_DIR_NAME = "metadata-cache";
+    private static final String CACHE_NAME = "metaData";
+
+    /**
+     * Part of every key. Must be changed whenever parsers produce different results for the same file.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private final CacheManager cacheManager;
+    private final Cache<String, MetaData> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public MetaDataCache(AirsonicHomeConfig homeConfig, AirsonicScanConfig scanConfig) {
+        CacheManager manager = null;
+        Cache<String, MetaData> metaDataCache = null;
+        int size = scanConfig.getMetadataCacheSize();
+        if (size > 0) {
+            try {
+                manager = CacheManagerBuilder.newCacheManagerBuilder()
+                        .with(CacheManagerBuilder.persistence(homeConfig.getAirsonicHome().resolve(CACHE_DIR_NAME).toFile()))
+                        .withCache(CACHE_NAME, CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, MetaData.class,
+                                ResourcePoolsBuilder.newResourcePoolsBuilder()
+                                        .heap(1000L, EntryUnit.ENTRIES)
+                                        .disk(size, MemoryUnit.MB, true))
+                                .withClassLoader(MetaData.class.getClassLoader()))
+                        .build(true);
+                metaDataCache = manager.getCache(CACHE_NAME, String.class, MetaData.class);
+            } catch (RuntimeException e) {
+                LOG.warn("Could not open the metadata cache. Media files will always be parsed.", e);
+                if (manager != null) {
+                    manager.close();
+                }
+                manager = null;
+                metaDataCache = null;
+            }
+        }
+        this.cacheManager = manager;
+        this.cache = metaDataCache;
+    }
+
+    /**
+     * Returns the meta data of the given file, parsing it only if it is not cached.
+     *
+     * @param parser parser applicable to the file
+     * @param file   the file to parse
+     * @return Meta data for the file, never null.
+     */
+    public MetaData getMetaData(@Nonnull MetaDataParser parser, @Nonnull Path file) {
+        String key = cache == null ? null : createKey(parser, file);
+        if (key == null) {
+            return parser.getMetaData(file);
+        }
+        MetaData metaData = cache.get(key);
+        if (metaData != null) {
+            hits.increment();
+            return metaData;
+        }
+        misses.increment();
+        metaData = parser.getMetaData(file);
+        if (metaData.isParseFailed()) {
+            // parsed again next time, the failure may be transient
+            return metaData;
+        }
+        cache.put(key, metaData);
+        return metaData;
+    }
+
+    private static String createKey(MetaDataParser parser, Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return FORMAT_VERSION + "|" + parser.getClass().getSimpleName() + "|" + attributes.size() + "|"
+                    + attributes.lastModifiedTime().toMillis() + "|" + file.toAbsolutePath();
+        } catch (IOException e) {
+            LOG.debug("Could not read attributes of {}", file, e);
+            return null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (cacheManager != null) {
+            LOG.debug("Closing metadata cache. {} hits, {} misses", hits.sum(), misses.sum());
+            cacheManager.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.spring.CacheConfiguration;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+
+import java.util.List;
+
+/**
+ * Remembers the ids found by a search, so that the same query typed again does not run Lucene. The key
+ * contains the version of the index reader, and all entries are dropped when the index is refreshed.
+ * The entities are still read from the database, so only the ids are kept here.
+ */
+@Component
+public class SearchResultCache {
+
+    private final CacheManager cacheManager;
+
+    /**
+     * Ids of a page of search results.
+     *
+     * @param ids       ids of the entities, in the order of the hits
+     * @param totalHits number of hits of the whole search
+     */
+    public record CachedResult(List<Integer> ids, int totalHits) {
+    }
+
+    public SearchResultCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+        this.cacheManager.enableStatistics(CacheConfiguration.SEARCH_RESULT_CACHE, true);
+    }
+
+    private javax.cache.Cache<String, CachedResult> getCache() {
+        return cacheManager.getCache(CacheConfiguration.SEARCH_RESULT_CACHE, String.class, CachedResult.class);
+    }
+
+    public CachedResult get(String key) {
+        return getCache().get(key);
+    }
+
+    public void put(String key, CachedResult result) {
+        getCache().put(key, result);
+    }
+
+    public void clear() {
+        getCache().clear();
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the thumbnails of all sizes in a single append-only file, instead of one small file per image.
+ *
+ * Each record holds the key, the size, the modification time of the source, the content type and the image.
+ * The offsets of the latest record of each key and size are kept in memory, so that an image is served
+ * with a single positioned read. The index is rebuilt by reading the records when the store is opened,
+ * and the file is compacted then if most of it is taken by replaced records.
+ */
+public class ThumbnailStore implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ThumbnailStore.class);
+
+    private static final int RECORD_MAGIC = 0x54484d42;
+    private static final long MIN_COMPACTION_SIZE = 1024L * 1024L;
+
+    private final Path file;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private FileChannel channel;
+
+    // guarded by this
+    private long end;
+    private long garbage;
+
+    /**
+     * Location of an image in the store.
+     *
+     * @param offset       position of the image in the file
+     * @param length       length of the image
+     * @param lastModified modification time of the source the image was created from
+     * @param contentType  content type of the image
+     */
+    public record Entry(long offset, int length, Instant lastModified, String contentType) {
+    }
+
+    /**
+     * Opens the store, creating the file if necessary.
+     *
+     * @param file the file of the store
+     * @throws IOException if the file can not be read
+     */
+    public ThumbnailStore(Path file) throws IOException {
+        this.file = file;
+        this.channel = open(file);
+        load();
+        if (garbage > MIN_COMPACTION_SIZE && garbage > end - garbage) {
+            compact();
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static String indexKey(String key, int size) {
+        return key + "@" + size;
+    }
+
+    private void load() throws IOException {
+        long position = 0;
+        long size = channel.size();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (position < size) {
+                if (in.readInt() != RECORD_MAGIC) {
+                    throw new IOException("Invalid record at " + position);
+                }
+                String key = readString(in, in.readUnsignedShort());
+                int imageSize = in.readInt();
+                Instant lastModified = Instant.ofEpochMilli(in.readLong());
+                String contentType = readString(in, in.readUnsignedByte());
+                int length = in.readInt();
+                in.skipNBytes(length);
+                long offset = position + headerLength(key, contentType);
+                Entry previous = index.put(indexKey(key, imageSize), new Entry(offset, length, lastModified, contentType));
+                if (previous != null) {
+                    garbage += recordLength(key, previous);
+                }
+                position = offset + length;
+            }
+        } catch (IOException e) {
+            // a record interrupted by a crash. The records before are kept.
+            LOG.warn("Truncating thumbnail store {} at {} of {} bytes", file, position, size, e);
+            channel.truncate(position);
+        }
+        end = position;
+        LOG.debug("Loaded {} thumbnails from {}, {} of {} bytes replaced", index.size(), file, garbage, end);
+    }
+
+    private static String readString(DataInputStream in, int length) throws IOException {
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static int headerLength(String key, String contentType) {
+        return 4 + 2 + key.getBytes(StandardCharsets.UTF_8).length + 4 + 8 + 1
+                + contentType.getBytes(StandardCharsets.UTF_8).length + 4;
+    }
+
+    private static long recordLength(String key, Entry entry) {
+        return entry.length() + (long) headerLength(key, entry.contentType());
+    }
+
+    /**
+     * Rewrites the file with the latest records only.
+     */
+    private synchronized void compact() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        List<Map.Entry<String, Entry>> entries = new ArrayList<>(index.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue().offset()));
+        Map<String, Entry> newIndex = new ConcurrentHashMap<>();
+        long position = 0;
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, Entry> e : entries) {
+                String indexKey = e.getKey();
+                int separator = indexKey.lastIndexOf('@');
+                Entry entry = e.getValue();
+                Entry moved = write(target, position, indexKey.substring(0, separator),
+                        Integer.parseInt(indexKey.substring(separator + 1)), entry.lastModified(), entry.contentType(),
+                        read(entry));
+                newIndex.put(indexKey, moved);
+                position = moved.offset() + moved.length();
+            }
+        }
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(file);
+        LOG.info("Compacted thumbnail store {} from {} to {} bytes", file, end, position);
+        index.clear();
+        index.putAll(newIndex);
+        end = position;
+        garbage = 0;
+    }
+
+    /**
+     * Returns the location of the image of the given key and size, or null if none is stored.
+     */
+    public Entry get(String key, int size) {
+        return index.get(indexKey(key, size));
+    }
+
+    /**
+     * Reads an image with a single positioned read.
+     *
+     * @param entry location of the image
+     * @return the image
+     * @throws IOException if the image can not be read
+     */
+    public byte[] read(Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, entry.offset() + buffer.position()) == -1) {
+                throw new EOFException("Thumbnail store " + file + " ended at " + (entry.offset() + buffer.position()));
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Appends an image, replacing the previous image of the same key and size.
+     *
+     * @param key          key of the source
+     * @param size         size of the image
+     * @param lastModified modification time of the source
+     * @param contentType  content type of the image
+     * @param image        the image
+     * @return location of the image
+     * @throws IOException if the image can not be written
+     */
+    public synchronized Entry put(String key, int size, Instant lastModified, String contentType, byte[] image) throws IOException {
+        Entry entry = write(channel, end, key, size, lastModified, contentType, image);
+        end = entry.offset() + entry.length();
+        Entry previous = index.put(indexKey(key, size), entry);
+        if (previous != null) {
+            garbage += recordLength(key, previous);
+        }
+        return entry;
+    }
+
+    private static Entry write(FileChannel target, long position, String key, int size, Instant lastModified,
+            String contentType, byte[] image) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] contentTypeBytes = contentType.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xffff || contentTypeBytes.length > 0xff) {
+            throw new IllegalArgumentException("Key or content type too long");
+        }
+        int headerLength = headerLength(key, contentType);
+        ByteBuffer buffer = ByteBuffer.allocate(headerLength + image.length);
+        buffer.putInt(RECORD_MAGIC);
+        buffer.putShort((short) keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.putInt(size);
+        buffer.putLong(lastModified.toEpochMilli());
+        buffer.put((byte) contentTypeBytes.length);
+        buffer.put(contentTypeBytes);
+        buffer.putInt(image.length);
+        buffer.put(image);
+        buffer.flip();
+        long written = position;
+        while (buffer.hasRemaining()) {
+            written += target.write(buffer, written);
+        }
+        return new Entry(position + headerLength, image.length, Instant.ofEpochMilli(lastModified.toEpochMilli()), contentType);
+    }
+
+    /**
+     * Returns the number of stored images.
+     */
+    public int getCount() {
+        return index.size();
+    }
+
+    /**
+     * Returns the length of the file in bytes.
+     */
+    public synchronized long getFileSize() {
+        return end;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicTranscodeConfig;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.Transcoding;
+import org.airsonic.player.io.TranscodeInputStream;
+import org.airsonic.player.service.TranscodingService;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of transcoded audio, shared by all players.
+ *
+ * The output of a transcoder is copied to the cache while it is streamed to the first listener. Once the
+ * transcoder completed, later requests for the same file, transcoding and bit rate are served from the
+ * cached file, which has a known length and therefore supports HTTP ranges. The least recently used entries
+ * are deleted when the cache exceeds its size.
+ */
+@Component
+public class TranscodeCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TranscodeCache.class);
+
+    private static final String CACHE_DIR_NAME = "transcode-cache";
+    private static final String PART_SUFFIX = ".part";
+
+    private final Path directory;
+    private final long capacity;
+
+    // access ordered, guarded by itself
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> writing = ConcurrentHashMap.newKeySet();
+    private long totalSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TranscodeCache(AirsonicHomeConfig homeConfig, AirsonicTranscodeConfig transcodeConfig) {
+        long size = transcodeConfig.getCacheSize() * 1024L * 1024L;
+        Path dir = null;
+        if (size > 0) {
+            try {
+                dir = Files.createDirectories(homeConfig.getAirsonicHome().resolve(CACHE_DIR_NAME));
+                load(dir);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Could not open the transcode cache. Transcoded streams will not be cached.", e);
+                dir = null;
+            }
+        }
+        this.directory = dir;
+        this.capacity = size;
+    }
+
+    private void load(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.sorted(Comparator.comparing(TranscodeCache::lastModified)).forEach(file -> {
+                String name = file.getFileName().toString();
+                try {
+                    if (name.endsWith(PART_SUFFIX)) {
+                        Files.deleteIfExists(file);
+                    } else {
+                        long length = Files.size(file);
+                        entries.put(name, length);
+                        totalSize += length;
+                    }
+                } catch (IOException e) {
+                    LOG.debug("Could not load transcode cache entry {}", file, e);
+                }
+            });
+        }
+        LOG.debug("Loaded {} transcode cache entries, {} bytes", entries.size(), totalSize);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Returns the cache key of the given parameters, or null if the transcoded stream can not be cached.
+     * Only audio is cached, since video depends on the offset and the size requested by the player.
+     *
+     * @param parameters transcoding parameters
+     * @return cache key or null
+     */
+    public String getKey(TranscodingService.Parameters parameters) {
+        Transcoding transcoding = parameters.getTranscoding();
+        MediaFile mediaFile = parameters.getMediaFile();
+        if (!isEnabled() || transcoding == null || parameters.getVideoTranscodingSettings() != null
+                || mediaFile.getId() == null || mediaFile.getChanged() == null) {
+            return null;
+        }
+        return DigestUtils.sha256Hex(mediaFile.getId() + "|" + mediaFile.getChanged().toEpochMilli() + "|"
+                + transcoding.getStep1() + "|" + transcoding.getStep2() + "|" + transcoding.getStep3() + "|"
+                + parameters.getMaxBitRate());
+    }
+
+    /**
+     * Returns the length of the completed entry of the given key, or null if there is none.
+     *
+     * @param key cache key, may be null
+     * @return length in bytes or null
+     */
+    public Long getLength(String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Opens the completed entry of the given key.
+     *
+     * @param key cache key, may be null
+     * @return input stream of the cached transcoded stream, or null if there is none
+     */
+    public InputStream open(String key) {
+        if (getLength(key) == null) {
+            misses.increment();
+            return null;
+        }
+        Path file = directory.resolve(key);
+        try {
+            InputStream in = Files.newInputStream(file);
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            hits.increment();
+            return in;
+        } catch (IOException e) {
+            LOG.debug("Could not open transcode cache entry {}", file, e);
+            remove(key);
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Returns a stream which reads the given transcoded stream and copies it to the cache. The entry is only
+     * stored if the stream is read to its end. The transcoded stream is returned as is if the entry is
+     * already being written by another stream.
+     *
+     * @param key    cache key, may be null
+     * @param source transcoded stream
+     * @return stream to read instead of the source
+     */
+    public InputStream write(String key, InputStream source) {
+        if (key == null || !writing.add(key)) {
+            return source;
+        }
+        Path part = directory.resolve(key + "." + UUID.randomUUID() + PART_SUFFIX);
+        try {
+            return new CachingInputStream(key, source, part, Files.newOutputStream(part));
+        } catch (IOException e) {
+            LOG.debug("Could not create transcode cache entry {}", part, e);
+            writing.remove(key);
+            return source;
+        }
+    }
+
+    private void commit(String key, Path part, long length) {
+        try {
+            Files.move(part, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.debug("Could not store transcode cache entry {}", key, e);
+            discard(part);
+            return;
+        }
+        synchronized (entries) {
+            Long previous = entries.put(key, length);
+            totalSize += length - (previous == null ? 0 : previous);
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalSize > capacity && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalSize -= eldest.getValue();
+            discard(directory.resolve(eldest.getKey()));
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (entries) {
+            Long length = entries.remove(key);
+            if (length != null) {
+                totalSize -= length;
+            }
+        }
+    }
+
+    private static void discard(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.debug("Could not delete {}", file, e);
+        }
+    }
+
+    public long getSize() {
+        synchronized (entries) {
+            return totalSize;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Copies everything read from the transcoder to a temporary file, which becomes the cache entry
+     * once the transcoder completed successfully.
+     */
+    private class CachingInputStream extends InputStream {
+
+        private final String key;
+        private final InputStream source;
+        private final Path part;
+        private final OutputStream out;
+        private long length;
+        private boolean failed;
+        private boolean completed;
+        private boolean closed;
+
+        CachingInputStream(String key, InputStream source, Path part, OutputStream out) {
+            this.key = key;
+            this.source = source;
+            this.part = part;
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = source.read(b, off, len);
+            if (n == -1) {
+                completed = true;
+            } else if (n > 0 && !failed) {
+                try {
+                    out.write(b, off, n);
+                    length += n;
+                } catch (IOException e) {
+                    LOG.debug("Could not write transcode cache entry {}", part, e);
+                    failed = true;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return source.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                failed = true;
+            }
+            boolean succeeded = completed && !failed && length > 0 && isTranscoderSucceeded();
+            try {
+                source.close();
+            } finally {
+                if (succeeded) {
+                    commit(key, part, length);
+                } else {
+                    discard(part);
+                }
+                writing.remove(key);
+            }
+        }
+
+        private boolean isTranscoderSucceeded() {
+            if (!(source instanceof TranscodeInputStream)) {
+                return true;
+            }
+            Process process = ((TranscodeInputStream) source).getProcess();
+            try {
+                return process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.hls;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps track of the segments completed by an HLS transcoder, and notifies the requests waiting for them.
+ *
+ * The transcoder writes one segment after the other, so a segment is completed once the transcoder
+ * starts writing the next one, or once the transcoder exits.
+ */
+class HlsSegmentTracker {
+
+    private final NavigableSet<Integer> completed = new TreeSet<>();
+    private final Map<Integer, List<CompletableFuture<Boolean>>> waiting = new HashMap<>();
+    private Integer writing;
+    private boolean running;
+    private int generation;
+
+    /**
+     * A new transcoder is started. Previous segments are forgotten, since their files are deleted.
+     *
+     * @return generation of the transcoder, to pass to {@link #stop}
+     */
+    synchronized int start() {
+        completed.clear();
+        writing = null;
+        running = true;
+        return ++generation;
+    }
+
+    /**
+     * The transcoder started writing the given segment.
+     */
+    void segmentCreated(int index) {
+        List<CompletableFuture<Boolean>> ready = new ArrayList<>();
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            if (writing != null && writing < index) {
+                for (int i = writing; i < index; i++) {
+                    complete(i, ready);
+                }
+            }
+            if (writing == null || writing < index) {
+                writing = index;
+            }
+        }
+        // complete outside of the lock, since waiting requests continue in this thread
+        ready.forEach(f -> f.complete(true));
+    }
+
+    /**
+     * The transcoder exited or was killed. The segment it was writing is complete only if it exited normally.
+     * Ignored if a newer transcoder was started in the meantime.
+     */
+    void stop(int transcoderGeneration, boolean succeeded) {
+        List<CompletableFuture<Boolean>> ready = new ArrayList<>();
+        List<CompletableFuture<Boolean>> failed = new ArrayList<>();
+        synchronized (this) {
+            if (!running || transcoderGeneration != generation) {
+                return;
+            }
+            running = false;
+            if (succeeded && writing != null) {
+                complete(writing, ready);
+            }
+            writing = null;
+            waiting.values().forEach(failed::addAll);
+            waiting.clear();
+        }
+        ready.forEach(f -> f.complete(true));
+        failed.forEach(f -> f.complete(false));
+    }
+
+    private void complete(int index, List<CompletableFuture<Boolean>> ready) {
+        completed.add(index);
+        List<CompletableFuture<Boolean>> futures = waiting.remove(index);
+        if (futures != null) {
+            ready.addAll(futures);
+        }
+    }
+
+    synchronized boolean isCompleted(int index) {
+        return completed.contains(index);
+    }
+
+    synchronized Integer getLatestCompleted() {
+        return completed.isEmpty() ? null : completed.last();
+    }
+
+    /**
+     * Returns a future completed with true once the given segment is complete, or with false if the
+     * transcoder stops before.
+     */
+    synchronized CompletableFuture<Boolean> await(int index) {
+        if (completed.contains(index)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (!running) {
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        waiting.computeIfAbsent(index, i -> new ArrayList<>()).add(future);
+        return future;
+    }
+}
@@ -5,25 +5,27 @@ import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.VideoTranscodingSettings;
 import org.airsonic.player.io.InputStreamReaderThread;
 import org.airsonic.player.io.TranscodeInputStream;
+import org.airsonic.player.service.PathWatcherService;
 import org.airsonic.player.service.TranscodingService;
 import org.airsonic.player.util.FileUtil;
 import org.airsonic.player.util.Util;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.Comparator;
+import java.util.Map;
 import java.util.Objects;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class HlsSession {
@@ -41,49 +43,68 @@ public class HlsSession {
 
     private final Path hlsRootDirectory;
 
+    private final PathWatcherService pathWatcherService;
+
+    private final HlsSegmentTracker segments = new HlsSegmentTracker();
+
     private Process process;
 
+    private volatile int generation;
+
+    private ScheduledFuture<?> pollFuture;
+
     private ScheduledFuture<?> destroySessionFuture;
 
-    public HlsSession(Key sessionKey, MediaFile mediaFile, TranscodingService transcodingService, Path hlsRootDirectory) {
+    public HlsSession(Key sessionKey, MediaFile mediaFile, TranscodingService transcodingService,
+            PathWatcherService pathWatcherService, Path hlsRootDirectory) {
         this.LOG = LoggerFactory.getLogger(HlsSession.class.toString() + "-" + sessionKey.id());
         this.LOG.info("Creating HLS session {}: {}", sessionKey.id(), sessionKey);
         this.sessionKey = sessionKey;
         this.mediaFile = mediaFile;
         this.transcodingService = transcodingService;
+        this.pathWatcherService = pathWatcherService;
         this.hlsRootDirectory = hlsRootDirectory;
     }
 
-    public Path waitForSegment(int segmentIndex, long timeoutMillis) throws Exception {
+    /**
+     * Returns the given segment once it is produced, starting or restarting the transcoder if needed.
+     * The future is completed when the transcoder completed the segment, without blocking the caller.
+     *
+     * @param segmentIndex  index of the segment
+     * @param timeoutMillis time after which the future is completed with null
+     * @return future of the segment file, completed with null if the segment could not be produced in time
+     * @throws IOException if the transcoder could not be started
+     */
+    public CompletableFuture<Path> getSegment(int segmentIndex, long timeoutMillis) throws IOException {
         this.LOG.debug("Requesting hls segment {}", segmentIndex);
         scheduleSessionDestruction();
-        Path segment = getSegment(segmentIndex);
-        if (segment != null) {
-            this.LOG.debug("Segment {} already produced.", segmentIndex);
-            return segment;
-        }
-        if (!isProcessAlive()) {
-            startProcess(segmentIndex);
-        } else {
-            Integer latestCompleted = getLatestCompletedSegmentIndex();
-            if (latestCompleted != null
-                    && (segmentIndex < latestCompleted.intValue() || segmentIndex > latestCompleted.intValue() + 2)) {
-                destroySession();
+        synchronized (this) {
+            if (segments.isCompleted(segmentIndex)) {
+                this.LOG.debug("Segment {} already produced.", segmentIndex);
+                return CompletableFuture.completedFuture(getSegmentPath(segmentIndex));
+            }
+            if (!isProcessAlive()) {
                 startProcess(segmentIndex);
+            } else {
+                Integer latestCompleted = segments.getLatestCompleted();
+                if (latestCompleted != null
+                        && (segmentIndex < latestCompleted.intValue() || segmentIndex > latestCompleted.intValue() + 2)) {
+                    destroySession();
+                    startProcess(segmentIndex);
+                }
             }
         }
-        long timeout = currentTimeMillis() + timeoutMillis;
-        while (segment == null && currentTimeMillis() < timeout && isProcessAlive()) {
-            this.LOG.debug("Segment {} not yet produced. Waiting.", segmentIndex);
-            Thread.sleep(2000L);
-            segment = getSegment(segmentIndex);
-        }
-        if (segment != null) {
-            this.LOG.debug("Segment {} produced.", segmentIndex);
-        } else {
-            this.LOG.warn("Timed out for segment {}", segmentIndex);
-        }
-        return segment;
+        this.LOG.debug("Segment {} not yet produced. Waiting.", segmentIndex);
+        return segments.await(segmentIndex)
+                .completeOnTimeout(false, timeoutMillis, TimeUnit.MILLISECONDS)
+                .thenApply(produced -> {
+                    if (produced) {
+                        this.LOG.debug("Segment {} produced.", segmentIndex);
+                        return getSegmentPath(segmentIndex);
+                    }
+                    this.LOG.warn("Timed out for segment {}", segmentIndex);
+                    return null;
+                });
     }
 
     private synchronized void scheduleSessionDestruction() {
@@ -95,32 +116,54 @@ public class HlsSession {
     public void destroySession() {
         this.LOG.debug("Destroying hls session");
         killProcess();
+        pathWatcherService.invalidateWatcher(getWatcherId());
         FileUtil.delete(getDirectory());
     }
 
-    private Path getSegment(int segmentIndex) {
-        SortedSet<Integer> segmentIndexes = getCompletedSegmentIndexes();
-        return segmentIndexes.contains(Integer.valueOf(segmentIndex)) ? getDirectory().resolve(segmentIndex + ".ts") : null;
+    private Path getSegmentPath(int segmentIndex) {
+        return getDirectory().resolve(segmentIndex + ".ts");
+    }
+
+    private String getWatcherId() {
+        return "hls-" + this.sessionKey.id();
     }
 
-    private Integer getLatestCompletedSegmentIndex() {
-        SortedSet<Integer> completed = getCompletedSegmentIndexes();
-        return completed.isEmpty() ? null : completed.last();
+    private void onSegmentFile(int transcoderGeneration, Path file) {
+        if (transcoderGeneration != generation || !"ts".equals(MoreFiles.getFileExtension(file))) {
+            return;
+        }
+        try {
+            segments.segmentCreated(Integer.parseInt(MoreFiles.getNameWithoutExtension(file)));
+        } catch (NumberFormatException e) {
+            LOG.debug("Ignoring file {}", file);
+        }
     }
 
-    private SortedSet<Integer> getCompletedSegmentIndexes() {
+    /**
+     * Reads the segment files from the session directory, when file events are not available or may have been missed.
+     */
+    private void scanSegmentFiles(int transcoderGeneration) {
         try (Stream<Path> children = Files.list(getDirectory())) {
-            SortedSet<Integer> result = children.filter(Files::isRegularFile)
-                    .filter(c -> "ts".equals(MoreFiles.getFileExtension(c))).map(MoreFiles::getNameWithoutExtension)
-                    .map(Integer::valueOf).collect(Collectors.toCollection(() -> new TreeSet<>()));
-            if (!result.isEmpty() && isProcessAlive()) {
-                result.remove(result.last());
-            }
-            return result;
+            children.filter(Files::isRegularFile).map(Path::getFileName).sorted(Comparator.comparing(
+                    c -> NumberUtils.toInt(MoreFiles.getNameWithoutExtension(c), -1)))
+                    .forEach(c -> onSegmentFile(transcoderGeneration, c));
         } catch (IOException e) {
             LOG.warn("Could not retrieve directory list for {} to find segment files", getDirectory(), e);
+        }
+    }
 
-            return Collections.emptySortedSet();
+    private void onProcessExit(int transcoderGeneration, Process exited) {
+        if (transcoderGeneration != generation) {
+            return;
+        }
+        // file events of the last segment may still be queued
+        scanSegmentFiles(transcoderGeneration);
+        segments.stop(transcoderGeneration, exited.exitValue() == 0);
+        synchronized (this) {
+            if (pollFuture != null) {
+                pollFuture.cancel(false);
+                pollFuture = null;
+            }
         }
     }
 
@@ -150,10 +193,27 @@ public class HlsSession {
                 (this.sessionKey.getAudioTrack() == null) ? 1 : this.sessionKey.getAudioTrack(), segmentIndex,
                 getDirectory().resolve("%d.ts").toString(), getDirectory().resolve("out.m3u8").toString());
         TranscodingService.Parameters parameters = transcodingService.getParameters(mediaFile, null, this.sessionKey.getMaxBitRate(), "ts", vts);
+
+        int transcoderGeneration = segments.start();
+        generation = transcoderGeneration;
+        if (pollFuture != null) {
+            pollFuture.cancel(false);
+            pollFuture = null;
+        }
+        try {
+            pathWatcherService.setWatcher(getWatcherId(), getDirectory(), Map.of(
+                    StandardWatchEventKinds.ENTRY_CREATE, (dir, event) -> onSegmentFile(transcoderGeneration, event.context()),
+                    StandardWatchEventKinds.OVERFLOW, (dir, event) -> scanSegmentFiles(transcoderGeneration)));
+        } catch (IOException e) {
+            LOG.warn("Could not watch {}, polling for segments instead", getDirectory(), e);
+            pollFuture = EXECUTOR.scheduleWithFixedDelay(() -> scanSegmentFiles(transcoderGeneration), 1, 1, TimeUnit.SECONDS);
+        }
+
         TranscodeInputStream in = (TranscodeInputStream) transcodingService.getTranscodedInputStream(parameters);
 
         process = in.getProcess();
         (new InputStreamReaderThread(process.getInputStream(), getClass().getSimpleName(), true)).start();
+        process.onExit().thenAccept(p -> onProcessExit(transcoderGeneration, p));
     }
 
     private void killProcess() {
@@ -178,10 +238,6 @@ public class HlsSession {
         }
     }
 
-    private long currentTimeMillis() {
-        return System.nanoTime() / 1000000L;
-    }
-
     public static class Key {
         private final int mediaFileId;
         private final String playerId;
@@ -3,11 +3,14 @@ package org.airsonic.player.service.metadata;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
-public class Chapter {
+public class Chapter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private Integer id;
 
@@ -20,10 +20,14 @@
  */
 package org.airsonic.player.service.metadata;
 
+import com.codahale.metrics.Gauge;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
+import org.airsonic.player.config.AirsonicTranscodeConfig;
 import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.io.ExternalProcessPool;
+import org.airsonic.player.monitor.MetricsManager;
 import org.airsonic.player.service.MediaFolderService;
 import org.airsonic.player.service.SettingsService;
 import org.airsonic.player.util.Util;
@@ -35,13 +39,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 import java.io.BufferedInputStream;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Parses meta data from video files using FFmpeg (http://ffmpeg.org/).
@@ -65,6 +72,31 @@ public class FFmpegParser extends MetaDataParser {
     @Autowired
     private SettingsService settingsService;
 
+    @Autowired
+    private AirsonicTranscodeConfig transcodeConfig;
+
+    @Autowired
+    private MetricsManager metricsManager;
+
+    private ExternalProcessPool ffprobePool;
+
+    @PostConstruct
+    public void init() {
+        ffprobePool = new ExternalProcessPool("ffprobe", transcodeConfig.getProbeParallelism(),
+                transcodeConfig.getProbeTimeout(), TimeUnit.SECONDS);
+        metricsManager.register(FFmpegParser.class, "ffprobe.queueWait", ffprobePool.getQueueWait());
+        metricsManager.register(FFmpegParser.class, "ffprobe.latency", ffprobePool.getLatency());
+        metricsManager.register(FFmpegParser.class, "ffprobe.timeouts", ffprobePool.getTimeouts());
+        metricsManager.register(FFmpegParser.class, "ffprobe.queueLength", (Gauge<Integer>) ffprobePool::getQueueLength);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (ffprobePool != null) {
+            ffprobePool.close();
+        }
+    }
+
     /**
      * Parses meta data for the given music file. No guessing or reformatting is done.
      *
@@ -86,12 +118,7 @@ public class FFmpegParser extends MetaDataParser {
             command.addAll(Arrays.asList(FFPROBE_OPTIONS));
             command.add(file.toAbsolutePath().toString());
 
-            Process process = Runtime.getRuntime().exec(command.toArray(new String[0]));
-            JsonNode result = null;
-            try (InputStream in = process.getInputStream();
-                BufferedInputStream bin = new BufferedInputStream(in); ) {
-                result = Util.getObjectMapper().readTree(bin);
-            }
+            JsonNode result = ffprobePool.execute(command, in -> Util.getObjectMapper().readTree(new BufferedInputStream(in)));
 
             metaData.setDuration(result.at("/format/duration").asDouble());
             // Bitrate is in Kb/s
@@ -147,6 +174,7 @@ public class FFmpegParser extends MetaDataParser {
             }
         } catch (Throwable x) {
             LOG.warn("Error when parsing metadata in {}", file, x);
+            metaData.setParseFailed(true);
         }
 
         return metaData;
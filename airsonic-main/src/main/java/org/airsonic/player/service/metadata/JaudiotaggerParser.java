@@ -117,6 +117,7 @@ public class JaudiotaggerParser extends MetaDataParser {
 
         } catch (Throwable x) {
             LOG.warn("Error when parsing tags in {}", file, x);
+            metaData.setParseFailed(true);
         }
 
         return metaData;
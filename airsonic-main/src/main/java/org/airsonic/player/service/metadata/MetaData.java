@@ -20,6 +20,7 @@
  */
 package org.airsonic.player.service.metadata;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -29,7 +30,9 @@ import java.util.stream.Collectors;
  * Contains meta-data (song title, artist, album etc) for a music file.
  * @author Sindre Mehus
  */
-public class MetaData {
+public class MetaData implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private Integer discNumber;
     private Integer trackNumber;
@@ -48,6 +51,7 @@ public class MetaData {
     private String musicBrainzRecordingId;
     private final List<Track> tracks = new ArrayList<>();
     private final List<Chapter> chapters = new ArrayList<>();
+    private transient boolean parseFailed;
 
     public Integer getDiscNumber() {
         return discNumber;
@@ -193,6 +197,18 @@ public class MetaData {
         return Collections.unmodifiableList(this.chapters);
     }
 
+    /**
+     * Returns whether the file could not be parsed, e.g. because the parser timed out. The meta data is then
+     * incomplete and must not be kept.
+     */
+    public boolean isParseFailed() {
+        return parseFailed;
+    }
+
+    public void setParseFailed(boolean parseFailed) {
+        this.parseFailed = parseFailed;
+    }
+
     public void addChapter(Chapter chapter) {
         this.chapters.add(chapter);
     }
@@ -3,10 +3,14 @@ package org.airsonic.player.service.metadata;
 import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.Serializable;
 import java.util.Locale;
 import java.util.Set;
 
-public class Track {
+public class Track implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     private final int id;
 
     private final String type;
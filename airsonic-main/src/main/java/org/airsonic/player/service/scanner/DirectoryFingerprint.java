@@ -0,0 +1,75 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.scanner;
+
+import java.util.Objects;
+
+/**
+ * Compact fingerprint of a directory subtree on disk.
+ *
+ * The hash covers the name, size and modification time of every child file and
+ * the fingerprint hash of every child directory, so any change below the directory
+ * results in a different fingerprint.
+ */
+public class DirectoryFingerprint {
+
+    private final long lastModified;
+    private final int childCount;
+    private final long hash;
+
+    public DirectoryFingerprint(long lastModified, int childCount, long hash) {
+        this.lastModified = lastModified;
+        this.childCount = childCount;
+        this.hash = hash;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getChildCount() {
+        return childCount;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DirectoryFingerprint)) {
+            return false;
+        }
+        DirectoryFingerprint that = (DirectoryFingerprint) o;
+        return lastModified == that.lastModified && childCount == that.childCount && hash == that.hash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lastModified, childCount, hash);
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryFingerprint [lastModified=" + lastModified + ", childCount=" + childCount + ", hash=" + Long.toHexString(hash) + "]";
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.scanner;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.domain.MusicFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persists the {@link DirectoryFingerprint} of every directory of a music folder
+ * between scans, so that unchanged subtrees can be skipped by an incremental scan.
+ *
+ * One journal file per music folder is kept under the airsonic home directory.
+ * The journal is only replaced after a completed scan.
+ */
+@Component
+public class DirectoryFingerprintJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryFingerprintJournal.class);
+
+    private static final String JOURNAL_DIR_NAME = "scan-journal";
+
+    private static final int JOURNAL_MAGIC = 0x4153464a;
+
+    private static final int JOURNAL_VERSION = 1;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final Path journalDirectory;
+
+    public DirectoryFingerprintJournal(AirsonicHomeConfig homeConfig) {
+        this.journalDirectory = homeConfig.getAirsonicHome().resolve(JOURNAL_DIR_NAME);
+    }
+
+    private Path getJournalFile(MusicFolder folder) {
+        return journalDirectory.resolve("folder-" + folder.getId() + ".journal");
+    }
+
+    /**
+     * Load the fingerprints recorded by the last completed scan of the given folder.
+     *
+     * @param folder music folder
+     * @param salt   hash of the settings the fingerprints depend on. A journal written with another salt is discarded.
+     * @return fingerprints by relative directory path. Empty if there is no valid journal.
+     */
+    public Map<String, DirectoryFingerprint> load(MusicFolder folder, long salt) {
+        Path file = getJournalFile(folder);
+        if (!Files.exists(file)) {
+            return Collections.emptyMap();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != JOURNAL_MAGIC || in.readInt() != JOURNAL_VERSION) {
+                LOG.info("Ignoring scan journal with unknown format: {}", file);
+                return Collections.emptyMap();
+            }
+            if (in.readLong() != salt) {
+                LOG.info("Scan settings changed since the last scan of folder {}. Ignoring scan journal.", folder.getName());
+                return Collections.emptyMap();
+            }
+            int count = in.readInt();
+            Map<String, DirectoryFingerprint> result = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                result.put(path, new DirectoryFingerprint(in.readLong(), in.readInt(), in.readLong()));
+            }
+            return result;
+        } catch (IOException e) {
+            LOG.warn("Failed to read scan journal {}. Folder will be scanned entirely.", file, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Replace the journal of the given folder.
+     *
+     * @param folder       music folder
+     * @param salt         hash of the settings the fingerprints depend on
+     * @param fingerprints fingerprints by relative directory path
+     */
+    public void save(MusicFolder folder, long salt, Map<String, DirectoryFingerprint> fingerprints) {
+        Path file = getJournalFile(folder);
+        try {
+            Files.createDirectories(journalDirectory);
+            Path temp = Files.createTempFile(journalDirectory, "folder-" + folder.getId(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(JOURNAL_MAGIC);
+                out.writeInt(JOURNAL_VERSION);
+                out.writeLong(salt);
+                out.writeInt(fingerprints.size());
+                for (Map.Entry<String, DirectoryFingerprint> e : fingerprints.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().getLastModified());
+                    out.writeInt(e.getValue().getChildCount());
+                    out.writeLong(e.getValue().getHash());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debug("Saved scan journal of folder {} with {} directories", folder.getName(), fingerprints.size());
+        } catch (IOException e) {
+            LOG.warn("Failed to write scan journal {}", file, e);
+        }
+    }
+
+    /**
+     * Delete the journal of the given folder, so that the next scan is not incremental.
+     *
+     * @param folder music folder
+     */
+    public void delete(MusicFolder folder) {
+        try {
+            Files.deleteIfExists(getJournalFile(folder));
+        } catch (IOException e) {
+            LOG.warn("Failed to delete scan journal of folder {}", folder.getName(), e);
+        }
+    }
+
+    /**
+     * Walk the given folder and compute the fingerprint of every directory. Only file attributes are read.
+     *
+     * @param folder       music folder
+     * @param followLinks  whether to follow symbolic links
+     * @return fingerprints by relative directory path
+     */
+    public Map<String, DirectoryFingerprint> compute(MusicFolder folder, boolean followLinks) {
+        Path root = folder.getPath();
+        Map<String, DirectoryFingerprint> result = new HashMap<>();
+        if (!Files.isDirectory(root)) {
+            return result;
+        }
+        Set<FileVisitOption> options = followLinks ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+        Deque<long[]> stack = new ArrayDeque<>();
+        try {
+            Files.walkFileTree(root, options, Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    // [0] = combined hash of the children, [1] = child count, [2] = last modified
+                    stack.push(new long[] {0L, 0L, attrs.lastModifiedTime().toMillis()});
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    addChild(stack.peek(), HASH_FUNCTION.newHasher()
+                            .putString(file.getFileName().toString(), StandardCharsets.UTF_8)
+                            .putLong(attrs.size())
+                            .putLong(attrs.lastModifiedTime().toMillis())
+                            .hash().asLong());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // unreadable entries and link loops are recorded by name only
+                    LOG.debug("Could not read {} while computing fingerprints", file, exc);
+                    addChild(stack.peek(), HASH_FUNCTION.hashString(String.valueOf(file.getFileName()), StandardCharsets.UTF_8).asLong());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    long[] current = stack.pop();
+                    DirectoryFingerprint fingerprint = new DirectoryFingerprint(current[2], (int) current[1], current[0]);
+                    result.put(root.relativize(dir).toString(), fingerprint);
+                    if (!stack.isEmpty()) {
+                        addChild(stack.peek(), HASH_FUNCTION.newHasher()
+                                .putString(dir.getFileName().toString(), StandardCharsets.UTF_8)
+                                .putLong(fingerprint.getLastModified())
+                                .putInt(fingerprint.getChildCount())
+                                .putLong(fingerprint.getHash())
+                                .hash().asLong());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Failed to compute fingerprints of folder {}", folder.getName(), e);
+            return new HashMap<>();
+        }
+        return result;
+    }
+
+    /**
+     * Children are combined with an order independent sum, so the directory listing order does not matter.
+     */
+    private static void addChild(long[] parent, long childHash) {
+        if (parent == null) {
+            return;
+        }
+        parent[0] += childHash;
+        parent[1]++;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.scanner;
+
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MusicFolder;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of a single library scan regarding unchanged subtrees.
+ *
+ * Holds the fingerprints of the previous completed scan and the ones computed from disk
+ * for this scan, and collects the paths of media files in unchanged subtrees so that they
+ * can be marked present in bulk instead of being updated one by one.
+ */
+public class IncrementalScan {
+
+    private final boolean enabled;
+    private final long salt;
+    private final Map<Integer, Map<String, DirectoryFingerprint>> previous = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<String, DirectoryFingerprint>> current = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<String>> unchangedPaths = new ConcurrentHashMap<>();
+
+    /**
+     * @param enabled whether unchanged subtrees may be skipped. If disabled, fingerprints are still computed and recorded.
+     * @param salt    hash of the settings the fingerprints depend on
+     */
+    public IncrementalScan(boolean enabled, long salt) {
+        this.enabled = enabled;
+        this.salt = salt;
+    }
+
+    public long getSalt() {
+        return salt;
+    }
+
+    /**
+     * Register the fingerprints of a music folder.
+     *
+     * @param folder   music folder
+     * @param previous fingerprints recorded by the last completed scan
+     * @param current  fingerprints computed from disk
+     */
+    public void addFolder(MusicFolder folder, Map<String, DirectoryFingerprint> previous, Map<String, DirectoryFingerprint> current) {
+        this.previous.put(folder.getId(), enabled ? previous : Collections.emptyMap());
+        this.current.put(folder.getId(), new ConcurrentHashMap<>(current));
+    }
+
+    /**
+     * Returns the fingerprints computed for this scan.
+     */
+    public Map<String, DirectoryFingerprint> getFingerprints(MusicFolder folder) {
+        return current.getOrDefault(folder.getId(), Collections.emptyMap());
+    }
+
+    /**
+     * Returns whether the subtree of the given directory is unchanged since the last completed scan.
+     *
+     * @param folder    music folder
+     * @param directory directory media file
+     * @return true if the whole subtree can be skipped
+     */
+    public boolean isUnchanged(MusicFolder folder, MediaFile directory) {
+        if (!enabled || !directory.isDirectory() || directory.getPath() == null) {
+            return false;
+        }
+        // children have never been stored for this directory
+        if (directory.getChildrenLastUpdated() == null || !directory.getChildrenLastUpdated().isAfter(Instant.ofEpochMilli(1))) {
+            return false;
+        }
+        DirectoryFingerprint before = previous.getOrDefault(folder.getId(), Collections.emptyMap()).get(directory.getPath());
+        return before != null && Objects.equals(before, getFingerprints(folder).get(directory.getPath()));
+    }
+
+    /**
+     * Forget the fingerprint of the given path and all of its ancestors, so that they are scanned again next time.
+     * Used when a file could not be scanned.
+     *
+     * @param folder music folder
+     * @param path   relative path of the media file
+     */
+    public void invalidate(MusicFolder folder, String path) {
+        Map<String, DirectoryFingerprint> fingerprints = current.get(folder.getId());
+        if (fingerprints == null || path == null) {
+            return;
+        }
+        Path p = Paths.get(path);
+        while (p != null) {
+            fingerprints.remove(p.toString());
+            p = p.getParent();
+        }
+        fingerprints.remove("");
+    }
+
+    /**
+     * Record a media file of an unchanged subtree which is still present.
+     *
+     * @param folder music folder
+     * @param file   media file
+     */
+    public void markPresent(MusicFolder folder, MediaFile file) {
+        unchangedPaths.computeIfAbsent(folder.getId(), k -> ConcurrentHashMap.newKeySet()).add(file.getPath());
+    }
+
+    /**
+     * Returns the paths of media files in unchanged subtrees by folder id.
+     */
+    public Map<Integer, Set<String>> getUnchangedPaths() {
+        return unchangedPaths;
+    }
+
+    public int getUnchangedCount() {
+        return unchangedPaths.values().stream().mapToInt(Set::size).sum();
+    }
+}
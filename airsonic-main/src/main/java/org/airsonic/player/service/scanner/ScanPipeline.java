@@ -0,0 +1,209 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.scanner;
+
+import org.airsonic.player.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A set of stages, each with its own worker threads, through which the items of a scan flow.
+ *
+ * Items are handed from one stage to the next instead of being joined by the submitter, so no worker
+ * ever waits for another one. Bounded stages block their submitters when full, which keeps a fast
+ * upstream stage from piling up work in memory. A stage feeding itself (e.g. directories submitting
+ * their subdirectories) must be unbounded, otherwise its workers could block each other.
+ *
+ * The pipeline completes once every submitted item has been processed.
+ */
+public class ScanPipeline implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScanPipeline.class);
+
+    private final String name;
+    private final List<Stage<?>> stages = new ArrayList<>();
+    // the caller seeding the pipeline holds one ticket, so it cannot complete before seeding is done
+    private final AtomicLong pending = new AtomicLong(1);
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final long startNanos = System.nanoTime();
+
+    public ScanPipeline(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Add a stage to the pipeline.
+     *
+     * @param stageName      name of the stage, used for thread names and reports
+     * @param parallelism    number of worker threads
+     * @param capacity       maximum number of queued items, or 0 for an unbounded stage
+     * @param virtualThreads whether to use virtual threads, if the runtime supports them
+     * @param action         action applied to every item. Exceptions are logged and the item is dropped.
+     * @return the stage
+     */
+    public <T> Stage<T> addStage(String stageName, int parallelism, int capacity, boolean virtualThreads, Consumer<T> action) {
+        Stage<T> stage = new Stage<>(stageName, parallelism, capacity, virtualThreads, action);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Wait until every item submitted to the pipeline has been processed.
+     * Must be called once, after the initial items have been submitted.
+     */
+    public void await() {
+        release();
+        completion.join();
+    }
+
+    private void acquire() {
+        pending.incrementAndGet();
+    }
+
+    private void release() {
+        if (pending.decrementAndGet() == 0) {
+            completion.complete(null);
+        }
+    }
+
+    /**
+     * Returns a one line summary of every stage: processed items, throughput, queue depth and worker utilization.
+     */
+    public List<String> report() {
+        double elapsedSeconds = Math.max(System.nanoTime() - startNanos, 1L) / 1_000_000_000d;
+        List<String> result = new ArrayList<>();
+        for (Stage<?> stage : stages) {
+            long processed = stage.processed.sum();
+            double busySeconds = stage.busyNanos.sum() / 1_000_000_000d;
+            result.add(String.format("%s stage %s: %d items, %.1f/s, %d queued, %d%% busy (%d %s threads)",
+                    name, stage.name, processed, processed / elapsedSeconds, stage.queued.get(),
+                    Math.round(100 * busySeconds / (elapsedSeconds * stage.parallelism)), stage.parallelism,
+                    stage.virtual ? "virtual" : "platform"));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        stages.forEach(stage -> stage.executor.shutdownNow());
+    }
+
+    /**
+     * Returns a factory of virtual threads if the runtime provides them (Java 21+).
+     */
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory(String prefix) {
+        ThreadFactory daemonFactory = Util.getDaemonThreadfactory(prefix);
+        return r -> {
+            Thread t = daemonFactory.newThread(r);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        };
+    }
+
+    public class Stage<T> {
+
+        private final String name;
+        private final int parallelism;
+        private final boolean virtual;
+        private final Semaphore capacity;
+        private final ExecutorService executor;
+        private final Consumer<T> action;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+
+        private Stage(String name, int parallelism, int capacity, boolean virtualThreads, Consumer<T> action) {
+            this.name = name;
+            this.parallelism = Math.max(parallelism, 1);
+            this.capacity = capacity > 0 ? new Semaphore(capacity) : null;
+            this.action = action;
+            String prefix = "MediaLibraryScanner-" + name;
+            ThreadFactory factory = virtualThreads ? virtualThreadFactory(prefix) : null;
+            if (virtualThreads && factory == null) {
+                LOG.info("Virtual threads are not supported by this Java runtime. Using platform threads for stage {}.", name);
+            }
+            this.virtual = factory != null;
+            this.executor = Executors.newFixedThreadPool(this.parallelism, virtual ? factory : platformThreadFactory(prefix));
+        }
+
+        /**
+         * Queue an item. Blocks while a bounded stage is full.
+         *
+         * @param item item to process
+         */
+        public void submit(T item) {
+            if (capacity != null) {
+                capacity.acquireUninterruptibly();
+            }
+            acquire();
+            queued.incrementAndGet();
+            try {
+                executor.execute(() -> process(item));
+            } catch (RuntimeException e) {
+                LOG.warn("Stage {} rejected an item", name, e);
+                queued.decrementAndGet();
+                done();
+            }
+        }
+
+        private void process(T item) {
+            queued.decrementAndGet();
+            long start = System.nanoTime();
+            try {
+                action.accept(item);
+            } catch (Exception e) {
+                LOG.warn("Stage {} failed to process {}", name, item, e);
+            } finally {
+                busyNanos.add(System.nanoTime() - start);
+                processed.increment();
+                done();
+            }
+        }
+
+        private void done() {
+            if (capacity != null) {
+                capacity.release();
+            }
+            release();
+        }
+    }
+}
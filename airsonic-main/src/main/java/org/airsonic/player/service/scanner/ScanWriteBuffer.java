@@ -0,0 +1,111 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.scanner;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind buffer for the entities updated by a scan.
+ *
+ * Entities are collected and handed to the writer in chunks, so that each chunk is written
+ * as JDBC batches within a single transaction instead of one round trip per entity.
+ * An entity added several times before its chunk is written is written once.
+ *
+ * @param <T> entity type
+ */
+public class ScanWriteBuffer<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScanWriteBuffer.class);
+
+    private final String name;
+    private final int chunkSize;
+    private final Consumer<List<T>> writer;
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+
+    /**
+     * @param name      name used in logs
+     * @param chunkSize maximum number of entities written at once
+     * @param writer    writes a chunk of entities, usually in one transaction
+     */
+    public ScanWriteBuffer(String name, int chunkSize, Consumer<List<T>> writer) {
+        this.name = name;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.writer = writer;
+    }
+
+    /**
+     * Add an entity to the buffer. Writes a chunk if the buffer is full.
+     *
+     * @param entity entity to write
+     */
+    public void add(T entity) {
+        queue.add(entity);
+        if (size.incrementAndGet() >= chunkSize) {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Write all buffered entities.
+     */
+    public void flush() {
+        while (!queue.isEmpty()) {
+            writeChunk();
+        }
+        LOG.debug("Wrote {} {} in {} chunks", written.sum(), name, chunks.sum());
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    private void writeChunk() {
+        Map<T, Boolean> chunk = new IdentityHashMap<>();
+        T entity;
+        while (chunk.size() < chunkSize && (entity = queue.poll()) != null) {
+            size.decrementAndGet();
+            chunk.put(entity, Boolean.TRUE);
+        }
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<T> entities = new ArrayList<>(chunk.keySet());
+        try {
+            writer.accept(entities);
+            written.add(entities.size());
+            chunks.increment();
+        } catch (Exception e) {
+            LOG.warn("Failed to write {} {}", entities.size(), name, e);
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.lucene.analysis.custom.CustomAnalyzer.Builder;
 import org.apache.lucene.analysis.en.EnglishPossessiveFilterFactory;
 import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilterFactory;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.ngram.EdgeNGramFilterFactory;
 import org.apache.lucene.analysis.pattern.PatternReplaceFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.springframework.stereotype.Component;
@@ -56,6 +57,11 @@ public final class AnalyzerFactory {
 
     private static final String STOP_WORDS_ARTIST = "org/airsonic/player/service/search/analysis/stopwords_artist.txt";
 
+    /**
+     * Longest prefix stored in the prefix fields. Longer query tokens are searched with a wildcard query.
+     */
+    public static final int PREFIX_MAX_LENGTH = 20;
+
     private Analyzer analyzer;
 
     private Analyzer queryAnalyzer;
@@ -128,6 +134,16 @@ public final class AnalyzerFactory {
         return builder;
     }
 
+    /*
+     * Indexes every leading part of the tokens, so that a word being typed
+     * can be searched with a term query instead of a wildcard query.
+     */
+    private Builder addTokenFilterForPrefix(Builder builder) throws IOException {
+        return builder.addTokenFilter(EdgeNGramFilterFactory.NAME,
+                "minGramSize", "1", "maxGramSize", Integer.toString(PREFIX_MAX_LENGTH),
+                "preserveOriginal", "true");
+    }
+
     private Builder createKeywordAnalyzerBuilder() throws IOException {
         return CustomAnalyzer.builder()
                 .withTokenizer(KeywordTokenizerFactory.NAME);
@@ -155,8 +171,14 @@ public final class AnalyzerFactory {
                 Analyzer defaultAnalyzer = createDefaultAnalyzerBuilder().build();
                 Analyzer artistAnalyzer = createArtistAnalyzerBuilder().build();
 
+                Analyzer prefixAnalyzer = addTokenFilterForPrefix(createDefaultAnalyzerBuilder()).build();
+                Analyzer artistPrefixAnalyzer = addTokenFilterForPrefix(createArtistAnalyzerBuilder()).build();
+
                 Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
                 fieldAnalyzers.put(FieldNames.ARTIST, artistAnalyzer);
+                fieldAnalyzers.put(FieldNames.ARTIST_PREFIX, artistPrefixAnalyzer);
+                fieldAnalyzers.put(FieldNames.ALBUM_PREFIX, prefixAnalyzer);
+                fieldAnalyzers.put(FieldNames.TITLE_PREFIX, prefixAnalyzer);
 
                 analyzer = new PerFieldAnalyzerWrapper(defaultAnalyzer, fieldAnalyzers);
 
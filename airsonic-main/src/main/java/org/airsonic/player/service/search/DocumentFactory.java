@@ -121,6 +121,10 @@ public class DocumentFactory {
         }
         doc.add(new TextField(fieldName, value, Store.NO));
         doc.add(new SortedDocValuesField(fieldName, new BytesRef(value)));
+        String prefixField = FieldNames.prefixOf(fieldName);
+        if (prefixField != null) {
+            doc.add(new TextField(prefixField, value, Store.NO));
+        }
     };
 
     public final Term createPrimarykey(Integer id) {
@@ -92,4 +92,38 @@ class FieldNames {
      **/
     public static final String TITLE = "title";
 
+    /**
+     * Edge n-grams of {@link #ARTIST}, used for prefix search while typing.
+     **/
+    public static final String ARTIST_PREFIX = "artistPrefix";
+
+    /**
+     * Edge n-grams of {@link #ALBUM}, used for prefix search while typing.
+     **/
+    public static final String ALBUM_PREFIX = "albumPrefix";
+
+    /**
+     * Edge n-grams of {@link #TITLE}, used for prefix search while typing.
+     **/
+    public static final String TITLE_PREFIX = "titlePrefix";
+
+    /**
+     * Returns the prefix field of a word field.
+     *
+     * @param fieldName word field
+     * @return prefix field, or null if the field has none
+     */
+    public static String prefixOf(String fieldName) {
+        switch (fieldName) {
+            case ARTIST:
+                return ARTIST_PREFIX;
+            case ALBUM:
+                return ALBUM_PREFIX;
+            case TITLE:
+                return TITLE_PREFIX;
+            default:
+                return null;
+        }
+    }
+
 }
@@ -21,11 +21,14 @@
 package org.airsonic.player.service.search;
 
 import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicScanConfig;
 import org.airsonic.player.domain.*;
 import org.airsonic.player.domain.MediaFile.MediaType;
 import org.airsonic.player.repository.AlbumRepository;
 import org.airsonic.player.repository.ArtistRepository;
 import org.airsonic.player.repository.MediaFileRepository;
+import org.airsonic.player.service.TaskSchedulingService;
+import org.airsonic.player.service.cache.SearchResultCache;
 import org.airsonic.player.util.FileUtil;
 import org.airsonic.player.util.Util;
 import org.apache.lucene.document.Document;
@@ -37,10 +40,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -73,7 +85,7 @@ public class IndexManager {
      *    DocumentFactory or the class that they use.
      *
      */
-    private static final int INDEX_VERSION = 19;
+    private static final int INDEX_VERSION = 20;
 
     public IndexManager(
             AnalyzerFactory analyzerFactory,
@@ -81,7 +93,10 @@ public class IndexManager {
             ArtistRepository artistRepository,
             AlbumRepository albumRepository,
             MediaFileRepository mediaFileRepository,
-            AirsonicHomeConfig homeConfig
+            AirsonicHomeConfig homeConfig,
+            AirsonicScanConfig scanConfig,
+            TaskSchedulingService taskService,
+            SearchResultCache searchResultCache
     ) {
         this.analyzerFactory = analyzerFactory;
         this.documentFactory = documentFactory;
@@ -89,6 +104,9 @@ public class IndexManager {
         this.albumRepository = albumRepository;
         this.mediaFileRepository = mediaFileRepository;
         this.homeConfig = homeConfig;
+        this.scanConfig = scanConfig;
+        this.taskService = taskService;
+        this.searchResultCache = searchResultCache;
         this.rootIndexDirectory = homeConfig.getAirsonicHome().resolve(INDEX_ROOT_DIR_NAME.concat(Integer.toString(INDEX_VERSION)));
     }
 
@@ -99,6 +117,9 @@ public class IndexManager {
     private final AlbumRepository albumRepository;
     private final MediaFileRepository mediaFileRepository;
     private final AirsonicHomeConfig homeConfig;
+    private final AirsonicScanConfig scanConfig;
+    private final TaskSchedulingService taskService;
+    private final SearchResultCache searchResultCache;
 
     /**
      * Literal name of index top directory.
@@ -117,13 +138,50 @@ public class IndexManager {
 
     private Map<IndexType, SearcherManager> searchers = new ConcurrentHashMap<>();
 
+    /**
+     * Writers are opened by the first scan or change, and kept open. The searchers of an open writer
+     * see its changes on refresh, before they are committed (near-real-time search).
+     */
     private Map<IndexType, IndexWriter> writers = new ConcurrentHashMap<>();
 
+    /**
+     * Whether a scan is writing to the index. Changes made outside of the scan wait until it is done.
+     */
+    private volatile boolean scanning;
+
+    // Changes made outside of a scan, until the next refresh. Repeated changes of an entity are merged.
+    private final Map<Integer, MediaFile> pendingMediaFiles = new ConcurrentHashMap<>();
+    private final Map<Integer, Album> pendingAlbums = new ConcurrentHashMap<>();
+    private final Map<Integer, Artist> pendingArtists = new ConcurrentHashMap<>();
+
+    // Changes which are searchable, but not committed yet. Guarded by this.
+    private int uncommitted;
+    private Instant lastCommit = Instant.now();
+
+    @PostConstruct
+    public void init() {
+        Duration interval = Duration.ofSeconds(scanConfig.getIndexRefreshInterval());
+        taskService.scheduleFixedDelayTask("index-refresh", this::refresh, Instant.now().plus(interval), interval, true);
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        taskService.unscheduleTask("index-refresh");
+        if (!scanning) {
+            refresh();
+            commit();
+        }
+        searchers.values().forEach(FileUtil::closeQuietly);
+        searchers.clear();
+        writers.values().forEach(FileUtil::closeQuietly);
+        writers.clear();
+    }
+
     public void index(Album album) {
         Term primarykey = documentFactory.createPrimarykey(album);
         Document document = documentFactory.createAlbumId3Document(album);
         try {
-            writers.get(IndexType.ALBUM_ID3).updateDocument(primarykey, document);
+            getWriter(IndexType.ALBUM_ID3).updateDocument(primarykey, document);
         } catch (Exception x) {
             LOG.error("Failed to create search index for album {}", album, x);
         }
@@ -133,7 +191,7 @@ public class IndexManager {
         Term primarykey = documentFactory.createPrimarykey(artist);
         Document document = documentFactory.createArtistId3Document(artist, musicFolder);
         try {
-            writers.get(IndexType.ARTIST_ID3).updateDocument(primarykey, document);
+            getWriter(IndexType.ARTIST_ID3).updateDocument(primarykey, document);
         } catch (Exception x) {
             LOG.error("Failed to create search index for artist {}", artist, x);
         }
@@ -144,43 +202,249 @@ public class IndexManager {
         try {
             if (mediaFile.isFile()) {
                 Document document = documentFactory.createSongDocument(mediaFile, musicFolder);
-                writers.get(IndexType.SONG).updateDocument(primarykey, document);
+                getWriter(IndexType.SONG).updateDocument(primarykey, document);
             } else if (mediaFile.isAlbum()) {
                 Document document = documentFactory.createAlbumDocument(mediaFile, musicFolder);
-                writers.get(IndexType.ALBUM).updateDocument(primarykey, document);
+                getWriter(IndexType.ALBUM).updateDocument(primarykey, document);
             } else {
                 Document document = documentFactory.createArtistDocument(mediaFile, musicFolder);
-                writers.get(IndexType.ARTIST).updateDocument(primarykey, document);
+                getWriter(IndexType.ARTIST).updateDocument(primarykey, document);
             }
         } catch (Exception x) {
             LOG.error("Failed to create search index for mediaFile {}", mediaFile, x);
         }
     }
 
-    public final boolean startIndexing() {
-        return EnumSet.allOf(IndexType.class).parallelStream().map(x -> {
+    /**
+     * Prepare the writers of all indexes for a scan.
+     * Changes made outside of the scan are not applied until {@link #stopIndexing} is called.
+     *
+     * @return true if all writers could be opened, false if they are already used by a scan
+     */
+    public final synchronized boolean startIndexing() {
+        if (scanning) {
+            return false;
+        }
+        boolean opened = EnumSet.allOf(IndexType.class).parallelStream().map(x -> {
             try {
-                writers.put(x, createIndexWriter(x));
+                getWriter(x);
             } catch (IOException e) {
                 LOG.error("Failed to create search index for {}", x, e);
                 return false;
             }
             return true;
         }).reduce(true, (a, b) -> a && b);
+        scanning = opened;
+        return opened;
+    }
+
+    /**
+     * Apply the given changes to the index outside of a scan, e.g. for files changed on disk.
+     * Present entities are (re-)indexed and non-present ones are deleted.
+     * If a scan is in progress, the changes are added to the scan's writers and committed with it.
+     * Otherwise they are searchable after the next refresh, and committed with the statistics of the last scan.
+     *
+     * @param mediaFiles media files
+     * @param albums     albums
+     * @param artists    artists
+     */
+    public synchronized void indexChanges(Collection<MediaFile> mediaFiles, Collection<Album> albums, Collection<Artist> artists) {
+        if (mediaFiles.isEmpty() && albums.isEmpty() && artists.isEmpty()) {
+            return;
+        }
+        if (!scanning) {
+            mediaFiles.forEach(this::indexLater);
+            albums.forEach(this::indexLater);
+            artists.forEach(this::indexLater);
+            return;
+        }
+        apply(mediaFiles, albums, artists);
+    }
+
+    /**
+     * Queue a changed media file, to be indexed or deleted with the next refresh.
+     * Ignored during a scan, which indexes the files it updates.
+     *
+     * @param mediaFile the changed media file
+     */
+    public void indexLater(MediaFile mediaFile) {
+        if (!scanning && mediaFile.getId() != null && mediaFile.getFolder() != null) {
+            pendingMediaFiles.put(mediaFile.getId(), mediaFile);
+        }
+    }
+
+    /**
+     * Queue a changed album, to be indexed or deleted with the next refresh.
+     * Ignored during a scan.
+     *
+     * @param album the changed album
+     */
+    public void indexLater(Album album) {
+        if (!scanning && album.getId() != null) {
+            pendingAlbums.put(album.getId(), album);
+        }
+    }
+
+    /**
+     * Queue a changed artist, to be indexed or deleted with the next refresh.
+     * Ignored during a scan.
+     *
+     * @param artist the changed artist
+     */
+    public void indexLater(Artist artist) {
+        if (!scanning && artist.getId() != null) {
+            pendingArtists.put(artist.getId(), artist);
+        }
+    }
+
+    /**
+     * Apply the queued changes and make them searchable. The changes are committed when there are many
+     * or the last commit is older than the commit interval. Skipped during a scan.
+     * Called periodically, see {@link AirsonicScanConfig#getIndexRefreshInterval()}.
+     */
+    public synchronized void refresh() {
+        if (scanning) {
+            return;
+        }
+        try {
+            List<MediaFile> mediaFiles = drain(pendingMediaFiles);
+            List<Album> albums = drain(pendingAlbums);
+            List<Artist> artists = drain(pendingArtists);
+            int changes = mediaFiles.size() + albums.size() + artists.size();
+            if (changes > 0) {
+                if (getStatistics() == null) {
+                    LOG.debug("No valid index yet. {} changes will be indexed by the next scan.", changes);
+                    return;
+                }
+                apply(mediaFiles, albums, artists);
+                uncommitted += changes;
+                searchers.values().forEach(s -> {
+                    try {
+                        s.maybeRefresh();
+                    } catch (IOException e) {
+                        LOG.warn("Failed to refresh SearcherManager", e);
+                    }
+                });
+                searchResultCache.clear();
+                LOG.debug("{} changes are searchable", changes);
+            }
+            if (uncommitted >= scanConfig.getIndexCommitThreshold() || (uncommitted > 0
+                    && Duration.between(lastCommit, Instant.now()).getSeconds() >= scanConfig.getIndexCommitInterval())) {
+                commit();
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Failed to refresh search index", e);
+        }
+    }
+
+    private static <T> List<T> drain(Map<Integer, T> pending) {
+        List<T> result = new ArrayList<>();
+        for (Integer id : List.copyOf(pending.keySet())) {
+            T value = pending.remove(id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Commit the open writers, keeping the statistics of the last scan.
+     */
+    private void commit() {
+        writers.forEach((type, writer) -> {
+            try {
+                writer.commit();
+            } catch (IOException e) {
+                LOG.error("Failed to commit search index for {}.", type, e);
+            }
+        });
+        LOG.debug("Committed {} changes to the search index", uncommitted);
+        uncommitted = 0;
+        lastCommit = Instant.now();
+    }
+
+    private void apply(Collection<MediaFile> mediaFiles, Collection<Album> albums, Collection<Artist> artists) {
+        mediaFiles.forEach(mediaFile -> {
+            if (mediaFile.isPresent()) {
+                index(mediaFile, mediaFile.getFolder());
+            } else {
+                delete(documentFactory.createPrimarykey(mediaFile.getId()), IndexType.SONG, IndexType.ALBUM, IndexType.ARTIST);
+            }
+        });
+        albums.forEach(album -> {
+            if (album.isPresent()) {
+                index(album);
+            } else {
+                delete(documentFactory.createPrimarykey(album.getId()), IndexType.ALBUM_ID3);
+            }
+        });
+        artists.forEach(artist -> {
+            if (artist.isPresent()) {
+                index(artist, artist.getFolder());
+            } else {
+                delete(documentFactory.createPrimarykey(artist.getId()), IndexType.ARTIST_ID3);
+            }
+        });
+    }
+
+    private void delete(Term primarykey, IndexType... indexTypes) {
+        for (IndexType indexType : indexTypes) {
+            try {
+                getWriter(indexType).deleteDocuments(primarykey);
+            } catch (IOException e) {
+                LOG.error("Failed to delete {} doc.", indexType, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the writer of the given index, opening it if necessary.
+     * The searchers of the index are switched to the writer, so that they see its changes when refreshed.
+     */
+    private IndexWriter getWriter(IndexType indexType) throws IOException {
+        IndexWriter writer = writers.get(indexType);
+        if (writer != null) {
+            return writer;
+        }
+        synchronized (writers) {
+            writer = writers.get(indexType);
+            if (writer == null) {
+                writer = createIndexWriter(indexType);
+                IndexWriter nrtWriter = writer;
+                searchers.compute(indexType, (k, old) -> {
+                    FileUtil.closeQuietly(old);
+                    return createSearcherManager(k, nrtWriter);
+                });
+                writers.put(indexType, writer);
+            }
+            return writer;
+        }
     }
 
     private IndexWriter createIndexWriter(IndexType indexType) throws IOException {
         Path indexDirectory = getIndexDirectory.apply(indexType);
         IndexWriterConfig config = new IndexWriterConfig(analyzerFactory.getAnalyzer());
+        // an interrupted scan is not committed
+        config.setCommitOnClose(false);
         return new IndexWriter(FSDirectory.open(indexDirectory), config);
     }
 
+    private static SearcherManager createSearcherManager(IndexType indexType, IndexWriter writer) {
+        try {
+            return new SearcherManager(writer, null);
+        } catch (IOException e) {
+            LOG.error("Failed to initialize SearcherManager for {}", indexType, e);
+            return null;
+        }
+    }
+
     public void expunge() {
         Term[] primarykeys = mediaFileRepository.findByMediaTypeAndPresentFalse(MediaType.DIRECTORY).stream()
                 .map(m -> documentFactory.createPrimarykey(m.getId()))
                 .toArray(i -> new Term[i]);
         try {
-            writers.get(IndexType.ARTIST).deleteDocuments(primarykeys);
+            getWriter(IndexType.ARTIST).deleteDocuments(primarykeys);
         } catch (IOException e) {
             LOG.error("Failed to delete artist doc.", e);
         }
@@ -189,7 +453,7 @@ public class IndexManager {
                 .map(m -> documentFactory.createPrimarykey(m.getId()))
                 .toArray(i -> new Term[i]);
         try {
-            writers.get(IndexType.ALBUM).deleteDocuments(primarykeys);
+            getWriter(IndexType.ALBUM).deleteDocuments(primarykeys);
         } catch (IOException e) {
             LOG.error("Failed to delete album doc.", e);
         }
@@ -198,7 +462,7 @@ public class IndexManager {
                 .map(m -> documentFactory.createPrimarykey(m.getId()))
                 .toArray(i -> new Term[i]);
         try {
-            writers.get(IndexType.SONG).deleteDocuments(primarykeys);
+            getWriter(IndexType.SONG).deleteDocuments(primarykeys);
         } catch (IOException e) {
             LOG.error("Failed to delete song doc.", e);
         }
@@ -207,7 +471,7 @@ public class IndexManager {
                 .map(m -> documentFactory.createPrimarykey(m.getId()))
                 .toArray(i -> new Term[i]);
         try {
-            writers.get(IndexType.ARTIST_ID3).deleteDocuments(primarykeys);
+            getWriter(IndexType.ARTIST_ID3).deleteDocuments(primarykeys);
         } catch (IOException e) {
             LOG.error("Failed to delete artistId3 doc.", e);
         }
@@ -216,7 +480,7 @@ public class IndexManager {
                 .map(m -> documentFactory.createPrimarykey(m.getId()))
                 .toArray(i -> new Term[i]);
         try {
-            writers.get(IndexType.ALBUM_ID3).deleteDocuments(primarykeys);
+            getWriter(IndexType.ALBUM_ID3).deleteDocuments(primarykeys);
         } catch (IOException e) {
             LOG.error("Failed to delete albumId3 doc.", e);
         }
@@ -224,43 +488,44 @@ public class IndexManager {
     }
 
     /**
-     * Close Writer of all indexes and update SearcherManager.
+     * Commit the writers of all indexes with the statistics of the scan and refresh SearcherManager.
      * Called at the end of the Scan flow.
      */
-    public void stopIndexing(MediaLibraryStatistics statistics) {
+    public synchronized void stopIndexing(MediaLibraryStatistics statistics) {
         EnumSet.allOf(IndexType.class).parallelStream().forEach(indexType -> stopIndexing(indexType, statistics));
+        searchResultCache.clear();
+        uncommitted = 0;
+        lastCommit = Instant.now();
+        scanning = false;
     }
 
     /**
-     * Close Writer of specified index and refresh SearcherManager.
+     * Commit Writer of specified index and refresh SearcherManager.
      */
     private void stopIndexing(IndexType type, MediaLibraryStatistics statistics) {
-        writers.computeIfPresent(type, (tw, w) -> {
-            try (IndexWriter writer = w) {
-                Map<String,String> userData = Util.objectToStringMap(statistics);
-                writer.setLiveCommitData(userData.entrySet());
-                boolean updated = (-1 != writer.commit());
-                LOG.trace("Success to create or update search index : [{}]", tw);
-
-                if (updated) {
-                    searchers.computeIfPresent(tw, (ts, s) -> {
-                        try {
-                            s.maybeRefresh();
-                            LOG.trace("SearcherManager has been refreshed : [{}]", ts);
-                            return s;
-                        } catch (IOException e) {
-                            LOG.error("Failed to refresh SearcherManager : [{}]", ts, e);
-                            return null; //remove from map
-                        }
-                    });
-                }
-            } catch (IOException e) {
-                LOG.error("Failed to create search index for {}.", tw, e);
-            }
+        IndexWriter writer = writers.get(type);
+        if (writer == null) {
+            return;
+        }
+        try {
+            Map<String,String> userData = Util.objectToStringMap(statistics);
+            writer.setLiveCommitData(userData.entrySet());
+            writer.commit();
+            LOG.trace("Success to create or update search index : [{}]", type);
 
-            //remove from map
-            return null;
-        });
+            searchers.computeIfPresent(type, (ts, s) -> {
+                try {
+                    s.maybeRefresh();
+                    LOG.trace("SearcherManager has been refreshed : [{}]", ts);
+                    return s;
+                } catch (IOException e) {
+                    LOG.error("Failed to refresh SearcherManager : [{}]", ts, e);
+                    return null; //remove from map
+                }
+            });
+        } catch (IOException e) {
+            LOG.error("Failed to create search index for {}.", type, e);
+        }
     }
 
     /**
@@ -269,6 +534,18 @@ public class IndexManager {
      */
     public MediaLibraryStatistics getStatistics() {
         Set<MediaLibraryStatistics> stats = EnumSet.allOf(IndexType.class).parallelStream().map(t -> {
+            IndexWriter writer = writers.get(t);
+            if (writer != null) {
+                // the data of the last commit, or of the last scan if set by it
+                Map<String, String> userData = new HashMap<>();
+                writer.getLiveCommitData().forEach(e -> userData.put(e.getKey(), e.getValue()));
+                try {
+                    return Util.stringMapToValidObject(MediaLibraryStatistics.class, userData);
+                } catch (IllegalArgumentException e) {
+                    LOG.debug("Exception encountered while fetching index commit data for {}", t, e);
+                    return null;
+                }
+            }
             IndexSearcher searcher = getSearcher(t);
             if (searcher == null) {
                 LOG.trace("No index for type {}", t);
@@ -32,6 +32,7 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.WildcardQuery;
@@ -117,7 +118,7 @@ public class QueryFactory {
                 while (stream.incrementToken()) {
                     String token = stream.getAttribute(CharTermAttribute.class).toString();
                     TermQuery termQuery = new TermQuery(new Term(fieldName, token));
-                    WildcardQuery wildcardQuery = new WildcardQuery(new Term(fieldName, token.concat(ASTERISK)));
+                    Query wildcardQuery = createPrefixQuery(fieldName, token);
                     if (indexType.getBoosts().containsKey(fieldName)) {
                         fieldQuerys.add(new BoostQuery(termQuery, indexType.getBoosts().get(fieldName) * 0.5f));
                         fieldQuerys.add(new BoostQuery(wildcardQuery, indexType.getBoosts().get(fieldName)));
@@ -253,7 +254,7 @@ public class QueryFactory {
                 if (stream.incrementToken()) {
                     mainQuery.add(new TermQuery(new Term(fieldName, token)), Occur.SHOULD);
                 } else {
-                    WildcardQuery wildcardQuery = new WildcardQuery(new Term(fieldName, token.concat(ASTERISK)));
+                    Query wildcardQuery = createPrefixQuery(fieldName, token);
                     mainQuery.add(wildcardQuery, Occur.SHOULD);
                     break;
                 }
@@ -264,6 +265,19 @@ public class QueryFactory {
         return mainQuery.build();
     }
 
+    /*
+     * Forward match of the token. The edge n-grams of the prefix field are looked up with a single term,
+     * instead of expanding a wildcard over the term dictionary. The score is constant in both cases.
+     * Tokens longer than the indexed prefixes fall back to the wildcard.
+     */
+    private Query createPrefixQuery(String fieldName, String token) {
+        String prefixField = FieldNames.prefixOf(fieldName);
+        if (prefixField == null || AnalyzerFactory.PREFIX_MAX_LENGTH < token.codePointCount(0, token.length())) {
+            return new WildcardQuery(new Term(fieldName, token.concat(ASTERISK)));
+        }
+        return new ConstantScoreQuery(new TermQuery(new Term(prefixField, token)));
+    }
+
     /**
      * Query generation expression extracted from
      * {@link org.airsonic.player.service.SearchService#getRandomAlbums(int, List)}.
@@ -0,0 +1,214 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+
+package org.airsonic.player.service.search;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.DoubleValues;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreMode;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Collects a random sample of the matching documents, without keeping all of them.
+ *
+ * Every match gets a random key, and the documents with the largest keys are kept in a heap of at most
+ * <code>count</code> entries (reservoir sampling). With a weight, the key of a document of weight w is
+ * u<sup>1/w</sup> for a uniform u (Efraimidis-Spirakis), so heavier documents are more likely to be chosen.
+ * Memory is proportional to the sample size, not to the number of matches.
+ *
+ * Use {@link #manager(int, Random, DoubleValuesSource, IntPredicate)} to search with it, the samples of the
+ * slices are then merged by keeping the largest keys again.
+ */
+public class RandomDocsCollector implements Collector {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int count;
+    private final Random random;
+    private final DoubleValuesSource weights;
+    private final IntPredicate excluded;
+
+    // min-heap of the keys, with the global doc ids at the same positions
+    private double[] keys;
+    private int[] docs;
+    private int size;
+
+    /**
+     * @param count    maximum number of documents to sample
+     * @param random   source of randomness
+     * @param weights  weights of the documents, or null to sample uniformly. Documents without a positive weight
+     *                 are never chosen.
+     * @param excluded global doc ids which must not be sampled, or null
+     */
+    public RandomDocsCollector(int count, Random random, DoubleValuesSource weights, IntPredicate excluded) {
+        this.count = count;
+        this.random = random;
+        this.weights = weights;
+        this.excluded = excluded;
+        int capacity = Math.max(1, Math.min(count, INITIAL_CAPACITY));
+        this.keys = new double[capacity];
+        this.docs = new int[capacity];
+    }
+
+    /**
+     * Creates a manager sampling over all the slices searched, with one collector per slice. The parameters are
+     * the ones of the constructor, and the result is the one of {@link #getDocs()}.
+     *
+     * @return the collector manager
+     */
+    public static CollectorManager<RandomDocsCollector, int[]> manager(int count, Random random,
+            DoubleValuesSource weights, IntPredicate excluded) {
+        return new CollectorManager<>() {
+
+            @Override
+            public RandomDocsCollector newCollector() {
+                return new RandomDocsCollector(count, random, weights, excluded);
+            }
+
+            @Override
+            public int[] reduce(Collection<RandomDocsCollector> collectors) {
+                RandomDocsCollector merged = new RandomDocsCollector(count, random, null, null);
+                for (RandomDocsCollector collector : collectors) {
+                    for (int i = 0; i < collector.size; i++) {
+                        merged.offer(collector.keys[i], collector.docs[i]);
+                    }
+                }
+                return merged.getDocs();
+            }
+        };
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+        int docBase = context.docBase;
+        DoubleValues values = weights == null ? null : weights.getValues(context, null);
+        return new LeafCollector() {
+
+            @Override
+            public void setScorer(Scorable scorer) {
+                // not scored
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                int globalDoc = docBase + doc;
+                if (count <= 0 || (excluded != null && excluded.test(globalDoc))) {
+                    return;
+                }
+                double key;
+                if (values == null) {
+                    key = random.nextDouble();
+                } else {
+                    double weight = values.advanceExact(doc) ? values.doubleValue() : 0;
+                    if (!(weight > 0)) {
+                        return;
+                    }
+                    key = Math.pow(random.nextDouble(), 1 / weight);
+                }
+                offer(key, globalDoc);
+            }
+        };
+    }
+
+    private void offer(double key, int doc) {
+        if (size < count) {
+            if (size == keys.length) {
+                int capacity = (int) Math.min(count, keys.length * 2L);
+                keys = Arrays.copyOf(keys, capacity);
+                docs = Arrays.copyOf(docs, capacity);
+            }
+            keys[size] = key;
+            docs[size] = doc;
+            siftUp(size++);
+        } else if (key > keys[0]) {
+            keys[0] = key;
+            docs[0] = doc;
+            siftDown(0, size);
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= keys[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[i] <= keys[child]) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int doc = docs[i];
+        docs[i] = docs[j];
+        docs[j] = doc;
+    }
+
+    /**
+     * Returns the sampled global doc ids, in random order: the document with the largest key comes first.
+     * The collector can not be used afterwards.
+     *
+     * @return the sampled doc ids
+     */
+    public int[] getDocs() {
+        // heap sort, the smallest key is moved to the end first
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        int[] result = Arrays.copyOf(docs, size);
+        size = 0;
+        return result;
+    }
+}
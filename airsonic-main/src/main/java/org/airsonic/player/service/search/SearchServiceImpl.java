@@ -22,7 +22,11 @@ package org.airsonic.player.service.search;
 
 import org.airsonic.player.domain.*;
 import org.airsonic.player.service.SearchService;
+import org.airsonic.player.service.cache.SearchResultCache;
+import org.airsonic.player.service.cache.SearchResultCache.CachedResult;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.StoredFields;
 import org.apache.lucene.search.*;
 import org.slf4j.Logger;
@@ -33,7 +37,6 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.util.*;
 import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
 
 import static org.airsonic.player.service.search.IndexType.*;
 import static org.springframework.util.ObjectUtils.isEmpty;
@@ -49,6 +52,11 @@ public class SearchServiceImpl implements SearchService {
     private IndexManager indexManager;
     @Autowired
     private SearchServiceUtilities util;
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    // Sampling rounds to replace documents of deleted entities, until the index is updated
+    private static final int MAX_RANDOM_ROUNDS = 3;
 
     // TODO Should be changed to SecureRandom?
     private final Random random = new Random(System.currentTimeMillis());
@@ -71,17 +79,27 @@ public class SearchServiceImpl implements SearchService {
         }
 
         try {
-            Query query = queryFactory.search(criteria, musicFolders, indexType);
-
-            TopDocs topDocs = searcher.search(query, offset + count);
-            int totalHits = util.round.apply(topDocs.totalHits.value);
-            result.setTotalHits(totalHits);
-            int start = Math.min(offset, totalHits);
-            int end = Math.min(start + count, totalHits);
-            StoredFields storedFields = searcher.storedFields();
-            for (int i = start; i < end; i++) {
-                util.addIfAnyMatch(result, indexType, storedFields.document(topDocs.scoreDocs[i].doc));
+            String cacheKey = createCacheKey(criteria, musicFolders, indexType, searcher.getIndexReader());
+            CachedResult cached = cacheKey == null ? null : searchResultCache.get(cacheKey);
+            if (cached == null) {
+                Query query = queryFactory.search(criteria, musicFolders, indexType);
+
+                TopDocs topDocs = searcher.search(query, offset + count);
+                int totalHits = util.round.apply(topDocs.totalHits.value);
+                int start = Math.min(offset, totalHits);
+                int end = Math.min(start + count, totalHits);
+                StoredFields storedFields = searcher.storedFields();
+                List<Integer> ids = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    ids.add(util.getId.apply(storedFields.document(topDocs.scoreDocs[i].doc)));
+                }
+                cached = new CachedResult(ids, totalHits);
+                if (cacheKey != null) {
+                    searchResultCache.put(cacheKey, cached);
+                }
             }
+            result.setTotalHits(cached.totalHits());
+            util.addAllIfAnyMatch(result, indexType, cached.ids());
 
         } catch (IOException e) {
             LOG.error("Failed to execute Lucene search.", e);
@@ -91,9 +109,31 @@ public class SearchServiceImpl implements SearchService {
         return result;
     }
 
+    /*
+     * The same words typed with other spacing or case give the same result, as the analyzer drops them.
+     * The reader version makes entries of an older index unreachable, even before the cache is cleared.
+     */
+    static String createCacheKey(SearchCriteria criteria, List<MusicFolder> musicFolders, IndexType indexType,
+            IndexReader reader) {
+        if (!(reader instanceof DirectoryReader) || isEmpty(criteria.getQuery())) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder()
+                .append(indexType.name()).append(':')
+                .append(((DirectoryReader) reader).getVersion()).append(':')
+                .append(criteria.getOffset()).append(':')
+                .append(criteria.getCount()).append(':');
+        musicFolders.stream().map(MusicFolder::getId).sorted().forEach(id -> key.append(id).append(','));
+        key.append(':').append(criteria.getQuery().trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT));
+        return key.toString();
+    }
+
     /**
      * Common processing of random method.
      *
+     * The matching documents are sampled while they are collected, so only the chosen ones are kept.
+     * Documents whose entity no longer exists are skipped, and replaced by sampling again among the others.
+     *
      * @param count Number of albums to return.
      * @param id2ListCallBack Callback to get D from id and store it in List
      */
@@ -101,18 +141,20 @@ public class SearchServiceImpl implements SearchService {
             int count, IndexSearcher searcher, Query query, BiConsumer<List<D>, Integer> id2ListCallBack)
             throws IOException {
 
-        List<Integer> docs = Arrays
-                .stream(searcher.search(query, Integer.MAX_VALUE).scoreDocs)
-                .map(sd -> sd.doc)
-                .collect(Collectors.toList());
-
         List<D> result = new ArrayList<>();
+        Set<Integer> drawn = new HashSet<>();
         StoredFields storedFields = searcher.storedFields();
-        while (!docs.isEmpty() && result.size() < count) {
-            int randomPos = random.nextInt(docs.size());
-            Document document = storedFields.document(docs.get(randomPos));
-            id2ListCallBack.accept(result, util.getId.apply(document));
-            docs.remove(randomPos);
+        for (int round = 0; round < MAX_RANDOM_ROUNDS && result.size() < count; round++) {
+            int[] docs = searcher.search(query, RandomDocsCollector.manager(count - result.size(), random, null,
+                    drawn.isEmpty() ? null : drawn::contains));
+            if (docs.length == 0) {
+                break;
+            }
+            for (int doc : docs) {
+                drawn.add(doc);
+                Document document = storedFields.document(doc);
+                id2ListCallBack.accept(result, util.getId.apply(document));
+            }
         }
 
         return result;
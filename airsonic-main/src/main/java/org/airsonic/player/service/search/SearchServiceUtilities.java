@@ -29,14 +29,19 @@ import org.airsonic.player.domain.SearchResult;
 import org.airsonic.player.repository.AlbumRepository;
 import org.airsonic.player.repository.ArtistRepository;
 import org.airsonic.player.service.MediaFileService;
+import org.airsonic.player.util.Util;
 import org.apache.lucene.document.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Termination used by SearchService.
@@ -152,7 +157,10 @@ public class SearchServiceUtilities {
     }
 
     public final void addIfAnyMatch(SearchResult dist, IndexType subjectIndexType, Document subject) {
-        int documentId = getId.apply(subject);
+        addIfAnyMatch(dist, subjectIndexType, getId.apply(subject));
+    }
+
+    public final void addIfAnyMatch(SearchResult dist, IndexType subjectIndexType, int documentId) {
         if (subjectIndexType == IndexType.ARTIST || subjectIndexType == IndexType.ALBUM
                 || subjectIndexType == IndexType.SONG) {
             addMediaFileIfAnyMatch.accept(dist.getMediaFiles(), documentId);
@@ -163,4 +171,28 @@ public class SearchServiceUtilities {
         }
     }
 
+    /*
+     * Same as addIfAnyMatch for each id, with one query per page instead of one per hit.
+     */
+    public final void addAllIfAnyMatch(SearchResult dist, IndexType subjectIndexType, List<Integer> documentIds) {
+        if (subjectIndexType == IndexType.ARTIST || subjectIndexType == IndexType.ALBUM
+                || subjectIndexType == IndexType.SONG) {
+            addAllIfAbsent(dist.getMediaFiles(), mediaFileService.getMediaFiles(documentIds), MediaFile::getId);
+        } else if (subjectIndexType == IndexType.ARTIST_ID3) {
+            addAllIfAbsent(dist.getArtists(), inOrderOf(documentIds, Util.queryInBatches(documentIds, artistRepository::findAllById), Artist::getId), Artist::getId);
+        } else if (subjectIndexType == IndexType.ALBUM_ID3) {
+            addAllIfAbsent(dist.getAlbums(), inOrderOf(documentIds, Util.queryInBatches(documentIds, albumRepository::findAllById), Album::getId), Album::getId);
+        }
+    }
+
+    private static <T> List<T> inOrderOf(List<Integer> ids, List<T> entities, Function<T, Integer> getId) {
+        Map<Integer, T> byId = entities.stream().collect(Collectors.toMap(getId, Function.identity(), (a, b) -> a));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static <T> void addAllIfAbsent(List<T> dist, List<T> entities, Function<T, Integer> getId) {
+        Set<Integer> present = dist.stream().map(getId).collect(Collectors.toSet());
+        entities.stream().filter(e -> present.add(getId.apply(e))).forEach(dist::add);
+    }
+
 }
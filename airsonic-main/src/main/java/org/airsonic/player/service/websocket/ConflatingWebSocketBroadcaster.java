@@ -0,0 +1,145 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+
+package org.airsonic.player.service.websocket;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.airsonic.player.config.AirsonicBroadcastConfig;
+import org.airsonic.player.monitor.MetricsManager;
+import org.airsonic.player.service.TaskSchedulingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends status messages at a bounded rate, keeping only the latest message per key. Status topics
+ * such as the scan progress or the players' now playing state describe a state rather than events,
+ * so a message superseded before it was sent is dropped. Pending messages are flushed at most
+ * {@link AirsonicBroadcastConfig#getMaxRate()} times per second, in the order of their latest update.
+ */
+@Component
+public class ConflatingWebSocketBroadcaster {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConflatingWebSocketBroadcaster.class);
+
+    private static final String FLUSH_TASK_NAME = "websocket-broadcast-flush";
+
+    private final SimpMessagingTemplate brokerTemplate;
+    private final TaskSchedulingService taskService;
+    private final AirsonicBroadcastConfig broadcastConfig;
+
+    // Pending messages, in the order of their latest update
+    private final Map<Key, Message> pending = new LinkedHashMap<>();
+    private final Meter dropped;
+    private final Timer latency;
+
+    public ConflatingWebSocketBroadcaster(SimpMessagingTemplate brokerTemplate,
+                                          TaskSchedulingService taskService,
+                                          AirsonicBroadcastConfig broadcastConfig,
+                                          MetricsManager metricsManager) {
+        this.brokerTemplate = brokerTemplate;
+        this.taskService = taskService;
+        this.broadcastConfig = broadcastConfig;
+        this.dropped = metricsManager.register(ConflatingWebSocketBroadcaster.class, "dropped", new Meter());
+        this.latency = metricsManager.register(ConflatingWebSocketBroadcaster.class, "latency", new Timer());
+        metricsManager.register(ConflatingWebSocketBroadcaster.class, "queueDepth", (Gauge<Integer>) this::getQueueDepth);
+    }
+
+    @EventListener
+    public void init(ApplicationStartedEvent event) {
+        Duration interval = Duration.ofMillis(Math.max(1, 1000 / broadcastConfig.getMaxRate()));
+        taskService.scheduleFixedDelayTask(FLUSH_TASK_NAME, this::flush, Instant.now().plus(interval), interval, true);
+    }
+
+    /**
+     * Queues a message for all subscribers of the destination, replacing the pending message with the same key.
+     */
+    public void publish(String destination, String key, Object payload) {
+        enqueue(new Key(null, key), new Message(null, destination, payload, System.nanoTime()));
+    }
+
+    /**
+     * Queues a message for the given user, replacing the pending message to that user with the same key.
+     */
+    public void publishToUser(String user, String destination, String key, Object payload) {
+        enqueue(new Key(user, key), new Message(user, destination, payload, System.nanoTime()));
+    }
+
+    public int getQueueDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private void enqueue(Key key, Message message) {
+        synchronized (pending) {
+            // removed first, so that the message moves after the ones updated in the meantime
+            if (pending.remove(key) != null) {
+                dropped.mark();
+            }
+            pending.put(key, message);
+        }
+    }
+
+    /**
+     * Sends all pending messages.
+     */
+    void flush() {
+        List<Message> messages;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            messages = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (Message message : messages) {
+            try {
+                if (message.user() == null) {
+                    brokerTemplate.convertAndSend(message.destination(), message.payload());
+                } else {
+                    brokerTemplate.convertAndSendToUser(message.user(), message.destination(), message.payload());
+                }
+                latency.update(System.nanoTime() - message.queued(), TimeUnit.NANOSECONDS);
+            } catch (MessagingException e) {
+                LOG.warn("Could not send message to {}", message.destination(), e);
+            }
+        }
+    }
+
+    private record Key(String user, String key) {
+    }
+
+    private record Message(String user, String destination, Object payload, long queued) {
+    }
+}
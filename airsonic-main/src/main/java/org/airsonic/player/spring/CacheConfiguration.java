@@ -6,7 +6,10 @@ import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.Playlist;
 import org.airsonic.player.domain.User;
 import org.airsonic.player.domain.UserSettings;
+import org.airsonic.player.service.cache.AuthenticationCache.MatchedCredential;
+import org.airsonic.player.service.cache.CoverArtValidatorCache.Validator;
 import org.airsonic.player.service.cache.PlaylistCache.PlaylistUserList;
+import org.airsonic.player.service.cache.SearchResultCache.CachedResult;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.ConfigurationBuilder;
 import org.ehcache.config.builders.ExpiryPolicyBuilder;
@@ -41,8 +44,11 @@ public class CacheConfiguration {
     public static final String MEDIA_FILE_PATH_CACHE = "mediaFilePathCache";
     public static final String MEDIA_FILE_ID_CACHE = "mediaFileIdCache";
     public static final String COVER_ART_CACHE = "coverArtCache";
+    public static final String COVER_ART_VALIDATOR_CACHE = "coverArtValidatorCache";
     public static final String PLAYLIST_CACHE = "playlistCache";
     public static final String PLAYLIST_USERS_CACHE = "playlistUsersCache";
+    public static final String SEARCH_RESULT_CACHE = "searchResultCache";
+    public static final String AUTHENTICATION_CACHE = "authenticationCache";
 
 
     @Autowired
@@ -92,6 +98,11 @@ public class CacheConfiguration {
                                 .withClassLoader(cl)
                                 .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofDays(2)))
                                 .withService(cacheLogging))
+                .withCache(COVER_ART_VALIDATOR_CACHE,
+                        CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, Validator.class,
+                                ResourcePoolsBuilder.newResourcePoolsBuilder().heap(10000L, EntryUnit.ENTRIES))
+                                .withClassLoader(cl)
+                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofMinutes(10))))
                 .withCache(PLAYLIST_CACHE,
                         CacheConfigurationBuilder.newCacheConfigurationBuilder(Integer.class, Playlist.class, pools)
                                 .withClassLoader(cl)
@@ -102,6 +113,14 @@ public class CacheConfiguration {
                                 .withClassLoader(cl)
                                 .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofDays(10)))
                                 .withService(cacheLogging))
+                .withCache(SEARCH_RESULT_CACHE,
+                        CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, CachedResult.class, pools)
+                                .withClassLoader(cl)
+                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofMinutes(10))))
+                .withCache(AUTHENTICATION_CACHE,
+                        CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, MatchedCredential.class, pools)
+                                .withClassLoader(cl)
+                                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofMinutes(5))))
                 .build();
     }
 
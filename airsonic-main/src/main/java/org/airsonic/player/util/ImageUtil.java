@@ -23,6 +23,11 @@ package org.airsonic.player.util;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public final class ImageUtil {
 
@@ -67,29 +72,49 @@ public final class ImageUtil {
     }
 
     public static BufferedImage scaleToSquare(BufferedImage image, int size) {
+        return scaleToSquares(image, List.of(size)).get(size);
+    }
+
+    /**
+     * Scale an image to several square sizes at once. The image is padded to a square once, and the sizes are
+     * produced from the largest to the smallest, each one continuing the halving steps from the previous one.
+     *
+     * @param image The image to scale.
+     * @param sizes The desired sizes.
+     * @return The scaled images by size.
+     */
+    public static Map<Integer, BufferedImage> scaleToSquares(BufferedImage image, Collection<Integer> sizes) {
         int w = image.getWidth();
         int h = image.getHeight();
         int scale = Math.max(w, h);
 
         BufferedImage squareImage = new BufferedImage(scale, scale, BufferedImage.TYPE_INT_RGB);
-        squareImage.getGraphics().drawImage(image, (scale - w) / 2, (scale - h) / 2, null);
-
-        do {
-            scale /= 2;
-            if (scale < size) {
-                scale = size;
-            }
-            BufferedImage temp = new BufferedImage(scale, scale, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2 = temp.createGraphics();
-            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2.drawImage(squareImage, 0, 0, temp.getWidth(), temp.getHeight(), null);
-            g2.dispose();
-
-            squareImage = temp;
-        } while (scale != size);
+        Graphics2D graphics = squareImage.createGraphics();
+        graphics.drawImage(image, (scale - w) / 2, (scale - h) / 2, null);
+        graphics.dispose();
+
+        Map<Integer, BufferedImage> result = new LinkedHashMap<>();
+        for (int size : sizes.stream().distinct().sorted(Comparator.reverseOrder()).toList()) {
+            do {
+                scale /= 2;
+                if (scale < size) {
+                    scale = size;
+                }
+                squareImage = resize(squareImage, scale, scale);
+            } while (scale != size);
+            result.put(size, squareImage);
+        }
+        return result;
+    }
 
-        return squareImage;
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        BufferedImage temp = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = temp.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(image, 0, 0, width, height, null);
+        g2.dispose();
+        return temp;
     }
 
 }
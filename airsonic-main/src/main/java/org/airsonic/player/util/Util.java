@@ -24,6 +24,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.collect.Iterables;
 import com.google.common.primitives.Ints;
 import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
@@ -39,6 +40,7 @@ import jakarta.validation.Validator;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
 
 import static java.util.stream.Collectors.toList;
 
@@ -52,6 +54,11 @@ public final class Util {
     private static final Logger LOG = LoggerFactory.getLogger(Util.class);
     private static final String URL_SENSITIVE_REPLACEMENT_STRING = "<hidden>";
 
+    /**
+     * Maximum number of values bound to the IN clause of a single query.
+     */
+    public static final int QUERY_BATCH_SIZE = 500;
+
     /**
      * Disallow external instantiation.
      */
@@ -69,6 +76,18 @@ public final class Util {
         return list.subList(Math.min(list.size(), Ints.saturatedCast(offset)), Math.min(list.size(), Ints.saturatedCast(offset + max)));
     }
 
+    /**
+     * Runs a query for each batch of at most {@link #QUERY_BATCH_SIZE} values, as databases limit the
+     * number of bind parameters, and concatenates the results.
+     */
+    public static <T, R> List<R> queryInBatches(Iterable<T> values, Function<List<T>, List<R>> query) {
+        List<R> result = new ArrayList<>();
+        for (List<T> batch : Iterables.partition(values, QUERY_BATCH_SIZE)) {
+            result.addAll(query.apply(batch));
+        }
+        return result;
+    }
+
     public static int[] toIntArray(List<Integer> values) {
         if (values == null) {
             return new int[0];
@@ -40,6 +40,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -52,12 +53,14 @@ import java.io.InputStream;
 import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -315,4 +318,43 @@ public class CoverArtControllerTest {
         verifyNoMoreInteractions(coverArtService);
     }
 
+    /** conditional requests are answered from the validators of the previous response */
+    @Test
+    @WithMockUser(username = AIRSONIC_USER, password = AIRSONIC_PASSWORD)
+    public void getCoverArtNotModifiedTest() throws Exception {
+
+        final int ALBUM_ID = 200;
+        Album mockedAlbum = new Album();
+        mockedAlbum.setId(ALBUM_ID);
+        AlbumCoverArtRequest request = new AlbumCoverArtRequest(mockedCoverArt, mockedAlbum);
+        doReturn(request).when(coverArtService).createAlbumCoverArtRequest(anyInt());
+        doReturn(IMAGE_RESOURCE.getFile().toPath()).when(mockedCoverArt).getFullPath();
+
+        MvcResult result = mvc.perform(get("/coverArt")
+                .param("id", String.format("al-%d", ALBUM_ID)))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+        String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+
+        mvc.perform(get("/coverArt")
+                .param("id", String.format("al-%d", ALBUM_ID))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+
+        // the second request read neither the database nor the image
+        verify(coverArtService).createAlbumCoverArtRequest(eq(ALBUM_ID));
+        verify(coverArtService).getImageInputStreamWithType(eq(IMAGE_RESOURCE.getFile().toPath()));
+        verifyNoMoreInteractions(coverArtService);
+
+        // a URL carrying the ETag as version addresses a fixed image
+        mvc.perform(get("/coverArt")
+                .param("id", String.format("al-%d", ALBUM_ID))
+                .param("v", eTag.replace("\"", "")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, private, immutable"));
+    }
+
 }
@@ -176,6 +176,20 @@ public class PlayQueueTestCase {
         assertPlaylistEquals(playQueue, 0, "A", "B", "C");
     }
 
+    @Test
+    public void testGetNextFile() {
+        PlayQueue playQueue = createPlaylist(1, "A", "B", "C");
+        assertEquals("C", playQueue.getNextFile().getName());
+        assertPlaylistEquals(playQueue, 1, "A", "B", "C");
+
+        playQueue = createPlaylist(2, "A", "B", "C");
+        assertNull(playQueue.getNextFile());
+        playQueue.setRepeatStatus(RepeatStatus.QUEUE);
+        assertEquals("A", playQueue.getNextFile().getName());
+        playQueue.setRepeatStatus(RepeatStatus.TRACK);
+        assertEquals("C", playQueue.getNextFile().getName());
+    }
+
     @Test
     public void testPlayAfterEndReached() {
         PlayQueue playQueue = createPlaylist(2, "A", "B", "C");
@@ -243,6 +257,25 @@ public class PlayQueueTestCase {
         assertPlaylistEquals(playQueue, 0, "A", "B", "C");
     }
 
+    @Test
+    public void testVersion() {
+        PlayQueue playQueue = createPlaylist(0, "A", "B", "C");
+        long version = playQueue.getVersion();
+
+        // skipping and moves out of bounds leave the files unchanged
+        playQueue.setIndex(2);
+        playQueue.moveDown(2);
+        playQueue.moveUp(0);
+        assertThat(playQueue.getVersion()).isEqualTo(version);
+
+        playQueue.moveDown(0);
+        assertThat(playQueue.getVersion()).isGreaterThan(version);
+
+        version = playQueue.getVersion();
+        playQueue.undo();
+        assertThat(playQueue.getVersion()).isGreaterThan(version);
+    }
+
     @Test
     public void testOrder() {
         PlayQueue playQueue = createPlaylist(2);
@@ -0,0 +1,94 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisabledOnOs(OS.WINDOWS)
+public class ExternalProcessPoolTest {
+
+    @Test
+    public void testReadsStandardOutput() throws Exception {
+        try (ExternalProcessPool pool = new ExternalProcessPool("echo", 2, 10, TimeUnit.SECONDS)) {
+            String output = pool.execute(List.of("sh", "-c", "echo hello; echo noise >&2"),
+                    in -> IOUtils.toString(in, StandardCharsets.UTF_8));
+
+            assertEquals("hello\n", output);
+            assertEquals(1, pool.getLatency().getCount());
+            assertEquals(1, pool.getQueueWait().getCount());
+            assertEquals(0, pool.getActiveCount());
+        }
+    }
+
+    @Test
+    public void testKillsProcessAfterTimeout() {
+        try (ExternalProcessPool pool = new ExternalProcessPool("sleep", 1, 200, TimeUnit.MILLISECONDS)) {
+            long start = System.nanoTime();
+            assertThrows(IOException.class,
+                    () -> pool.execute(List.of("sleep", "30"), in -> IOUtils.toByteArray(in)));
+
+            assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+            assertEquals(1, pool.getTimeouts().getCount());
+            assertEquals(0, pool.getActiveCount());
+        }
+    }
+
+    @Test
+    public void testLimitsConcurrentProcesses() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (ExternalProcessPool pool = new ExternalProcessPool("sleep", 2, 10, TimeUnit.SECONDS)) {
+            List<CompletableFuture<byte[]>> results = IntStream.range(0, 6)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return pool.execute(List.of("sleep", "0.2"), in -> {
+                                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                                try {
+                                    return IOUtils.toByteArray(in);
+                                } finally {
+                                    running.decrementAndGet();
+                                }
+                            });
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }))
+                    .toList();
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+            assertTrue(maxRunning.get() <= 2);
+            assertEquals(6, pool.getLatency().getCount());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import org.airsonic.player.domain.TransferStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileTransferTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @TempDir
+    private Path tempDir;
+
+    private Path file;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private TransferStatus status;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        file = Files.writeString(tempDir.resolve("file.flac"), CONTENT);
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+        status = new TransferStatus(null);
+    }
+
+    @Test
+    public void testWholeFile() throws Exception {
+        assertEquals(20, FileTransfer.send(file, request, response, status));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals(20, response.getContentLengthLong());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(20, status.getBytesTransferred());
+        assertEquals(0, status.getBytesSkipped());
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        assertEquals(5, FileTransfer.send(file, request, response, status));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("56789", response.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals("bytes 5-9/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(5, status.getBytesTransferred());
+        assertEquals(5, status.getBytesSkipped());
+    }
+
+    @Test
+    public void testOpenRange() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=15-");
+        FileTransfer.send(file, request, response, status);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("fghij", response.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals("bytes 15-19/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    public void testUnsatisfiableRange() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=30-40");
+        assertEquals(0, FileTransfer.send(file, request, response, status));
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, status.getBytesTransferred());
+    }
+
+    @Test
+    public void testMultipleRangesAreNotSupported() {
+        assertTrue(FileTransfer.isSupported(request));
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-1,5-6");
+        assertFalse(FileTransfer.isSupported(request));
+    }
+
+    @Test
+    public void testIfRangeMatchingETag() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"20\"");
+        response.setHeader(HttpHeaders.ETAG, "\"20\"");
+        assertTrue(FileTransfer.isSupported(request));
+        FileTransfer.send(file, request, response, status);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("56789", response.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIfRangeChangedETag() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"19\"");
+        response.setHeader(HttpHeaders.ETAG, "\"20\"");
+        assertEquals(20, FileTransfer.send(file, request, response, status));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString(StandardCharsets.UTF_8));
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    public void testIfRangeWeakETag() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "W/\"20\"");
+        response.setHeader(HttpHeaders.ETAG, "W/\"20\"");
+        FileTransfer.send(file, request, response, status);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIfRangeLastModified() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "Wed, 21 Oct 2015 07:28:00 GMT");
+        response.setHeader(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT");
+        FileTransfer.send(file, request, response, status);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("56789", response.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIfRangeChangedLastModified() throws Exception {
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "Wed, 21 Oct 2015 07:28:00 GMT");
+        response.setHeader(HttpHeaders.LAST_MODIFIED, "Thu, 22 Oct 2015 07:28:00 GMT");
+        FileTransfer.send(file, request, response, status);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString(StandardCharsets.UTF_8));
+    }
+}
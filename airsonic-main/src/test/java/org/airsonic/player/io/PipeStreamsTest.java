@@ -95,7 +95,7 @@ public class PipeStreamsTest {
         RateLimiter limit = RateLimiter.create(4.0);
         Path file = Paths.get(Resources.getResource("MEDIAS/piano.mp3").toURI());
         Set<String> eventSet = new HashSet<>();
-        Resource r = new MonitoredResource(new FileSystemResource(file), limit, () -> status, s -> {
+        Resource r = new MonitoredResource(new FileSystemResource(file), t -> limit::acquire, () -> status, s -> {
             if (!eventSet.add("statusClosed")) {
                 fail("statusClosed multiple times");
             }
@@ -0,0 +1,142 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import com.codahale.metrics.Timer;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.PlayQueue;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PlayQueueInputStreamTest {
+
+    @TempDir
+    private Path musicDir;
+
+    private MediaFile createMediaFile(String name) throws Exception {
+        Files.writeString(musicDir.resolve(name), name);
+        MusicFolder folder = new MusicFolder();
+        folder.setId(0);
+        folder.setPath(musicDir);
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setFolder(folder);
+        mediaFile.setPath(name);
+        // already within the prefetch window from the start
+        mediaFile.setDuration(1.0);
+        return mediaFile;
+    }
+
+    private PlayQueue createPlayQueue(MediaFile... files) {
+        PlayQueue playQueue = new PlayQueue();
+        playQueue.addFiles(false, files);
+        return playQueue;
+    }
+
+    @Test
+    public void testNextFileIsPrefetched() throws Exception {
+        MediaFile first = createMediaFile("first");
+        MediaFile second = createMediaFile("second");
+        PlayQueue playQueue = createPlayQueue(first, second);
+        List<MediaFile> generated = new ArrayList<>();
+        Timer timer = new Timer();
+
+        try (InputStream in = new PlayQueueInputStream(playQueue, f -> {}, (c, f) -> {}, f -> {
+            generated.add(f);
+            return new ByteArrayInputStream(f.getPath().getBytes(StandardCharsets.UTF_8));
+        }, 10, 1024, timer)) {
+            byte[] b = new byte[2];
+            assertEquals(2, in.read(b));
+            assertEquals(List.of(first, second), generated);
+
+            assertEquals("rstsecond", IOUtils.toString(in, StandardCharsets.UTF_8));
+            assertEquals(2, generated.size());
+            assertEquals(1, timer.getCount());
+        }
+    }
+
+    @Test
+    public void testPrefetchIsCancelledWhenQueueChanges() throws Exception {
+        MediaFile first = createMediaFile("first");
+        MediaFile second = createMediaFile("second");
+        MediaFile third = createMediaFile("third");
+        PlayQueue playQueue = createPlayQueue(first, second, third);
+        List<MediaFile> generated = new ArrayList<>();
+
+        try (InputStream in = new PlayQueueInputStream(playQueue, f -> {}, (c, f) -> {}, f -> {
+            generated.add(f);
+            return new ByteArrayInputStream(f.getPath().getBytes(StandardCharsets.UTF_8));
+        }, 10, 1024, null)) {
+            byte[] b = new byte[2];
+            assertEquals(2, in.read(b));
+            assertEquals(List.of(first, second), generated);
+
+            playQueue.removeFileAt(1);
+            assertEquals("rstthird", IOUtils.toString(in, StandardCharsets.UTF_8));
+            assertEquals(List.of(first, second, third), generated);
+        }
+    }
+
+    @Test
+    public void testFailedPrefetchStartsNextFileNormally() throws Exception {
+        MediaFile first = createMediaFile("first");
+        MediaFile second = createMediaFile("second");
+        PlayQueue playQueue = createPlayQueue(first, second);
+        List<MediaFile> generated = new ArrayList<>();
+
+        try (InputStream in = new PlayQueueInputStream(playQueue, f -> {}, (c, f) -> {}, f -> {
+            generated.add(f);
+            if (generated.size() == 2) {
+                throw new IllegalStateException("transcoder failed");
+            }
+            return new ByteArrayInputStream(f.getPath().getBytes(StandardCharsets.UTF_8));
+        }, 10, 1024, null)) {
+            assertEquals("firstsecond", IOUtils.toString(in, StandardCharsets.UTF_8));
+            assertEquals(List.of(first, second, second), generated);
+        }
+    }
+
+    @Test
+    public void testNoPrefetchWhenDisabled() throws Exception {
+        MediaFile first = createMediaFile("first");
+        MediaFile second = createMediaFile("second");
+        PlayQueue playQueue = createPlayQueue(first, second);
+        List<MediaFile> generated = new ArrayList<>();
+
+        try (InputStream in = new PlayQueueInputStream(playQueue, f -> {}, (c, f) -> {}, f -> {
+            generated.add(f);
+            return new ByteArrayInputStream(f.getPath().getBytes(StandardCharsets.UTF_8));
+        })) {
+            assertEquals(2, in.read(new byte[2]));
+            assertEquals(List.of(first), generated);
+            assertEquals("rstsecond", IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+}
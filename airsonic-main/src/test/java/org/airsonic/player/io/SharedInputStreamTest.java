@@ -0,0 +1,107 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SharedInputStreamTest {
+
+    private static byte[] createData(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testReadersReceiveTheWholeSource() throws Exception {
+        byte[] data = createData(100_000);
+        CountDownLatch finished = new CountDownLatch(1);
+        SharedInputStream shared = new SharedInputStream("test", new ByteArrayInputStream(data), 8192, s -> finished.countDown());
+        InputStream first = shared.newReader();
+        shared.start();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+
+        // the second reader joins late and fell behind the ring buffer, it reads from the spill file
+        InputStream second = shared.newReader();
+        try (first; second) {
+            assertArrayEquals(data, IOUtils.toByteArray(first));
+            assertArrayEquals(data, IOUtils.toByteArray(second));
+        }
+        assertEquals(0, shared.getReaderCount());
+    }
+
+    @Test
+    public void testSlowReaderDoesNotHoldBackSource() throws Exception {
+        byte[] data = createData(64 * 1024);
+        CountDownLatch finished = new CountDownLatch(1);
+        SharedInputStream shared = new SharedInputStream("test", new ByteArrayInputStream(data), 8192, s -> finished.countDown());
+        InputStream slow = shared.newReader();
+        shared.start();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        try (slow) {
+            assertArrayEquals(data, IOUtils.toByteArray(slow));
+        }
+    }
+
+    @Test
+    public void testSourceIsClosedWithLastReader() throws Exception {
+        AtomicBoolean sourceClosed = new AtomicBoolean();
+        PipedOutputStream producer = new PipedOutputStream();
+        InputStream source = new PipedInputStream(producer) {
+            @Override
+            public void close() throws IOException {
+                sourceClosed.set(true);
+                super.close();
+            }
+        };
+        CountDownLatch finished = new CountDownLatch(1);
+        SharedInputStream shared = new SharedInputStream("test", source, 8192, s -> finished.countDown());
+        InputStream first = shared.newReader();
+        InputStream second = shared.newReader();
+        shared.start();
+        producer.write(new byte[] {1, 2, 3});
+        producer.flush();
+
+        assertEquals(1, first.read());
+        first.close();
+        assertEquals(1, finished.getCount());
+        second.close();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertTrue(sourceClosed.get());
+        assertNull(shared.newReader());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.io;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ZipStreamWriterTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    public void testZipIsReadableAndHasComputedLength() throws Exception {
+        byte[] first = "first file".getBytes(StandardCharsets.UTF_8);
+        byte[] second = new byte[200 * 1024];
+        for (int i = 0; i < second.length; i++) {
+            second[i] = (byte) i;
+        }
+        Path file1 = Files.write(tempDir.resolve("1.flac"), first);
+        Path file2 = Files.write(tempDir.resolve("2.flac"), second);
+        List<Pair<String, Long>> entries = List.of(Pair.of("Album/", 0L),
+                Pair.of("Album/1.flac", (long) first.length), Pair.of("Album/Ünïcode.flac", (long) second.length));
+        assertFalse(ZipStreamWriter.isZip64(entries));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipStreamWriter zip = new ZipStreamWriter(out, false)) {
+            zip.putDirectory("Album/", 0);
+            zip.putFile("Album/1.flac", file1, first.length, System.currentTimeMillis());
+            zip.putFile("Album/Ünïcode.flac", file2, second.length, System.currentTimeMillis());
+            zip.finish();
+        }
+        assertEquals(ZipStreamWriter.length(entries), out.size());
+
+        Path zipFile = Files.write(tempDir.resolve("album.zip"), out.toByteArray());
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(3, zip.size());
+            assertTrue(zip.getEntry("Album/").isDirectory());
+            ZipEntry entry = zip.getEntry("Album/Ünïcode.flac");
+            assertEquals(second.length, entry.getSize());
+            assertEquals(crc(second), entry.getCrc());
+            assertArrayEquals(second, zip.getInputStream(entry).readAllBytes());
+            assertArrayEquals(first, zip.getInputStream(zip.getEntry("Album/1.flac")).readAllBytes());
+        }
+
+    }
+
+    @Test
+    public void testZip64() throws Exception {
+        byte[] content = "content".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(tempDir.resolve("1.flac"), content);
+        List<Pair<String, Long>> entries = List.of(Pair.of("1.flac", (long) content.length));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipStreamWriter zip = new ZipStreamWriter(out, true)) {
+            zip.putFile("1.flac", file, content.length, System.currentTimeMillis());
+            zip.finish();
+        }
+
+        Path zipFile = Files.write(tempDir.resolve("large.zip"), out.toByteArray());
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            ZipEntry entry = zip.getEntry("1.flac");
+            assertEquals(content.length, entry.getSize());
+            assertArrayEquals(content, zip.getInputStream(entry).readAllBytes());
+        }
+    }
+
+    @Test
+    public void testChangedFileKeepsLength() throws Exception {
+        Path file = Files.write(tempDir.resolve("1.flac"), "short".getBytes(StandardCharsets.UTF_8));
+        List<Pair<String, Long>> entries = List.of(Pair.of("1.flac", 10L));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipStreamWriter zip = new ZipStreamWriter(out, false)) {
+            zip.putFile("1.flac", file, 10, System.currentTimeMillis());
+            zip.finish();
+        }
+        assertEquals(ZipStreamWriter.length(entries), out.size());
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+}
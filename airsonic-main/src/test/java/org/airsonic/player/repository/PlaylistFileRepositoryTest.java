@@ -0,0 +1,144 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+
+package org.airsonic.player.repository;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MediaFile.MediaType;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.airsonic.player.domain.Playlist;
+import org.airsonic.player.domain.PlaylistFile;
+import org.airsonic.player.domain.User;
+import org.airsonic.player.service.PlaylistService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@EnableConfigurationProperties({AirsonicHomeConfig.class})
+@Transactional
+public class PlaylistFileRepositoryTest {
+
+    @Autowired
+    private PlaylistFileRepository playlistFileRepository;
+
+    @Autowired
+    private PlaylistRepository playlistRepository;
+
+    @Autowired
+    private PlaylistService playlistService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MusicFolderRepository musicFolderRepository;
+
+    @Autowired
+    private MediaFileRepository mediaFileRepository;
+
+    @TempDir
+    private static Path tempDir;
+
+    @TempDir
+    private Path musicFolderDir;
+
+    private final String TEST_USER_NAME = "testUserForPlaylistFile";
+
+    private MediaFile first;
+
+    private MediaFile notPresent;
+
+    private MediaFile last;
+
+    private Playlist playlist;
+
+    @BeforeAll
+    public static void beforeAll() {
+        System.setProperty("airsonic.home", tempDir.toString());
+    }
+
+    private MediaFile createMediaFile(MusicFolder folder, String path, boolean present) {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setFolder(folder);
+        mediaFile.setPath(path);
+        mediaFile.setMediaType(MediaType.MUSIC);
+        mediaFile.setPresent(present);
+        mediaFile.setCreated(Instant.now());
+        mediaFile.setChanged(Instant.now());
+        mediaFile.setLastScanned(Instant.now());
+        mediaFile.setChildrenLastUpdated(Instant.now());
+        return mediaFileRepository.save(mediaFile);
+    }
+
+    @BeforeEach
+    public void setup() {
+        userRepository.saveAndFlush(new User(TEST_USER_NAME, "playlist@activeobjects.no"));
+        MusicFolder folder = new MusicFolder(musicFolderDir, "name", Type.MEDIA, true, Instant.now().truncatedTo(ChronoUnit.MICROS));
+        musicFolderRepository.save(folder);
+        first = createMediaFile(folder, "first.mp3", true);
+        notPresent = createMediaFile(folder, "notPresent.mp3", false);
+        last = createMediaFile(folder, "last.mp3", true);
+
+        playlist = new Playlist(TEST_USER_NAME, false, "name", null, 3, 0, Instant.now(), Instant.now(), null);
+        playlist.setMediaFiles(List.of(first, notPresent, last));
+        playlistRepository.saveAndFlush(playlist);
+    }
+
+    private List<MediaFile> getMediaFiles(List<Integer> ids) {
+        return ids.stream().map(id -> playlistFileRepository.findById(id).map(PlaylistFile::getMediaFile).orElse(null))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testFindIdsByPlaylistId() {
+        assertEquals(List.of(first, notPresent, last), getMediaFiles(playlistFileRepository.findIdsByPlaylistId(playlist.getId())));
+        assertEquals(List.of(first, last), getMediaFiles(playlistFileRepository.findPresentIdsByPlaylistId(playlist.getId())));
+    }
+
+    @Test
+    public void testRemoveByIndicesOfPresentFiles() {
+        // index 1 is the last file when only present files are counted
+        playlistService.removeFilesInPlaylistByIndices(playlist.getId(), List.of(1), false);
+
+        assertEquals(List.of(first, notPresent), getMediaFiles(playlistFileRepository.findIdsByPlaylistId(playlist.getId())));
+    }
+
+    @Test
+    public void testRemoveByIndicesOfAllFiles() {
+        playlistService.removeFilesInPlaylistByIndices(playlist.getId(), List.of(1));
+
+        assertEquals(List.of(first, last), getMediaFiles(playlistFileRepository.findIdsByPlaylistId(playlist.getId())));
+    }
+}
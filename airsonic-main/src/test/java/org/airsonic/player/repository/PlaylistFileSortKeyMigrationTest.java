@@ -0,0 +1,63 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+
+package org.airsonic.player.repository;
+
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PlaylistFileSortKeyMigrationTest {
+
+    @Test
+    public void testSortKeysOfLargeIds() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:playlistFileSortKey", "sa", "");
+                Statement statement = connection.createStatement()) {
+            statement.execute("create table playlist_file (id int not null primary key, playlist_id int not null, media_file_id int not null)");
+            statement.execute("insert into playlist_file values (1, 1, 1)");
+            statement.execute("insert into playlist_file values (" + (Integer.MAX_VALUE - 1) + ", 1, 2)");
+
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase("liquibase/11.1/add-playlist-file-sort-key.xml", new ClassLoaderResourceAccessor(), database);
+            liquibase.setChangeLogParameter("bigint_cast_type", "bigint");
+            liquibase.update("");
+
+            List<Long> sortKeys = new ArrayList<>();
+            try (ResultSet result = statement.executeQuery("select sort_key from playlist_file order by id")) {
+                while (result.next()) {
+                    sortKeys.add(result.getLong(1));
+                }
+            }
+            assertEquals(List.of(1024L, (Integer.MAX_VALUE - 1) * 1024L), sortKeys);
+            statement.execute("shutdown");
+        }
+    }
+}
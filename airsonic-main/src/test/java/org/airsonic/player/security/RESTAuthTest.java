@@ -63,6 +63,30 @@ public class RESTAuthTest {
                 .andExpect(jsonPath("$.subsonic-response.error.code").value(40));
     }
 
+    @Test
+    public void testRequestParamAuthRepeated() throws Exception {
+        // the second request is answered from the authentication cache
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(get("/rest/getArtists")
+                    .param("v", API_VERSION)
+                    .param("f", "json")
+                    .param("c", "test")
+                    .param("u", USERNAME)
+                    .param("p", PASSWORD)
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.subsonic-response.status").value("ok"));
+        }
+        mvc.perform(get("/rest/getArtists")
+                .param("v", API_VERSION)
+                .param("c", "test")
+                .param("f", "json")
+                .param("u", USERNAME)
+                .param("p", "incorrectpassword"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.subsonic-response.error.code").value(40));
+    }
+
     @Test
     public void testBasicAuthSuccess() throws Exception {
         mvc.perform(get("/rest/getArtists")
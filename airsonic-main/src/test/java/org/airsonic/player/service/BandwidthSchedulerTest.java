@@ -0,0 +1,117 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.Player;
+import org.airsonic.player.domain.TransferStatus;
+import org.airsonic.player.io.PipeStreams.Throttle;
+import org.airsonic.player.monitor.MetricsManager;
+import org.airsonic.player.service.BandwidthScheduler.Share;
+import org.airsonic.player.service.BandwidthScheduler.TransferClass;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BandwidthSchedulerTest {
+
+    private static final double DELTA = 0.001;
+
+    @Mock
+    private SettingsService settingsService;
+
+    @Mock
+    private MetricsManager metricsManager;
+
+    private BandwidthScheduler scheduler;
+
+    @BeforeEach
+    public void setUp() {
+        when(metricsManager.register(any(Class.class), anyString(), any())).thenAnswer(i -> i.getArgument(2));
+        lenient().when(settingsService.getDownloadBitrateLimit()).thenReturn(1000L);
+        lenient().when(settingsService.getStreamBandwidthPriority()).thenReturn(4);
+        scheduler = new BandwidthScheduler(settingsService, metricsManager);
+    }
+
+    private static TransferStatus status(String username) {
+        Player player = new Player();
+        player.setUsername(username);
+        return new TransferStatus(player);
+    }
+
+    private static double rate(Throttle throttle) {
+        return ((Share) throttle).getRate();
+    }
+
+    @Test
+    public void testSingleTransferGetsWholeLimit() {
+        Throttle download = scheduler.open(status("alice"), TransferClass.DOWNLOAD);
+
+        assertEquals(1000 * 1024.0, rate(download), DELTA);
+    }
+
+    @Test
+    public void testUsersShareLimitEvenly() {
+        Throttle bulk1 = scheduler.open(status("alice"), TransferClass.DOWNLOAD);
+        Throttle bulk2 = scheduler.open(status("alice"), TransferClass.DOWNLOAD);
+        Throttle stream = scheduler.open(status("bob"), TransferClass.STREAM);
+
+        assertEquals(250 * 1024.0, rate(bulk1), DELTA);
+        assertEquals(250 * 1024.0, rate(bulk2), DELTA);
+        assertEquals(500 * 1024.0, rate(stream), DELTA);
+
+        bulk1.release();
+        bulk2.release();
+
+        assertEquals(1000 * 1024.0, rate(stream), DELTA);
+    }
+
+    @Test
+    public void testStreamsHavePriorityOverDownloads() {
+        Throttle download = scheduler.open(status("alice"), TransferClass.DOWNLOAD);
+        Throttle stream = scheduler.open(status("alice"), TransferClass.STREAM);
+
+        assertEquals(200 * 1024.0, rate(download), DELTA);
+        assertEquals(800 * 1024.0, rate(stream), DELTA);
+
+        // releasing twice must not affect the other transfers
+        stream.release();
+        stream.release();
+
+        assertEquals(1000 * 1024.0, rate(download), DELTA);
+    }
+
+    @Test
+    public void testUnlimited() {
+        when(settingsService.getDownloadBitrateLimit()).thenReturn(0L);
+        Throttle download = scheduler.open(status("alice"), TransferClass.DOWNLOAD);
+        Throttle stream = scheduler.open(status("bob"), TransferClass.STREAM);
+
+        assertEquals(Double.POSITIVE_INFINITY, rate(download));
+        assertEquals(Double.POSITIVE_INFINITY, rate(stream));
+    }
+}
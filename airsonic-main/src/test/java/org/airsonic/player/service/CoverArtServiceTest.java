@@ -27,6 +27,7 @@ import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.repository.CoverArtRepository;
 import org.airsonic.player.service.cache.CoverArtCache;
+import org.airsonic.player.service.cache.CoverArtValidatorCache;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -57,6 +58,9 @@ public class CoverArtServiceTest {
     @Mock
     private CoverArtCache coverArtCache;
 
+    @Mock
+    private CoverArtValidatorCache coverArtValidatorCache;
+
     @InjectMocks
     private CoverArtService coverArtService;
 
@@ -350,4 +354,46 @@ public class CoverArtServiceTest {
         return Stream.of(new CoverArt(1, EntityType.ARTIST, "path/to/art.jpg", null, false), CoverArt.NULL_ART);
     }
 
+    @Test
+    void testPersistAllIfNeededReadsOnceAndSavesNewOrChangedCoverArt() {
+        MediaFile newArt = mediaFileWithArt(1, "path/to/new.jpg");
+        MediaFile changedArt = mediaFileWithArt(2, "path/to/changed.jpg");
+        MediaFile sameArt = mediaFileWithArt(3, "path/to/same.jpg");
+        MediaFile overriddenArt = mediaFileWithArt(4, "path/to/overridden.jpg");
+        MediaFile withoutArt = new MediaFile();
+        withoutArt.setId(5);
+
+        when(coverArtRepository.findByEntityTypeAndEntityIdIn(EntityType.MEDIA_FILE, List.of(1, 2, 3, 4))).thenReturn(List.of(
+                new CoverArt(2, EntityType.MEDIA_FILE, "path/to/old.jpg", null, false),
+                new CoverArt(3, EntityType.MEDIA_FILE, "path/to/same.jpg", null, false),
+                new CoverArt(4, EntityType.MEDIA_FILE, "path/to/art.jpg", null, true)));
+
+        coverArtService.persistAllIfNeeded(List.of(newArt, changedArt, sameArt, overriddenArt, withoutArt));
+
+        verify(coverArtRepository).saveAll(coverArtListCaptor.capture());
+        verify(coverArtRepository, never()).findByEntityTypeAndEntityId(any(), any());
+        verify(coverArtRepository, never()).save(any());
+        assertEquals(List.of("path/to/new.jpg", "path/to/changed.jpg"),
+                coverArtListCaptor.getValue().stream().map(CoverArt::getPath).collect(Collectors.toList()));
+        assertEquals(List.of(1, 2), coverArtListCaptor.getValue().stream().map(CoverArt::getEntityId).collect(Collectors.toList()));
+        Stream.of(newArt, changedArt, sameArt, overriddenArt).forEach(mediaFile -> assertNull(mediaFile.getArt()));
+    }
+
+    @Test
+    void testPersistAllIfNeededWithoutCoverArtShouldDoNothing() {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(1);
+
+        coverArtService.persistAllIfNeeded(List.of(mediaFile));
+
+        verifyNoInteractions(coverArtRepository);
+    }
+
+    private static MediaFile mediaFileWithArt(int id, String path) {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(id);
+        mediaFile.setArt(new CoverArt(-1, EntityType.MEDIA_FILE, path, null, false));
+        return mediaFile;
+    }
+
 }
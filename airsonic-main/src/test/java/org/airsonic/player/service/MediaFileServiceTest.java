@@ -24,6 +24,7 @@ import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.repository.MediaFileRepository;
 import org.airsonic.player.service.cache.MediaFileCache;
 import org.airsonic.player.service.metadata.MetaDataParserFactory;
+import org.airsonic.player.service.search.IndexManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -55,6 +56,8 @@ public class MediaFileServiceTest {
     private MediaFileCache mediaFileCache;
     @Mock
     private MediaFolderService mediaFolderService;
+    @Mock
+    private IndexManager indexManager;
 
     @InjectMocks
     private MediaFileService mediaFileService;
@@ -12,6 +12,7 @@ import org.airsonic.player.repository.CoverArtRepository;
 import org.airsonic.player.repository.MediaFileRepository;
 import org.airsonic.player.repository.MusicFolderRepository;
 import org.airsonic.player.repository.UserRepository;
+import org.airsonic.player.service.MediaFolderService.MusicFolderAccess;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -30,10 +31,12 @@ import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -177,6 +180,80 @@ public class MediaFolderServiceTest {
 
     }
 
+    @Test
+    public void testGetMusicFolderAccess() {
+        // given
+        MusicFolder allowedFolder = new MusicFolder(tempMusicFolder, "allowedFolder", Type.MEDIA, true, Instant.now());
+        musicFolderRepository.save(allowedFolder);
+        MusicFolder deniedFolder = new MusicFolder(tempMusicFolder2, "deniedFolder", Type.MEDIA, true, Instant.now());
+        musicFolderRepository.save(deniedFolder);
+        mediaFolderService.setMusicFoldersForUser(TEST_USER_NAME, List.of(allowedFolder.getId()));
+        MediaFile allowedFile = new MediaFile();
+        allowedFile.setFolder(allowedFolder);
+        MediaFile deniedFile = new MediaFile();
+        deniedFile.setFolder(deniedFolder);
+
+        // when
+        MusicFolderAccess access = mediaFolderService.getMusicFolderAccess(TEST_USER_NAME);
+
+        // then
+        assertTrue(access.isAllowed(allowedFolder));
+        assertTrue(access.isAllowed(allowedFile));
+        assertFalse(access.isAllowed(deniedFolder));
+        assertFalse(access.isAllowed(deniedFile));
+        assertFalse(access.isAllowed((MusicFolder) null));
+        assertFalse(access.isAllowed(new MediaFile()));
+
+        // caching test
+        assertSame(access, mediaFolderService.getMusicFolderAccess(TEST_USER_NAME));
+    }
+
+    @Test
+    public void testGetMusicFolderAccessWithoutFolders() {
+        // given
+        MusicFolder musicFolder = new MusicFolder(tempMusicFolder, "testMusicFolder", Type.MEDIA, true, Instant.now());
+        musicFolderRepository.save(musicFolder);
+
+        // when
+        MusicFolderAccess access = mediaFolderService.getMusicFolderAccess(TEST_USER_NAME);
+        MusicFolderAccess unknownUserAccess = mediaFolderService.getMusicFolderAccess("unknownUserForMediaFolder");
+
+        // then
+        assertFalse(access.isAllowed(musicFolder));
+        assertFalse(unknownUserAccess.isAllowed(musicFolder));
+    }
+
+    @Test
+    public void testGetMusicFolderAccessIsRebuilt() {
+        // given
+        MusicFolder musicFolder = new MusicFolder(tempMusicFolder, "testMusicFolder", Type.MEDIA, true, Instant.now());
+        musicFolderRepository.save(musicFolder);
+        MusicFolder musicFolder2 = new MusicFolder(tempMusicFolder2, "testMusicFolder2", Type.MEDIA, true, Instant.now());
+        musicFolderRepository.save(musicFolder2);
+        mediaFolderService.setMusicFoldersForUser(TEST_USER_NAME, List.of(musicFolder.getId()));
+        assertTrue(mediaFolderService.getMusicFolderAccess(TEST_USER_NAME).isAllowed(musicFolder));
+
+        // when folders are assigned
+        mediaFolderService.setMusicFoldersForUser(TEST_USER_NAME, List.of(musicFolder2.getId()));
+
+        // then
+        MusicFolderAccess access = mediaFolderService.getMusicFolderAccess(TEST_USER_NAME);
+        assertFalse(access.isAllowed(musicFolder));
+        assertTrue(access.isAllowed(musicFolder2));
+
+        // when the cache is cleared after a change outside of the service
+        User user = userRepository.findById(TEST_USER_NAME).get();
+        user.setMusicFolders(new ArrayList<>(List.of(musicFolder)));
+        userRepository.save(user);
+        assertSame(access, mediaFolderService.getMusicFolderAccess(TEST_USER_NAME));
+        mediaFolderService.clearMusicFolderCache();
+
+        // then
+        access = mediaFolderService.getMusicFolderAccess(TEST_USER_NAME);
+        assertTrue(access.isAllowed(musicFolder));
+        assertFalse(access.isAllowed(musicFolder2));
+    }
+
     @Test
     public void testCreateWithSamePath() {
         // given
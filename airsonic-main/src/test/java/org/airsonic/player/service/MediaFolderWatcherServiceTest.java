@@ -0,0 +1,149 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicScanConfig;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.airsonic.player.monitor.MetricsManager;
+import org.airsonic.player.service.scanner.DirectoryFingerprintJournal;
+import org.airsonic.player.service.search.IndexManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class MediaFolderWatcherServiceTest {
+
+    @Mock
+    private PathWatcherService pathWatcherService;
+    @Mock
+    private MediaFolderService mediaFolderService;
+    @Mock
+    private MediaFileService mediaFileService;
+    @Mock
+    private AlbumService albumService;
+    @Mock
+    private ArtistService artistService;
+    @Mock
+    private IndexManager indexManager;
+    @Mock
+    private MediaScannerService mediaScannerService;
+    @Mock
+    private TaskSchedulingService taskService;
+    @Mock
+    private SettingsService settingsService;
+    @Mock
+    private MetricsManager metricsManager;
+
+    @TempDir
+    private Path airsonicHome;
+
+    @TempDir
+    private Path musicDir;
+
+    private AirsonicScanConfig scanConfig;
+
+    private MusicFolder folder;
+
+    private MediaFolderWatcherService watcherService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        Files.createDirectories(musicDir.resolve("artist/album"));
+        folder = new MusicFolder(1, musicDir, "music", Type.MEDIA, true, Instant.now());
+        scanConfig = new AirsonicScanConfig();
+        scanConfig.setWatchDebounce(1);
+        when(metricsManager.register(any(), anyString(), any())).thenAnswer(invocation -> invocation.getArgument(2));
+        when(mediaFolderService.getAllMusicFolders()).thenReturn(List.of(folder));
+        when(mediaFileService.refreshDirectory(any(), any())).thenReturn(Collections.emptyList());
+        doThrow(new IOException("inotify watch limit reached")).when(pathWatcherService)
+                .setRecursiveWatcher(anyString(), any(), anyMap());
+        watcherService = new MediaFolderWatcherService(pathWatcherService, mediaFolderService, mediaFileService,
+                albumService, artistService, indexManager, mediaScannerService, taskService, settingsService, scanConfig,
+                new DirectoryFingerprintJournal(new AirsonicHomeConfig(airsonicHome.toString(), null)), metricsManager);
+    }
+
+    @Test
+    public void testFallbackToPollingRefreshesChangedDirectoryAfterDebounce() throws Exception {
+        watcherService.syncFolders();
+        assertEquals(MediaFolderWatcherService.Mode.POLL, watcherService.getFolderModes().get(folder.getId()));
+
+        Files.writeString(musicDir.resolve("artist/album/track.mp3"), "track");
+        watcherService.poll();
+        assertEquals(3, watcherService.getQueueDepth());
+
+        // still within the debounce delay
+        watcherService.flush();
+        verify(mediaFileService, never()).refreshDirectory(any(), any());
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            watcherService.flush();
+            verify(mediaFileService).refreshDirectory(eq(Paths.get("artist/album")), eq(folder));
+        });
+        assertEquals(0, watcherService.getQueueDepth());
+    }
+
+    @Test
+    public void testNothingIsRefreshedWhileScanning() throws Exception {
+        // every change is due at once
+        scanConfig.setWatchDebounce(0);
+        watcherService.syncFolders();
+        Files.writeString(musicDir.resolve("artist/album/track.mp3"), "track");
+        watcherService.poll();
+        when(mediaScannerService.isScanning()).thenReturn(true);
+
+        watcherService.flush();
+        verify(mediaFileService, never()).refreshDirectory(any(), any());
+        assertEquals(3, watcherService.getQueueDepth());
+
+        when(mediaScannerService.isScanning()).thenReturn(false);
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            watcherService.flush();
+            verify(mediaFileService).refreshDirectory(eq(Paths.get("artist/album")), eq(folder));
+        });
+    }
+}
@@ -2,12 +2,13 @@ package org.airsonic.player.service;
 
 import org.airsonic.player.config.AirsonicScanConfig;
 import org.airsonic.player.domain.MediaLibraryStatistics;
+import org.airsonic.player.service.scanner.DirectoryFingerprintJournal;
 import org.airsonic.player.service.search.IndexManager;
+import org.airsonic.player.service.websocket.ConflatingWebSocketBroadcaster;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
@@ -33,18 +34,22 @@ public class MediaScannerServiceUnitTest {
     @Mock
     private TaskSchedulingService taskService;
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
+    private ConflatingWebSocketBroadcaster broadcaster;
     @Mock
     IndexManager indexManager;
     @Mock
     AirsonicScanConfig scanConfig;
+    @Mock
+    DirectoryFingerprintJournal fingerprintJournal;
+    @Mock
+    ThumbnailService thumbnailService;
 
     @Test
     public void neverScanned() {
         when(settingsService.getIndexCreationInterval()).thenReturn(-1);
         when(settingsService.getIndexCreationHour()).thenReturn(-1);
         when(indexManager.getStatistics()).thenReturn(null);
-        MediaScannerService mediaScannerService = new MediaScannerService(settingsService, indexManager, playlistFileService, mediaFileService, mediaFolderService, coverArtService, artistService, albumService, taskService, messagingTemplate, scanConfig);
+        MediaScannerService mediaScannerService = new MediaScannerService(settingsService, indexManager, playlistFileService, mediaFileService, mediaFolderService, coverArtService, artistService, albumService, taskService, broadcaster, scanConfig, fingerprintJournal, thumbnailService);
         assertTrue(mediaScannerService.neverScanned());
 
         when(indexManager.getStatistics()).thenReturn(new MediaLibraryStatistics());
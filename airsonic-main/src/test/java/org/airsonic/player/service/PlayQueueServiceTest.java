@@ -19,7 +19,11 @@
 package org.airsonic.player.service;
 
 import com.google.common.collect.ImmutableMap;
+import org.airsonic.player.ajax.PlayQueueDelta;
+import org.airsonic.player.ajax.PlayQueueDelta.Operation;
 import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
 import org.airsonic.player.domain.PlayQueue;
 import org.airsonic.player.domain.Player;
 import org.airsonic.player.domain.SavedPlayQueue;
@@ -30,6 +34,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -38,11 +43,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -50,6 +59,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -66,6 +76,8 @@ public class PlayQueueServiceTest {
     private MediaFileService mediaFileService;
     @Mock
     private SavedPlayQueueRepository savedPlayQueueRepository;
+    @Mock
+    private JWTSecurityService jwtSecurityService;
 
     @InjectMocks
     private PlayQueueService playQueueService;
@@ -245,6 +257,92 @@ public class PlayQueueServiceTest {
         assertEquals("testuser", savedPlayQueue.getChangedBy());
     }
 
+    @Test
+    public void testPreviousPositions() {
+        // given
+        MediaFile a = new MediaFile();
+        a.setId(1);
+        MediaFile b = new MediaFile();
+        b.setId(2);
+
+        // when
+        List<Integer> order = PlayQueueService.previousPositions(List.of(a, b, a, b), List.of(b, a, a, b));
+
+        // then
+        assertEquals(List.of(1, 0, 2, 3), order);
+    }
+
+    @Test
+    public void testShuffleSendsReorderDelta(@TempDir Path tempDir) throws Exception {
+        // given
+        MusicFolder folder = new MusicFolder(tempDir, "Music", Type.MEDIA, true, Instant.now());
+        PlayQueue playQueue = new PlayQueue();
+        for (int i = 0; i < 20; i++) {
+            // the shuffle keeps the current file, which must exist
+            Files.createFile(tempDir.resolve("song" + i));
+            MediaFile mediaFile = new MediaFile();
+            mediaFile.setId(i);
+            mediaFile.setPath("song" + i);
+            mediaFile.setFolder(folder);
+            playQueue.addFiles(true, mediaFile);
+        }
+        List<MediaFile> before = new ArrayList<>(playQueue.getFiles());
+        long baseVersion = playQueue.getVersion();
+        when(mockedPlayer.getPlayQueue()).thenReturn(playQueue);
+        when(mockedPlayer.getUsername()).thenReturn("testuser");
+        when(mockedPlayer.getId()).thenReturn(1);
+        when(webSocketClient.sendToUser(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        playQueueService.shuffle(mockedPlayer);
+
+        // then
+        ArgumentCaptor<PlayQueueDelta> captor = ArgumentCaptor.forClass(PlayQueueDelta.class);
+        verify(webSocketClient).sendToUser(eq("testuser"), eq("/queue/playqueues/1/delta"), captor.capture());
+        PlayQueueDelta delta = captor.getValue();
+        assertEquals(baseVersion, delta.getBaseVersion());
+        assertEquals(playQueue.getVersion(), delta.getVersion());
+        assertEquals(1, delta.getOperations().size());
+        Operation operation = delta.getOperations().get(0);
+        assertEquals(Operation.Type.REORDER, operation.getType());
+        List<MediaFile> after = operation.getOrder().stream().map(before::get).collect(Collectors.toList());
+        assertEquals(playQueue.getFiles(), after);
+        assertNull(delta.getRemoteStreamUrl());
+    }
+
+    @Test
+    public void testAddSignsOneTokenPerDelta() {
+        // given
+        PlayQueue playQueue = new PlayQueue();
+        MediaFile album = new MediaFile();
+        album.setId(10);
+        List<MediaFile> songs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            MediaFile mediaFile = new MediaFile();
+            mediaFile.setId(i);
+            songs.add(mediaFile);
+        }
+        when(mediaFileService.getMediaFile(10)).thenReturn(album);
+        when(mediaFileService.getDescendantsOf(album, true)).thenReturn(songs);
+        when(mockedPlayer.getPlayQueue()).thenReturn(playQueue);
+        when(mockedPlayer.getUsername()).thenReturn("testuser");
+        when(mockedPlayer.getId()).thenReturn(1);
+        when(jwtSecurityService.createPlayQueueToken("testuser", 1)).thenReturn("token");
+        when(webSocketClient.sendToUser(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        playQueueService.add(mockedPlayer, List.of(10), null, false, true);
+
+        // then
+        verify(jwtSecurityService).createPlayQueueToken("testuser", 1);
+        ArgumentCaptor<PlayQueueDelta> captor = ArgumentCaptor.forClass(PlayQueueDelta.class);
+        verify(webSocketClient).sendToUser(eq("testuser"), eq("/queue/playqueues/1/delta"), captor.capture());
+        PlayQueueDelta delta = captor.getValue();
+        assertEquals("ext/stream?player=1&jwt=token", delta.getRemoteStreamUrl());
+        assertEquals("ext/coverArt.view?player=1&jwt=token", delta.getRemoteCoverArtUrl());
+        assertEquals(Operation.Type.INSERT, delta.getOperations().get(0).getType());
+    }
+
     // TODO: test methods include broadcastPlayQueue
 
 
@@ -0,0 +1,71 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service;
+
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.Playlist;
+import org.airsonic.player.domain.PlaylistFile;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PlaylistServiceTest {
+
+    @Test
+    public void testSortKeysBetween() {
+        assertArrayEquals(new long[] {1024, 2048}, PlaylistService.getSortKeysBetween(null, null, 2));
+        assertArrayEquals(new long[] {2048, 3072}, PlaylistService.getSortKeysBetween(1024L, null, 2));
+        assertArrayEquals(new long[] {-1024, 0}, PlaylistService.getSortKeysBetween(null, 1024L, 2));
+        assertArrayEquals(new long[] {1536}, PlaylistService.getSortKeysBetween(1024L, 2048L, 1));
+        assertArrayEquals(new long[] {11, 12}, PlaylistService.getSortKeysBetween(10L, 13L, 2));
+        assertNull(PlaylistService.getSortKeysBetween(10L, 12L, 2));
+        assertNull(PlaylistService.getSortKeysBetween(10L, 11L, 1));
+    }
+
+    @Test
+    public void testSetMediaFilesReusesRows() {
+        MediaFile a = new MediaFile();
+        MediaFile b = new MediaFile();
+        MediaFile c = new MediaFile();
+        Playlist playlist = new Playlist();
+        playlist.setMediaFiles(List.of(a, b));
+        PlaylistFile first = playlist.getFiles().get(0);
+        first.setSortKey(5000);
+
+        playlist.setMediaFiles(List.of(c, a, b));
+
+        List<MediaFile> mediaFiles = playlist.getMediaFiles();
+        assertThat(mediaFiles).hasSize(3);
+        assertThat(mediaFiles.get(0)).isSameAs(c);
+        assertThat(mediaFiles.get(1)).isSameAs(a);
+        assertThat(mediaFiles.get(2)).isSameAs(b);
+        assertThat(playlist.getFiles().get(0)).isSameAs(first);
+        // the second key no longer ascends and is moved after the first one
+        assertThat(playlist.getFiles()).extracting(PlaylistFile::getSortKey).containsExactly(5000L, 6024L, 7048L);
+
+        playlist.setMediaFiles(List.of(c));
+
+        assertThat(playlist.getFiles()).hasSize(1);
+        assertThat(playlist.getFiles().get(0)).isSameAs(first);
+    }
+}
@@ -22,6 +22,7 @@ import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.entity.UserRating;
 import org.airsonic.player.repository.MediaFileRepository;
 import org.airsonic.player.repository.UserRatingRepository;
+import org.airsonic.player.util.Util;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -31,17 +32,22 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -160,4 +166,67 @@ public class RatingServiceTest {
         verify(userRatingRepository, never()).findOptByUsernameAndMediaFileId(anyString(), anyInt());
     }
 
+    @Test
+    public void testGetAverageRatings() {
+
+        MediaFile mediaFile1 = new MediaFile();
+        mediaFile1.setId(1);
+        MediaFile mediaFile2 = new MediaFile();
+        mediaFile2.setId(2);
+
+        when(userRatingRepository.getAverageRatingsByMediaFileIdIn(eq(List.of(1, 2))))
+            .thenReturn(List.<Object[]>of(new Object[] {1, 3.5}));
+
+        Map<Integer, Double> actual = ratingService.getAverageRatings(List.of(mediaFile1, mediaFile2));
+
+        assertEquals(Map.of(1, 3.5), actual);
+    }
+
+    @Test
+    public void testGetRatingsForUser() {
+
+        MediaFile mediaFile1 = new MediaFile();
+        mediaFile1.setId(1);
+        MediaFile mediaFile2 = new MediaFile();
+        mediaFile2.setId(2);
+
+        when(userRatingRepository.findByUsernameAndMediaFileIdIn(eq("username"), eq(List.of(1, 2))))
+            .thenReturn(List.of(new UserRating("username", 2, 4)));
+
+        Map<Integer, Integer> actual = ratingService.getRatingsForUser("username", List.of(mediaFile1, mediaFile2));
+
+        assertEquals(Map.of(2, 4), actual);
+    }
+
+    @Test
+    public void testGetRatingsForUserInBatches() {
+
+        List<MediaFile> mediaFiles = new ArrayList<>();
+        for (int i = 0; i < Util.QUERY_BATCH_SIZE + 1; i++) {
+            MediaFile mediaFile = new MediaFile();
+            mediaFile.setId(i);
+            mediaFiles.add(mediaFile);
+        }
+        when(userRatingRepository.findByUsernameAndMediaFileIdIn(eq("username"), any()))
+            .thenAnswer(invocation -> {
+                List<Integer> ids = invocation.getArgument(1);
+                return List.of(new UserRating("username", ids.get(0), 4));
+            });
+
+        Map<Integer, Integer> actual = ratingService.getRatingsForUser("username", mediaFiles);
+
+        assertEquals(Map.of(0, 4, Util.QUERY_BATCH_SIZE, 4), actual);
+        verify(userRatingRepository, times(2)).findByUsernameAndMediaFileIdIn(eq("username"), any());
+    }
+
+    @Test
+    public void testGetRatingsForUserNullUsername() {
+
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(1);
+
+        assertTrue(ratingService.getRatingsForUser(null, List.of(mediaFile)).isEmpty());
+        verify(userRatingRepository, never()).findByUsernameAndMediaFileIdIn(any(), any());
+    }
+
 }
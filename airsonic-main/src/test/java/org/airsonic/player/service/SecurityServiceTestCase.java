@@ -1,5 +1,6 @@
 package org.airsonic.player.service;
 
+import org.airsonic.player.domain.MediaFile;
 import org.airsonic.player.domain.MusicFolder;
 import org.airsonic.player.domain.User;
 import org.airsonic.player.domain.UserCredential;
@@ -7,13 +8,17 @@ import org.airsonic.player.repository.UserCredentialRepository;
 import org.airsonic.player.repository.UserRepository;
 import org.airsonic.player.security.PasswordDecoder;
 import org.airsonic.player.security.PasswordEncoderConfig;
+import org.airsonic.player.service.MediaFolderService.MusicFolderAccess;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -70,4 +75,42 @@ public class SecurityServiceTestCase {
         assertTrue(credential.matches("[0-9A-Za-z]{30}"));
         assertEquals("Autogenerated for " + User.USERNAME_GUEST + " user", uc.getComment());
     }
+
+    private static MediaFile createMediaFile(MusicFolder folder) {
+        MediaFile file = new MediaFile();
+        file.setFolder(folder);
+        return file;
+    }
+
+    @Test
+    public void testFilterAccessible() {
+
+        // given
+        MusicFolder allowedFolder = new MusicFolder(1, Paths.get("allowed"), "allowed", MusicFolder.Type.MEDIA, true, Instant.now());
+        MusicFolder deniedFolder = new MusicFolder(2, Paths.get("denied"), "denied", MusicFolder.Type.MEDIA, true, Instant.now());
+        MediaFile allowed1 = createMediaFile(allowedFolder);
+        MediaFile denied = createMediaFile(deniedFolder);
+        MediaFile allowed2 = createMediaFile(allowedFolder);
+        when(mediaFolderService.getMusicFolderAccess("user")).thenReturn(new MusicFolderAccess(List.of(allowedFolder)));
+
+        // when
+        List<MediaFile> actual = securityService.filterAccessible(List.of(allowed1, denied, allowed2), "user");
+
+        // then
+        assertEquals(List.of(allowed1, allowed2), actual);
+    }
+
+    @Test
+    public void testFilterAccessibleWithoutFolders() {
+
+        // given
+        MusicFolder folder = new MusicFolder(1, Paths.get("folder"), "folder", MusicFolder.Type.MEDIA, true, Instant.now());
+        when(mediaFolderService.getMusicFolderAccess("user")).thenReturn(new MusicFolderAccess(List.of()));
+
+        // when
+        List<MediaFile> actual = securityService.filterAccessible(List.of(createMediaFile(folder)), "user");
+
+        // then
+        assertTrue(actual.isEmpty());
+    }
 }
@@ -49,7 +49,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -156,6 +158,38 @@ public class SettingsServiceTestCase {
         verifySettings(newSettingsService());
     }
 
+    @Test
+    public void testSnapshot() {
+        SettingsSnapshot snapshot = settingsService.getSnapshot();
+        assertSame(snapshot, settingsService.getSnapshot());
+
+        settingsService.setGenreSeparators(";");
+        settingsService.setExcludePatternString("^skip");
+
+        SettingsSnapshot changed = settingsService.getSnapshot();
+        assertNotSame(snapshot, changed);
+        assertEquals(";", changed.genreSeparators());
+        assertTrue(changed.isExcluded("skipped.mp3"));
+        assertFalse(changed.isExcluded("kept.mp3"));
+        assertFalse(snapshot.isExcluded("skipped.mp3"));
+
+        settingsService.save();
+        assertEquals(";", settingsService.getSnapshot().genreSeparators());
+    }
+
+    @Test
+    public void testSnapshotWithInvalidExcludePattern() {
+        settingsService.setExcludePatternString("[skip");
+
+        SettingsSnapshot snapshot = settingsService.getSnapshot();
+        assertEquals("[skip", snapshot.excludePatternString());
+        assertNull(snapshot.excludePattern());
+        assertFalse(snapshot.isExcluded("[skipped.mp3"));
+
+        settingsService.save();
+        assertNull(settingsService.getExcludePattern());
+    }
+
     private void verifySettings(SettingsService ss) {
         assertEquals("indexString", ss.getIndexString());
         assertEquals("a the foo bar", ss.getIgnoredArticles());
@@ -26,7 +26,7 @@ import org.airsonic.player.domain.PlayStatus;
 import org.airsonic.player.domain.Player;
 import org.airsonic.player.domain.TransferStatus;
 import org.airsonic.player.domain.UserSettings;
-import org.airsonic.player.service.websocket.AsyncWebSocketClient;
+import org.airsonic.player.service.websocket.ConflatingWebSocketBroadcaster;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -45,9 +45,9 @@ import java.util.UUID;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 
@@ -63,7 +63,7 @@ public class StatusServiceTestCase {
     private Player player2;
 
     @Mock
-    private AsyncWebSocketClient asyncWebSocketClient;
+    private ConflatingWebSocketBroadcaster broadcaster;
     @Mock
     private MediaFileService mediaFileService;
     @Mock
@@ -99,7 +99,7 @@ public class StatusServiceTestCase {
         assertTrue(service.getInactivePlays().isEmpty());
         // won't start until file starts playing
         assertTrue(service.getActivePlays().isEmpty());
-        verifyNoInteractions(asyncWebSocketClient);
+        verifyNoInteractions(broadcaster);
 
         service.removeStreamStatus(status);
         assertFalse(status.isActive());
@@ -108,7 +108,7 @@ public class StatusServiceTestCase {
         assertTrue(service.getStreamStatusesForPlayer(player2).isEmpty());
         assertFalse(service.getInactivePlays().isEmpty());
         assertTrue(service.getActivePlays().isEmpty());
-        verify(asyncWebSocketClient, timeout(300)).send(eq("/topic/nowPlaying/recent/add"), any(NowPlayingInfo.class));
+        verify(broadcaster).publish(eq("/topic/nowPlaying/recent/add"), anyString(), any(NowPlayingInfo.class));
     }
 
     @Test
@@ -118,17 +118,17 @@ public class StatusServiceTestCase {
         service.addActiveLocalPlay(status);
         assertTrue(service.getInactivePlays().isEmpty());
         assertFalse(service.getActivePlays().isEmpty());
-        verify(asyncWebSocketClient, timeout(300)).send(eq("/topic/nowPlaying/current/add"), any(NowPlayingInfo.class));
+        verify(broadcaster).publish(eq("/topic/nowPlaying/current/add"), anyString(), any(NowPlayingInfo.class));
 
         service.removeActiveLocalPlay(status);
         assertTrue(service.getInactivePlays().isEmpty());
         assertTrue(service.getActivePlays().isEmpty());
-        verify(asyncWebSocketClient, timeout(300)).send(eq("/topic/nowPlaying/current/remove"), any(NowPlayingInfo.class));
+        verify(broadcaster).publish(eq("/topic/nowPlaying/current/remove"), anyString(), any(NowPlayingInfo.class));
 
         service.addRemotePlay(status);
         assertFalse(service.getInactivePlays().isEmpty());
         assertTrue(service.getActivePlays().isEmpty());
-        verify(asyncWebSocketClient, timeout(300)).send(eq("/topic/nowPlaying/recent/add"), any(NowPlayingInfo.class));
+        verify(broadcaster).publish(eq("/topic/nowPlaying/recent/add"), anyString(), any(NowPlayingInfo.class));
     }
 
     @Test
@@ -164,7 +164,7 @@ public class StatusServiceTestCase {
         service.removeStreamStatus(tStatus);
 
         // Verify
-        verifyNoInteractions(asyncWebSocketClient);
+        verifyNoInteractions(broadcaster);
     }
 
     @Test
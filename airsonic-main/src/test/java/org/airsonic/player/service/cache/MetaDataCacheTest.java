@@ -0,0 +1,158 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicScanConfig;
+import org.airsonic.player.service.metadata.MetaData;
+import org.airsonic.player.service.metadata.MetaDataParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MetaDataCacheTest {
+
+    @TempDir
+    private Path airsonicHome;
+
+    @TempDir
+    private Path musicDir;
+
+    @Mock
+    private MetaDataParser parser;
+
+    private AirsonicHomeConfig homeConfig;
+
+    private AirsonicScanConfig scanConfig;
+
+    private Path file;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        homeConfig = new AirsonicHomeConfig(airsonicHome.toString(), null);
+        scanConfig = new AirsonicScanConfig();
+        file = musicDir.resolve("track.mp3");
+        Files.writeString(file, "track");
+    }
+
+    private MetaData createMetaData(String title) {
+        MetaData metaData = new MetaData();
+        metaData.setTitle(title);
+        return metaData;
+    }
+
+    @Test
+    public void testUnchangedFileIsParsedOnce() throws Exception {
+        when(parser.getMetaData(file)).thenReturn(createMetaData("first"), createMetaData("second"));
+        MetaDataCache cache = new MetaDataCache(homeConfig, scanConfig);
+        try {
+            assertTrue(cache.isEnabled());
+            assertEquals("first", cache.getMetaData(parser, file).getTitle());
+            assertEquals("first", cache.getMetaData(parser, file).getTitle());
+            verify(parser, times(1)).getMetaData(file);
+
+            Files.writeString(file, "retagged track");
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(10)));
+            assertEquals("second", cache.getMetaData(parser, file).getTitle());
+            verify(parser, times(2)).getMetaData(file);
+            assertEquals(1, cache.getHitCount());
+            assertEquals(2, cache.getMissCount());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testCacheSurvivesRestart() throws Exception {
+        when(parser.getMetaData(file)).thenReturn(createMetaData("first"));
+        MetaDataCache cache = new MetaDataCache(homeConfig, scanConfig);
+        cache.getMetaData(parser, file);
+        cache.close();
+
+        MetaDataCache reopened = new MetaDataCache(homeConfig, scanConfig);
+        try {
+            assertEquals("first", reopened.getMetaData(parser, file).getTitle());
+            verify(parser, times(1)).getMetaData(file);
+            assertEquals(1, reopened.getHitCount());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testFailedParseIsNotCached() throws Exception {
+        MetaData failed = createMetaData(null);
+        failed.setParseFailed(true);
+        when(parser.getMetaData(file)).thenReturn(failed, createMetaData("first"));
+        MetaDataCache cache = new MetaDataCache(homeConfig, scanConfig);
+        try {
+            assertTrue(cache.getMetaData(parser, file).isParseFailed());
+            assertEquals("first", cache.getMetaData(parser, file).getTitle());
+            assertEquals("first", cache.getMetaData(parser, file).getTitle());
+            verify(parser, times(2)).getMetaData(file);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testThrowingParserLeavesNothingCached() throws Exception {
+        when(parser.getMetaData(file)).thenThrow(new IllegalStateException("ffprobe killed after timeout"))
+                .thenReturn(createMetaData("first"));
+        MetaDataCache cache = new MetaDataCache(homeConfig, scanConfig);
+        try {
+            assertThrows(IllegalStateException.class, () -> cache.getMetaData(parser, file));
+            assertEquals("first", cache.getMetaData(parser, file).getTitle());
+            verify(parser, times(2)).getMetaData(file);
+            assertEquals(0, cache.getHitCount());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysParses() {
+        scanConfig.setMetadataCacheSize(0);
+        when(parser.getMetaData(file)).thenReturn(createMetaData("first"));
+        MetaDataCache cache = new MetaDataCache(homeConfig, scanConfig);
+
+        assertFalse(cache.isEnabled());
+        cache.getMetaData(parser, file);
+        cache.getMetaData(parser, file);
+        verify(parser, times(2)).getMetaData(file);
+        assertFalse(Files.exists(airsonicHome.resolve("metadata-cache")));
+    }
+}
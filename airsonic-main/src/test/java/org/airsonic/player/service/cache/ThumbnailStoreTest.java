@@ -0,0 +1,120 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThumbnailStoreTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testPutAndRead() throws Exception {
+        Instant lastModified = Instant.ofEpochMilli(1000);
+        try (ThumbnailStore store = new ThumbnailStore(tempDir.resolve("thumbs.dat"))) {
+            store.put("a", 110, lastModified, "image/jpeg", bytes("small"));
+            store.put("a", 300, lastModified, "image/jpeg", bytes("large"));
+            store.put("b", 110, lastModified, "image/png", bytes("other"));
+
+            ThumbnailStore.Entry entry = store.get("a", 300);
+            assertArrayEquals(bytes("large"), store.read(entry));
+            assertEquals(lastModified, entry.lastModified());
+            assertEquals("image/jpeg", entry.contentType());
+            assertArrayEquals(bytes("small"), store.read(store.get("a", 110)));
+            assertEquals("image/png", store.get("b", 110).contentType());
+            assertNull(store.get("a", 160));
+            assertNull(store.get("c", 110));
+            assertEquals(3, store.getCount());
+        }
+    }
+
+    @Test
+    public void testIndexIsRebuiltWhenOpened() throws Exception {
+        Path file = tempDir.resolve("thumbs.dat");
+        try (ThumbnailStore store = new ThumbnailStore(file)) {
+            store.put("a", 110, Instant.ofEpochMilli(1000), "image/jpeg", bytes("old"));
+            store.put("a", 110, Instant.ofEpochMilli(2000), "image/jpeg", bytes("new"));
+            store.put("b", 110, Instant.ofEpochMilli(1000), "image/jpeg", bytes("other"));
+        }
+        try (ThumbnailStore store = new ThumbnailStore(file)) {
+            assertEquals(2, store.getCount());
+            ThumbnailStore.Entry entry = store.get("a", 110);
+            assertArrayEquals(bytes("new"), store.read(entry));
+            assertEquals(Instant.ofEpochMilli(2000), entry.lastModified());
+            assertArrayEquals(bytes("other"), store.read(store.get("b", 110)));
+        }
+    }
+
+    @Test
+    public void testInterruptedRecordIsTruncated() throws Exception {
+        Path file = tempDir.resolve("thumbs.dat");
+        long length;
+        try (ThumbnailStore store = new ThumbnailStore(file)) {
+            store.put("a", 110, Instant.ofEpochMilli(1000), "image/jpeg", bytes("complete"));
+            length = store.getFileSize();
+        }
+        Files.write(file, new byte[] {0x54, 0x48, 0x4d, 0x42, 0, 5, 'b'}, StandardOpenOption.APPEND);
+
+        try (ThumbnailStore store = new ThumbnailStore(file)) {
+            assertEquals(1, store.getCount());
+            assertEquals(length, Files.size(file));
+            assertArrayEquals(bytes("complete"), store.read(store.get("a", 110)));
+
+            store.put("b", 110, Instant.ofEpochMilli(1000), "image/jpeg", bytes("appended"));
+            assertArrayEquals(bytes("appended"), store.read(store.get("b", 110)));
+        }
+    }
+
+    @Test
+    public void testReplacedRecordsAreCompacted() throws Exception {
+        Path file = tempDir.resolve("thumbs.dat");
+        byte[] image = new byte[64 * 1024];
+        try (ThumbnailStore store = new ThumbnailStore(file)) {
+            for (int i = 0; i < 40; i++) {
+                image[0] = (byte) i;
+                store.put("a", 300, Instant.ofEpochMilli(i), "image/jpeg", image);
+            }
+        }
+        assertTrue(Files.size(file) > 40L * image.length);
+
+        try (ThumbnailStore store = new ThumbnailStore(file)) {
+            assertTrue(Files.size(file) < 2L * image.length);
+            ThumbnailStore.Entry entry = store.get("a", 300);
+            assertEquals(Instant.ofEpochMilli(39), entry.lastModified());
+            assertEquals(39, store.read(entry)[0]);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.cache;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicTranscodeConfig;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.Transcoding;
+import org.airsonic.player.domain.VideoTranscodingSettings;
+import org.airsonic.player.service.TranscodingService;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TranscodeCacheTest {
+
+    @TempDir
+    private Path airsonicHome;
+
+    private AirsonicHomeConfig homeConfig;
+
+    private AirsonicTranscodeConfig transcodeConfig;
+
+    private final Transcoding transcoding = new Transcoding(1, "mp3 audio", "flac", "mp3", "ffmpeg -i %s -ab %bk -f mp3 -", null, null, true);
+
+    @BeforeEach
+    public void setup() {
+        homeConfig = new AirsonicHomeConfig(airsonicHome.toString(), null);
+        transcodeConfig = new AirsonicTranscodeConfig();
+        transcodeConfig.setCacheSize(1);
+    }
+
+    private TranscodingService.Parameters createParameters(int id, Integer maxBitRate) {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(id);
+        mediaFile.setChanged(Instant.ofEpochMilli(1000L));
+        TranscodingService.Parameters parameters = new TranscodingService.Parameters(mediaFile, null, maxBitRate);
+        parameters.setTranscoding(transcoding);
+        return parameters;
+    }
+
+    private static void consume(InputStream in) throws Exception {
+        try (in) {
+            IOUtils.toByteArray(in);
+        }
+    }
+
+    @Test
+    public void testCompletedStreamIsServedFromCache() throws Exception {
+        TranscodeCache cache = new TranscodeCache(homeConfig, transcodeConfig);
+        String key = cache.getKey(createParameters(1, 128));
+        byte[] data = "transcoded".getBytes();
+
+        assertNull(cache.open(key));
+        consume(cache.write(key, new ByteArrayInputStream(data)));
+
+        assertEquals(data.length, cache.getLength(key));
+        try (InputStream in = cache.open(key)) {
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+        assertEquals(1, cache.getHitCount());
+        assertEquals(data.length, new TranscodeCache(homeConfig, transcodeConfig).getLength(key));
+    }
+
+    @Test
+    public void testAbortedStreamIsNotCached() throws Exception {
+        TranscodeCache cache = new TranscodeCache(homeConfig, transcodeConfig);
+        String key = cache.getKey(createParameters(1, 128));
+
+        InputStream in = cache.write(key, new ByteArrayInputStream("transcoded".getBytes()));
+        in.read(new byte[4]);
+        in.close();
+
+        assertNull(cache.getLength(key));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testConcurrentWriteIsNotCached() throws Exception {
+        TranscodeCache cache = new TranscodeCache(homeConfig, transcodeConfig);
+        String key = cache.getKey(createParameters(1, 128));
+        InputStream first = cache.write(key, new ByteArrayInputStream("first".getBytes()));
+        InputStream second = new ByteArrayInputStream("second".getBytes());
+
+        assertSame(second, cache.write(key, second));
+        consume(first);
+        assertEquals(5, cache.getLength(key));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        TranscodeCache cache = new TranscodeCache(homeConfig, transcodeConfig);
+        byte[] data = new byte[400 * 1024];
+        String first = cache.getKey(createParameters(1, 128));
+        String second = cache.getKey(createParameters(2, 128));
+        String third = cache.getKey(createParameters(3, 128));
+
+        consume(cache.write(first, new ByteArrayInputStream(data)));
+        consume(cache.write(second, new ByteArrayInputStream(data)));
+        cache.open(first).close();
+        consume(cache.write(third, new ByteArrayInputStream(data)));
+
+        assertNotNull(cache.getLength(first));
+        assertNull(cache.getLength(second));
+        assertNotNull(cache.getLength(third));
+    }
+
+    @Test
+    public void testKeyDependsOnBitRateAndVideo() {
+        TranscodeCache cache = new TranscodeCache(homeConfig, transcodeConfig);
+
+        assertEquals(cache.getKey(createParameters(1, 128)), cache.getKey(createParameters(1, 128)));
+        assertNotEquals(cache.getKey(createParameters(1, 128)), cache.getKey(createParameters(1, 320)));
+        TranscodingService.Parameters video = new TranscodingService.Parameters(createParameters(1, 128).getMediaFile(),
+                new VideoTranscodingSettings(640, 480, 0, 0), 128);
+        video.setTranscoding(transcoding);
+        assertNull(cache.getKey(video));
+    }
+
+    @Test
+    public void testDisabledCache() {
+        transcodeConfig.setCacheSize(0);
+        TranscodeCache cache = new TranscodeCache(homeConfig, transcodeConfig);
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.getKey(createParameters(1, 128)));
+    }
+}
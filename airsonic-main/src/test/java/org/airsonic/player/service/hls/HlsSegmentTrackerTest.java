@@ -0,0 +1,95 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.hls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HlsSegmentTrackerTest {
+
+    @Test
+    public void testSegmentIsCompletedWhenNextOneIsCreated() {
+        HlsSegmentTracker tracker = new HlsSegmentTracker();
+        tracker.start();
+        CompletableFuture<Boolean> first = tracker.await(3);
+        CompletableFuture<Boolean> second = tracker.await(4);
+
+        tracker.segmentCreated(3);
+        assertFalse(first.isDone());
+        assertNull(tracker.getLatestCompleted());
+
+        tracker.segmentCreated(4);
+        assertTrue(first.join());
+        assertFalse(second.isDone());
+        assertEquals(3, tracker.getLatestCompleted());
+        assertTrue(tracker.await(3).join());
+    }
+
+    @Test
+    public void testLastSegmentIsCompletedWhenTranscoderExits() {
+        HlsSegmentTracker tracker = new HlsSegmentTracker();
+        int generation = tracker.start();
+        CompletableFuture<Boolean> last = tracker.await(1);
+        CompletableFuture<Boolean> missing = tracker.await(2);
+
+        tracker.segmentCreated(0);
+        tracker.segmentCreated(1);
+        tracker.stop(generation, true);
+
+        assertTrue(last.join());
+        assertFalse(missing.join());
+        assertFalse(tracker.await(5).join());
+    }
+
+    @Test
+    public void testKilledTranscoderDoesNotCompleteSegment() {
+        HlsSegmentTracker tracker = new HlsSegmentTracker();
+        int generation = tracker.start();
+        CompletableFuture<Boolean> segment = tracker.await(0);
+
+        tracker.segmentCreated(0);
+        tracker.stop(generation, false);
+
+        assertFalse(segment.join());
+        assertFalse(tracker.isCompleted(0));
+    }
+
+    @Test
+    public void testStopOfPreviousTranscoderIsIgnored() {
+        HlsSegmentTracker tracker = new HlsSegmentTracker();
+        int previous = tracker.start();
+        tracker.segmentCreated(7);
+        tracker.start();
+        CompletableFuture<Boolean> segment = tracker.await(10);
+
+        tracker.stop(previous, false);
+        assertFalse(segment.isDone());
+        assertFalse(tracker.isCompleted(7));
+
+        tracker.segmentCreated(10);
+        tracker.segmentCreated(11);
+        assertTrue(segment.join());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.scanner;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DirectoryFingerprintJournalTest {
+
+    @TempDir
+    private Path airsonicHome;
+
+    @TempDir
+    private Path musicDir;
+
+    private DirectoryFingerprintJournal journal;
+
+    private MusicFolder folder;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        journal = new DirectoryFingerprintJournal(new AirsonicHomeConfig(airsonicHome.toString(), null));
+        folder = new MusicFolder(1, musicDir, "music", Type.MEDIA, true, Instant.now());
+        Files.createDirectories(musicDir.resolve("artist/album1"));
+        Files.createDirectories(musicDir.resolve("artist/album2"));
+        Files.writeString(musicDir.resolve("artist/album1/track1.mp3"), "track1");
+        Files.writeString(musicDir.resolve("artist/album2/track1.mp3"), "track1");
+    }
+
+    @Test
+    public void testComputeDetectsChangedSubtreeOnly() throws Exception {
+        Map<String, DirectoryFingerprint> before = journal.compute(folder, true);
+        assertEquals(4, before.size());
+
+        Files.writeString(musicDir.resolve("artist/album1/track2.mp3"), "track2");
+        Map<String, DirectoryFingerprint> after = journal.compute(folder, true);
+
+        assertNotEquals(before.get("artist/album1"), after.get("artist/album1"));
+        assertNotEquals(before.get("artist"), after.get("artist"));
+        assertNotEquals(before.get(""), after.get(""));
+        assertEquals(before.get("artist/album2"), after.get("artist/album2"));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        Map<String, DirectoryFingerprint> fingerprints = journal.compute(folder, true);
+        journal.save(folder, 42L, fingerprints);
+
+        assertEquals(fingerprints, journal.load(folder, 42L));
+        assertTrue(journal.load(folder, 43L).isEmpty());
+
+        journal.delete(folder);
+        assertTrue(journal.load(folder, 42L).isEmpty());
+    }
+}
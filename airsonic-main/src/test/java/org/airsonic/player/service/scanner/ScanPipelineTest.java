@@ -0,0 +1,90 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.scanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScanPipelineTest {
+
+    @Test
+    @Timeout(30)
+    public void testSelfFeedingStageWithBoundedDownstreamCompletes() {
+        AtomicInteger leaves = new AtomicInteger();
+        AtomicInteger indexed = new AtomicInteger();
+        AtomicInteger maxConcurrentLeaves = new AtomicInteger();
+        AtomicInteger concurrentLeaves = new AtomicInteger();
+        AtomicReference<ScanPipeline.Stage<Integer>> treeStage = new AtomicReference<>();
+        AtomicReference<ScanPipeline.Stage<Runnable>> indexStage = new AtomicReference<>();
+
+        try (ScanPipeline pipeline = new ScanPipeline("test")) {
+            ScanPipeline.Stage<Integer> leafStage = pipeline.addStage("leaf", 2, 4, false, (Integer depth) -> {
+                maxConcurrentLeaves.accumulateAndGet(concurrentLeaves.incrementAndGet(), Math::max);
+                leaves.incrementAndGet();
+                indexStage.get().submit(indexed::incrementAndGet);
+                concurrentLeaves.decrementAndGet();
+            });
+            // a binary tree of depth 8, every node also produces a leaf
+            treeStage.set(pipeline.addStage("tree", 3, 0, false, (Integer depth) -> {
+                if (depth < 8) {
+                    treeStage.get().submit(depth + 1);
+                    treeStage.get().submit(depth + 1);
+                }
+                leafStage.submit(depth);
+            }));
+            indexStage.set(pipeline.addStage("index", 1, 2, false, Runnable::run));
+
+            treeStage.get().submit(0);
+            pipeline.await();
+
+            assertEquals(511, leaves.get());
+            assertEquals(511, indexed.get());
+            assertTrue(maxConcurrentLeaves.get() <= 2);
+            List<String> report = pipeline.report();
+            assertEquals(3, report.size());
+            assertTrue(report.get(0).startsWith("test stage leaf: 511 items"), report.get(0));
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    public void testFailingItemDoesNotBlockCompletion() {
+        AtomicInteger processed = new AtomicInteger();
+        try (ScanPipeline pipeline = new ScanPipeline("test")) {
+            ScanPipeline.Stage<Integer> stage = pipeline.addStage("fail", 2, 1, false, (Integer i) -> {
+                if (i % 2 == 0) {
+                    throw new IllegalStateException("broken file " + i);
+                }
+                processed.incrementAndGet();
+            });
+            for (int i = 0; i < 10; i++) {
+                stage.submit(i);
+            }
+            pipeline.await();
+            assertEquals(5, processed.get());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScanWriteBufferTest {
+
+    @Test
+    public void testWritesInChunks() {
+        List<List<String>> chunks = new ArrayList<>();
+        ScanWriteBuffer<String> buffer = new ScanWriteBuffer<>("strings", 3, chunks::add);
+
+        IntStream.range(0, 7).mapToObj(i -> "entity" + i).forEach(buffer::add);
+        assertEquals(2, chunks.size());
+        assertTrue(chunks.stream().allMatch(chunk -> chunk.size() == 3));
+
+        buffer.flush();
+        assertEquals(3, chunks.size());
+        assertEquals(List.of("entity6"), chunks.get(2));
+        assertEquals(7, buffer.getWrittenCount());
+    }
+
+    @Test
+    public void testSameEntityIsWrittenOncePerChunk() {
+        List<List<String>> chunks = new ArrayList<>();
+        ScanWriteBuffer<String> buffer = new ScanWriteBuffer<>("strings", 10, chunks::add);
+        String entity = "entity";
+
+        buffer.add(entity);
+        buffer.add(entity);
+        buffer.flush();
+
+        assertEquals(1, chunks.size());
+        assertEquals(List.of(entity), chunks.get(0));
+    }
+
+    @Test
+    public void testFailedChunkDoesNotStopFlush() {
+        List<List<String>> chunks = new ArrayList<>();
+        ScanWriteBuffer<String> buffer = new ScanWriteBuffer<>("strings", 1, chunk -> {
+            if (chunk.contains("broken")) {
+                throw new IllegalStateException("constraint violation");
+            }
+            chunks.add(chunk);
+        });
+
+        buffer.add("broken");
+        buffer.add("fine");
+        buffer.flush();
+
+        assertEquals(List.of(List.of("fine")), chunks);
+        assertEquals(1, buffer.getWrittenCount());
+    }
+}
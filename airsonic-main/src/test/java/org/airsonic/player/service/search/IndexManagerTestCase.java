@@ -34,6 +34,7 @@ import org.airsonic.player.repository.AlbumRepository;
 import org.airsonic.player.repository.ArtistRepository;
 import org.airsonic.player.repository.MediaFileRepository;
 import org.airsonic.player.repository.MusicFolderRepository;
+import org.airsonic.player.service.MediaFileService;
 import org.airsonic.player.service.MediaFolderService;
 import org.airsonic.player.service.MediaScannerService;
 import org.airsonic.player.service.SearchService;
@@ -58,6 +59,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
@@ -82,6 +84,9 @@ public class IndexManagerTestCase {
     @Autowired
     private MediaFolderService mediaFolderService;
 
+    @Autowired
+    private MediaFileService mediaFileService;
+
     @TempDir
     private static Path tempDir;
 
@@ -242,6 +247,37 @@ public class IndexManagerTestCase {
 
     }
 
+    @Test
+    public void testChangesAreSearchableAfterRefresh() {
+
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.setOffset(0);
+        criteria.setCount(Integer.MAX_VALUE);
+        criteria.setQuery("Ondine");
+
+        SearchResult result = searchService.search(criteria, musicFolders, IndexType.SONG);
+        assertEquals(1, result.getMediaFiles().size());
+        MediaFile song = result.getMediaFiles().get(0);
+
+        criteria.setQuery("Zyxwvut");
+        assertEquals(0, searchService.search(criteria, musicFolders, IndexType.SONG).getMediaFiles().size());
+
+        // changed outside of a scan
+        song.setTitle("Zyxwvut");
+        mediaFileService.updateMediaFile(song);
+
+        indexManager.refresh();
+        result = searchService.search(criteria, musicFolders, IndexType.SONG);
+        assertEquals(1, result.getMediaFiles().size());
+        assertEquals(song.getId(), result.getMediaFiles().get(0).getId());
+
+        criteria.setQuery("Ondine");
+        assertEquals(0, searchService.search(criteria, musicFolders, IndexType.SONG).getMediaFiles().size());
+
+        // the statistics of the scan are kept
+        assertNotNull(indexManager.getStatistics());
+    }
+
     private void deleteMediaFile(MediaFile mediaFile) {
 
         mediaFileRepository.findByPathAndFolderAndStartPosition(mediaFile.getPath(), mediaFile.getFolder(), mediaFile.getStartPosition())
@@ -0,0 +1,207 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.search;
+
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MediaFile.MediaType;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test case for the prefix fields, which replace the wildcard query on the last token of a search.
+ * A term of a prefix field has to find the same documents as the wildcard query did on the word field.
+ */
+public class PrefixFieldTest {
+
+    private static final MusicFolder FOLDER = new MusicFolder(1, Paths.get("/music"), "music", Type.MEDIA, true, Instant.now());
+
+    private static final String[][] SONGS = {
+        // title, artist, album
+        {"Moonlight Sonata", "Ludwig van Beethoven", "Piano Sonatas"},
+        {"Hoppípolla", "Sigur Rós", "Takk..."},
+        {"Don't Stop Me Now", "Queen", "Jazz"},
+        {"The Beatles' Song", "The Beatles", "Abbey Road"},
+        {"Supercalifragilisticexpialidocious", "Julie Andrews", "Mary Poppins"},
+        {"Anata no Subete wo", "ＺＡＲＤ", "Forever you"},
+        {"Moon River", "Audrey Hepburn", "Breakfast at Tiffany's"},
+        {"A Day in the Life", "The Beatles", "Sgt. Pepper's Lonely Hearts Club Band"}
+    };
+
+    private final AnalyzerFactory analyzerFactory = new AnalyzerFactory();
+
+    private final QueryFactory queryFactory = new QueryFactory();
+
+    private IndexSearcher searcher;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        ReflectionTestUtils.setField(queryFactory, "analyzerFactory", analyzerFactory);
+        DocumentFactory documentFactory = new DocumentFactory();
+        ByteBuffersDirectory directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzerFactory.getAnalyzer()))) {
+            for (int i = 0; i < SONGS.length; i++) {
+                MediaFile song = new MediaFile();
+                song.setId(i);
+                song.setMediaType(MediaType.MUSIC);
+                song.setTitle(SONGS[i][0]);
+                song.setArtist(SONGS[i][1]);
+                song.setAlbumName(SONGS[i][2]);
+                writer.addDocument(documentFactory.createSongDocument(song, FOLDER));
+                writer.addDocument(documentFactory.createAlbumDocument(song, FOLDER));
+            }
+        }
+        searcher = new IndexSearcher(DirectoryReader.open(directory));
+    }
+
+    private Set<Integer> docs(Query query) throws Exception {
+        return Arrays.stream(searcher.search(query, Integer.MAX_VALUE).scoreDocs)
+                .map(scoreDoc -> scoreDoc.doc)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private Set<Integer> wildcardDocs(String fieldName, String token) throws Exception {
+        return docs(new WildcardQuery(new Term(fieldName, token + "*")));
+    }
+
+    private Set<Integer> prefixDocs(String fieldName, String token) throws Exception {
+        return docs(new TermQuery(new Term(FieldNames.prefixOf(fieldName), token)));
+    }
+
+    /*
+     * Every leading part of every indexed word, up to the longest stored prefix.
+     */
+    private Set<String> indexedPrefixes(String fieldName) throws Exception {
+        Set<String> prefixes = new TreeSet<>();
+        Terms terms = MultiTerms.getTerms(searcher.getIndexReader(), fieldName);
+        TermsEnum termsEnum = terms.iterator();
+        for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+            String word = term.utf8ToString();
+            int length = Math.min(word.codePointCount(0, word.length()), AnalyzerFactory.PREFIX_MAX_LENGTH);
+            for (int i = 1; i <= length; i++) {
+                prefixes.add(word.substring(0, word.offsetByCodePoints(0, i)));
+            }
+        }
+        return prefixes;
+    }
+
+    @Test
+    public void testPrefixFieldMatchesWildcard() throws Exception {
+        for (String fieldName : List.of(FieldNames.TITLE, FieldNames.ARTIST, FieldNames.ALBUM)) {
+            Set<String> prefixes = indexedPrefixes(fieldName);
+            assertFalse(prefixes.isEmpty(), fieldName);
+            for (String prefix : prefixes) {
+                Set<Integer> expected = wildcardDocs(fieldName, prefix);
+                assertFalse(expected.isEmpty(), fieldName + ":" + prefix);
+                assertEquals(expected, prefixDocs(fieldName, prefix), fieldName + ":" + prefix);
+            }
+            for (String token : List.of("x", "moonz", "zard1", "sonatas1")) {
+                assertEquals(wildcardDocs(fieldName, token), prefixDocs(fieldName, token), fieldName + ":" + token);
+            }
+        }
+    }
+
+    @Test
+    public void testPrefixIsLimited() throws Exception {
+        String word = "supercalifragilisticexpialidocious";
+        String longest = word.substring(0, AnalyzerFactory.PREFIX_MAX_LENGTH);
+        assertEquals(wildcardDocs(FieldNames.TITLE, longest), prefixDocs(FieldNames.TITLE, longest));
+        assertFalse(prefixDocs(FieldNames.TITLE, longest).isEmpty());
+        // the whole word is stored as well
+        assertEquals(wildcardDocs(FieldNames.TITLE, word), prefixDocs(FieldNames.TITLE, word));
+        // longer prefixes are not, and are searched with the wildcard
+        assertTrue(prefixDocs(FieldNames.TITLE, longest + "e").isEmpty());
+        assertEquals(wildcardDocs(FieldNames.TITLE, longest + "e"),
+                docs(queryFactory.searchByName(FieldNames.TITLE, longest + "e")));
+    }
+
+    /*
+     * The query of searchByName, with the last token searched by the wildcard as before.
+     */
+    private Query wildcardSearchByName(String fieldName, String name) throws Exception {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream stream = analyzerFactory.getQueryAnalyzer().tokenStream(fieldName, name)) {
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(stream.getAttribute(CharTermAttribute.class).toString());
+            }
+            stream.end();
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            query.add(new TermQuery(new Term(fieldName, tokens.get(i))), BooleanClause.Occur.SHOULD);
+        }
+        query.add(new WildcardQuery(new Term(fieldName, tokens.get(tokens.size() - 1) + "*")), BooleanClause.Occur.SHOULD);
+        return query.build();
+    }
+
+    @Test
+    public void testSearchByNameMatchesWildcard() throws Exception {
+        String[][] names = {
+            {FieldNames.ARTIST, "beeth"},
+            {FieldNames.ARTIST, "Ludwig van Bee"},
+            {FieldNames.ARTIST, "The Beat"},
+            {FieldNames.ARTIST, "Sigur Ro"},
+            {FieldNames.ARTIST, "zar"},
+            {FieldNames.ARTIST, "ＺＡ"},
+            {FieldNames.ALBUM, "Sgt. Pepper"},
+            {FieldNames.ALBUM, "Breakfast at Tiff"},
+            {FieldNames.TITLE, "moon"},
+            {FieldNames.TITLE, "Don't St"},
+            {FieldNames.TITLE, "hoppip"},
+            {FieldNames.TITLE, "nothing"}
+        };
+        for (String[] name : names) {
+            assertEquals(docs(wildcardSearchByName(name[0], name[1])),
+                    docs(queryFactory.searchByName(name[0], name[1])), name[0] + ":" + name[1]);
+        }
+    }
+}
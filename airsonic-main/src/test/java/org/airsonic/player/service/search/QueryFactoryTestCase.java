@@ -176,19 +176,25 @@ public class QueryFactoryTestCase {
     @Test
     public void testSearchByNameArtist() throws IOException {
         Query query = queryFactory.searchByName(FieldNames.ARTIST, QUERY_ENG_ONLY);
-        assertEquals("artist:abc artist:def*", query.toString(), "SearchByNameArtist");
+        assertEquals("artist:abc ConstantScore(artistPrefix:def)", query.toString(), "SearchByNameArtist");
     }
 
     @Test
     public void testSearchByNameAlbum() throws IOException {
         Query query = queryFactory.searchByName(FieldNames.ALBUM, QUERY_ENG_ONLY);
-        assertEquals("album:abc album:def*", query.toString(), "SearchByNameAlbum");
+        assertEquals("album:abc ConstantScore(albumPrefix:def)", query.toString(), "SearchByNameAlbum");
     }
 
     @Test
     public void testSearchByNameTitle() throws IOException {
         Query query = queryFactory.searchByName(FieldNames.TITLE, QUERY_ENG_ONLY);
-        assertEquals("title:abc title:def*", query.toString(),"SearchByNameTitle");
+        assertEquals("title:abc ConstantScore(titlePrefix:def)", query.toString(),"SearchByNameTitle");
+    }
+
+    @Test
+    public void testSearchByNameLongToken() throws IOException {
+        Query query = queryFactory.searchByName(FieldNames.TITLE, "abc abcdefghijklmnopqrstu");
+        assertEquals("title:abc title:abcdefghijklmnopqrstu*", query.toString(), "SearchByNameLongToken");
     }
 
     @Test
@@ -0,0 +1,177 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+
+package org.airsonic.player.service.search;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RandomDocsCollectorTest {
+
+    private static final String WEIGHT = "weight";
+
+    private static IndexSearcher createSearcher(int numDocs) throws Exception {
+        ByteBuffersDirectory directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            for (int i = 0; i < numDocs; i++) {
+                Document doc = new Document();
+                // only the first ten documents have a weight
+                doc.add(new NumericDocValuesField(WEIGHT, i < 10 ? i : 0));
+                writer.addDocument(doc);
+            }
+            writer.forceMerge(1);
+        }
+        return new IndexSearcher(DirectoryReader.open(directory));
+    }
+
+    private static int[] sample(IndexSearcher searcher, int count, Random random, DoubleValuesSource weights,
+            Set<Integer> excluded) throws Exception {
+        return searcher.search(new MatchAllDocsQuery(), RandomDocsCollector.manager(count, random, weights,
+                excluded == null ? null : excluded::contains));
+    }
+
+    @Test
+    public void testSampleIsDistinct() throws Exception {
+        IndexSearcher searcher = createSearcher(1000);
+        int[] docs = sample(searcher, 50, new Random(1), null, null);
+        assertEquals(50, docs.length);
+        assertEquals(50, Arrays.stream(docs).distinct().count());
+        assertTrue(Arrays.stream(docs).allMatch(doc -> doc >= 0 && doc < 1000));
+    }
+
+    @Test
+    public void testSampleIsSmallerIfFewerMatches() throws Exception {
+        IndexSearcher searcher = createSearcher(20);
+        int[] docs = sample(searcher, Integer.MAX_VALUE, new Random(1), null, null);
+        assertEquals(20, docs.length);
+        assertEquals(20, Arrays.stream(docs).distinct().count());
+    }
+
+    @Test
+    public void testExcludedDocsAreNotSampled() throws Exception {
+        IndexSearcher searcher = createSearcher(20);
+        int[] docs = sample(searcher, 20, new Random(1), null, Set.of(3, 5, 7));
+        assertEquals(17, docs.length);
+        assertTrue(Arrays.stream(docs).noneMatch(doc -> doc == 3 || doc == 5 || doc == 7));
+    }
+
+    @Test
+    public void testSampleIsUniform() throws Exception {
+        IndexSearcher searcher = createSearcher(10);
+        Random random = new Random(1);
+        int[] firsts = new int[10];
+        for (int i = 0; i < 10000; i++) {
+            firsts[sample(searcher, 3, random, null, null)[0]]++;
+        }
+        assertTrue(Arrays.stream(firsts).allMatch(n -> n > 800 && n < 1200), Arrays.toString(firsts));
+    }
+
+    @Test
+    public void testSampleIsWeighted() throws Exception {
+        IndexSearcher searcher = createSearcher(100);
+        DoubleValuesSource weights = DoubleValuesSource.fromLongField(WEIGHT);
+        Random random = new Random(1);
+        int[] counts = new int[100];
+        for (int i = 0; i < 10000; i++) {
+            int[] docs = sample(searcher, 1, random, weights, null);
+            counts[docs[0]]++;
+        }
+        // documents without weight are never chosen, doc 9 is about nine times as likely as doc 1
+        assertEquals(0, counts[0]);
+        assertEquals(0, Arrays.stream(counts, 10, 100).sum());
+        assertTrue(counts[9] > 6 * counts[1], Arrays.toString(counts));
+        assertEquals(10000, Arrays.stream(counts).sum());
+    }
+
+    @Test
+    public void testSlicesAreMerged() throws Exception {
+        ByteBuffersDirectory directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            // one segment per commit
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 10; j++) {
+                    writer.addDocument(new Document());
+                }
+                writer.commit();
+            }
+        }
+        DirectoryReader reader = DirectoryReader.open(directory);
+        assertEquals(4, reader.leaves().size());
+        CollectorManager<RandomDocsCollector, int[]> manager = RandomDocsCollector.manager(15, new Random(1), null,
+                null);
+        List<RandomDocsCollector> collectors = new ArrayList<>();
+        for (LeafReaderContext leaf : reader.leaves()) {
+            RandomDocsCollector collector = manager.newCollector();
+            LeafCollector leafCollector = collector.getLeafCollector(leaf);
+            for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                leafCollector.collect(doc);
+            }
+            collectors.add(collector);
+        }
+        int[] docs = manager.reduce(collectors);
+        assertEquals(15, docs.length);
+        assertEquals(15, Arrays.stream(docs).distinct().count());
+        assertTrue(Arrays.stream(docs).allMatch(doc -> doc >= 0 && doc < 40));
+    }
+
+    @Test
+    public void testAllocationDoesNotGrowWithMatches() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        IndexSearcher small = createSearcher(1000);
+        IndexSearcher large = createSearcher(200000);
+        Random random = new Random(1);
+        long threadId = Thread.currentThread().getId();
+
+        // warm up
+        for (int i = 0; i < 20; i++) {
+            sample(small, 20, random, null, null);
+            sample(large, 20, random, null, null);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        sample(small, 20, random, null, null);
+        long smallBytes = threads.getThreadAllocatedBytes(threadId) - before;
+        before = threads.getThreadAllocatedBytes(threadId);
+        sample(large, 20, random, null, null);
+        long largeBytes = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // boxing every match of the large index would take several megabytes
+        assertTrue(largeBytes < smallBytes + 64 * 1024, smallBytes + " / " + largeBytes);
+    }
+}
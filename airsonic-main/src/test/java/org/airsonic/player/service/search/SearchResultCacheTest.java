@@ -0,0 +1,266 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.search;
+
+import org.airsonic.player.config.AirsonicHomeConfig;
+import org.airsonic.player.config.AirsonicScanConfig;
+import org.airsonic.player.domain.Artist;
+import org.airsonic.player.domain.MediaFile;
+import org.airsonic.player.domain.MediaFile.MediaType;
+import org.airsonic.player.domain.MediaLibraryStatistics;
+import org.airsonic.player.domain.MusicFolder;
+import org.airsonic.player.domain.MusicFolder.Type;
+import org.airsonic.player.domain.SearchCriteria;
+import org.airsonic.player.domain.SearchResult;
+import org.airsonic.player.repository.AlbumRepository;
+import org.airsonic.player.repository.ArtistRepository;
+import org.airsonic.player.repository.MediaFileRepository;
+import org.airsonic.player.service.MediaFileService;
+import org.airsonic.player.service.TaskSchedulingService;
+import org.airsonic.player.service.cache.SearchResultCache;
+import org.airsonic.player.service.cache.SearchResultCache.CachedResult;
+import org.airsonic.player.spring.CacheConfiguration;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test case for the cache of search results, and for when it is cleared.
+ */
+@ExtendWith(MockitoExtension.class)
+public class SearchResultCacheTest {
+
+    private static final MusicFolder FOLDER1 = new MusicFolder(1, Paths.get("/music1"), "music1", Type.MEDIA, true, Instant.now());
+    private static final MusicFolder FOLDER2 = new MusicFolder(2, Paths.get("/music2"), "music2", Type.MEDIA, true, Instant.now());
+
+    @Mock
+    private IndexManager indexManager;
+
+    @Mock
+    private MediaFileService mediaFileService;
+
+    private final AnalyzerFactory analyzerFactory = new AnalyzerFactory();
+
+    private final DocumentFactory documentFactory = new DocumentFactory();
+
+    private CacheManager cacheManager;
+
+    private ByteBuffersDirectory directory;
+
+    private QueryFactory queryFactory;
+
+    private SearchServiceImpl searchService;
+
+    private List<MediaFile> songs;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        cacheManager = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider").getCacheManager();
+        cacheManager.createCache(CacheConfiguration.SEARCH_RESULT_CACHE,
+                new MutableConfiguration<String, CachedResult>().setTypes(String.class, CachedResult.class)
+                        .setStoreByValue(false));
+
+        songs = List.of(
+                createSong(1, "Moonlight Sonata", "Beethoven"),
+                createSong(2, "Clair de Lune", "Debussy"),
+                createSong(3, "Moonlight Serenade", "Glenn Miller"));
+        directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzerFactory.getAnalyzer()))) {
+            for (MediaFile song : songs) {
+                writer.addDocument(documentFactory.createSongDocument(song, FOLDER1));
+            }
+        }
+
+        QueryFactory realQueryFactory = new QueryFactory();
+        ReflectionTestUtils.setField(realQueryFactory, "analyzerFactory", analyzerFactory);
+        queryFactory = spy(realQueryFactory);
+        SearchServiceUtilities util = new SearchServiceUtilities();
+        ReflectionTestUtils.setField(util, "mediaFileService", mediaFileService);
+        searchService = new SearchServiceImpl();
+        ReflectionTestUtils.setField(searchService, "queryFactory", queryFactory);
+        ReflectionTestUtils.setField(searchService, "indexManager", indexManager);
+        ReflectionTestUtils.setField(searchService, "util", util);
+        ReflectionTestUtils.setField(searchService, "searchResultCache", new SearchResultCache(cacheManager));
+    }
+
+    @AfterEach
+    public void teardown() {
+        cacheManager.close();
+    }
+
+    private static MediaFile createSong(int id, String title, String artist) {
+        MediaFile song = new MediaFile();
+        song.setId(id);
+        song.setMediaType(MediaType.MUSIC);
+        song.setTitle(title);
+        song.setArtist(artist);
+        return song;
+    }
+
+    private static SearchCriteria createCriteria(String query, int offset, int count) {
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.setQuery(query);
+        criteria.setOffset(offset);
+        criteria.setCount(count);
+        return criteria;
+    }
+
+    private SearchResult search(String query) throws Exception {
+        when(indexManager.getSearcher(IndexType.SONG)).thenReturn(new IndexSearcher(DirectoryReader.open(directory)));
+        when(mediaFileService.getMediaFiles(anyList())).thenAnswer(invocation -> {
+            List<Integer> ids = invocation.getArgument(0);
+            return songs.stream().filter(song -> ids.contains(song.getId())).collect(Collectors.toList());
+        });
+        return searchService.search(createCriteria(query, 0, 10), List.of(FOLDER1), IndexType.SONG);
+    }
+
+    private static List<Integer> ids(SearchResult result) {
+        return result.getMediaFiles().stream().map(MediaFile::getId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testRepeatedQueryIsServedFromCache() throws Exception {
+        SearchResult first = search("moonlight");
+        SearchResult second = search("moonlight");
+
+        assertEquals(List.of(1, 3), ids(first));
+        assertEquals(ids(first), ids(second));
+        assertEquals(first.getTotalHits(), second.getTotalHits());
+        verify(queryFactory, times(1)).search(any(), any(), any());
+        // only the ids are cached, the entities are read again
+        verify(mediaFileService, times(2)).getMediaFiles(anyList());
+    }
+
+    @Test
+    public void testQueryVariantsAreServedFromCache() throws Exception {
+        SearchResult result = search("Moonlight Sonata");
+        assertEquals(ids(result), ids(search("  moonlight   SONATA ")));
+        assertEquals(ids(result), ids(search("MOONLIGHT\tsonata")));
+        verify(queryFactory, times(1)).search(any(), any(), any());
+
+        search("moonlight");
+        verify(queryFactory, times(2)).search(any(), any(), any());
+    }
+
+    @Test
+    public void testCreateCacheKey() throws Exception {
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            String key = SearchServiceImpl.createCacheKey(createCriteria("Moonlight Sonata", 0, 10),
+                    List.of(FOLDER1, FOLDER2), IndexType.SONG, reader);
+
+            // case and whitespace
+            assertEquals(key, SearchServiceImpl.createCacheKey(createCriteria(" moonlight\t SONATA  ", 0, 10),
+                    List.of(FOLDER1, FOLDER2), IndexType.SONG, reader));
+            // order of the folders
+            assertEquals(key, SearchServiceImpl.createCacheKey(createCriteria("Moonlight Sonata", 0, 10),
+                    List.of(FOLDER2, FOLDER1), IndexType.SONG, reader));
+
+            assertNotEquals(key, SearchServiceImpl.createCacheKey(createCriteria("Moonlight", 0, 10),
+                    List.of(FOLDER1, FOLDER2), IndexType.SONG, reader));
+            assertNotEquals(key, SearchServiceImpl.createCacheKey(createCriteria("Moonlight Sonata", 10, 10),
+                    List.of(FOLDER1, FOLDER2), IndexType.SONG, reader));
+            assertNotEquals(key, SearchServiceImpl.createCacheKey(createCriteria("Moonlight Sonata", 0, 20),
+                    List.of(FOLDER1, FOLDER2), IndexType.SONG, reader));
+            assertNotEquals(key, SearchServiceImpl.createCacheKey(createCriteria("Moonlight Sonata", 0, 10),
+                    List.of(FOLDER1), IndexType.SONG, reader));
+            assertNotEquals(key, SearchServiceImpl.createCacheKey(createCriteria("Moonlight Sonata", 0, 10),
+                    List.of(FOLDER1, FOLDER2), IndexType.ALBUM, reader));
+            assertNull(SearchServiceImpl.createCacheKey(createCriteria("", 0, 10),
+                    List.of(FOLDER1, FOLDER2), IndexType.SONG, reader));
+
+            // a changed index gives other keys
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzerFactory.getAnalyzer()))) {
+                writer.addDocument(documentFactory.createSongDocument(createSong(4, "Moonlight", "Someone"), FOLDER1));
+            }
+            try (DirectoryReader changed = DirectoryReader.openIfChanged(reader)) {
+                assertNotEquals(key, SearchServiceImpl.createCacheKey(createCriteria("Moonlight Sonata", 0, 10),
+                        List.of(FOLDER1, FOLDER2), IndexType.SONG, changed));
+            }
+        }
+    }
+
+    private IndexManager createIndexManager(Path airsonicHome, SearchResultCache searchResultCache,
+            TaskSchedulingService taskService, ArtistRepository artistRepository, AlbumRepository albumRepository,
+            MediaFileRepository mediaFileRepository) {
+        return new IndexManager(analyzerFactory, documentFactory, artistRepository, albumRepository, mediaFileRepository,
+                new AirsonicHomeConfig(airsonicHome.toString(), null), new AirsonicScanConfig(), taskService,
+                searchResultCache);
+    }
+
+    @Test
+    public void testCacheIsClearedOnStopIndexingAndRefresh(@TempDir Path airsonicHome,
+            @Mock SearchResultCache searchResultCache, @Mock TaskSchedulingService taskService,
+            @Mock ArtistRepository artistRepository, @Mock AlbumRepository albumRepository,
+            @Mock MediaFileRepository mediaFileRepository) {
+        IndexManager manager = createIndexManager(airsonicHome, searchResultCache, taskService, artistRepository,
+                albumRepository, mediaFileRepository);
+        try {
+            manager.startIndexing();
+            verify(searchResultCache, never()).clear();
+            manager.stopIndexing(new MediaLibraryStatistics());
+            verify(searchResultCache).clear();
+
+            // nothing changed
+            clearInvocations(searchResultCache);
+            manager.refresh();
+            verify(searchResultCache, never()).clear();
+
+            Artist artist = new Artist();
+            artist.setId(1);
+            artist.setPresent(false);
+            manager.indexLater(artist);
+            manager.refresh();
+            verify(searchResultCache).clear();
+        } finally {
+            manager.destroy();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ This file is part of Airsonic.
+
+ Airsonic is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Airsonic is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Airsonic.  If not, see <http://www.gnu.org/licenses/>.
+
+ Copyright 2024 (C) Y.Tory
+ */
+package org.airsonic.player.service.websocket;
+
+import org.airsonic.player.config.AirsonicBroadcastConfig;
+import org.airsonic.player.monitor.MetricsManager;
+import org.airsonic.player.service.TaskSchedulingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ConflatingWebSocketBroadcasterTest {
+
+    @Mock
+    private SimpMessagingTemplate brokerTemplate;
+
+    @Mock
+    private TaskSchedulingService taskService;
+
+    @Mock
+    private MetricsManager metricsManager;
+
+    private ConflatingWebSocketBroadcaster broadcaster;
+
+    @BeforeEach
+    public void setUp() {
+        when(metricsManager.register(any(Class.class), anyString(), any())).thenAnswer(i -> i.getArgument(2));
+        broadcaster = new ConflatingWebSocketBroadcaster(brokerTemplate, taskService, new AirsonicBroadcastConfig(), metricsManager);
+    }
+
+    @Test
+    public void testSupersededMessagesAreDropped() {
+        broadcaster.publish("/topic/scanStatus", "scanStatus", 250);
+        broadcaster.publish("/topic/scanStatus", "scanStatus", 500);
+        broadcaster.publish("/topic/scanStatus", "scanStatus", 750);
+        assertEquals(1, broadcaster.getQueueDepth());
+        verifyNoInteractions(brokerTemplate);
+
+        broadcaster.flush();
+
+        verify(brokerTemplate).convertAndSend("/topic/scanStatus", (Object) 750);
+        verifyNoMoreInteractions(brokerTemplate);
+        assertEquals(0, broadcaster.getQueueDepth());
+    }
+
+    @Test
+    public void testMessagesAreSentInOrderOfLatestUpdate() {
+        broadcaster.publish("/topic/nowPlaying/recent/add", "add/1", "add 1");
+        broadcaster.publish("/topic/nowPlaying/recent/remove", "remove/1", "remove 1");
+        broadcaster.publish("/topic/nowPlaying/recent/add", "add/1", "add 1 again");
+
+        broadcaster.flush();
+
+        InOrder inOrder = inOrder(brokerTemplate);
+        inOrder.verify(brokerTemplate).convertAndSend("/topic/nowPlaying/recent/remove", (Object) "remove 1");
+        inOrder.verify(brokerTemplate).convertAndSend("/topic/nowPlaying/recent/add", (Object) "add 1 again");
+        verify(brokerTemplate, never()).convertAndSend("/topic/nowPlaying/recent/add", (Object) "add 1");
+    }
+
+    @Test
+    public void testMessagesToUsersAreKeptApart() {
+        broadcaster.publishToUser("alice", "/queue/status", "status", "a");
+        broadcaster.publishToUser("bob", "/queue/status", "status", "b");
+        assertEquals(2, broadcaster.getQueueDepth());
+
+        broadcaster.flush();
+
+        verify(brokerTemplate).convertAndSendToUser("alice", "/queue/status", "a");
+        verify(brokerTemplate).convertAndSendToUser("bob", "/queue/status", "b");
+    }
+}
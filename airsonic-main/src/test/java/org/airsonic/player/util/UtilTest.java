@@ -5,13 +5,29 @@ import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class UtilTest {
 
+    @Test
+    public void queryInBatches() {
+        List<Integer> values = IntStream.range(0, Util.QUERY_BATCH_SIZE * 2 + 1).boxed().collect(Collectors.toList());
+        List<Integer> batchSizes = new ArrayList<>();
+        List<Integer> actual = Util.queryInBatches(values, batch -> {
+            batchSizes.add(batch.size());
+            return batch;
+        });
+        assertEquals(values, actual);
+        assertEquals(List.of(Util.QUERY_BATCH_SIZE, Util.QUERY_BATCH_SIZE, 1), batchSizes);
+    }
+
     @Test
     public void objectToStringMapNull() {
         MediaLibraryStatistics statistics = null;